@@ -0,0 +1,121 @@
+package com.example.siamsot.appinventoryv1;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.MatrixCursor;
+import android.os.Debug;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.widget.Button;
+import android.widget.FrameLayout;
+import android.widget.TextView;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.*;
+
+/**
+ * Counts the objects allocated per bound row by {@link InventoryPagingAdapter} and by the
+ * CursorAdapter-style bind it replaced. Results are written to logcat under the tag
+ * "BindAllocationBenchmark".
+ */
+@RunWith(AndroidJUnit4.class)
+public class BindAllocationBenchmark {
+    private static final String TAG = "BindAllocationBenchmark";
+
+    /** Less than a page, so the adapter knows it has all rows and doesn't go to the provider */
+    private static final int ROWS = 40;
+    private static final int PASSES = 50;
+
+    @Test
+    public void viewHolderBindAllocatesLessPerRow() {
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                Context context = InstrumentationRegistry.getTargetContext();
+                FrameLayout parent = new FrameLayout(context);
+
+                double legacy = legacyAllocationsPerRow(context, parent);
+                double holder = viewHolderAllocationsPerRow(context, parent);
+                Log.i(TAG, "allocations per row: cursor adapter bind=" + legacy + " view holder bind=" + holder);
+
+                assertTrue(holder < legacy);
+            }
+        });
+    }
+
+    private static double viewHolderAllocationsPerRow(Context context, FrameLayout parent) {
+        InventoryPagingAdapter adapter = new InventoryPagingAdapter(context,
+                new InventoryPagingAdapter.OnItemClickListener() {
+                    @Override
+                    public void onItemClick(long id) {
+                    }
+                });
+        adapter.showPage(0, items());
+        InventoryPagingAdapter.ItemViewHolder holder = adapter.onCreateViewHolder(parent, 0);
+
+        Debug.startAllocCounting();
+        Debug.resetThreadAllocCount();
+        for (int pass = 0; pass < PASSES; pass++) {
+            for (int position = 0; position < ROWS; position++) {
+                adapter.onBindViewHolder(holder, position);
+            }
+        }
+        int allocations = Debug.getThreadAllocCount();
+        Debug.stopAllocCounting();
+        return allocations / (double) (PASSES * ROWS);
+    }
+
+    private static double legacyAllocationsPerRow(Context context, FrameLayout parent) {
+        View rootView = LayoutInflater.from(context).inflate(R.layout.list_item_template, parent, false);
+        Cursor cursor = items();
+
+        Debug.startAllocCounting();
+        Debug.resetThreadAllocCount();
+        for (int pass = 0; pass < PASSES; pass++) {
+            for (int position = 0; position < ROWS; position++) {
+                cursor.moveToPosition(position);
+                legacyBindView(rootView, cursor);
+            }
+        }
+        int allocations = Debug.getThreadAllocCount();
+        Debug.stopAllocCounting();
+        return allocations / (double) (PASSES * ROWS);
+    }
+
+    /**
+     * What InventoryCursorAdapter.bindView did for every row.
+     */
+    private static void legacyBindView(View rootView, Cursor cursor) {
+        TextView nameView = rootView.findViewById(R.id.name);
+        TextView priceView = rootView.findViewById(R.id.price);
+        TextView qtyView = rootView.findViewById(R.id.qty);
+        String name = cursor.getString(cursor.getColumnIndex("name"));
+        String price = cursor.getString(cursor.getColumnIndex("price")) + "$";
+        String quantity = cursor.getString(cursor.getColumnIndex("quantity"));
+        nameView.setText(name);
+        priceView.setText(price);
+        qtyView.setText(quantity);
+        final int currentQty = Integer.parseInt(cursor.getString(cursor.getColumnIndex("quantity")));
+        final int id = cursor.getInt(cursor.getColumnIndex(InventoryContract.InventoryEntry._ID));
+        Button decreaseB = rootView.findViewById(R.id.decrease);
+        decreaseB.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View view) {
+                Log.d(TAG, id + " " + currentQty);
+            }
+        });
+    }
+
+    private static Cursor items() {
+        MatrixCursor cursor = new MatrixCursor(InventoryContract.InventoryEntry.LIST_PROJECTION);
+        for (int i = 0; i < ROWS; i++) {
+            cursor.addRow(new Object[]{i + 1, "Item " + i, 9.99 + i, i % 20, null});
+        }
+        return cursor;
+    }
+}
@@ -0,0 +1,61 @@
+package com.example.siamsot.appinventoryv1;
+
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.net.Uri;
+import android.test.ProviderTestCase2;
+
+/**
+ * Counts the change notifications {@link InventoryProvider} sends through its {@link ChangeNotifier}.
+ */
+public class ChangeNotifierTest extends ProviderTestCase2<InventoryProvider> {
+
+    public ChangeNotifierTest() {
+        super(InventoryProvider.class, InventoryContract.CONTENT_AUTHORITY);
+    }
+
+    public void testRapidQuantityTapsAreCoalesced() {
+        ContentResolver resolver = getMockContentResolver();
+        ChangeNotifier notifier = getProvider().getChangeNotifier();
+        // A window no device can outrun, so all taps fall into it however slow the loop is
+        notifier.setWindowMs(60000);
+        Uri itemUri = resolver.insert(InventoryContract.InventoryEntry.CONTENT_URI, InventoryTestFixtures.item());
+        long id = ContentUris.parseId(itemUri);
+        notifier.flush();
+        int before = notifier.getNotificationCount();
+
+        for (int i = 0; i < 100; i++) {
+            InventoryContract.adjustQuantity(resolver, id, 1);
+        }
+        notifier.flush();
+
+        assertEquals(1, notifier.getNotificationCount() - before);
+    }
+
+    public void testDeleteNotifiesOnce() {
+        ContentResolver resolver = getMockContentResolver();
+        ChangeNotifier notifier = getProvider().getChangeNotifier();
+        notifier.setWindowMs(0);
+        Uri itemUri = resolver.insert(InventoryContract.InventoryEntry.CONTENT_URI, InventoryTestFixtures.item());
+        int before = notifier.getNotificationCount();
+
+        resolver.delete(itemUri, null, null);
+
+        assertEquals(1, notifier.getNotificationCount() - before);
+    }
+
+    public void testBulkInsertNotifiesOnce() {
+        ChangeNotifier notifier = getProvider().getChangeNotifier();
+        notifier.setWindowMs(0);
+        int before = notifier.getNotificationCount();
+
+        ContentValues[] values = new ContentValues[500];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = InventoryTestFixtures.item();
+        }
+        getMockContentResolver().bulkInsert(InventoryContract.InventoryEntry.CONTENT_URI, values);
+
+        assertEquals(1, notifier.getNotificationCount() - before);
+    }
+}
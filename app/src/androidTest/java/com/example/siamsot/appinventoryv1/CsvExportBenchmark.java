@@ -0,0 +1,114 @@
+package com.example.siamsot.appinventoryv1;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.sqlite.SQLiteDatabase;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+
+import static org.junit.Assert.*;
+
+/**
+ * Measures the throughput of {@link InventoryCsvExporter} and the heap it needs. The export goes
+ * to a writer that only counts characters, so the numbers are the reading and formatting alone.
+ * Results are written to logcat under the tag "CsvExportBenchmark".
+ */
+@RunWith(AndroidJUnit4.class)
+public class CsvExportBenchmark {
+    private static final String TAG = "CsvExportBenchmark";
+    private static final int ROWS = 100000;
+    private static final int SUPPLIERS = 100;
+
+    /** Heap the export may grow by, far less than the rows would take as strings */
+    private static final long MAX_HEAP_GROWTH_BYTES = 4 * 1024 * 1024;
+
+    private SQLiteDatabase mDb;
+
+    @Before
+    public void seed() {
+        Context appContext = InstrumentationRegistry.getTargetContext();
+        // In-memory database with the app's schema, the user's items.db is not touched
+        mDb = SQLiteDatabase.create(null);
+        new InventoryDbHelper(appContext).onCreate(mDb);
+
+        ContentValues values = new ContentValues();
+        mDb.beginTransaction();
+        try {
+            for (int i = 0; i < SUPPLIERS; i++) {
+                values.put(InventoryContract.SupplierEntry._ID, i + 1);
+                values.put(InventoryContract.SupplierEntry.COLUMN_SUPPLIER_NAME, "Supplier, number " + i);
+                values.put(InventoryContract.SupplierEntry.COLUMN_SUPPLIER_PHONE, "+1-855-836-" + (1000 + i));
+                values.put(InventoryContract.SupplierEntry.COLUMN_SUPPLIER_MAIL, "store-support-" + i + "@example.com");
+                mDb.insert(InventoryContract.SupplierEntry.TABLE_NAME, null, values);
+            }
+            values.clear();
+            for (int i = 0; i < ROWS; i++) {
+                values.put(InventoryContract.InventoryEntry.COLUMN_ITEM_NAME, "Item \"" + i + "\"");
+                values.put(InventoryContract.InventoryEntry.COLUMN_ITEM_PRICE, i % 1000 + 0.99);
+                values.put(InventoryContract.InventoryEntry.COLUMN_ITEM_QUANTITY, i % 50);
+                values.put(InventoryContract.InventoryEntry.COLUMN_SUPPLIER_ID, i % SUPPLIERS + 1);
+                mDb.insert(InventoryContract.InventoryEntry.TABLE_NAME, null, values);
+            }
+            mDb.setTransactionSuccessful();
+        } finally {
+            mDb.endTransaction();
+        }
+    }
+
+    @After
+    public void close() {
+        mDb.close();
+    }
+
+    @Test
+    public void exportStreamsAllRowsInConstantMemory() throws IOException {
+        Runtime runtime = Runtime.getRuntime();
+        runtime.gc();
+        long heapBefore = runtime.totalMemory() - runtime.freeMemory();
+
+        CountingWriter counter = new CountingWriter();
+        long start = System.nanoTime();
+        long rows = new InventoryCsvExporter().export(mDb, new BufferedWriter(counter));
+        long nanos = System.nanoTime() - start;
+
+        // Only what is still referenced counts, the garbage of the finished chunks doesn't
+        runtime.gc();
+        long heapGrowth = runtime.totalMemory() - runtime.freeMemory() - heapBefore;
+        Log.i(TAG, "rows=" + rows + " chars=" + counter.chars + " timeMs=" + nanos / 1000000
+                + " rowsPerSecond=" + rows * 1000000000L / nanos
+                + " heapGrowthBytes=" + heapGrowth);
+
+        assertEquals(ROWS, rows);
+        assertTrue(heapGrowth < MAX_HEAP_GROWTH_BYTES);
+    }
+
+    /**
+     * Throws the export away and only counts its length.
+     */
+    private static class CountingWriter extends Writer {
+        long chars;
+
+        @Override
+        public void write(char[] buffer, int offset, int count) {
+            chars += count;
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package com.example.siamsot.appinventoryv1;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the migrations of {@link InventoryDbHelper} against a database created with the
+ * version 2 schema, the last one shipped before the migrations existed.
+ */
+@RunWith(AndroidJUnit4.class)
+public class InventoryDbHelperMigrationTest {
+    private static final String TEST_DB = "migration-test.db";
+    private static final String FRESH_DB = "migration-fresh.db";
+
+    private Context mContext;
+
+    @Before
+    public void setUp() {
+        mContext = InstrumentationRegistry.getTargetContext();
+        mContext.deleteDatabase(TEST_DB);
+        mContext.deleteDatabase(FRESH_DB);
+    }
+
+    @After
+    public void tearDown() {
+        mContext.deleteDatabase(TEST_DB);
+        mContext.deleteDatabase(FRESH_DB);
+    }
+
+    @Test
+    public void migrationsAreOrderedAndEndAtCurrentVersion() {
+        int version = InventoryDbHelper.BASE_VERSION;
+        for (InventoryDbHelper.Migration migration : InventoryDbHelper.MIGRATIONS) {
+            assertEquals(version + 1, migration.toVersion);
+            version = migration.toVersion;
+        }
+        assertEquals(InventoryDbHelper.DATABASE_VERSION, version);
+    }
+
+    @Test
+    public void upgradeFromVersion2KeepsItemsAndAddsIndexes() {
+        createVersion2Database();
+
+        InventoryDbHelper helper = new InventoryDbHelper(mContext, TEST_DB);
+        SQLiteDatabase db = helper.getWritableDatabase();
+        try {
+            assertEquals(InventoryDbHelper.DATABASE_VERSION, db.getVersion());
+            Cursor cursor = db.query(InventoryContract.InventoryEntry.TABLE_NAME, null, null, null, null, null, null);
+            try {
+                assertEquals(1, cursor.getCount());
+                cursor.moveToFirst();
+                assertEquals("Taimen", cursor.getString(
+                        cursor.getColumnIndex(InventoryContract.InventoryEntry.COLUMN_ITEM_NAME)));
+                assertEquals(10, cursor.getInt(
+                        cursor.getColumnIndex(InventoryContract.InventoryEntry.COLUMN_ITEM_QUANTITY)));
+            } finally {
+                cursor.close();
+            }
+            assertTrue(indexes(db).contains("items_name_idx"));
+            assertTrue(indexes(db).contains("items_supplier_idx"));
+            // Added in version 3, dropped again in version 14
+            assertFalse(indexes(db).contains("items_list_idx"));
+        } finally {
+            helper.close();
+        }
+    }
+
+    @Test
+    public void upgradedSchemaMatchesFreshSchema() {
+        createVersion2Database();
+
+        InventoryDbHelper upgraded = new InventoryDbHelper(mContext, TEST_DB);
+        InventoryDbHelper fresh = new InventoryDbHelper(mContext, FRESH_DB);
+        try {
+            assertEquals(schema(fresh.getReadableDatabase()), schema(upgraded.getReadableDatabase()));
+        } finally {
+            upgraded.close();
+            fresh.close();
+        }
+    }
+
+    @Test
+    public void upgradeFromVersion2FillsSummary() {
+        createVersion2Database();
+
+        InventoryDbHelper helper = new InventoryDbHelper(mContext, TEST_DB);
+        try {
+            Cursor cursor = helper.getReadableDatabase().query(InventoryContract.StatsEntry.SUMMARY_TABLE_NAME,
+                    null, null, null, null, null, null);
+            try {
+                assertEquals(1, cursor.getCount());
+                cursor.moveToFirst();
+                assertEquals(1, cursor.getInt(cursor.getColumnIndex(InventoryContract.StatsEntry.COLUMN_ITEM_COUNT)));
+                assertEquals(6000.0, cursor.getDouble(
+                        cursor.getColumnIndex(InventoryContract.StatsEntry.COLUMN_TOTAL_VALUE)), 0.001);
+            } finally {
+                cursor.close();
+            }
+        } finally {
+            helper.close();
+        }
+    }
+
+    @Test
+    public void upgradeFromVersion2MovesSuppliersIntoTheirTable() {
+        createVersion2Database();
+        SQLiteDatabase old = mContext.openOrCreateDatabase(TEST_DB, Context.MODE_PRIVATE, null);
+        try {
+            // Same supplier as the first item, then one that only differs in the mail
+            old.execSQL("INSERT INTO items (name, price, quantity, supplier_name, supplier_phone, supplier_mail) "
+                    + "VALUES ('Walleye', 650.0, 3, 'Google', '+1-855-836-3987', 'store-support@google.com');");
+            old.execSQL("INSERT INTO items (name, price, quantity, supplier_name, supplier_phone, supplier_mail) "
+                    + "VALUES ('Marlin', 800.0, 1, 'Google', '+1-855-836-3987', 'sales@google.com');");
+        } finally {
+            old.close();
+        }
+
+        InventoryDbHelper helper = new InventoryDbHelper(mContext, TEST_DB);
+        try {
+            SQLiteDatabase db = helper.getReadableDatabase();
+            assertEquals(2, DatabaseUtils.queryNumEntries(db, InventoryContract.SupplierEntry.TABLE_NAME));
+            Cursor cursor = db.rawQuery("SELECT COUNT(DISTINCT " + InventoryContract.InventoryEntry.COLUMN_SUPPLIER_ID
+                    + ") FROM " + InventoryContract.InventoryEntry.TABLE_NAME
+                    + " WHERE " + InventoryContract.InventoryEntry.COLUMN_ITEM_NAME + " IN ('Taimen', 'Walleye')", null);
+            try {
+                cursor.moveToFirst();
+                assertEquals(1, cursor.getInt(0));
+            } finally {
+                cursor.close();
+            }
+            // Every item still finds its supplier through the view
+            cursor = db.query(InventoryContract.InventoryEntry.DETAILS_VIEW_NAME,
+                    new String[]{InventoryContract.InventoryEntry.COLUMN_SUPPLIER_MAIL},
+                    InventoryContract.InventoryEntry.COLUMN_ITEM_NAME + "=?", new String[]{"Marlin"},
+                    null, null, null);
+            try {
+                assertTrue(cursor.moveToFirst());
+                assertEquals("sales@google.com", cursor.getString(0));
+            } finally {
+                cursor.close();
+            }
+            assertEquals(3, DatabaseUtils.queryNumEntries(db, InventoryContract.InventoryEntry.DETAILS_VIEW_NAME));
+        } finally {
+            helper.close();
+        }
+    }
+
+    @Test
+    public void databaseUsesWriteAheadLogging() {
+        InventoryDbHelper helper = new InventoryDbHelper(mContext, FRESH_DB);
+        try {
+            assertTrue(helper.getWritableDatabase().isWriteAheadLoggingEnabled());
+        } finally {
+            helper.close();
+        }
+    }
+
+    /**
+     * The version 2 schema, as InventoryDbHelper created it before the migrations, with one item.
+     */
+    private void createVersion2Database() {
+        SQLiteDatabase db = mContext.openOrCreateDatabase(TEST_DB, Context.MODE_PRIVATE, null);
+        try {
+            db.execSQL("CREATE TABLE items (_id INTEGER PRIMARY KEY AUTOINCREMENT, name TEXT NOT NULL, "
+                    + "price FLOAT NOT NULL, quantity INTEGER NOT NULL, image TEXT, supplier_name TEXT NOT NULL, "
+                    + "supplier_phone TEXT NOT NULL, supplier_mail TEXT NOT NULL);");
+            ContentValues values = new ContentValues();
+            values.put("name", "Taimen");
+            values.put("price", 600.00);
+            values.put("quantity", 10);
+            values.put("supplier_name", "Google");
+            values.put("supplier_phone", "+1-855-836-3987");
+            values.put("supplier_mail", "store-support@google.com");
+            db.insert("items", null, values);
+            db.setVersion(2);
+        } finally {
+            db.close();
+        }
+    }
+
+    private static List<String> indexes(SQLiteDatabase db) {
+        List<String> names = new ArrayList<>();
+        Cursor cursor = db.rawQuery("SELECT name FROM sqlite_master WHERE type = 'index'", null);
+        try {
+            while (cursor.moveToNext()) {
+                names.add(cursor.getString(0));
+            }
+        } finally {
+            cursor.close();
+        }
+        return names;
+    }
+
+    private static List<String> schema(SQLiteDatabase db) {
+        List<String> entries = new ArrayList<>();
+        Cursor cursor = db.rawQuery("SELECT type, name, sql FROM sqlite_master "
+                + "WHERE name NOT LIKE 'sqlite_%' AND name != 'android_metadata' ORDER BY type, name", null);
+        try {
+            while (cursor.moveToNext()) {
+                entries.add(cursor.getString(0) + " " + cursor.getString(1) + " " + cursor.getString(2));
+            }
+        } finally {
+            cursor.close();
+        }
+        return entries;
+    }
+}
@@ -0,0 +1,141 @@
+package com.example.siamsot.appinventoryv1;
+
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.net.Uri;
+import android.test.ProviderTestCase2;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
+/**
+ * Tests the call statistics {@link InventoryProvider} serves under
+ * {@link InventoryContract.DiagnosticsEntry}. Every test gets a new provider, so they start at 0.
+ */
+public class InventoryDiagnosticsTest extends ProviderTestCase2<InventoryProvider> {
+
+    public InventoryDiagnosticsTest() {
+        super(InventoryProvider.class, InventoryContract.CONTENT_AUTHORITY);
+    }
+
+    public void testCountsPerUriPattern() {
+        Uri taimen = insert("Taimen", 5);
+        insert("Pixel", 3);
+        getMockContentResolver().query(InventoryContract.InventoryEntry.CONTENT_URI,
+                InventoryContract.InventoryEntry.LIST_PROJECTION, null, null, null).close();
+        getMockContentResolver().query(taimen, null, null, null, null).close();
+        ContentValues values = new ContentValues();
+        values.put(InventoryContract.InventoryEntry.COLUMN_ITEM_QUANTITY, 4);
+        getMockContentResolver().update(taimen, values, null, null);
+        getMockContentResolver().delete(taimen, null, null);
+
+        Cursor cursor = queryDiagnostics();
+        try {
+            assertRow(cursor, "insert", "items", 2, 0, 2);
+            assertRow(cursor, "query", "items", 1, 0, 2);
+            assertRow(cursor, "query", "items/#", 1, 0, 1);
+            assertRow(cursor, "update", "items/#", 1, 0, 1);
+            assertRow(cursor, "delete", "items/#", 1, 0, 1);
+            // Every write notifies the row it touched
+            assertRow(cursor, "notify", "items/#", 4, 0, 0);
+        } finally {
+            cursor.close();
+        }
+    }
+
+    public void testErrorsAreCounted() {
+        try {
+            getMockContentResolver().query(Uri.withAppendedPath(InventoryContract.BASE_CONTENT_URI, "nothing"),
+                    null, null, null, null);
+            fail("Unknown URI was queried");
+        } catch (IllegalArgumentException expected) {
+        }
+        ContentValues noName = new ContentValues();
+        noName.put(InventoryContract.InventoryEntry.COLUMN_ITEM_PRICE, 1.0);
+        try {
+            getMockContentResolver().insert(InventoryContract.InventoryEntry.CONTENT_URI, noName);
+            fail("Item without a name was inserted");
+        } catch (IllegalArgumentException expected) {
+        }
+
+        Cursor cursor = queryDiagnostics();
+        try {
+            assertRow(cursor, "query", "unknown", 1, 1, 0);
+            assertRow(cursor, "insert", "items", 1, 1, 0);
+        } finally {
+            cursor.close();
+        }
+    }
+
+    public void testHistogramCoversEveryCall() {
+        for (int i = 0; i < 20; i++) {
+            insert("Item " + i, i + 1);
+        }
+
+        Cursor cursor = queryDiagnostics();
+        try {
+            assertTrue(moveToRow(cursor, "insert", "items"));
+            long calls = InventoryTestFixtures.getLong(cursor, InventoryContract.DiagnosticsEntry.COLUMN_CALLS);
+            long inHistogram = 0;
+            for (String bucket : cursor.getString(
+                    cursor.getColumnIndex(InventoryContract.DiagnosticsEntry.COLUMN_HISTOGRAM)).split(" ")) {
+                inHistogram += Long.parseLong(bucket.substring(bucket.indexOf(':') + 1));
+            }
+            assertEquals(20, calls);
+            assertEquals(calls, inHistogram);
+            long p50 = InventoryTestFixtures.getLong(cursor, InventoryContract.DiagnosticsEntry.COLUMN_P50_US);
+            long p90 = InventoryTestFixtures.getLong(cursor, InventoryContract.DiagnosticsEntry.COLUMN_P90_US);
+            long p99 = InventoryTestFixtures.getLong(cursor, InventoryContract.DiagnosticsEntry.COLUMN_P99_US);
+            long max = InventoryTestFixtures.getLong(cursor, InventoryContract.DiagnosticsEntry.COLUMN_MAX_US);
+            assertTrue(p50 <= p90 && p90 <= p99 && p99 <= max);
+            assertTrue(max > 0);
+        } finally {
+            cursor.close();
+        }
+    }
+
+    public void testDump() {
+        insert("Taimen", 5);
+        StringWriter out = new StringWriter();
+        PrintWriter writer = new PrintWriter(out);
+        getProvider().dump(null, writer, new String[0]);
+        writer.flush();
+
+        assertTrue(out.toString(), out.toString().contains("insert"));
+        assertTrue(out.toString(), out.toString().contains("items/#"));
+    }
+
+    public void testType() {
+        assertEquals(InventoryContract.DiagnosticsEntry.CONTENT_LIST_TYPE,
+                getMockContentResolver().getType(InventoryContract.DiagnosticsEntry.CONTENT_URI));
+    }
+
+    private Uri insert(String name, int quantity) {
+        long id = InventoryTestFixtures.insert(getMockContentResolver(), InventoryTestFixtures.item(name, quantity));
+        return ContentUris.withAppendedId(InventoryContract.InventoryEntry.CONTENT_URI, id);
+    }
+
+    private Cursor queryDiagnostics() {
+        return getMockContentResolver().query(InventoryContract.DiagnosticsEntry.CONTENT_URI, null, null, null, null);
+    }
+
+    private static void assertRow(Cursor cursor, String operation, String uri, long calls, long errors, long rows) {
+        assertTrue(operation + " " + uri + " not recorded", moveToRow(cursor, operation, uri));
+        assertEquals(calls, InventoryTestFixtures.getLong(cursor, InventoryContract.DiagnosticsEntry.COLUMN_CALLS));
+        assertEquals(errors, InventoryTestFixtures.getLong(cursor, InventoryContract.DiagnosticsEntry.COLUMN_ERRORS));
+        assertEquals(rows, InventoryTestFixtures.getLong(cursor, InventoryContract.DiagnosticsEntry.COLUMN_ROWS));
+    }
+
+    private static boolean moveToRow(Cursor cursor, String operation, String uri) {
+        int operationColumn = cursor.getColumnIndex(InventoryContract.DiagnosticsEntry.COLUMN_OPERATION);
+        int uriColumn = cursor.getColumnIndex(InventoryContract.DiagnosticsEntry.COLUMN_URI);
+        cursor.moveToPosition(-1);
+        while (cursor.moveToNext()) {
+            if (operation.equals(cursor.getString(operationColumn)) && uri.equals(cursor.getString(uriColumn))) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
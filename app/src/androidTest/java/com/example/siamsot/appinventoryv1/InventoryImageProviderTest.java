@@ -0,0 +1,277 @@
+package com.example.siamsot.appinventoryv1;
+
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.content.Context;
+import android.content.Intent;
+import android.content.pm.PackageManager;
+import android.content.pm.ProviderInfo;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.ParcelFileDescriptor;
+import android.os.Process;
+import android.os.SystemClock;
+import android.test.ProviderTestCase2;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Tests the items/#/image URI that {@link InventoryProvider} serves through openFile.
+ */
+public class InventoryImageProviderTest extends ProviderTestCase2<InventoryProvider> {
+    private static final byte[] IMAGE = {(byte) 0xFF, (byte) 0xD8, 1, 2, 3, 4, 5, (byte) 0xFF, (byte) 0xD9};
+
+    public InventoryImageProviderTest() {
+        super(InventoryProvider.class, InventoryContract.CONTENT_AUTHORITY);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        // The photos live in the app's real files dir, not in the isolated test context
+        Cursor cursor = getMockContentResolver().query(InventoryContract.InventoryEntry.CONTENT_URI,
+                new String[]{InventoryContract.InventoryEntry.COLUMN_ITEM_IMAGE}, null, null, null);
+        try {
+            while (cursor.moveToNext()) {
+                if (!cursor.isNull(0)) {
+                    ImageLoader.getInstance(getMockContext()).getImageFile(cursor.getString(0)).delete();
+                }
+            }
+        } finally {
+            cursor.close();
+        }
+        super.tearDown();
+    }
+
+    public void testWriteThenRead() throws IOException {
+        ContentResolver resolver = getMockContentResolver();
+        long id = InventoryTestFixtures.insert(resolver, InventoryTestFixtures.item());
+        Uri imageUri = InventoryContract.InventoryEntry.buildImageUri(id);
+
+        ParcelFileDescriptor out = resolver.openFileDescriptor(imageUri, "w");
+        write(out, IMAGE);
+
+        assertNotNull(awaitImageName(id));
+        ParcelFileDescriptor in = resolver.openFileDescriptor(imageUri, "r");
+        assertTrue(Arrays.equals(IMAGE, read(in)));
+    }
+
+    public void testReadWriteMode() throws IOException {
+        ContentResolver resolver = getMockContentResolver();
+        long id = InventoryTestFixtures.insert(resolver, InventoryTestFixtures.item());
+
+        ParcelFileDescriptor file = resolver.openFileDescriptor(InventoryContract.InventoryEntry.buildImageUri(id), "rw");
+        try {
+            FileChannel channel = new FileOutputStream(file.getFileDescriptor()).getChannel();
+            channel.write(ByteBuffer.wrap(IMAGE));
+            channel.position(0);
+            ByteBuffer readBack = ByteBuffer.allocate(IMAGE.length);
+            new FileInputStream(file.getFileDescriptor()).getChannel().read(readBack);
+            assertTrue(Arrays.equals(IMAGE, readBack.array()));
+        } finally {
+            file.close();
+        }
+    }
+
+    public void testReadOnlyModeRefusesWrites() throws IOException {
+        ContentResolver resolver = getMockContentResolver();
+        long id = InventoryTestFixtures.insert(resolver, InventoryTestFixtures.item());
+        Uri imageUri = InventoryContract.InventoryEntry.buildImageUri(id);
+        write(resolver.openFileDescriptor(imageUri, "w"), IMAGE);
+        awaitImageName(id);
+
+        ParcelFileDescriptor in = resolver.openFileDescriptor(imageUri, "r");
+        try {
+            new FileOutputStream(in.getFileDescriptor()).write(1);
+            fail("Wrote through a read-only descriptor");
+        } catch (IOException expected) {
+        } finally {
+            in.close();
+        }
+    }
+
+    public void testReadWithoutImage() {
+        ContentResolver resolver = getMockContentResolver();
+        long id = InventoryTestFixtures.insert(resolver, InventoryTestFixtures.item());
+
+        try {
+            resolver.openFileDescriptor(InventoryContract.InventoryEntry.buildImageUri(id), "r");
+            fail("Opened the image of an item without one");
+        } catch (FileNotFoundException expected) {
+        }
+        try {
+            resolver.openFileDescriptor(InventoryContract.InventoryEntry.buildImageUri(id + 1), "w");
+            fail("Opened the image of a missing item");
+        } catch (FileNotFoundException expected) {
+        }
+        assertNull(imageName(id));
+    }
+
+    public void testClosedWithoutWritingKeepsNoImage() throws IOException {
+        ContentResolver resolver = getMockContentResolver();
+        long id = InventoryTestFixtures.insert(resolver, InventoryTestFixtures.item());
+        Uri imageUri = InventoryContract.InventoryEntry.buildImageUri(id);
+        List<String> before = imageFiles();
+
+        ParcelFileDescriptor out = resolver.openFileDescriptor(imageUri, "w");
+        // Not attached while it is open
+        assertNull(imageName(id));
+        out.close();
+        // The close listeners run in order, once this one is attached the empty one was handled
+        write(resolver.openFileDescriptor(imageUri, "w"), IMAGE);
+        String imageName = awaitImageName(id);
+
+        List<String> added = imageFiles();
+        added.removeAll(before);
+        assertEquals(Collections.singletonList(imageName), added);
+    }
+
+    public void testReplacedImageIsDeleted() throws IOException {
+        ContentResolver resolver = getMockContentResolver();
+        Uri itemUri = resolver.insert(InventoryContract.InventoryEntry.CONTENT_URI, InventoryTestFixtures.item());
+        long id = ContentUris.parseId(itemUri);
+        write(resolver.openFileDescriptor(InventoryContract.InventoryEntry.buildImageUri(id), "w"), IMAGE);
+        File oldImage = imageFile(awaitImageName(id));
+        String newImageName = newImage();
+
+        ContentValues values = new ContentValues();
+        values.put(InventoryContract.InventoryEntry.COLUMN_ITEM_IMAGE, newImageName);
+        assertEquals(1, resolver.update(itemUri, values, null, null));
+        assertFalse(oldImage.exists());
+        assertTrue(imageFile(newImageName).exists());
+
+        // Saving the item with the photo it already has keeps it
+        ContentValues row = InventoryTestFixtures.item();
+        row.put(InventoryContract.InventoryEntry.COLUMN_ITEM_IMAGE, newImageName);
+        assertEquals(1, resolver.update(itemUri, row, null, null));
+        assertTrue(imageFile(newImageName).exists());
+    }
+
+    public void testDeletedItemsLoseTheirImages() throws IOException {
+        ContentResolver resolver = getMockContentResolver();
+        ContentValues values = InventoryTestFixtures.item();
+        values.put(InventoryContract.InventoryEntry.COLUMN_ITEM_IMAGE, newImage());
+        Uri taimen = resolver.insert(InventoryContract.InventoryEntry.CONTENT_URI, values);
+        File taimenImage = imageFile(values.getAsString(InventoryContract.InventoryEntry.COLUMN_ITEM_IMAGE));
+        values.put(InventoryContract.InventoryEntry.COLUMN_ITEM_IMAGE, newImage());
+        resolver.insert(InventoryContract.InventoryEntry.CONTENT_URI, values);
+        File pixelImage = imageFile(values.getAsString(InventoryContract.InventoryEntry.COLUMN_ITEM_IMAGE));
+
+        assertEquals(1, resolver.delete(taimen, null, null));
+        assertFalse(taimenImage.exists());
+        assertTrue(pixelImage.exists());
+
+        assertEquals(1, resolver.delete(InventoryContract.InventoryEntry.CONTENT_URI, null, null));
+        assertFalse(pixelImage.exists());
+    }
+
+    public void testReadCanBeGranted() throws PackageManager.NameNotFoundException {
+        // The provider isn't exported, so other apps like the target of a share only get in through a grant
+        Context context = getContext();
+        ProviderInfo provider = context.getPackageManager().resolveContentProvider(InventoryContract.CONTENT_AUTHORITY, 0);
+        assertNotNull(provider);
+        assertFalse(provider.exported);
+        assertTrue(provider.grantUriPermissions);
+
+        Uri imageUri = InventoryContract.InventoryEntry.buildImageUri(1);
+        String shell = "com.android.shell";
+        int shellUid = context.getPackageManager().getApplicationInfo(shell, 0).uid;
+        context.grantUriPermission(shell, imageUri, Intent.FLAG_GRANT_READ_URI_PERMISSION);
+        try {
+            assertEquals(PackageManager.PERMISSION_GRANTED, context.checkUriPermission(imageUri,
+                    Process.myPid(), shellUid, Intent.FLAG_GRANT_READ_URI_PERMISSION));
+        } finally {
+            context.revokeUriPermission(imageUri, Intent.FLAG_GRANT_READ_URI_PERMISSION);
+        }
+    }
+
+    public void testImageType() {
+        assertEquals(InventoryContract.InventoryEntry.CONTENT_IMAGE_TYPE,
+                getMockContentResolver().getType(InventoryContract.InventoryEntry.buildImageUri(1)));
+    }
+
+    /**
+     * The image name of the item once a writable descriptor's close listener attached it.
+     */
+    private String awaitImageName(long id) {
+        long deadline = SystemClock.uptimeMillis() + 5000;
+        String imageName;
+        while ((imageName = imageName(id)) == null && SystemClock.uptimeMillis() < deadline) {
+            SystemClock.sleep(10);
+        }
+        assertNotNull(imageName);
+        return imageName;
+    }
+
+    private File imageFile(String imageName) {
+        return ImageLoader.getInstance(getMockContext()).getImageFile(imageName);
+    }
+
+    /**
+     * A photo file that no item uses yet, like the editor's picked image.
+     */
+    private String newImage() throws IOException {
+        String imageName = ImageLoader.getInstance(getMockContext()).newImageName();
+        FileOutputStream out = new FileOutputStream(imageFile(imageName));
+        try {
+            out.write(IMAGE);
+        } finally {
+            out.close();
+        }
+        return imageName;
+    }
+
+    private List<String> imageFiles() {
+        String[] names = imageFile("any").getParentFile().list();
+        return names == null ? new ArrayList<String>() : new ArrayList<>(Arrays.asList(names));
+    }
+
+    private String imageName(long id) {
+        Cursor cursor = getMockContentResolver().query(
+                ContentUris.withAppendedId(InventoryContract.InventoryEntry.CONTENT_URI, id),
+                new String[]{InventoryContract.InventoryEntry.COLUMN_ITEM_IMAGE}, null, null, null);
+        try {
+            assertTrue(cursor.moveToFirst());
+            return cursor.getString(0);
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private static void write(ParcelFileDescriptor file, byte[] bytes) throws IOException {
+        FileOutputStream out = new ParcelFileDescriptor.AutoCloseOutputStream(file);
+        try {
+            out.write(bytes);
+        } finally {
+            out.close();
+        }
+    }
+
+    private static byte[] read(ParcelFileDescriptor file) throws IOException {
+        FileInputStream in = new ParcelFileDescriptor.AutoCloseInputStream(file);
+        try {
+            byte[] bytes = new byte[(int) file.getStatSize()];
+            int offset = 0;
+            while (offset < bytes.length) {
+                int read = in.read(bytes, offset, bytes.length - offset);
+                if (read == -1) {
+                    break;
+                }
+                offset += read;
+            }
+            return bytes;
+        } finally {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package com.example.siamsot.appinventoryv1;
+
+import android.content.ContentValues;
+import android.content.res.AssetFileDescriptor;
+import android.database.Cursor;
+import android.net.Uri;
+import android.test.ProviderTestCase2;
+import android.util.Log;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tests {@link InventoryImporter} against {@link InventoryProvider}: validation, batching,
+ * continuing after a crash, re-importing an export, and the import throughput, which is written to logcat under the
+ * tag "InventoryImporterTest".
+ */
+public class InventoryImporterTest extends ProviderTestCase2<InventoryProvider> {
+    private static final String TAG = "InventoryImporterTest";
+    private static final String HEADER = "_id,name,price,quantity,supplier_name,supplier_phone,supplier_mail\r\n";
+    private static final int BENCHMARK_ROWS = 20000;
+
+    private final List<Long> mFailedRecords = new ArrayList<>();
+    private int mProgressCount;
+
+    private final InventoryImporter.Listener mListener = new InventoryImporter.Listener() {
+        @Override
+        public void onProgress(long position, long imported, long failed) {
+            mProgressCount++;
+        }
+
+        @Override
+        public void onRecordFailed(long record, String message) {
+            mFailedRecords.add(record);
+        }
+    };
+
+    public InventoryImporterTest() {
+        super(InventoryProvider.class, InventoryContract.CONTENT_AUTHORITY);
+    }
+
+    public void testCsvImportSkipsInvalidRecords() throws IOException {
+        String csv = HEADER
+                + "1,Taimen,600.0,10,Google,+1-855-836-3987,store-support@google.com\r\n"
+                + "2,Broken,abc,10,Google,+1-855-836-3987,store-support@google.com\r\n"
+                + "3,\"Pixel, 64 GB\",100.0,3,Google,+1-855-836-3987,store-support@google.com\r\n"
+                + "4,No supplier,80.0,5\r\n";
+        InventoryImporter.Result result = new InventoryImporter(getMockContentResolver(), 2)
+                .importFrom("test.csv", new StringReader(csv), InventoryImporter.Format.CSV, mListener);
+
+        assertEquals(4, result.records);
+        assertEquals(2, result.imported);
+        assertEquals(2, result.failed);
+        assertEquals(2L, (long) mFailedRecords.get(0));
+        assertEquals(4L, (long) mFailedRecords.get(1));
+        assertEquals(2, count(InventoryContract.InventoryEntry.CONTENT_URI));
+        // Done, nothing left to continue
+        assertEquals(0, count(InventoryContract.ImportEntry.CONTENT_URI));
+    }
+
+    public void testJsonImport() throws IOException {
+        String json = "[{\"name\": \"Taimen\", \"price\": 600.0, \"quantity\": 10, \"supplier_name\": \"Google\","
+                + " \"supplier_phone\": \"+1-855-836-3987\", \"supplier_mail\": \"store-support@google.com\","
+                + " \"tags\": [\"phone\"]},"
+                + " {\"name\": \"Kindle\", \"price\": 80, \"quantity\": 0, \"supplier_name\": \"Amazon\","
+                + " \"supplier_phone\": \"+1-888-280-4331\", \"supplier_mail\": \"cs@amazon.com\"}]";
+        InventoryImporter.Result result = new InventoryImporter(getMockContentResolver())
+                .importFrom("test.json", new StringReader(json), InventoryImporter.Format.JSON, mListener);
+
+        // A quantity of 0 is refused like in the editor
+        assertEquals(1, result.imported);
+        assertEquals(1, result.failed);
+        assertEquals(1, count(InventoryContract.InventoryEntry.CONTENT_URI));
+    }
+
+    public void testImportContinuesAfterCrash() throws IOException {
+        final String csv = items(10);
+        // Dies after the second batch is committed
+        try {
+            new InventoryImporter(getMockContentResolver(), 3).importFrom("crash.csv", new StringReader(csv),
+                    InventoryImporter.Format.CSV, new InventoryImporter.Listener() {
+                        @Override
+                        public void onProgress(long position, long imported, long failed) {
+                            if (position == 6) {
+                                throw new IllegalStateException("crash");
+                            }
+                        }
+
+                        @Override
+                        public void onRecordFailed(long record, String message) {
+                        }
+                    });
+            fail("The listener should have crashed the import");
+        } catch (IllegalStateException expected) {
+        }
+        assertEquals(6, count(InventoryContract.InventoryEntry.CONTENT_URI));
+        assertEquals(1, count(InventoryContract.ImportEntry.CONTENT_URI));
+
+        InventoryImporter.Result result = new InventoryImporter(getMockContentResolver(), 3)
+                .importFrom("crash.csv", new StringReader(csv), InventoryImporter.Format.CSV, mListener);
+        assertEquals(10, result.records);
+        assertEquals(10, result.imported);
+        assertEquals(10, count(InventoryContract.InventoryEntry.CONTENT_URI));
+        assertEquals(0, count(InventoryContract.ImportEntry.CONTENT_URI));
+    }
+
+    public void testExportImportsAgain() throws IOException {
+        insert("Taimen", 600.00, 10, 4);
+        insert("Pixel, 64 GB", 100.00, 3, 0);
+        AssetFileDescriptor export = getMockContentResolver().openTypedAssetFileDescriptor(
+                InventoryContract.InventoryEntry.CONTENT_URI, InventoryContract.InventoryEntry.CONTENT_CSV_TYPE, null);
+        StringBuilder csv = new StringBuilder();
+        Reader in = new InputStreamReader(export.createInputStream(), Charset.forName("UTF-8"));
+        try {
+            char[] buffer = new char[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                csv.append(buffer, 0, read);
+            }
+        } finally {
+            in.close();
+            export.close();
+        }
+        getMockContentResolver().delete(InventoryContract.InventoryEntry.CONTENT_URI, null, null);
+
+        InventoryImporter.Result result = new InventoryImporter(getMockContentResolver())
+                .importFrom("export.csv", new StringReader(csv.toString()), InventoryImporter.Format.CSV, mListener);
+
+        assertEquals(2, result.imported);
+        assertEquals(0, result.failed);
+        Cursor cursor = getMockContentResolver().query(InventoryContract.InventoryEntry.CONTENT_URI,
+                new String[]{InventoryContract.InventoryEntry.COLUMN_ITEM_NAME,
+                        InventoryContract.InventoryEntry.COLUMN_ITEM_QUANTITY,
+                        InventoryContract.InventoryEntry.COLUMN_REORDER_THRESHOLD},
+                null, null, InventoryContract.InventoryEntry._ID);
+        try {
+            assertTrue(cursor.moveToNext());
+            assertEquals("Taimen", cursor.getString(0));
+            assertEquals(10, cursor.getInt(1));
+            assertEquals(4, cursor.getInt(2));
+            assertTrue(cursor.moveToNext());
+            assertEquals("Pixel, 64 GB", cursor.getString(0));
+            assertEquals(0, cursor.getInt(2));
+            assertFalse(cursor.moveToNext());
+        } finally {
+            cursor.close();
+        }
+    }
+
+    public void testImportThroughput() throws IOException {
+        String csv = items(BENCHMARK_ROWS);
+        long start = System.nanoTime();
+        InventoryImporter.Result result = new InventoryImporter(getMockContentResolver())
+                .importFrom("benchmark.csv", new StringReader(csv), InventoryImporter.Format.CSV, mListener);
+        long nanos = System.nanoTime() - start;
+        Log.i(TAG, "rows=" + result.imported + " batches=" + mProgressCount + " timeMs=" + nanos / 1000000
+                + " rowsPerSecond=" + result.imported * 1000000000L / nanos);
+
+        assertEquals(BENCHMARK_ROWS, result.imported);
+    }
+
+    private static String items(int count) {
+        StringBuilder csv = new StringBuilder(HEADER);
+        for (int i = 0; i < count; i++) {
+            csv.append(i + 1).append(",Item ").append(i).append(',').append(i % 1000 + 0.99).append(',')
+                    .append(1 + i % 50).append(",Supplier ").append(i % 100)
+                    .append(",+1-855-836-3987,store-support@example.com\r\n");
+        }
+        return csv.toString();
+    }
+
+    private void insert(String name, double price, int quantity, int reorderThreshold) {
+        ContentValues values = InventoryTestFixtures.item(name, price, quantity, InventoryTestFixtures.SUPPLIER);
+        values.put(InventoryContract.InventoryEntry.COLUMN_REORDER_THRESHOLD, reorderThreshold);
+        InventoryTestFixtures.insert(getMockContentResolver(), values);
+    }
+
+    private int count(Uri uri) {
+        return InventoryTestFixtures.count(getMockContentResolver(), uri);
+    }
+}
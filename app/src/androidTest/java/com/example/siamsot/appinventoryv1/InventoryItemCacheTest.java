@@ -0,0 +1,169 @@
+package com.example.siamsot.appinventoryv1;
+
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.MatrixCursor;
+import android.net.Uri;
+import android.test.ProviderTestCase2;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Tests {@link ItemCache} and how {@link InventoryProvider} answers the queries of single items
+ * from it.
+ */
+public class InventoryItemCacheTest extends ProviderTestCase2<InventoryProvider> {
+
+    public InventoryItemCacheTest() {
+        super(InventoryProvider.class, InventoryContract.CONTENT_AUTHORITY);
+    }
+
+    public void testSecondQueryIsAHit() {
+        Uri taimen = insert("Taimen", 10);
+        assertEquals("Taimen", queryString(taimen, InventoryContract.InventoryEntry.COLUMN_ITEM_NAME));
+        assertEquals("Google", queryString(taimen, InventoryContract.InventoryEntry.COLUMN_SUPPLIER_NAME));
+
+        Cursor cursor = getMockContentResolver().query(InventoryContract.DiagnosticsEntry.CONTENT_URI, null, null, null, null);
+        try {
+            assertEquals(1, counter(cursor, "cache_hit"));
+            assertEquals(1, counter(cursor, "cache_miss"));
+        } finally {
+            cursor.close();
+        }
+    }
+
+    public void testWritesInvalidate() {
+        Uri taimen = insert("Taimen", 10);
+        assertEquals("10", queryString(taimen, InventoryContract.InventoryEntry.COLUMN_ITEM_QUANTITY));
+
+        ContentValues values = new ContentValues();
+        values.put(InventoryContract.InventoryEntry.COLUMN_ITEM_QUANTITY, 7);
+        getMockContentResolver().update(taimen, values, null, null);
+        assertEquals("7", queryString(taimen, InventoryContract.InventoryEntry.COLUMN_ITEM_QUANTITY));
+
+        InventoryContract.adjustQuantity(getMockContentResolver(), ContentUris.parseId(taimen), -2);
+        assertEquals("5", queryString(taimen, InventoryContract.InventoryEntry.COLUMN_ITEM_QUANTITY));
+
+        // A supplier change reaches the cached items through the view
+        long supplierId = Long.parseLong(queryString(taimen, InventoryContract.InventoryEntry.COLUMN_SUPPLIER_ID));
+        values = new ContentValues();
+        values.put(InventoryContract.SupplierEntry.COLUMN_SUPPLIER_NAME, "Alphabet");
+        getMockContentResolver().update(
+                ContentUris.withAppendedId(InventoryContract.SupplierEntry.CONTENT_URI, supplierId), values, null, null);
+        assertEquals("Alphabet", queryString(taimen, InventoryContract.InventoryEntry.COLUMN_SUPPLIER_NAME));
+
+        getMockContentResolver().delete(taimen, null, null);
+        Cursor cursor = getMockContentResolver().query(taimen, null, null, null, null);
+        try {
+            assertEquals(0, cursor.getCount());
+        } finally {
+            cursor.close();
+        }
+    }
+
+    public void testExpressionsBypassTheCache() {
+        Uri taimen = insert("Taimen", 10);
+        queryString(taimen, InventoryContract.InventoryEntry.COLUMN_ITEM_NAME);
+        Cursor cursor = getMockContentResolver().query(taimen,
+                new String[]{InventoryContract.InventoryEntry.COLUMN_ITEM_QUANTITY + " * 2"}, null, null, null);
+        try {
+            assertTrue(cursor.moveToFirst());
+            assertEquals(20, cursor.getInt(0));
+        } finally {
+            cursor.close();
+        }
+    }
+
+    public void testConcurrentWritesLeaveNoStaleItem() throws InterruptedException {
+        final Uri taimen = insert("Taimen", 1000);
+        final long id = ContentUris.parseId(taimen);
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread writer = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    for (int i = 0; i < 500; i++) {
+                        InventoryContract.adjustQuantity(getMockContentResolver(), id, -1);
+                    }
+                } catch (Throwable t) {
+                    failure.set(t);
+                }
+            }
+        };
+        Thread reader = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    for (int i = 0; i < 2000; i++) {
+                        queryString(taimen, InventoryContract.InventoryEntry.COLUMN_ITEM_QUANTITY);
+                    }
+                } catch (Throwable t) {
+                    failure.set(t);
+                }
+            }
+        };
+        writer.start();
+        reader.start();
+        writer.join();
+        reader.join();
+        assertNull(failure.get());
+
+        assertEquals("500", queryString(taimen, InventoryContract.InventoryEntry.COLUMN_ITEM_QUANTITY));
+    }
+
+    public void testLeastRecentlyUsedIsDropped() {
+        ItemCache cache = new ItemCache(2);
+        cache.put(1, row(1), cache.generation());
+        cache.put(2, row(2), cache.generation());
+        assertNotNull(cache.get(1));
+        cache.put(3, row(3), cache.generation());
+
+        assertEquals(2, cache.size());
+        assertNull(cache.get(2));
+        assertNotNull(cache.get(1));
+        assertNotNull(cache.get(3));
+    }
+
+    public void testRowReadBeforeInvalidationIsNotKept() {
+        ItemCache cache = new ItemCache();
+        long generation = cache.generation();
+        cache.invalidate(1);
+        cache.put(1, row(1), generation);
+        assertNull(cache.get(1));
+    }
+
+    private static ItemCache.Row row(long id) {
+        MatrixCursor cursor = new MatrixCursor(new String[]{InventoryContract.InventoryEntry._ID});
+        cursor.addRow(new Object[]{id});
+        cursor.moveToFirst();
+        return ItemCache.Row.of(cursor);
+    }
+
+    private Uri insert(String name, int quantity) {
+        long id = InventoryTestFixtures.insert(getMockContentResolver(), InventoryTestFixtures.item(name, quantity));
+        return ContentUris.withAppendedId(InventoryContract.InventoryEntry.CONTENT_URI, id);
+    }
+
+    private String queryString(Uri uri, String column) {
+        Cursor cursor = getMockContentResolver().query(uri, new String[]{column}, null, null, null);
+        try {
+            assertTrue(cursor.moveToFirst());
+            return cursor.getString(0);
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private static long counter(Cursor cursor, String operation) {
+        int column = cursor.getColumnIndex(InventoryContract.DiagnosticsEntry.COLUMN_OPERATION);
+        cursor.moveToPosition(-1);
+        while (cursor.moveToNext()) {
+            if (operation.equals(cursor.getString(column))) {
+                return cursor.getLong(cursor.getColumnIndex(InventoryContract.DiagnosticsEntry.COLUMN_CALLS));
+            }
+        }
+        fail(operation + " not in the diagnostics");
+        return 0;
+    }
+}
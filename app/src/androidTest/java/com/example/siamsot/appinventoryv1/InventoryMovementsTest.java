@@ -0,0 +1,165 @@
+package com.example.siamsot.appinventoryv1;
+
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Bundle;
+import android.test.ProviderTestCase2;
+
+/**
+ * Tests the stock movements behind {@link InventoryContract.MovementEntry}: that every quantity
+ * change is recorded, and that compacting them keeps the daily totals.
+ */
+public class InventoryMovementsTest extends ProviderTestCase2<InventoryProvider> {
+    private static final String PLAN_DB = "movements-plan-test.db";
+
+    public InventoryMovementsTest() {
+        super(InventoryProvider.class, InventoryContract.CONTENT_AUTHORITY);
+    }
+
+    public void testEveryQuantityChangeIsRecorded() {
+        long taimen = insert("Taimen", 10);
+        Uri uri = ContentUris.withAppendedId(InventoryContract.InventoryEntry.CONTENT_URI, taimen);
+        InventoryContract.adjustQuantity(getMockContentResolver(), taimen, -1);
+        ContentValues values = new ContentValues();
+        values.put(InventoryContract.InventoryEntry.COLUMN_ITEM_QUANTITY, 7);
+        getMockContentResolver().update(uri, values, null, null);
+        // Renaming the item leaves the quantity alone
+        values = new ContentValues();
+        values.put(InventoryContract.InventoryEntry.COLUMN_ITEM_NAME, "Taimen XL");
+        getMockContentResolver().update(uri, values, null, null);
+
+        Cursor cursor = movements(InventoryContract.MovementEntry.buildMovementsUri(taimen));
+        try {
+            assertEquals(3, cursor.getCount());
+            assertMovement(cursor, 0, -2, 7);
+            assertMovement(cursor, 1, -1, 9);
+            assertMovement(cursor, 2, 10, 10);
+        } finally {
+            cursor.close();
+        }
+    }
+
+    public void testHistoryOutlivesTheItem() {
+        long taimen = insert("Taimen", 10);
+        getMockContentResolver().delete(
+                ContentUris.withAppendedId(InventoryContract.InventoryEntry.CONTENT_URI, taimen), null, null);
+
+        Cursor cursor = movements(InventoryContract.MovementEntry.buildMovementsUri(taimen));
+        try {
+            assertEquals(2, cursor.getCount());
+            assertMovement(cursor, 0, -10, 0);
+        } finally {
+            cursor.close();
+        }
+    }
+
+    public void testLimit() {
+        long taimen = insert("Taimen", 10);
+        for (int i = 0; i < 5; i++) {
+            InventoryContract.adjustQuantity(getMockContentResolver(), taimen, -1);
+        }
+        Uri uri = InventoryContract.MovementEntry.buildMovementsUri(taimen).buildUpon()
+                .appendQueryParameter(InventoryContract.QUERY_PARAMETER_LIMIT, "2")
+                .build();
+        Cursor cursor = movements(uri);
+        try {
+            assertEquals(2, cursor.getCount());
+            assertMovement(cursor, 0, -1, 5);
+        } finally {
+            cursor.close();
+        }
+    }
+
+    public void testCompactionKeepsTheDailyTotals() {
+        long taimen = insert("Taimen", 10);
+        InventoryContract.adjustQuantity(getMockContentResolver(), taimen, -1);
+        InventoryContract.adjustQuantity(getMockContentResolver(), taimen, -2);
+        InventoryContract.adjustQuantity(getMockContentResolver(), taimen, 4);
+        insert("Pixel", 3);
+        assertDay(taimen, 14, 3, 4, 11);
+
+        // Everything up to the end of today
+        assertEquals(5, compact(System.currentTimeMillis() + InventoryContract.MovementEntry.DAY_MS));
+        Cursor cursor = movements(InventoryContract.MovementEntry.buildMovementsUri(taimen));
+        try {
+            assertEquals(0, cursor.getCount());
+        } finally {
+            cursor.close();
+        }
+        assertDay(taimen, 14, 3, 4, 11);
+
+        // A day is added up over both tables
+        InventoryContract.adjustQuantity(getMockContentResolver(), taimen, -5);
+        assertDay(taimen, 14, 8, 5, 6);
+        assertEquals(1, compact(System.currentTimeMillis() + InventoryContract.MovementEntry.DAY_MS));
+        assertDay(taimen, 14, 8, 5, 6);
+    }
+
+    public void testRecentMovementsStay() {
+        insert("Taimen", 10);
+        assertEquals(0, compact(System.currentTimeMillis()
+                - InventoryContract.MovementEntry.RETENTION_DAYS * InventoryContract.MovementEntry.DAY_MS));
+    }
+
+    public void testHistoryWindowUsesIndex() {
+        InventoryTestFixtures.assertPlanUsesIndex(getMockContext(), PLAN_DB,
+                InventoryContract.MovementEntry.TABLE_NAME, "stock_movements_item_idx", "SELECT * FROM "
+                        + InventoryContract.MovementEntry.TABLE_NAME + " WHERE "
+                        + InventoryContract.MovementEntry.COLUMN_ITEM_ID + " = ? AND "
+                        + InventoryContract.MovementEntry.COLUMN_TIMESTAMP + " >= ? ORDER BY "
+                        + InventoryContract.MovementEntry.COLUMN_TIMESTAMP + " DESC, "
+                        + InventoryContract.MovementEntry._ID + " DESC LIMIT 100", "1", "0");
+    }
+
+    public void testMovementsAreAppendOnly() {
+        insert("Taimen", 10);
+        try {
+            getMockContentResolver().update(InventoryContract.MovementEntry.buildMovementsUri(1), new ContentValues(), null, null);
+            fail("Updated a movement");
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    private int compact(long before) {
+        Bundle extras = new Bundle();
+        extras.putLong(InventoryContract.EXTRA_BEFORE, before);
+        Bundle result = getMockContentResolver().call(InventoryContract.InventoryEntry.CONTENT_URI,
+                InventoryContract.METHOD_COMPACT_MOVEMENTS, null, extras);
+        return result.getInt(InventoryContract.EXTRA_COMPACTED);
+    }
+
+    /**
+     * Today is the only day and has the given totals.
+     */
+    private void assertDay(long id, int received, int removed, int movements, int quantity) {
+        Cursor cursor = movements(InventoryContract.MovementEntry.buildDailyUri(id));
+        try {
+            assertEquals(1, cursor.getCount());
+            cursor.moveToFirst();
+            assertEquals(System.currentTimeMillis() / InventoryContract.MovementEntry.DAY_MS,
+                    InventoryTestFixtures.getLong(cursor, InventoryContract.MovementEntry.COLUMN_DAY));
+            assertEquals(received, InventoryTestFixtures.getLong(cursor, InventoryContract.MovementEntry.COLUMN_RECEIVED));
+            assertEquals(removed, InventoryTestFixtures.getLong(cursor, InventoryContract.MovementEntry.COLUMN_REMOVED));
+            assertEquals(movements, InventoryTestFixtures.getLong(cursor, InventoryContract.MovementEntry.COLUMN_MOVEMENTS));
+            assertEquals(quantity, InventoryTestFixtures.getLong(cursor, InventoryContract.MovementEntry.COLUMN_QUANTITY));
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private static void assertMovement(Cursor cursor, int position, int delta, int quantity) {
+        assertTrue(cursor.moveToPosition(position));
+        assertEquals(delta, InventoryTestFixtures.getLong(cursor, InventoryContract.MovementEntry.COLUMN_DELTA));
+        assertEquals(quantity, InventoryTestFixtures.getLong(cursor, InventoryContract.MovementEntry.COLUMN_QUANTITY));
+    }
+
+    private Cursor movements(Uri uri) {
+        return getMockContentResolver().query(uri, null, null, null, null);
+    }
+
+    private long insert(String name, int quantity) {
+        return InventoryTestFixtures.insert(getMockContentResolver(), InventoryTestFixtures.item(name, quantity));
+    }
+}
@@ -0,0 +1,410 @@
+package com.example.siamsot.appinventoryv1;
+
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.content.Context;
+import android.content.pm.ProviderInfo;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.net.Uri;
+import android.os.Bundle;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.filters.LargeTest;
+import android.test.RenamingDelegatingContext;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Benchmarks {@link InventoryProvider} and {@link InventoryDbHelper} on seeded datasets of
+ * items (with 100 suppliers). Every dataset lives in its own database file next to the app's, is
+ * seeded once and reused by later runs; the benchmarks that write leave it as they found it.
+ * <p>
+ * The results go to benchmarks/inventory-&lt;rows&gt;.json in the app's external files dir and to
+ * logcat under the tag "MicroBenchmark". By default only the 1k dataset runs, so the benchmark
+ * stays cheap in the normal test run. Pick larger sizes with
+ * {@code -e benchmark_sizes 1000,100000,1000000}, the 1M dataset takes a few minutes to seed.
+ * The class is a {@link LargeTest}, so {@code -e notAnnotation android.support.test.filters.LargeTest}
+ * leaves it out altogether.
+ */
+@LargeTest
+@RunWith(Parameterized.class)
+public class InventoryProviderBenchmark {
+    private static final String DEFAULT_SIZES = "1000";
+    private static final int SUPPLIERS = 100;
+    private static final int PAGE_SIZE = 50;
+
+    private static final int WARMUP = 20;
+    private static final int ITERATIONS = 200;
+
+    @Parameterized.Parameters(name = "rows={0}")
+    public static List<Object[]> sizes() {
+        String sizes = InstrumentationRegistry.getArguments().getString("benchmark_sizes", DEFAULT_SIZES);
+        List<Object[]> parameters = new ArrayList<>();
+        for (String size : sizes.split(",")) {
+            parameters.add(new Object[]{Integer.parseInt(size.trim())});
+        }
+        return parameters;
+    }
+
+    private final int mRows;
+    private final Random mRandom = new Random(42);
+
+    private Context mContext;
+    private InventoryProvider mProvider;
+
+    public InventoryProviderBenchmark(int rows) {
+        mRows = rows;
+    }
+
+    @Before
+    public void setUp() {
+        // items.db becomes benchmark-<rows>.items.db, the user's data is not touched
+        mContext = new RenamingDelegatingContext(InstrumentationRegistry.getTargetContext(), "benchmark-" + mRows + ".");
+        seed();
+        mProvider = new InventoryProvider();
+        ProviderInfo info = new ProviderInfo();
+        info.authority = InventoryContract.CONTENT_AUTHORITY;
+        mProvider.attachInfo(mContext, info);
+    }
+
+    @After
+    public void tearDown() {
+        mProvider.shutdown();
+    }
+
+    @Test
+    public void runSuite() throws IOException {
+        MicroBenchmark.Report report = new MicroBenchmark.Report("inventory-" + mRows, mRows);
+
+        report.add(MicroBenchmark.measure("insert", WARMUP, ITERATIONS, new MicroBenchmark.Op() {
+            private final List<Uri> mInserted = new ArrayList<>();
+
+            @Override
+            void run(int iteration) {
+                mInserted.add(mProvider.insert(InventoryContract.InventoryEntry.CONTENT_URI, item(iteration)));
+            }
+
+            @Override
+            void tearDown(int iteration) {
+                mProvider.delete(mInserted.remove(0), null, null);
+            }
+        }));
+
+        report.add(MicroBenchmark.measure("bulk_insert_100", 5, 20, new MicroBenchmark.Op() {
+            private final ContentValues[] mValues = new ContentValues[100];
+            private long mMaxId;
+
+            @Override
+            void setUp(int iteration) {
+                for (int i = 0; i < mValues.length; i++) {
+                    mValues[i] = item(i);
+                }
+                mMaxId = maxId();
+            }
+
+            @Override
+            void run(int iteration) {
+                mProvider.bulkInsert(InventoryContract.InventoryEntry.CONTENT_URI, mValues);
+            }
+
+            @Override
+            void tearDown(int iteration) {
+                mProvider.delete(InventoryContract.InventoryEntry.CONTENT_URI,
+                        InventoryContract.InventoryEntry._ID + " > ?", new String[]{String.valueOf(mMaxId)});
+            }
+        }));
+
+        report.add(MicroBenchmark.measure("update_quantity", WARMUP, ITERATIONS, new MicroBenchmark.Op() {
+            @Override
+            void run(int iteration) {
+                ContentValues values = new ContentValues();
+                values.put(InventoryContract.InventoryEntry.COLUMN_ITEM_QUANTITY, 1 + iteration % 50);
+                mProvider.update(randomItemUri(), values, null, null);
+            }
+        }));
+
+        report.add(MicroBenchmark.measure("adjust_quantity", WARMUP, ITERATIONS, new MicroBenchmark.Op() {
+            @Override
+            void run(int iteration) {
+                Bundle extras = new Bundle();
+                // Up and down, so the quantities stay where they were
+                extras.putInt(InventoryContract.EXTRA_DELTA, iteration % 2 == 0 ? 1 : -1);
+                mProvider.call(InventoryContract.METHOD_ADJUST_QUANTITY, String.valueOf(1 + iteration / 2 % mRows), extras);
+            }
+        }));
+
+        report.add(MicroBenchmark.measure("delete", WARMUP, ITERATIONS, new MicroBenchmark.Op() {
+            private Uri mItemUri;
+
+            @Override
+            void setUp(int iteration) {
+                mItemUri = mProvider.insert(InventoryContract.InventoryEntry.CONTENT_URI, item(iteration));
+            }
+
+            @Override
+            void run(int iteration) {
+                mProvider.delete(mItemUri, null, null);
+            }
+        }));
+
+        report.add(MicroBenchmark.measure("query_item", WARMUP, ITERATIONS, new MicroBenchmark.Op() {
+            @Override
+            void run(int iteration) {
+                Cursor cursor = mProvider.query(randomItemUri(), null, null, null, null);
+                cursor.moveToFirst();
+                cursor.close();
+            }
+        }));
+
+        report.add(MicroBenchmark.measure("query_page", WARMUP, ITERATIONS, new MicroBenchmark.Op() {
+            @Override
+            void run(int iteration) {
+                iterate(mProvider.query(
+                        InventoryContract.InventoryEntry.buildPageUri(mRandom.nextInt(mRows), PAGE_SIZE),
+                        InventoryContract.InventoryEntry.LIST_PROJECTION, null, null, null));
+            }
+        }));
+
+        report.add(MicroBenchmark.measure("search_page", WARMUP, ITERATIONS, new MicroBenchmark.Op() {
+            @Override
+            void run(int iteration) {
+                iterate(mProvider.query(
+                        InventoryContract.InventoryEntry.buildSearchPageUri("item " + iteration % 100, 0, PAGE_SIZE),
+                        InventoryContract.InventoryEntry.LIST_PROJECTION, null, null, null));
+            }
+        }));
+
+        report.add(MicroBenchmark.measure("low_stock_page", WARMUP, ITERATIONS, new MicroBenchmark.Op() {
+            @Override
+            void run(int iteration) {
+                Uri uri = InventoryContract.InventoryEntry.sortedBy(
+                        InventoryContract.InventoryEntry.buildPageUri(mRandom.nextInt(mRows), PAGE_SIZE),
+                        InventoryContract.SORT_LOW_STOCK, String.valueOf(iteration % 50));
+                iterate(mProvider.query(uri, InventoryContract.InventoryEntry.LIST_PROJECTION, null, null, null));
+            }
+        }));
+
+        report.add(MicroBenchmark.measure("value_page", WARMUP, ITERATIONS, new MicroBenchmark.Op() {
+            @Override
+            void run(int iteration) {
+                Uri uri = InventoryContract.InventoryEntry.sortedBy(
+                        InventoryContract.InventoryEntry.buildPageUri(mRandom.nextInt(mRows), PAGE_SIZE),
+                        InventoryContract.SORT_VALUE, String.valueOf(mRandom.nextInt(5000000)));
+                iterate(mProvider.query(uri, InventoryPagingAdapter.projection(InventoryContract.SORT_VALUE),
+                        null, null, null));
+            }
+        }));
+
+        report.add(MicroBenchmark.measure("stats", WARMUP, ITERATIONS, new MicroBenchmark.Op() {
+            @Override
+            void run(int iteration) {
+                iterate(mProvider.query(InventoryContract.StatsEntry.CONTENT_URI, null, null, null, null));
+            }
+        }));
+
+        // Every row through the CursorWindows, divide by the rows for the cost per row
+        report.add(MicroBenchmark.measure("cursor_iteration_all_rows", 1, 3, new MicroBenchmark.Op() {
+            @Override
+            void run(int iteration) {
+                int rows = iterate(mProvider.query(InventoryContract.InventoryEntry.CONTENT_URI,
+                        InventoryContract.InventoryEntry.LIST_PROJECTION, null, null,
+                        InventoryContract.InventoryEntry._ID));
+                assertEquals(mRows, rows);
+            }
+        }));
+
+        report.add(MicroBenchmark.measure("dbhelper_open", 3, 20, new MicroBenchmark.Op() {
+            private InventoryDbHelper mHelper;
+
+            @Override
+            void run(int iteration) {
+                mHelper = new InventoryDbHelper(mContext);
+                mHelper.getWritableDatabase();
+            }
+
+            @Override
+            void tearDown(int iteration) {
+                mHelper.close();
+            }
+        }));
+
+        // Expensive, measured once: every migration from the version 2 schema
+        final String upgradeDb = "upgrade.db";
+        report.add(MicroBenchmark.measure("dbhelper_upgrade_from_2", 0, 1, new MicroBenchmark.Op() {
+            private InventoryDbHelper mHelper;
+
+            @Override
+            void setUp(int iteration) {
+                mContext.deleteDatabase(upgradeDb);
+                seedVersion2(upgradeDb);
+                mHelper = new InventoryDbHelper(mContext, upgradeDb);
+            }
+
+            @Override
+            void run(int iteration) {
+                mHelper.getWritableDatabase();
+            }
+
+            @Override
+            void tearDown(int iteration) {
+                mHelper.close();
+                mContext.deleteDatabase(upgradeDb);
+            }
+        }));
+
+        File file = report.write(InstrumentationRegistry.getTargetContext());
+        assertTrue(file.length() > 0);
+    }
+
+    /**
+     * Fill the dataset's database, unless an earlier run already did.
+     */
+    private void seed() {
+        InventoryDbHelper helper = new InventoryDbHelper(mContext);
+        try {
+            SQLiteDatabase db = helper.getWritableDatabase();
+            if (DatabaseUtils.queryNumEntries(db, InventoryContract.InventoryEntry.TABLE_NAME) == mRows) {
+                return;
+            }
+            db.delete(InventoryContract.InventoryEntry.TABLE_NAME, null, null);
+            db.delete(InventoryContract.SupplierEntry.TABLE_NAME, null, null);
+            db.delete("sqlite_sequence", null, null);
+            db.beginTransaction();
+            SQLiteStatement supplier = db.compileStatement("INSERT INTO " + InventoryContract.SupplierEntry.TABLE_NAME
+                    + " (" + InventoryContract.SupplierEntry.COLUMN_SUPPLIER_NAME + ", "
+                    + InventoryContract.SupplierEntry.COLUMN_SUPPLIER_PHONE + ", "
+                    + InventoryContract.SupplierEntry.COLUMN_SUPPLIER_MAIL + ") VALUES (?, ?, ?)");
+            SQLiteStatement item = db.compileStatement("INSERT INTO " + InventoryContract.InventoryEntry.TABLE_NAME
+                    + " (" + InventoryContract.InventoryEntry.COLUMN_ITEM_NAME + ", "
+                    + InventoryContract.InventoryEntry.COLUMN_ITEM_PRICE + ", "
+                    + InventoryContract.InventoryEntry.COLUMN_ITEM_QUANTITY + ", "
+                    + InventoryContract.InventoryEntry.COLUMN_SUPPLIER_ID + ") VALUES (?, ?, ?, ?)");
+            try {
+                for (int i = 0; i < SUPPLIERS; i++) {
+                    supplier.bindString(1, supplierName(i));
+                    supplier.bindString(2, supplierPhone(i));
+                    supplier.bindString(3, supplierMail(i));
+                    supplier.executeInsert();
+                }
+                for (int i = 0; i < mRows; i++) {
+                    item.bindString(1, "Item " + i);
+                    item.bindDouble(2, i % 1000 + 0.99);
+                    item.bindLong(3, i % 50);
+                    item.bindLong(4, i % SUPPLIERS + 1);
+                    item.executeInsert();
+                }
+                db.setTransactionSuccessful();
+            } finally {
+                supplier.close();
+                item.close();
+                db.endTransaction();
+            }
+        } finally {
+            helper.close();
+        }
+    }
+
+    /**
+     * A database in the version 2 schema with the dataset's items, for the upgrade benchmark.
+     */
+    private void seedVersion2(String name) {
+        SQLiteDatabase db = mContext.openOrCreateDatabase(name, Context.MODE_PRIVATE, null);
+        try {
+            db.execSQL("CREATE TABLE items (_id INTEGER PRIMARY KEY AUTOINCREMENT, name TEXT NOT NULL, "
+                    + "price FLOAT NOT NULL, quantity INTEGER NOT NULL, image TEXT, supplier_name TEXT NOT NULL, "
+                    + "supplier_phone TEXT NOT NULL, supplier_mail TEXT NOT NULL);");
+            db.beginTransaction();
+            SQLiteStatement item = db.compileStatement("INSERT INTO items (name, price, quantity, "
+                    + "supplier_name, supplier_phone, supplier_mail) VALUES (?, ?, ?, ?, ?, ?)");
+            try {
+                for (int i = 0; i < mRows; i++) {
+                    item.bindString(1, "Item " + i);
+                    item.bindDouble(2, i % 1000 + 0.99);
+                    item.bindLong(3, i % 50);
+                    item.bindString(4, supplierName(i % SUPPLIERS));
+                    item.bindString(5, supplierPhone(i % SUPPLIERS));
+                    item.bindString(6, supplierMail(i % SUPPLIERS));
+                    item.executeInsert();
+                }
+                db.setTransactionSuccessful();
+            } finally {
+                item.close();
+                db.endTransaction();
+            }
+            db.setVersion(2);
+        } finally {
+            db.close();
+        }
+    }
+
+    private static ContentValues item(int i) {
+        ContentValues values = new ContentValues();
+        values.put(InventoryContract.InventoryEntry.COLUMN_ITEM_NAME, "Benchmark item " + i);
+        values.put(InventoryContract.InventoryEntry.COLUMN_ITEM_PRICE, 9.99);
+        values.put(InventoryContract.InventoryEntry.COLUMN_ITEM_QUANTITY, 1 + i % 50);
+        values.put(InventoryContract.InventoryEntry.COLUMN_SUPPLIER_NAME, supplierName(i % SUPPLIERS));
+        values.put(InventoryContract.InventoryEntry.COLUMN_SUPPLIER_PHONE, supplierPhone(i % SUPPLIERS));
+        values.put(InventoryContract.InventoryEntry.COLUMN_SUPPLIER_MAIL, supplierMail(i % SUPPLIERS));
+        return values;
+    }
+
+    private static String supplierName(int i) {
+        return "Supplier " + i;
+    }
+
+    private static String supplierPhone(int i) {
+        return "+1-855-836-" + (1000 + i);
+    }
+
+    private static String supplierMail(int i) {
+        return "store-support-" + i + "@example.com";
+    }
+
+    private Uri randomItemUri() {
+        return ContentUris.withAppendedId(InventoryContract.InventoryEntry.CONTENT_URI, 1 + mRandom.nextInt(mRows));
+    }
+
+    private long maxId() {
+        Cursor cursor = mProvider.query(InventoryContract.InventoryEntry.CONTENT_URI,
+                new String[]{"MAX(" + InventoryContract.InventoryEntry._ID + ")"}, null, null, null);
+        try {
+            cursor.moveToFirst();
+            return cursor.getLong(0);
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Read every column of every row, then close the cursor.
+     */
+    private static int iterate(Cursor cursor) {
+        int rows = 0;
+        try {
+            int columns = cursor.getColumnCount();
+            while (cursor.moveToNext()) {
+                for (int i = 0; i < columns; i++) {
+                    cursor.getString(i);
+                }
+                rows++;
+            }
+        } finally {
+            cursor.close();
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,139 @@
+package com.example.siamsot.appinventoryv1;
+
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.content.Intent;
+import android.test.ProviderTestCase2;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Tests the reorder thresholds and how {@link ReorderAlerts} checks them from the last change it
+ * saw, see {@link InventoryContract#QUERY_PARAMETER_CHANGED_AFTER}.
+ */
+public class InventoryReorderTest extends ProviderTestCase2<InventoryProvider> {
+    private static final String PLAN_DB = "reorder-plan-test.db";
+
+    public InventoryReorderTest() {
+        super(InventoryProvider.class, InventoryContract.CONTENT_AUTHORITY);
+    }
+
+    public void testLowItemIsReportedOnce() {
+        long taimen = insert("Taimen", 10, 5);
+        insert("Pixel", 3, null);
+        ReorderAlerts.Result result = ReorderAlerts.check(getMockContentResolver(), 0);
+        assertTrue(result.alerts.isEmpty());
+
+        InventoryContract.adjustQuantity(getMockContentResolver(), taimen, -6);
+        result = ReorderAlerts.check(getMockContentResolver(), result.lastChange);
+        assertEquals(Arrays.asList(taimen), ids(result));
+        ReorderAlerts.Alert alert = result.alerts.get(0);
+        assertEquals(4, alert.quantity);
+        assertEquals(5, alert.threshold);
+        assertEquals("store-support@google.com", alert.supplierMail);
+
+        // Nothing changed since
+        assertTrue(ReorderAlerts.check(getMockContentResolver(), result.lastChange).alerts.isEmpty());
+    }
+
+    public void testOutOfStockByDefault() {
+        long pixel = insert("Pixel", 3, null);
+        long lastChange = ReorderAlerts.check(getMockContentResolver(), 0).lastChange;
+        InventoryContract.adjustQuantity(getMockContentResolver(), pixel, -2);
+        ReorderAlerts.Result result = ReorderAlerts.check(getMockContentResolver(), lastChange);
+        assertTrue(result.alerts.isEmpty());
+
+        InventoryContract.adjustQuantity(getMockContentResolver(), pixel, -1);
+        assertEquals(Arrays.asList(pixel), ids(ReorderAlerts.check(getMockContentResolver(), result.lastChange)));
+    }
+
+    public void testRaisedThresholdIsAChange() {
+        long pixel = insert("Pixel", 3, null);
+        long lastChange = ReorderAlerts.check(getMockContentResolver(), 0).lastChange;
+
+        ContentValues values = new ContentValues();
+        values.put(InventoryContract.InventoryEntry.COLUMN_REORDER_THRESHOLD, 3);
+        getMockContentResolver().update(
+                ContentUris.withAppendedId(InventoryContract.InventoryEntry.CONTENT_URI, pixel), values, null, null);
+        assertEquals(Arrays.asList(pixel), ids(ReorderAlerts.check(getMockContentResolver(), lastChange)));
+    }
+
+    public void testChangesNeverGoBack() {
+        long taimen = insert("Taimen", 10, 5);
+        long pixel = insert("Pixel", 3, null);
+        long lastChange = ReorderAlerts.check(getMockContentResolver(), 0).lastChange;
+        // Pixel had the last change
+        getMockContentResolver().delete(
+                ContentUris.withAppendedId(InventoryContract.InventoryEntry.CONTENT_URI, pixel), null, null);
+
+        InventoryContract.adjustQuantity(getMockContentResolver(), taimen, -9);
+        assertEquals(Arrays.asList(taimen), ids(ReorderAlerts.check(getMockContentResolver(), lastChange)));
+    }
+
+    public void testDeletingTheLastChangedItemReportsNothing() {
+        long taimen = insert("Taimen", 1, 5);
+        long pixel = insert("Pixel", 3, null);
+        ReorderAlerts.Result result = ReorderAlerts.check(getMockContentResolver(), 0);
+        assertEquals(Arrays.asList(taimen), ids(result));
+        // Pixel had the last change, and nothing changes after its delete
+        getMockContentResolver().delete(
+                ContentUris.withAppendedId(InventoryContract.InventoryEntry.CONTENT_URI, pixel), null, null);
+
+        result = ReorderAlerts.check(getMockContentResolver(), result.lastChange);
+        assertTrue(result.alerts.isEmpty());
+        assertTrue(ReorderAlerts.check(getMockContentResolver(), result.lastChange).alerts.isEmpty());
+    }
+
+    public void testMailIsPrefilled() {
+        long taimen = insert("Taimen", 1, 5);
+        long pixel = insert("Pixel", 2, 5);
+        ReorderAlerts.Result result = ReorderAlerts.check(getMockContentResolver(), 0);
+        assertEquals(Arrays.asList(taimen, pixel), ids(result));
+
+        Intent mail = ReorderAlerts.mailIntent(getContext(), result.alerts);
+        assertEquals(Intent.ACTION_SENDTO, mail.getAction());
+        assertEquals(Arrays.asList("store-support@google.com"),
+                Arrays.asList(mail.getStringArrayExtra(Intent.EXTRA_EMAIL)));
+        String text = mail.getStringExtra(Intent.EXTRA_TEXT);
+        assertTrue(text, text.contains("Taimen") && text.contains("Pixel"));
+    }
+
+    public void testNegativeThresholdFails() {
+        try {
+            insert("Taimen", 10, -1);
+            fail("Inserted a negative reorder threshold");
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    public void testChangedAfterUsesIndex() {
+        InventoryTestFixtures.assertPlanUsesIndex(getMockContext(), PLAN_DB,
+                InventoryContract.InventoryEntry.TABLE_NAME, "items_changed_idx", "SELECT "
+                        + InventoryContract.InventoryEntry._ID + ", "
+                        + InventoryContract.InventoryEntry.COLUMN_SUPPLIER_MAIL + " FROM "
+                        + InventoryContract.InventoryEntry.DETAILS_VIEW_NAME + " WHERE "
+                        + InventoryContract.InventoryEntry.COLUMN_CHANGED + " <= ? AND "
+                        + InventoryContract.InventoryEntry.COLUMN_ITEM_QUANTITY + " <= "
+                        + InventoryContract.InventoryEntry.COLUMN_REORDER_THRESHOLD + " AND "
+                        + InventoryContract.InventoryEntry.COLUMN_CHANGED + " > ? ORDER BY "
+                        + InventoryContract.InventoryEntry.COLUMN_CHANGED, "100", "42");
+    }
+
+    private static List<Long> ids(ReorderAlerts.Result result) {
+        List<Long> ids = new ArrayList<>();
+        for (ReorderAlerts.Alert alert : result.alerts) {
+            ids.add(alert.itemId);
+        }
+        return ids;
+    }
+
+    private long insert(String name, int quantity, Integer threshold) {
+        ContentValues values = InventoryTestFixtures.item(name, quantity);
+        if (threshold != null) {
+            values.put(InventoryContract.InventoryEntry.COLUMN_REORDER_THRESHOLD, threshold);
+        }
+        return InventoryTestFixtures.insert(getMockContentResolver(), values);
+    }
+}
@@ -0,0 +1,105 @@
+package com.example.siamsot.appinventoryv1;
+
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.net.Uri;
+import android.test.ProviderTestCase2;
+import android.util.Log;
+
+import java.util.Arrays;
+
+/**
+ * Tests the full-text search URI of {@link InventoryProvider} against an isolated database.
+ */
+public class InventorySearchTest extends ProviderTestCase2<InventoryProvider> {
+    private static final String TAG = "InventorySearchTest";
+    private static final int ROWS = 100000;
+    private static final int CHUNK = 10000;
+
+    public InventorySearchTest() {
+        super(InventoryProvider.class, InventoryContract.CONTENT_AUTHORITY);
+    }
+
+    public void testTriggersKeepIndexInSync() {
+        ContentResolver resolver = getMockContentResolver();
+        Uri itemUri = resolver.insert(InventoryContract.InventoryEntry.CONTENT_URI, item("Taimen", "Google"));
+        assertEquals(1, search("taim"));
+        assertEquals(1, search("goo"));
+
+        ContentValues values = new ContentValues();
+        values.put(InventoryContract.InventoryEntry.COLUMN_ITEM_NAME, "Pixel");
+        resolver.update(itemUri, values, null, null);
+        assertEquals(0, search("taim"));
+        assertEquals(1, search("pix"));
+
+        // quantity changes must not drop the item from the index
+        InventoryContract.adjustQuantity(resolver, ContentUris.parseId(itemUri), -1);
+        assertEquals(1, search("pix"));
+
+        resolver.delete(itemUri, null, null);
+        assertEquals(0, search("pix"));
+    }
+
+    public void testOperatorsAreNotPassedThrough() {
+        getMockContentResolver().insert(InventoryContract.InventoryEntry.CONTENT_URI, item("Taimen", "Google"));
+        assertEquals(1, search("\"taimen -"));
+        assertEquals(0, search("*"));
+    }
+
+    public void testPrefixSearchOver100kItems() {
+        ContentResolver resolver = getMockContentResolver();
+        ContentValues[] chunk = new ContentValues[CHUNK];
+        for (int start = 0; start < ROWS; start += CHUNK) {
+            for (int i = 0; i < CHUNK; i++) {
+                chunk[i] = item("Item" + (start + i) + " widget", "Supplier" + (start + i) % 100);
+            }
+            resolver.bulkInsert(InventoryContract.InventoryEntry.CONTENT_URI, chunk);
+        }
+
+        long[] timings = new long[9];
+        for (int run = 0; run < timings.length; run++) {
+            long start = System.nanoTime();
+            int found = search("item1234");
+            timings[run] = System.nanoTime() - start;
+            // Item1234 and Item12340..Item12349
+            assertEquals(11, found);
+        }
+        Arrays.sort(timings);
+        long medianMs = timings[timings.length / 2] / 1000000;
+        Log.i(TAG, "median prefix search over " + ROWS + " items: " + medianMs + " ms");
+        assertTrue("prefix search took " + medianMs + " ms", medianMs < 20);
+    }
+
+    /**
+     * Run a search and walk the whole result, the way the list does.
+     */
+    private int search(String text) {
+        Uri uri = InventoryContract.InventoryEntry.SEARCH_URI.buildUpon()
+                .appendQueryParameter(InventoryContract.QUERY_PARAMETER_SEARCH, text)
+                .build();
+        Cursor cursor = getMockContentResolver().query(uri,
+                InventoryContract.InventoryEntry.LIST_PROJECTION, null, null, null);
+        try {
+            int count = 0;
+            while (cursor.moveToNext()) {
+                count++;
+            }
+            return count;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private static ContentValues item(String name, String supplier) {
+        ContentValues values = new ContentValues();
+        values.put(InventoryContract.InventoryEntry.COLUMN_ITEM_NAME, name);
+        values.put(InventoryContract.InventoryEntry.COLUMN_ITEM_PRICE, 9.99);
+        values.put(InventoryContract.InventoryEntry.COLUMN_ITEM_QUANTITY, 10);
+        values.put(InventoryContract.InventoryEntry.COLUMN_SUPPLIER_NAME, supplier);
+        values.put(InventoryContract.InventoryEntry.COLUMN_SUPPLIER_PHONE, "+1-855-836-3987");
+        values.put(InventoryContract.InventoryEntry.COLUMN_SUPPLIER_MAIL, supplier.toLowerCase() + "@example.com");
+        return values;
+    }
+}
@@ -0,0 +1,188 @@
+package com.example.siamsot.appinventoryv1;
+
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.net.Uri;
+import android.test.ProviderTestCase2;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Tests the sorted and filtered lists of {@link InventoryProvider}, see
+ * {@link InventoryContract#QUERY_PARAMETER_SORT}, and that the database serves each of them
+ * from an index.
+ */
+public class InventorySortTest extends ProviderTestCase2<InventoryProvider> {
+    private static final String PLAN_DB = "sort-plan-test.db";
+
+    public InventorySortTest() {
+        super(InventoryProvider.class, InventoryContract.CONTENT_AUTHORITY);
+    }
+
+    public void testLowStockFirst() {
+        long taimen = insert("Taimen", 600.00, 10, "Google");
+        long pixel = insert("Pixel", 100.00, 3, "Google");
+        long kindle = insert("Kindle", 80.00, 3, "Amazon");
+        long echo = insert("Echo", 50.00, 1, "Amazon");
+
+        assertEquals(Arrays.asList(echo, pixel, kindle, taimen), pageThrough(InventoryContract.SORT_LOW_STOCK, -1));
+    }
+
+    public void testHighestValueFirst() {
+        long taimen = insert("Taimen", 600.00, 10, "Google");
+        long pixel = insert("Pixel", 100.00, 3, "Google");
+        long kindle = insert("Kindle", 150.00, 2, "Amazon");
+        long echo = insert("Echo", 0.99, 1, "Amazon");
+
+        // Pixel and Kindle are both worth 300$, the newer one comes first
+        assertEquals(Arrays.asList(taimen, kindle, pixel, echo), pageThrough(InventoryContract.SORT_VALUE, -1));
+    }
+
+    public void testStockValueFollowsTheItem() {
+        long taimen = insert("Taimen", 600.00, 10, "Google");
+        assertEquals(600000, stockValue(taimen));
+
+        InventoryContract.adjustQuantity(getMockContentResolver(), taimen, -4);
+        assertEquals(360000, stockValue(taimen));
+
+        ContentValues values = new ContentValues();
+        values.put(InventoryContract.InventoryEntry.COLUMN_ITEM_PRICE, 0.015);
+        getMockContentResolver().update(
+                ContentUris.withAppendedId(InventoryContract.InventoryEntry.CONTENT_URI, taimen), values, null, null);
+        assertEquals(9, stockValue(taimen));
+    }
+
+    public void testSupplierFilter() {
+        long taimen = insert("Taimen", 600.00, 10, "Google");
+        long kindle = insert("Kindle", 80.00, 5, "Amazon");
+        long pixel = insert("Pixel", 100.00, 3, "Google");
+
+        long google = supplierId(taimen);
+        assertEquals(Arrays.asList(taimen, pixel), pageThrough(null, google));
+        assertEquals(Arrays.asList(kindle), pageThrough(null, supplierId(kindle)));
+        // Combined with a sort
+        assertEquals(Arrays.asList(pixel, taimen), pageThrough(InventoryContract.SORT_LOW_STOCK, google));
+    }
+
+    public void testUnknownSortFails() {
+        Uri uri = InventoryContract.InventoryEntry.sortedBy(
+                InventoryContract.InventoryEntry.buildPageUri(0, 10), "name", null);
+        try {
+            getMockContentResolver().query(uri, InventoryContract.InventoryEntry.LIST_PROJECTION, null, null, null);
+            fail("Sorted by an unknown sort");
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    public void testLowStockUsesIndex() {
+        assertPlanUsesIndex("items_low_stock_idx", page(InventoryContract.SORT_LOW_STOCK, null, 0, -1),
+                InventoryContract.SORT_LOW_STOCK);
+        assertPlanUsesIndex("items_low_stock_idx", page(InventoryContract.SORT_LOW_STOCK, "3", 42, -1),
+                InventoryContract.SORT_LOW_STOCK);
+    }
+
+    public void testValueUsesIndex() {
+        assertPlanUsesIndex("items_value_idx", page(InventoryContract.SORT_VALUE, null, 0, -1),
+                InventoryContract.SORT_VALUE);
+        assertPlanUsesIndex("items_value_idx", page(InventoryContract.SORT_VALUE, "30000", 42, -1),
+                InventoryContract.SORT_VALUE);
+    }
+
+    public void testSupplierFilterUsesIndex() {
+        assertPlanUsesIndex("items_supplier_idx", page(null, null, 42, 7), null);
+    }
+
+    public void testSortedSupplierFilterUsesIndex() {
+        assertPlanUsesIndex("items_supplier_low_stock_idx", page(InventoryContract.SORT_LOW_STOCK, null, 0, 7),
+                InventoryContract.SORT_LOW_STOCK);
+        assertPlanUsesIndex("items_supplier_low_stock_idx", page(InventoryContract.SORT_LOW_STOCK, "3", 42, 7),
+                InventoryContract.SORT_LOW_STOCK);
+        assertPlanUsesIndex("items_supplier_value_idx", page(InventoryContract.SORT_VALUE, null, 0, 7),
+                InventoryContract.SORT_VALUE);
+        assertPlanUsesIndex("items_supplier_value_idx", page(InventoryContract.SORT_VALUE, "30000", 42, 7),
+                InventoryContract.SORT_VALUE);
+    }
+
+    /**
+     * The URI of a page of 50 as {@link InventoryPagingAdapter} asks for it.
+     */
+    private static Uri page(String sort, String afterKey, long afterId, long supplierId) {
+        Uri uri = InventoryContract.InventoryEntry.sortedBy(
+                InventoryContract.InventoryEntry.buildPageUri(afterId, 50), sort, afterKey);
+        return supplierId == -1 ? uri : InventoryContract.InventoryEntry.ofSupplier(uri, supplierId);
+    }
+
+    /**
+     * Every step of the plan of the query the provider builds for the URI must go through the
+     * index, and none may sort.
+     */
+    private void assertPlanUsesIndex(String index, Uri uri, String sort) {
+        InventoryProvider.ItemQuery query = InventoryProvider.ItemQuery.of(uri,
+                InventoryPagingAdapter.projection(sort), null, null, null);
+        InventoryTestFixtures.assertPlanUsesIndex(getMockContext(), PLAN_DB,
+                InventoryContract.InventoryEntry.TABLE_NAME, index, query.toSql(), query.selectionArgs);
+    }
+
+    /**
+     * The ids of the list in the given order, read two at a time through the page keys.
+     */
+    private List<Long> pageThrough(String sort, long supplierId) {
+        String sortKey = InventoryContract.InventoryEntry.sortKeyColumn(sort);
+        List<Long> ids = new ArrayList<>();
+        String afterKey = null;
+        long afterId = 0;
+        while (true) {
+            Uri uri = InventoryContract.InventoryEntry.sortedBy(
+                    InventoryContract.InventoryEntry.buildPageUri(afterId, 2), sort, afterKey);
+            if (supplierId != -1) {
+                uri = InventoryContract.InventoryEntry.ofSupplier(uri, supplierId);
+            }
+            Cursor cursor = getMockContentResolver().query(uri, InventoryPagingAdapter.projection(sort), null, null, null);
+            try {
+                if (cursor.getCount() == 0) {
+                    return ids;
+                }
+                while (cursor.moveToNext()) {
+                    afterId = cursor.getLong(cursor.getColumnIndex(InventoryContract.InventoryEntry._ID));
+                    ids.add(afterId);
+                    if (sortKey != null) {
+                        afterKey = cursor.getString(cursor.getColumnIndex(sortKey));
+                    }
+                }
+            } finally {
+                cursor.close();
+            }
+        }
+    }
+
+    private long stockValue(long id) {
+        Cursor cursor = getMockContentResolver().query(InventoryContract.InventoryEntry.buildPageUri(id - 1, 1),
+                new String[]{InventoryContract.InventoryEntry.COLUMN_STOCK_VALUE}, null, null, null);
+        try {
+            assertTrue(cursor.moveToFirst());
+            return cursor.getLong(0);
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private long supplierId(long id) {
+        Cursor cursor = getMockContentResolver().query(
+                ContentUris.withAppendedId(InventoryContract.InventoryEntry.CONTENT_URI, id),
+                new String[]{InventoryContract.InventoryEntry.COLUMN_SUPPLIER_ID}, null, null, null);
+        try {
+            assertTrue(cursor.moveToFirst());
+            return cursor.getLong(0);
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private long insert(String name, double price, int quantity, String supplier) {
+        return InventoryTestFixtures.insert(getMockContentResolver(),
+                InventoryTestFixtures.item(name, price, quantity, supplier));
+    }
+}
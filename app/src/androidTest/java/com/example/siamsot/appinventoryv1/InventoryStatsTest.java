@@ -0,0 +1,102 @@
+package com.example.siamsot.appinventoryv1;
+
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.test.ProviderTestCase2;
+
+/**
+ * Tests the aggregates {@link InventoryProvider} serves under {@link InventoryContract.StatsEntry}.
+ */
+public class InventoryStatsTest extends ProviderTestCase2<InventoryProvider> {
+    private static final String PLAN_DB = "stats-plan-test.db";
+
+    public InventoryStatsTest() {
+        super(InventoryProvider.class, InventoryContract.CONTENT_AUTHORITY);
+    }
+
+    public void testTotals() {
+        insert("Taimen", 600.00, 10, "Google");
+        insert("Pixel", 100.00, 3, "Google");
+        insert("Kindle", 80.00, 5, "Amazon");
+        long soldOut = insert("Echo", 50.00, 1, "Amazon");
+        ContentValues values = new ContentValues();
+        values.put(InventoryContract.InventoryEntry.COLUMN_ITEM_QUANTITY, 0);
+        getMockContentResolver().update(
+                ContentUris.withAppendedId(InventoryContract.InventoryEntry.CONTENT_URI, soldOut), values, null, null);
+
+        Cursor cursor = getMockContentResolver().query(InventoryContract.StatsEntry.CONTENT_URI, null, null, null, null);
+        try {
+            assertEquals(1, cursor.getCount());
+            cursor.moveToFirst();
+            assertEquals(4, getInt(cursor, InventoryContract.StatsEntry.COLUMN_ITEM_COUNT));
+            assertEquals(600.0 * 10 + 100.0 * 3 + 80.0 * 5,
+                    cursor.getDouble(cursor.getColumnIndex(InventoryContract.StatsEntry.COLUMN_TOTAL_VALUE)), 0.001);
+            assertEquals(18, getInt(cursor, InventoryContract.StatsEntry.COLUMN_TOTAL_QUANTITY));
+            // 3 and 5 are low, 0 is out of stock and not counted as low
+            assertEquals(2, getInt(cursor, InventoryContract.StatsEntry.COLUMN_LOW_STOCK_COUNT));
+            assertEquals(1, getInt(cursor, InventoryContract.StatsEntry.COLUMN_OUT_OF_STOCK_COUNT));
+        } finally {
+            cursor.close();
+        }
+    }
+
+    public void testTotalsOfEmptyTable() {
+        Cursor cursor = getMockContentResolver().query(InventoryContract.StatsEntry.CONTENT_URI, null, null, null, null);
+        try {
+            cursor.moveToFirst();
+            assertEquals(0, getInt(cursor, InventoryContract.StatsEntry.COLUMN_ITEM_COUNT));
+            assertEquals(0.0, cursor.getDouble(cursor.getColumnIndex(InventoryContract.StatsEntry.COLUMN_TOTAL_VALUE)), 0);
+        } finally {
+            cursor.close();
+        }
+    }
+
+    public void testSupplierTotals() {
+        insert("Taimen", 600.00, 10, "Google");
+        insert("Pixel", 100.00, 3, "Google");
+        insert("Kindle", 80.00, 5, "Amazon");
+
+        Cursor cursor = getMockContentResolver().query(InventoryContract.StatsEntry.SUPPLIERS_URI, null, null, null, null);
+        try {
+            assertEquals(2, cursor.getCount());
+            cursor.moveToFirst();
+            assertEquals("Amazon", cursor.getString(cursor.getColumnIndex(InventoryContract.InventoryEntry.COLUMN_SUPPLIER_NAME)));
+            assertEquals(1, getInt(cursor, InventoryContract.StatsEntry.COLUMN_ITEM_COUNT));
+            assertEquals(400.0, cursor.getDouble(cursor.getColumnIndex(InventoryContract.StatsEntry.COLUMN_TOTAL_VALUE)), 0.001);
+            cursor.moveToNext();
+            assertEquals("Google", cursor.getString(cursor.getColumnIndex(InventoryContract.InventoryEntry.COLUMN_SUPPLIER_NAME)));
+            assertEquals(2, getInt(cursor, InventoryContract.StatsEntry.COLUMN_ITEM_COUNT));
+            assertEquals(13, getInt(cursor, InventoryContract.StatsEntry.COLUMN_TOTAL_QUANTITY));
+            assertTrue(cursor.getColumnIndex(InventoryContract.InventoryEntry._ID) >= 0);
+        } finally {
+            cursor.close();
+        }
+    }
+
+    public void testLowStockCountUsesIndex() {
+        InventoryTestFixtures.assertPlanUsesIndex(getMockContext(), PLAN_DB,
+                InventoryContract.InventoryEntry.TABLE_NAME, "items_stock_idx", "SELECT COUNT(*) FROM "
+                        + InventoryContract.InventoryEntry.TABLE_NAME + " WHERE "
+                        + InventoryContract.InventoryEntry.COLUMN_ITEM_QUANTITY + " > 0 AND "
+                        + InventoryContract.InventoryEntry.COLUMN_ITEM_QUANTITY + " <= ?", "5");
+    }
+
+    public void testTypes() {
+        ContentResolver resolver = getMockContentResolver();
+        assertEquals(InventoryContract.StatsEntry.CONTENT_ITEM_TYPE,
+                resolver.getType(InventoryContract.StatsEntry.CONTENT_URI));
+        assertEquals(InventoryContract.StatsEntry.CONTENT_SUPPLIERS_TYPE,
+                resolver.getType(InventoryContract.StatsEntry.SUPPLIERS_URI));
+    }
+
+    private long insert(String name, double price, int quantity, String supplier) {
+        return InventoryTestFixtures.insert(getMockContentResolver(),
+                InventoryTestFixtures.item(name, price, quantity, supplier));
+    }
+
+    private static int getInt(Cursor cursor, String column) {
+        return cursor.getInt(cursor.getColumnIndex(column));
+    }
+}
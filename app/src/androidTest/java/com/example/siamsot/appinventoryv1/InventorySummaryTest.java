@@ -0,0 +1,199 @@
+package com.example.siamsot.appinventoryv1;
+
+import android.content.ContentProviderOperation;
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.net.Uri;
+import android.test.ProviderTestCase2;
+
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+/**
+ * Runs random sequences of writes through {@link InventoryProvider} and checks that the summary
+ * tables the triggers maintain still match the totals recomputed from all items.
+ */
+public class InventorySummaryTest extends ProviderTestCase2<InventoryProvider> {
+    private static final String[] SUPPLIERS = {"Google", "Amazon", "Apple", "Nokia"};
+    private static final int OPERATIONS = 2000;
+
+    /** The incremental sums collect some rounding error, the recompute doesn't */
+    private static final double VALUE_DELTA = 0.01;
+
+    public InventorySummaryTest() {
+        super(InventoryProvider.class, InventoryContract.CONTENT_AUTHORITY);
+    }
+
+    public void testRandomOperationsKeepSummaryExact() throws Exception {
+        for (long seed = 1; seed <= 3; seed++) {
+            runOperations(new Random(seed));
+            assertSummaryMatchesRecompute("seed " + seed);
+        }
+    }
+
+    public void testSummaryOfEmptyTable() {
+        ContentResolver resolver = getMockContentResolver();
+        resolver.insert(InventoryContract.InventoryEntry.CONTENT_URI, item(new Random(0)));
+        resolver.delete(InventoryContract.InventoryEntry.CONTENT_URI, null, null);
+
+        assertSummaryMatchesRecompute("empty");
+        Cursor suppliers = resolver.query(InventoryContract.StatsEntry.SUPPLIERS_URI, null, null, null, null);
+        try {
+            assertEquals(0, suppliers.getCount());
+        } finally {
+            suppliers.close();
+        }
+    }
+
+    private void runOperations(Random random) throws Exception {
+        ContentResolver resolver = getMockContentResolver();
+        ArrayList<Long> ids = new ArrayList<>();
+        for (int i = 0; i < OPERATIONS; i++) {
+            int operation = random.nextInt(100);
+            if (operation < 35 || ids.isEmpty()) {
+                Uri uri = resolver.insert(InventoryContract.InventoryEntry.CONTENT_URI, item(random));
+                ids.add(ContentUris.parseId(uri));
+            } else if (operation < 55) {
+                long id = ids.get(random.nextInt(ids.size()));
+                InventoryContract.adjustQuantity(resolver, id, random.nextInt(11) - 5);
+            } else if (operation < 70) {
+                // price, quantity and supplier, or just one of them
+                ContentValues values = new ContentValues();
+                if (random.nextBoolean()) {
+                    values.put(InventoryContract.InventoryEntry.COLUMN_ITEM_PRICE, random.nextInt(10000) / 100.0);
+                }
+                if (random.nextBoolean()) {
+                    values.put(InventoryContract.InventoryEntry.COLUMN_ITEM_QUANTITY, random.nextInt(10));
+                }
+                if (random.nextBoolean()) {
+                    values.put(InventoryContract.InventoryEntry.COLUMN_SUPPLIER_NAME,
+                            SUPPLIERS[random.nextInt(SUPPLIERS.length)]);
+                }
+                values.put(InventoryContract.InventoryEntry.COLUMN_ITEM_NAME, "Renamed");
+                long id = ids.get(random.nextInt(ids.size()));
+                resolver.update(ContentUris.withAppendedId(InventoryContract.InventoryEntry.CONTENT_URI, id),
+                        values, null, null);
+            } else if (operation < 85) {
+                long id = ids.remove(random.nextInt(ids.size()));
+                resolver.delete(ContentUris.withAppendedId(InventoryContract.InventoryEntry.CONTENT_URI, id), null, null);
+            } else if (operation < 92) {
+                ContentValues[] values = new ContentValues[1 + random.nextInt(20)];
+                for (int v = 0; v < values.length; v++) {
+                    values[v] = item(random);
+                }
+                resolver.bulkInsert(InventoryContract.InventoryEntry.CONTENT_URI, values);
+                ids = allIds();
+            } else if (operation < 99) {
+                ArrayList<ContentProviderOperation> batch = new ArrayList<>();
+                batch.add(ContentProviderOperation.newInsert(InventoryContract.InventoryEntry.CONTENT_URI)
+                        .withValues(item(random)).build());
+                batch.add(ContentProviderOperation.newDelete(ContentUris.withAppendedId(
+                        InventoryContract.InventoryEntry.CONTENT_URI, ids.get(random.nextInt(ids.size())))).build());
+                resolver.applyBatch(InventoryContract.CONTENT_AUTHORITY, batch);
+                ids = allIds();
+            } else {
+                resolver.delete(InventoryContract.InventoryEntry.CONTENT_URI, null, null);
+                ids.clear();
+            }
+        }
+    }
+
+    private void assertSummaryMatchesRecompute(String message) {
+        ContentResolver resolver = getMockContentResolver();
+        int count = 0;
+        long quantity = 0;
+        double value = 0;
+        int lowStock = 0;
+        int outOfStock = 0;
+        TreeMap<String, double[]> perSupplier = new TreeMap<>();
+        Cursor items = resolver.query(InventoryContract.InventoryEntry.CONTENT_URI, null, null, null, null);
+        try {
+            int priceIndex = items.getColumnIndex(InventoryContract.InventoryEntry.COLUMN_ITEM_PRICE);
+            int qtyIndex = items.getColumnIndex(InventoryContract.InventoryEntry.COLUMN_ITEM_QUANTITY);
+            int supplierIndex = items.getColumnIndex(InventoryContract.InventoryEntry.COLUMN_SUPPLIER_NAME);
+            while (items.moveToNext()) {
+                int qty = items.getInt(qtyIndex);
+                double itemValue = items.getDouble(priceIndex) * qty;
+                count++;
+                quantity += qty;
+                value += itemValue;
+                if (qty == 0) {
+                    outOfStock++;
+                } else if (qty <= InventoryContract.StatsEntry.LOW_STOCK_THRESHOLD) {
+                    lowStock++;
+                }
+                double[] totals = perSupplier.get(items.getString(supplierIndex));
+                if (totals == null) {
+                    totals = new double[3];
+                    perSupplier.put(items.getString(supplierIndex), totals);
+                }
+                totals[0]++;
+                totals[1] += qty;
+                totals[2] += itemValue;
+            }
+        } finally {
+            items.close();
+        }
+
+        Cursor stats = resolver.query(InventoryContract.StatsEntry.CONTENT_URI, null, null, null, null);
+        try {
+            assertEquals(message, 1, stats.getCount());
+            stats.moveToFirst();
+            assertEquals(message, count, InventoryTestFixtures.getLong(stats, InventoryContract.StatsEntry.COLUMN_ITEM_COUNT));
+            assertEquals(message, quantity, InventoryTestFixtures.getLong(stats, InventoryContract.StatsEntry.COLUMN_TOTAL_QUANTITY));
+            assertEquals(message, value, stats.getDouble(
+                    stats.getColumnIndex(InventoryContract.StatsEntry.COLUMN_TOTAL_VALUE)), VALUE_DELTA);
+            assertEquals(message, lowStock, InventoryTestFixtures.getLong(stats, InventoryContract.StatsEntry.COLUMN_LOW_STOCK_COUNT));
+            assertEquals(message, outOfStock, InventoryTestFixtures.getLong(stats, InventoryContract.StatsEntry.COLUMN_OUT_OF_STOCK_COUNT));
+        } finally {
+            stats.close();
+        }
+
+        Cursor suppliers = resolver.query(InventoryContract.StatsEntry.SUPPLIERS_URI, null, null, null, null);
+        try {
+            assertEquals(message, perSupplier.size(), suppliers.getCount());
+            for (Map.Entry<String, double[]> expected : perSupplier.entrySet()) {
+                assertTrue(message, suppliers.moveToNext());
+                assertEquals(message, expected.getKey(), suppliers.getString(
+                        suppliers.getColumnIndex(InventoryContract.InventoryEntry.COLUMN_SUPPLIER_NAME)));
+                assertEquals(message, (long) expected.getValue()[0],
+                        InventoryTestFixtures.getLong(suppliers, InventoryContract.StatsEntry.COLUMN_ITEM_COUNT));
+                assertEquals(message, (long) expected.getValue()[1],
+                        InventoryTestFixtures.getLong(suppliers, InventoryContract.StatsEntry.COLUMN_TOTAL_QUANTITY));
+                assertEquals(message, expected.getValue()[2], suppliers.getDouble(
+                        suppliers.getColumnIndex(InventoryContract.StatsEntry.COLUMN_TOTAL_VALUE)), VALUE_DELTA);
+            }
+        } finally {
+            suppliers.close();
+        }
+    }
+
+    private ArrayList<Long> allIds() {
+        ArrayList<Long> ids = new ArrayList<>();
+        Cursor cursor = getMockContentResolver().query(InventoryContract.InventoryEntry.CONTENT_URI,
+                new String[]{InventoryContract.InventoryEntry._ID}, null, null, null);
+        try {
+            while (cursor.moveToNext()) {
+                ids.add(cursor.getLong(0));
+            }
+        } finally {
+            cursor.close();
+        }
+        return ids;
+    }
+
+    private static ContentValues item(Random random) {
+        ContentValues values = new ContentValues();
+        values.put(InventoryContract.InventoryEntry.COLUMN_ITEM_NAME, "Item " + random.nextInt(1000));
+        values.put(InventoryContract.InventoryEntry.COLUMN_ITEM_PRICE, random.nextInt(10000) / 100.0);
+        values.put(InventoryContract.InventoryEntry.COLUMN_ITEM_QUANTITY, 1 + random.nextInt(20));
+        values.put(InventoryContract.InventoryEntry.COLUMN_SUPPLIER_NAME, SUPPLIERS[random.nextInt(SUPPLIERS.length)]);
+        values.put(InventoryContract.InventoryEntry.COLUMN_SUPPLIER_PHONE, "+1-855-836-3987");
+        values.put(InventoryContract.InventoryEntry.COLUMN_SUPPLIER_MAIL, "store-support@example.com");
+        return values;
+    }
+}
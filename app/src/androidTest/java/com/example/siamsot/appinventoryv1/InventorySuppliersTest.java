@@ -0,0 +1,180 @@
+package com.example.siamsot.appinventoryv1;
+
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteConstraintException;
+import android.net.Uri;
+import android.test.ProviderTestCase2;
+
+/**
+ * Tests the suppliers table behind {@link InventoryContract.SupplierEntry} and how items are
+ * linked to it by {@link InventoryProvider}.
+ */
+public class InventorySuppliersTest extends ProviderTestCase2<InventoryProvider> {
+
+    public InventorySuppliersTest() {
+        super(InventoryProvider.class, InventoryContract.CONTENT_AUTHORITY);
+    }
+
+    public void testItemsShareTheirSupplier() {
+        long taimen = insert("Taimen", "Google", "+1-855-836-3987");
+        long pixel = insert("Pixel", "Google", "+1-855-836-3987");
+        insert("Kindle", "Amazon", "+1-888-280-4331");
+
+        assertEquals(2, count(InventoryContract.SupplierEntry.CONTENT_URI));
+        assertEquals(supplierId(taimen), supplierId(pixel));
+    }
+
+    public void testBulkInsertCreatesEachSupplierOnce() {
+        ContentValues[] values = new ContentValues[10];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = item("Item " + i, i % 2 == 0 ? "Google" : "Amazon", "+1-855-836-3987");
+        }
+        assertEquals(10, getMockContentResolver().bulkInsert(InventoryContract.InventoryEntry.CONTENT_URI, values));
+        assertEquals(2, count(InventoryContract.SupplierEntry.CONTENT_URI));
+    }
+
+    public void testSupplierUpdateReachesAllItsItems() {
+        long taimen = insert("Taimen", "Google", "+1-855-836-3987");
+        long pixel = insert("Pixel", "Google", "+1-855-836-3987");
+
+        ContentValues values = new ContentValues();
+        values.put(InventoryContract.SupplierEntry.COLUMN_SUPPLIER_PHONE, "+1-650-253-0000");
+        Uri supplierUri = ContentUris.withAppendedId(InventoryContract.SupplierEntry.CONTENT_URI, supplierId(taimen));
+        // One row, however many items the supplier has
+        assertEquals(1, getMockContentResolver().update(supplierUri, values, null, null));
+
+        assertEquals("+1-650-253-0000", supplierColumn(taimen, InventoryContract.InventoryEntry.COLUMN_SUPPLIER_PHONE));
+        assertEquals("+1-650-253-0000", supplierColumn(pixel, InventoryContract.InventoryEntry.COLUMN_SUPPLIER_PHONE));
+    }
+
+    public void testSupplierRenameUpdatesSearch() {
+        long taimen = insert("Taimen", "Google", "+1-855-836-3987");
+
+        ContentValues values = new ContentValues();
+        values.put(InventoryContract.SupplierEntry.COLUMN_SUPPLIER_NAME, "Alphabet");
+        getMockContentResolver().update(
+                ContentUris.withAppendedId(InventoryContract.SupplierEntry.CONTENT_URI, supplierId(taimen)),
+                values, null, null);
+
+        assertEquals(1, count(InventoryContract.InventoryEntry.buildSearchPageUri("alpha", 0, 10)));
+        assertEquals(0, count(InventoryContract.InventoryEntry.buildSearchPageUri("goog", 0, 10)));
+    }
+
+    public void testItemUpdateMovesOnlyThatItem() {
+        long taimen = insert("Taimen", "Google", "+1-855-836-3987");
+        long pixel = insert("Pixel", "Google", "+1-855-836-3987");
+
+        // Only the phone is given, the name and mail come from the current supplier
+        ContentValues values = new ContentValues();
+        values.put(InventoryContract.InventoryEntry.COLUMN_SUPPLIER_PHONE, "+1-650-253-0000");
+        getMockContentResolver().update(
+                ContentUris.withAppendedId(InventoryContract.InventoryEntry.CONTENT_URI, taimen), values, null, null);
+
+        assertEquals("+1-650-253-0000", supplierColumn(taimen, InventoryContract.InventoryEntry.COLUMN_SUPPLIER_PHONE));
+        assertEquals("Google", supplierColumn(taimen, InventoryContract.InventoryEntry.COLUMN_SUPPLIER_NAME));
+        assertEquals("+1-855-836-3987", supplierColumn(pixel, InventoryContract.InventoryEntry.COLUMN_SUPPLIER_PHONE));
+        assertEquals(2, count(InventoryContract.SupplierEntry.CONTENT_URI));
+    }
+
+    public void testFullRowUpdateMovesItemToNewSupplier() {
+        long taimen = insert("Taimen", "Google", "+1-855-836-3987");
+
+        // The editor's shape, saved through the compiled full-row update
+        ContentValues values = item("Taimen XL", "Amazon", "+1-888-280-4331");
+        values.put(InventoryContract.InventoryEntry.COLUMN_ITEM_QUANTITY, 0);
+        Uri uri = ContentUris.withAppendedId(InventoryContract.InventoryEntry.CONTENT_URI, taimen);
+        assertEquals(1, getMockContentResolver().update(uri, values, null, null));
+
+        assertEquals("Taimen XL", supplierColumn(taimen, InventoryContract.InventoryEntry.COLUMN_ITEM_NAME));
+        assertEquals("0", supplierColumn(taimen, InventoryContract.InventoryEntry.COLUMN_ITEM_QUANTITY));
+        assertEquals("Amazon", supplierColumn(taimen, InventoryContract.InventoryEntry.COLUMN_SUPPLIER_NAME));
+        assertEquals(2, count(InventoryContract.SupplierEntry.CONTENT_URI));
+    }
+
+    public void testFullRowUpdateOfMissingItemCreatesNoSupplier() {
+        Uri uri = ContentUris.withAppendedId(InventoryContract.InventoryEntry.CONTENT_URI, 42);
+        assertEquals(0, getMockContentResolver().update(uri, item("Taimen", "Google", "+1-855-836-3987"), null, null));
+        assertEquals(0, count(InventoryContract.SupplierEntry.CONTENT_URI));
+    }
+
+    public void testQuantityUpdateChecksOnlyTheQuantity() {
+        long taimen = insert("Taimen", "Google", "+1-855-836-3987");
+        Uri uri = ContentUris.withAppendedId(InventoryContract.InventoryEntry.CONTENT_URI, taimen);
+        ContentValues values = new ContentValues();
+        values.put(InventoryContract.InventoryEntry.COLUMN_ITEM_QUANTITY, 7);
+        assertEquals(1, getMockContentResolver().update(uri, values, null, null));
+        assertEquals("7", supplierColumn(taimen, InventoryContract.InventoryEntry.COLUMN_ITEM_QUANTITY));
+
+        values.put(InventoryContract.InventoryEntry.COLUMN_ITEM_QUANTITY, -1);
+        try {
+            getMockContentResolver().update(uri, values, null, null);
+            fail("Updated the quantity to -1");
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    public void testSupplierWithItemsCantBeDeleted() {
+        long taimen = insert("Taimen", "Google", "+1-855-836-3987");
+        Uri supplierUri = ContentUris.withAppendedId(InventoryContract.SupplierEntry.CONTENT_URI, supplierId(taimen));
+        try {
+            getMockContentResolver().delete(supplierUri, null, null);
+            fail("Deleted a supplier that still has items");
+        } catch (SQLiteConstraintException expected) {
+        }
+
+        getMockContentResolver().delete(
+                ContentUris.withAppendedId(InventoryContract.InventoryEntry.CONTENT_URI, taimen), null, null);
+        assertEquals(1, getMockContentResolver().delete(supplierUri, null, null));
+    }
+
+    public void testListQueryReadsItemsTable() {
+        insert("Taimen", "Google", "+1-855-836-3987");
+        Cursor cursor = getMockContentResolver().query(InventoryContract.InventoryEntry.buildPageUri(0, 10),
+                InventoryContract.InventoryEntry.LIST_PROJECTION, null, null, null);
+        try {
+            assertEquals(1, cursor.getCount());
+            assertEquals(InventoryContract.InventoryEntry.LIST_PROJECTION.length, cursor.getColumnCount());
+        } finally {
+            cursor.close();
+        }
+    }
+
+    public void testTypes() {
+        assertEquals(InventoryContract.SupplierEntry.CONTENT_LIST_TYPE,
+                getMockContentResolver().getType(InventoryContract.SupplierEntry.CONTENT_URI));
+        assertEquals(InventoryContract.SupplierEntry.CONTENT_ITEM_TYPE, getMockContentResolver().getType(
+                ContentUris.withAppendedId(InventoryContract.SupplierEntry.CONTENT_URI, 1)));
+    }
+
+    private long insert(String name, String supplier, String phone) {
+        return InventoryTestFixtures.insert(getMockContentResolver(), item(name, supplier, phone));
+    }
+
+    private static ContentValues item(String name, String supplier, String phone) {
+        ContentValues values = InventoryTestFixtures.item(name, 100.00, 10, supplier);
+        values.put(InventoryContract.InventoryEntry.COLUMN_SUPPLIER_PHONE, phone);
+        return values;
+    }
+
+    private long supplierId(long itemId) {
+        return Long.parseLong(supplierColumn(itemId, InventoryContract.InventoryEntry.COLUMN_SUPPLIER_ID));
+    }
+
+    private String supplierColumn(long itemId, String column) {
+        Cursor cursor = getMockContentResolver().query(
+                ContentUris.withAppendedId(InventoryContract.InventoryEntry.CONTENT_URI, itemId),
+                new String[]{column}, null, null, null);
+        try {
+            assertTrue(cursor.moveToFirst());
+            return cursor.getString(0);
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private int count(Uri uri) {
+        return InventoryTestFixtures.count(getMockContentResolver(), uri);
+    }
+}
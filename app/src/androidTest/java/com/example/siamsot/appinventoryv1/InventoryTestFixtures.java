@@ -0,0 +1,119 @@
+package com.example.siamsot.appinventoryv1;
+
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.net.Uri;
+
+import java.util.Locale;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The items the provider tests insert, and the checks they share.
+ */
+final class InventoryTestFixtures {
+    static final String NAME = "Taimen";
+    static final double PRICE = 600.00;
+    static final int QUANTITY = 10;
+    static final String SUPPLIER = "Google";
+    static final String SUPPLIER_PHONE = "+1-855-836-3987";
+
+    private InventoryTestFixtures() {
+    }
+
+    /**
+     * Ten Taimen at 600.00 from Google.
+     */
+    static ContentValues item() {
+        return item(NAME, QUANTITY);
+    }
+
+    /**
+     * The given number of an item at 600.00 from Google.
+     */
+    static ContentValues item(String name, int quantity) {
+        return item(name, PRICE, quantity, SUPPLIER);
+    }
+
+    /**
+     * An item of the given supplier. All suppliers share a phone number, the mail address is
+     * made of the supplier's name.
+     */
+    static ContentValues item(String name, double price, int quantity, String supplier) {
+        ContentValues values = new ContentValues();
+        values.put(InventoryContract.InventoryEntry.COLUMN_ITEM_NAME, name);
+        values.put(InventoryContract.InventoryEntry.COLUMN_ITEM_PRICE, price);
+        values.put(InventoryContract.InventoryEntry.COLUMN_ITEM_QUANTITY, quantity);
+        values.put(InventoryContract.InventoryEntry.COLUMN_SUPPLIER_NAME, supplier);
+        values.put(InventoryContract.InventoryEntry.COLUMN_SUPPLIER_PHONE, SUPPLIER_PHONE);
+        values.put(InventoryContract.InventoryEntry.COLUMN_SUPPLIER_MAIL,
+                "store-support@" + supplier.toLowerCase(Locale.US) + ".com");
+        return values;
+    }
+
+    /**
+     * Insert the item through the resolver.
+     *
+     * @return the id of the new item
+     */
+    static long insert(ContentResolver resolver, ContentValues item) {
+        Uri uri = resolver.insert(InventoryContract.InventoryEntry.CONTENT_URI, item);
+        assertNotNull(uri);
+        return ContentUris.parseId(uri);
+    }
+
+    static long getLong(Cursor cursor, String column) {
+        return cursor.getLong(cursor.getColumnIndex(column));
+    }
+
+    /**
+     * The number of rows at the URI.
+     */
+    static int count(ContentResolver resolver, Uri uri) {
+        Cursor cursor = resolver.query(uri, null, null, null, null);
+        try {
+            return cursor.getCount();
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Explain the query on a fresh database named dbName: no step may sort in a temporary
+     * B-tree, and every step that reads the table must go through the index.
+     */
+    static void assertPlanUsesIndex(Context context, String dbName, String table, String index,
+                                    String sql, String... selectionArgs) {
+        context.deleteDatabase(dbName);
+        InventoryDbHelper helper = new InventoryDbHelper(context, dbName);
+        try {
+            SQLiteDatabase db = helper.getReadableDatabase();
+            Cursor plan = db.rawQuery("EXPLAIN QUERY PLAN " + sql, selectionArgs);
+            try {
+                assertTrue(plan.moveToFirst());
+                boolean readsTable = false;
+                do {
+                    String detail = plan.getString(plan.getColumnIndex("detail"));
+                    assertFalse(detail, detail.contains("TEMP B-TREE"));
+                    // "SCAN TABLE items ..." up to SQLite 3.35, "SCAN items ..." after
+                    if ((detail + " ").contains(" " + table + " ")) {
+                        assertTrue(detail, detail.contains(index));
+                        readsTable = true;
+                    }
+                } while (plan.moveToNext());
+                assertTrue("The plan doesn't read " + table, readsTable);
+            } finally {
+                plan.close();
+            }
+        } finally {
+            helper.close();
+            context.deleteDatabase(dbName);
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.example.siamsot.appinventoryv1;
+
+import android.content.ContentUris;
+import android.database.Cursor;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.test.ProviderTestCase2;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests how {@link InventoryWriteQueue} merges the quantity adjustments still waiting in it.
+ */
+public class InventoryWriteQueueTest extends ProviderTestCase2<InventoryProvider> {
+    private HandlerThread mWriteThread;
+
+    public InventoryWriteQueueTest() {
+        super(InventoryProvider.class, InventoryContract.CONTENT_AUTHORITY);
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mWriteThread = new HandlerThread("test-writes");
+        mWriteThread.start();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        mWriteThread.quit();
+        super.tearDown();
+    }
+
+    public void testDecreasesAreNotMerged() throws InterruptedException {
+        long taimen = insert(1);
+        List<Boolean> adjusted = adjustWhileBlocked(taimen, -1, -1);
+
+        // The first goes through, the second would go below zero
+        assertEquals(2, adjusted.size());
+        assertEquals(1, Collections.frequency(adjusted, true));
+        assertEquals(0, quantity(taimen));
+    }
+
+    public void testIncreasesAreMerged() throws InterruptedException {
+        long taimen = insert(1);
+        List<Boolean> adjusted = adjustWhileBlocked(taimen, 1, 2);
+
+        assertEquals(2, adjusted.size());
+        assertEquals(2, Collections.frequency(adjusted, true));
+        assertEquals(4, quantity(taimen));
+    }
+
+    /**
+     * Queue the adjustments while the write thread is busy, so they wait in the queue together,
+     * and return whether each one went through.
+     */
+    private List<Boolean> adjustWhileBlocked(long id, int... deltas) throws InterruptedException {
+        InventoryWriteQueue queue = new InventoryWriteQueue(getMockContentResolver(), mWriteThread.getLooper());
+        final CountDownLatch blocked = new CountDownLatch(1);
+        new Handler(mWriteThread.getLooper()).post(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    blocked.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        final List<Boolean> adjusted = Collections.synchronizedList(new ArrayList<Boolean>());
+        final CountDownLatch done = new CountDownLatch(deltas.length);
+        for (int delta : deltas) {
+            queue.adjustQuantity(id, delta, new InventoryWriteQueue.Callback<Bundle>() {
+                @Override
+                void onComplete(Bundle result) {
+                    adjusted.add(result.getBoolean(InventoryContract.EXTRA_ADJUSTED));
+                    done.countDown();
+                }
+            });
+        }
+        blocked.countDown();
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        return adjusted;
+    }
+
+    private int quantity(long id) {
+        Cursor cursor = getMockContentResolver().query(
+                ContentUris.withAppendedId(InventoryContract.InventoryEntry.CONTENT_URI, id),
+                new String[]{InventoryContract.InventoryEntry.COLUMN_ITEM_QUANTITY}, null, null, null);
+        try {
+            assertTrue(cursor.moveToFirst());
+            return cursor.getInt(0);
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private long insert(int quantity) {
+        return InventoryTestFixtures.insert(getMockContentResolver(),
+                InventoryTestFixtures.item(InventoryTestFixtures.NAME, quantity));
+    }
+}
@@ -0,0 +1,130 @@
+package com.example.siamsot.appinventoryv1;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.AbstractWindowedCursor;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.*;
+
+/**
+ * Compares the CursorWindow usage of the full item projection with
+ * {@link InventoryContract.InventoryEntry#LIST_PROJECTION} while scrolling through the list.
+ * Results are written to logcat under the tag "ListProjectionBenchmark".
+ */
+@RunWith(AndroidJUnit4.class)
+public class ListProjectionBenchmark {
+    private static final String TAG = "ListProjectionBenchmark";
+    private static final int ROWS = 10000;
+    private static final int SUPPLIERS = 100;
+
+    /** What the list used to ask for */
+    private static final String[] FULL_PROJECTION = {
+            InventoryContract.InventoryEntry._ID,
+            InventoryContract.InventoryEntry.COLUMN_ITEM_NAME,
+            InventoryContract.InventoryEntry.COLUMN_ITEM_PRICE,
+            InventoryContract.InventoryEntry.COLUMN_ITEM_QUANTITY,
+            InventoryContract.InventoryEntry.COLUMN_ITEM_IMAGE,
+            InventoryContract.InventoryEntry.COLUMN_SUPPLIER_NAME,
+            InventoryContract.InventoryEntry.COLUMN_SUPPLIER_PHONE,
+            InventoryContract.InventoryEntry.COLUMN_SUPPLIER_MAIL };
+
+    private SQLiteDatabase mDb;
+
+    @Before
+    public void seed() {
+        Context appContext = InstrumentationRegistry.getTargetContext();
+        // In-memory database with the app's schema, the user's items.db is not touched
+        mDb = SQLiteDatabase.create(null);
+        new InventoryDbHelper(appContext).onCreate(mDb);
+
+        ContentValues values = new ContentValues();
+        mDb.beginTransaction();
+        try {
+            for (int i = 0; i < SUPPLIERS; i++) {
+                values.put(InventoryContract.SupplierEntry._ID, i + 1);
+                values.put(InventoryContract.SupplierEntry.COLUMN_SUPPLIER_NAME, "Supplier number " + i);
+                values.put(InventoryContract.SupplierEntry.COLUMN_SUPPLIER_PHONE, "+1-855-836-" + (1000 + i));
+                values.put(InventoryContract.SupplierEntry.COLUMN_SUPPLIER_MAIL, "store-support-" + i + "@example.com");
+                mDb.insert(InventoryContract.SupplierEntry.TABLE_NAME, null, values);
+            }
+            values.clear();
+            for (int i = 0; i < ROWS; i++) {
+                values.put(InventoryContract.InventoryEntry.COLUMN_ITEM_NAME, "Item " + i);
+                values.put(InventoryContract.InventoryEntry.COLUMN_ITEM_PRICE, i % 1000 + 0.99);
+                values.put(InventoryContract.InventoryEntry.COLUMN_ITEM_QUANTITY, i % 50);
+                values.put(InventoryContract.InventoryEntry.COLUMN_ITEM_IMAGE, "images/item_" + i + ".jpg");
+                values.put(InventoryContract.InventoryEntry.COLUMN_SUPPLIER_ID, i % SUPPLIERS + 1);
+                mDb.insert(InventoryContract.InventoryEntry.TABLE_NAME, null, values);
+            }
+            mDb.setTransactionSuccessful();
+        } finally {
+            mDb.endTransaction();
+        }
+    }
+
+    @After
+    public void close() {
+        mDb.close();
+    }
+
+    @Test
+    public void listProjectionFitsMoreRowsPerWindow() {
+        WindowStats full = scroll(FULL_PROJECTION);
+        WindowStats list = scroll(InventoryContract.InventoryEntry.LIST_PROJECTION);
+
+        Log.i(TAG, "full projection: " + full);
+        Log.i(TAG, "list projection: " + list);
+
+        assertTrue(list.rowsPerWindow > full.rowsPerWindow);
+        assertTrue(list.windowFills < full.windowFills);
+    }
+
+    /**
+     * Walk the whole list the way the ListView does and count how often the window is refilled.
+     */
+    private WindowStats scroll(String[] projection) {
+        WindowStats stats = new WindowStats();
+        long start = System.nanoTime();
+        // The supplier's columns are only in the view
+        Cursor cursor = mDb.query(InventoryContract.InventoryEntry.DETAILS_VIEW_NAME, projection,
+                null, null, null, null, InventoryContract.InventoryEntry._ID);
+        try {
+            AbstractWindowedCursor windowedCursor = (AbstractWindowedCursor) cursor;
+            int windowStart = -1;
+            while (cursor.moveToNext()) {
+                cursor.getString(1);
+                int position = windowedCursor.getWindow().getStartPosition();
+                if (position != windowStart) {
+                    windowStart = position;
+                    stats.windowFills++;
+                    stats.rowsPerWindow = Math.max(stats.rowsPerWindow, windowedCursor.getWindow().getNumRows());
+                }
+            }
+        } finally {
+            cursor.close();
+        }
+        stats.millis = (System.nanoTime() - start) / 1000000;
+        return stats;
+    }
+
+    private static class WindowStats {
+        int rowsPerWindow;
+        int windowFills;
+        long millis;
+
+        @Override
+        public String toString() {
+            return "rowsPerWindow=" + rowsPerWindow + " windowFills=" + windowFills + " timeMs=" + millis;
+        }
+    }
+}
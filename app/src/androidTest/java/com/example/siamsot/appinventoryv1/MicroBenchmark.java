@@ -0,0 +1,166 @@
+package com.example.siamsot.appinventoryv1;
+
+import android.content.Context;
+import android.os.Build;
+import android.util.Log;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * A small JMH-style harness for the instrumented benchmarks: every operation is run a number of
+ * warmup times (JIT, page cache, statement caches), then timed one by one, so per-operation setup
+ * can stay outside the measurement. Results are collected in a {@link Report} that is written as
+ * JSON, one file per dataset, so two runs can be diffed.
+ */
+final class MicroBenchmark {
+    private static final String TAG = "MicroBenchmark";
+
+    /**
+     * One benchmarked operation.
+     */
+    abstract static class Op {
+        /** Runs before every call of {@link #run(int)}, not measured */
+        void setUp(int iteration) {
+        }
+
+        /** The measured operation */
+        abstract void run(int iteration);
+
+        /** Runs after every call of {@link #run(int)}, not measured */
+        void tearDown(int iteration) {
+        }
+    }
+
+    private MicroBenchmark() {
+    }
+
+    /**
+     * Run op warmup times, then measure it iterations times.
+     */
+    static Result measure(String name, int warmup, int iterations, Op op) {
+        for (int i = 0; i < warmup; i++) {
+            op.setUp(i);
+            op.run(i);
+            op.tearDown(i);
+        }
+        long[] nanos = new long[iterations];
+        for (int i = 0; i < iterations; i++) {
+            op.setUp(warmup + i);
+            long start = System.nanoTime();
+            op.run(warmup + i);
+            nanos[i] = System.nanoTime() - start;
+            op.tearDown(warmup + i);
+        }
+        return new Result(name, nanos);
+    }
+
+    /**
+     * Timing statistics of one benchmark.
+     */
+    static final class Result {
+        final String name;
+        final int iterations;
+        final long minNanos;
+        final long medianNanos;
+        final long p90Nanos;
+        final long maxNanos;
+        final long meanNanos;
+
+        Result(String name, long[] nanos) {
+            this.name = name;
+            long[] sorted = nanos.clone();
+            Arrays.sort(sorted);
+            long sum = 0;
+            for (long n : sorted) {
+                sum += n;
+            }
+            iterations = sorted.length;
+            minNanos = sorted[0];
+            medianNanos = sorted[sorted.length / 2];
+            p90Nanos = sorted[(int) Math.min(sorted.length - 1, Math.ceil(sorted.length * 0.9) - 1)];
+            maxNanos = sorted[sorted.length - 1];
+            meanNanos = sum / sorted.length;
+        }
+
+        double opsPerSecond() {
+            return meanNanos == 0 ? 0 : 1e9 / meanNanos;
+        }
+
+        JSONObject toJson() throws JSONException {
+            JSONObject json = new JSONObject();
+            json.put("benchmark", name);
+            json.put("iterations", iterations);
+            json.put("min_ns", minNanos);
+            json.put("median_ns", medianNanos);
+            json.put("p90_ns", p90Nanos);
+            json.put("max_ns", maxNanos);
+            json.put("mean_ns", meanNanos);
+            json.put("ops_per_s", Math.round(opsPerSecond() * 10) / 10.0);
+            return json;
+        }
+    }
+
+    /**
+     * The results of one dataset, written to benchmarks/&lt;name&gt;.json in the app's external
+     * files directory, from where adb pull gets them without root.
+     */
+    static final class Report {
+        private final String mName;
+        private final JSONObject mJson = new JSONObject();
+        private final JSONArray mResults = new JSONArray();
+
+        Report(String name, long rows) {
+            mName = name;
+            try {
+                mJson.put("suite", name);
+                mJson.put("rows", rows);
+                mJson.put("device", Build.MANUFACTURER + " " + Build.MODEL);
+                mJson.put("sdk", Build.VERSION.SDK_INT);
+                mJson.put("app_version", BuildConfig.VERSION_NAME);
+                mJson.put("db_version", InventoryDbHelper.DATABASE_VERSION);
+                mJson.put("results", mResults);
+            } catch (JSONException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        void add(Result result) {
+            try {
+                JSONObject json = result.toJson();
+                mResults.put(json);
+                // One line per result, so it can also be grepped out of logcat
+                Log.i(TAG, "BENCHMARK " + mName + " " + json);
+            } catch (JSONException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        File write(Context context) throws IOException {
+            File dir = new File(context.getExternalFilesDir(null), "benchmarks");
+            if (!dir.isDirectory() && !dir.mkdirs()) {
+                throw new IOException("Can't create " + dir);
+            }
+            File file = new File(dir, mName + ".json");
+            Writer out = new OutputStreamWriter(new FileOutputStream(file), Charset.forName("UTF-8"));
+            try {
+                out.write(mJson.toString(2));
+            } catch (JSONException e) {
+                throw new IOException(e.getMessage());
+            } finally {
+                out.close();
+            }
+            Log.i(TAG, "Wrote " + file);
+            return file;
+        }
+    }
+}
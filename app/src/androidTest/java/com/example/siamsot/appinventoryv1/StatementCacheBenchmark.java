@@ -0,0 +1,139 @@
+package com.example.siamsot.appinventoryv1;
+
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.content.Context;
+import android.content.pm.ProviderInfo;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.test.RenamingDelegatingContext;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+/**
+ * Per-update cost of a quantity change and of saving a whole item: through
+ * {@link SQLiteDatabase#update}, the way {@link InventoryProvider} wrote them before it cached
+ * its statements, through a statement from a {@link StatementCache}, and through the provider.
+ * The results go to benchmarks/statement-cache.json, see {@link MicroBenchmark}.
+ */
+@RunWith(AndroidJUnit4.class)
+public class StatementCacheBenchmark {
+    private static final String DATABASE_NAME = "items.db";
+    private static final int ROWS = 1000;
+    private static final int WARMUP = 100;
+    private static final int ITERATIONS = 2000;
+
+    private Context mContext;
+    private InventoryProvider mProvider;
+    private SQLiteDatabase mDb;
+
+    @Before
+    public void setUp() {
+        mContext = new RenamingDelegatingContext(InstrumentationRegistry.getTargetContext(), "statement-benchmark.");
+        mContext.deleteDatabase(DATABASE_NAME);
+        mProvider = new InventoryProvider();
+        ProviderInfo info = new ProviderInfo();
+        info.authority = InventoryContract.CONTENT_AUTHORITY;
+        mProvider.attachInfo(mContext, info);
+        ContentValues[] items = new ContentValues[ROWS];
+        for (int i = 0; i < ROWS; i++) {
+            items[i] = item(i);
+        }
+        assertEquals(ROWS, mProvider.bulkInsert(InventoryContract.InventoryEntry.CONTENT_URI, items));
+        mDb = new InventoryDbHelper(mContext).getWritableDatabase();
+    }
+
+    @After
+    public void tearDown() {
+        mDb.close();
+        mProvider.shutdown();
+        mContext.deleteDatabase(DATABASE_NAME);
+    }
+
+    @Test
+    public void updateCosts() throws IOException {
+        MicroBenchmark.Report report = new MicroBenchmark.Report("statement-cache", ROWS);
+
+        report.add(MicroBenchmark.measure("quantity_sqlitedatabase_update", WARMUP, ITERATIONS, new MicroBenchmark.Op() {
+            @Override
+            void run(int iteration) {
+                ContentValues values = new ContentValues();
+                values.put(InventoryContract.InventoryEntry.COLUMN_ITEM_QUANTITY, iteration % 50);
+                mDb.update(InventoryContract.InventoryEntry.TABLE_NAME, values,
+                        InventoryContract.InventoryEntry._ID + "=?", new String[]{String.valueOf(id(iteration))});
+            }
+        }));
+
+        final StatementCache statements = new StatementCache(mDb);
+        report.add(MicroBenchmark.measure("quantity_cached_statement", WARMUP, ITERATIONS, new MicroBenchmark.Op() {
+            @Override
+            void run(int iteration) {
+                mDb.beginTransaction();
+                try {
+                    SQLiteStatement statement = statements.get("UPDATE " + InventoryContract.InventoryEntry.TABLE_NAME
+                            + " SET " + InventoryContract.InventoryEntry.COLUMN_ITEM_QUANTITY + " = ? WHERE "
+                            + InventoryContract.InventoryEntry._ID + " = ?");
+                    statement.bindLong(1, iteration % 50);
+                    statement.bindLong(2, id(iteration));
+                    statement.executeUpdateDelete();
+                    mDb.setTransactionSuccessful();
+                } finally {
+                    mDb.endTransaction();
+                }
+            }
+        }));
+        statements.close();
+
+        report.add(MicroBenchmark.measure("quantity_provider_update", WARMUP, ITERATIONS, new MicroBenchmark.Op() {
+            @Override
+            void run(int iteration) {
+                ContentValues values = new ContentValues();
+                values.put(InventoryContract.InventoryEntry.COLUMN_ITEM_QUANTITY, iteration % 50);
+                mProvider.update(ContentUris.withAppendedId(InventoryContract.InventoryEntry.CONTENT_URI, id(iteration)),
+                        values, null, null);
+            }
+        }));
+
+        report.add(MicroBenchmark.measure("full_row_provider_update", WARMUP, ITERATIONS, new MicroBenchmark.Op() {
+            @Override
+            void run(int iteration) {
+                mProvider.update(ContentUris.withAppendedId(InventoryContract.InventoryEntry.CONTENT_URI, id(iteration)),
+                        item(iteration), null, null);
+            }
+        }));
+
+        report.add(MicroBenchmark.measure("delete_and_insert_provider", WARMUP, ITERATIONS, new MicroBenchmark.Op() {
+            @Override
+            void run(int iteration) {
+                mProvider.delete(mProvider.insert(InventoryContract.InventoryEntry.CONTENT_URI, item(iteration)),
+                        null, null);
+            }
+        }));
+
+        assertTrue(report.write(InstrumentationRegistry.getTargetContext()).length() > 0);
+    }
+
+    private static long id(int iteration) {
+        return 1 + iteration % ROWS;
+    }
+
+    private static ContentValues item(int i) {
+        ContentValues values = new ContentValues();
+        values.put(InventoryContract.InventoryEntry.COLUMN_ITEM_NAME, "Item " + i);
+        values.put(InventoryContract.InventoryEntry.COLUMN_ITEM_PRICE, 9.99);
+        values.put(InventoryContract.InventoryEntry.COLUMN_ITEM_QUANTITY, 1 + i % 50);
+        values.put(InventoryContract.InventoryEntry.COLUMN_SUPPLIER_NAME, "Supplier " + i % 10);
+        values.put(InventoryContract.InventoryEntry.COLUMN_SUPPLIER_PHONE, "+1-855-836-3987");
+        values.put(InventoryContract.InventoryEntry.COLUMN_SUPPLIER_MAIL, "store-support@example.com");
+        return values;
+    }
+}
@@ -0,0 +1,123 @@
+package com.example.siamsot.appinventoryv1;
+
+import android.graphics.Bitmap;
+import android.graphics.Color;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the size bound, the LRU eviction and the counters of {@link ThumbnailCache}.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ThumbnailCacheTest {
+    private File mDir;
+
+    @Before
+    public void setUp() {
+        mDir = new File(InstrumentationRegistry.getTargetContext().getCacheDir(), "thumbnail-cache-test");
+        deleteDir();
+    }
+
+    @After
+    public void tearDown() {
+        deleteDir();
+    }
+
+    @Test
+    public void countsHitsAndMisses() {
+        ThumbnailCache cache = new ThumbnailCache(mDir, 1024 * 1024);
+        cache.put("a", thumbnail());
+
+        assertNotNull(cache.get("a"));
+        assertNull(cache.get("b"));
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+        assertTrue(cache.getSizeBytes() > 0);
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsed() {
+        ThumbnailCache cache = new ThumbnailCache(mDir, Long.MAX_VALUE);
+        cache.put("a", thumbnail());
+        long oneThumbnail = cache.getSizeBytes();
+
+        cache = new ThumbnailCache(mDir, oneThumbnail * 2);
+        cache.put("b", thumbnail());
+        // a is used again, so b is now the least recently used
+        assertNotNull(cache.get("a"));
+        cache.put("c", thumbnail());
+
+        assertTrue(cache.contains("a"));
+        assertFalse(cache.contains("b"));
+        assertTrue(cache.contains("c"));
+        assertTrue(cache.getSizeBytes() <= cache.getMaxBytes());
+        assertFalse(new File(mDir, "b").exists());
+    }
+
+    @Test
+    public void keepsThumbnailsAcrossInstances() {
+        new ThumbnailCache(mDir, 1024 * 1024).put("a", thumbnail());
+
+        ThumbnailCache cache = new ThumbnailCache(mDir, 1024 * 1024);
+
+        assertNotNull(cache.get("a"));
+        assertEquals(new File(mDir, "a").length(), cache.getSizeBytes());
+    }
+
+    @Test
+    public void concurrentWritersKeepTheIndexInStep() throws InterruptedException {
+        final ThumbnailCache cache = new ThumbnailCache(mDir, 1024 * 1024);
+        final Bitmap thumbnail = thumbnail();
+        Thread[] threads = new Thread[8];
+        for (int i = 0; i < threads.length; i++) {
+            final String key = "k" + (i % 4);
+            threads[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < 20; j++) {
+                        cache.put(key, thumbnail);
+                        cache.get(key);
+                    }
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        long onDisk = 0;
+        for (File file : mDir.listFiles()) {
+            assertFalse(file.getName(), file.getName().endsWith(".tmp"));
+            assertTrue(file.getName(), cache.contains(file.getName()));
+            onDisk += file.length();
+        }
+        assertEquals(4, mDir.listFiles().length);
+        assertEquals(onDisk, cache.getSizeBytes());
+    }
+
+    private static Bitmap thumbnail() {
+        Bitmap bitmap = Bitmap.createBitmap(64, 64, Bitmap.Config.ARGB_8888);
+        bitmap.eraseColor(Color.RED);
+        return bitmap;
+    }
+
+    private void deleteDir() {
+        File[] files = mDir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        mDir.delete();
+    }
+}
@@ -0,0 +1,147 @@
+package com.example.siamsot.appinventoryv1;
+
+import android.content.ContentResolver;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.SystemClock;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Coalesces the change notifications of {@link InventoryProvider}. Every URI changed inside the
+ * notification window is notified once when the window closes, so a burst of writes causes one
+ * requery per loader instead of one per write. Row URIs (items/#) are kept as they are, so
+ * observers can tell which item changed, unless their parent URI changed in the same window.
+ * Changes made inside a batch are held back until the batch ends and dropped if it was rolled back.
+ */
+final class ChangeNotifier {
+
+    /** Default length of the notification window */
+    static final long DEFAULT_WINDOW_MS = 100;
+
+    private final ContentResolver mResolver;
+    private final Handler mHandler;
+
+    /** URIs changed in the current window, in the order they first changed */
+    private final Set<Uri> mPending = new LinkedHashSet<>();
+
+    /** URIs changed by the batch running on the current thread, null when no batch is running */
+    private final ThreadLocal<Set<Uri>> mBatch = new ThreadLocal<>();
+
+    private volatile long mWindowMs = DEFAULT_WINDOW_MS;
+
+    /** Number of notifications actually sent to the ContentResolver, for tests and diagnostics */
+    private int mNotificationCount;
+
+    private final Runnable mFlushRunnable = new Runnable() {
+        @Override
+        public void run() {
+            flush();
+        }
+    };
+
+    ChangeNotifier(ContentResolver resolver) {
+        mResolver = resolver;
+        HandlerThread thread = new HandlerThread("inventory-notifications");
+        thread.start();
+        mHandler = new Handler(thread.getLooper());
+    }
+
+    /**
+     * Length of the window in which changes are collected, 0 notifies right away.
+     */
+    void setWindowMs(long windowMs) {
+        mWindowMs = windowMs;
+    }
+
+    /**
+     * Remember that the data at the given URI changed. Listeners hear about it when the
+     * window closes, or when the batch running on this thread ends.
+     */
+    void notifyChange(Uri uri) {
+        Set<Uri> batch = mBatch.get();
+        if (batch != null) {
+            batch.add(uri);
+            return;
+        }
+        if (mWindowMs <= 0) {
+            send(uri);
+            return;
+        }
+        synchronized (mPending) {
+            // The first change opens the window, the others just join it
+            if (mPending.add(uri) && mPending.size() == 1) {
+                mHandler.postAtTime(mFlushRunnable, SystemClock.uptimeMillis() + mWindowMs);
+            }
+        }
+    }
+
+    /**
+     * Hold back the notifications of this thread until {@link #endBatch(boolean)}.
+     */
+    void beginBatch() {
+        mBatch.set(new LinkedHashSet<Uri>());
+    }
+
+    /**
+     * Release the notifications held since {@link #beginBatch()} into the current window,
+     * or drop them if the batch didn't commit.
+     */
+    void endBatch(boolean committed) {
+        Set<Uri> batch = mBatch.get();
+        mBatch.remove();
+        if (batch == null || !committed) {
+            return;
+        }
+        for (Uri uri : batch) {
+            notifyChange(uri);
+        }
+    }
+
+    /**
+     * Send the pending notifications now instead of waiting for the window to close.
+     */
+    void flush() {
+        Set<Uri> uris;
+        synchronized (mPending) {
+            mHandler.removeCallbacks(mFlushRunnable);
+            uris = new LinkedHashSet<>(mPending);
+            mPending.clear();
+        }
+        for (Uri uri : uris) {
+            // Notifying a URI also reaches the observers of everything below it
+            if (!hasPendingAncestor(uris, uri)) {
+                send(uri);
+            }
+        }
+    }
+
+    private static boolean hasPendingAncestor(Set<Uri> uris, Uri uri) {
+        List<String> segments = uri.getPathSegments();
+        for (int length = segments.size() - 1; length >= 0; length--) {
+            Uri.Builder ancestor = uri.buildUpon().path(null).query(null);
+            for (int i = 0; i < length; i++) {
+                ancestor.appendPath(segments.get(i));
+            }
+            if (uris.contains(ancestor.build())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    synchronized int getNotificationCount() {
+        return mNotificationCount;
+    }
+
+    private void send(Uri uri) {
+        synchronized (this) {
+            mNotificationCount++;
+        }
+        // if observer is null, the cursor adapter gets notified.
+        mResolver.notifyChange(uri, null);
+    }
+}
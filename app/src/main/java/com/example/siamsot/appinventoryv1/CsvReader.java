@@ -0,0 +1,111 @@
+package com.example.siamsot.appinventoryv1;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Streaming reader for CSV as {@link InventoryCsvExporter} writes it (RFC 4180): comma separated,
+ * fields with commas, quotes or line breaks quoted, quotes inside doubled. Reads one record at a
+ * time, so a file of any size is parsed in constant memory. Accepts CRLF and LF line ends.
+ * Wrap the reader in a BufferedReader, it is read one char at a time.
+ */
+final class CsvReader {
+    private final Reader mIn;
+    private final StringBuilder mField = new StringBuilder();
+    private final List<String> mRecord = new ArrayList<>();
+
+    /** A char read too far, or -2 if there is none */
+    private int mPeeked = -2;
+
+    /** Line of the input the next record starts on, for error messages */
+    private long mLine = 1;
+
+    CsvReader(Reader in) {
+        mIn = in;
+    }
+
+    /**
+     * The next record, or null at the end of the input. Empty lines are skipped.
+     */
+    String[] readRecord() throws IOException {
+        mRecord.clear();
+        mField.setLength(0);
+        int c = read();
+        // Skip empty lines
+        while (c == '\r' || c == '\n') {
+            if (c == '\n') {
+                mLine++;
+            }
+            c = read();
+        }
+        if (c == -1) {
+            return null;
+        }
+        long startLine = mLine;
+        boolean quoted = false;
+        while (true) {
+            if (quoted) {
+                if (c == -1) {
+                    throw new IOException("Quoted field starting on line " + startLine + " isn't closed");
+                }
+                if (c == '"') {
+                    int next = read();
+                    if (next == '"') {
+                        mField.append('"');
+                    } else {
+                        quoted = false;
+                        c = next;
+                        continue;
+                    }
+                } else {
+                    if (c == '\n') {
+                        mLine++;
+                    }
+                    mField.append((char) c);
+                }
+            } else if (c == '"' && mField.length() == 0) {
+                quoted = true;
+            } else if (c == ',') {
+                endField();
+            } else if (c == '\r' || c == '\n' || c == -1) {
+                if (c == '\r') {
+                    int next = read();
+                    if (next != '\n') {
+                        mPeeked = next;
+                    }
+                }
+                if (c != -1) {
+                    mLine++;
+                }
+                endField();
+                return mRecord.toArray(new String[mRecord.size()]);
+            } else {
+                mField.append((char) c);
+            }
+            c = read();
+        }
+    }
+
+    /**
+     * Line of the input the next record starts on.
+     */
+    long getLine() {
+        return mLine;
+    }
+
+    private void endField() {
+        mRecord.add(mField.toString());
+        mField.setLength(0);
+    }
+
+    private int read() throws IOException {
+        if (mPeeked != -2) {
+            int c = mPeeked;
+            mPeeked = -2;
+            return c;
+        }
+        return mIn.read();
+    }
+}
@@ -2,6 +2,7 @@ package com.example.siamsot.appinventoryv1;
 
 import android.app.AlertDialog;
 import android.app.LoaderManager;
+import android.content.ContentUris;
 import android.content.ContentValues;
 import android.content.CursorLoader;
 import android.content.DialogInterface;
@@ -9,6 +10,7 @@ import android.content.Intent;
 import android.content.Loader;
 import android.database.Cursor;
 import android.net.Uri;
+import android.os.AsyncTask;
 import android.os.Bundle;
 import android.support.v4.app.NavUtils;
 import android.support.v7.app.AppCompatActivity;
@@ -21,8 +23,12 @@ import android.view.View;
 import android.widget.Button;
 import android.widget.EditText;
 import android.widget.ImageButton;
+import android.widget.ImageView;
 import android.widget.TextView;
 import android.widget.Toast;
+
+import java.io.IOException;
+
 /**
  * Allows user to create a new item or edit an existing one.
  */
@@ -32,6 +38,12 @@ public class Editor extends AppCompatActivity implements
     /** Identifier for the item data loader */
     private static final int EXISTING_ITEM_LOADER = 0;
 
+    /** Request code for picking the product image */
+    private static final int PICK_IMAGE_REQUEST = 1;
+
+    /** Saved state key of {@link #mPickedImageName} */
+    private static final String STATE_PICKED_IMAGE = "picked_image";
+
     /** Content URI for the existing item (null if it's a new item) */
     private Uri mCurrentItemUri;
 
@@ -41,12 +53,28 @@ public class Editor extends AppCompatActivity implements
 
     private EditText mQuantityEditText;
 
+    private EditText mReorderThresholdEditText;
+
     private EditText mSuppliersNameEditText;
 
     private EditText mSuppliersPhoneEditText;
 
     private EditText mSuppliersMailEditText;
 
+    private ImageView mImageView;
+
+    /** Size of the image preview in pixels */
+    private int mImageSize;
+
+    /** File name of the item's image in the {@link ImageLoader} directory, null if it has none */
+    private String mImageName;
+
+    /** A picked image no saved item uses yet, deleted when the editor is left without saving it */
+    private String mPickedImageName;
+
+    /** Whether a save is on its way to the provider, it may still use {@link #mPickedImageName} */
+    private boolean mSaving;
+
     /** Boolean flag that keeps track of whether the item has been edited (true) or not (false) */
     private boolean mItemHasChanged = false;
 
@@ -77,11 +105,33 @@ public class Editor extends AppCompatActivity implements
         mNameEditText = findViewById(R.id.prod_name);
         mPriceEditText = findViewById(R.id.prod_price);
         mQuantityEditText = findViewById(R.id.prod_qty);
+        mReorderThresholdEditText = findViewById(R.id.prod_reorder_threshold);
 
         mSuppliersNameEditText = findViewById(R.id.supplier_name);
         mSuppliersPhoneEditText = findViewById(R.id.supplier_phone);
         mSuppliersMailEditText = findViewById(R.id.supplier_email);
 
+        mImageView = findViewById(R.id.prod_image);
+        mImageSize = getResources().getDimensionPixelSize(R.dimen.editor_image_size);
+        if (savedInstanceState != null) {
+            mPickedImageName = savedInstanceState.getString(STATE_PICKED_IMAGE);
+            if (mPickedImageName != null) {
+                mImageName = mPickedImageName;
+                mItemHasChanged = true;
+                ImageLoader.getInstance(this).load(mImageName, mImageView, mImageSize, R.mipmap.ic_launcher);
+            }
+        }
+        Button chooseImage = findViewById(R.id.choose_image);
+        chooseImage.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View view) {
+                Intent pickI = new Intent(Intent.ACTION_GET_CONTENT);
+                pickI.setType("image/*");
+                pickI.addCategory(Intent.CATEGORY_OPENABLE);
+                startActivityForResult(pickI, PICK_IMAGE_REQUEST);
+            }
+        });
+
         Button increase = findViewById(R.id.increase);
         Button decrease = findViewById(R.id.decrease);
 
@@ -143,6 +193,7 @@ public class Editor extends AppCompatActivity implements
         mNameEditText.setOnTouchListener(mTouchListener);
         mPriceEditText.setOnTouchListener(mTouchListener);
         mQuantityEditText.setOnTouchListener(mTouchListener);
+        mReorderThresholdEditText.setOnTouchListener(mTouchListener);
         mSuppliersNameEditText.setOnTouchListener(mTouchListener);
         mSuppliersPhoneEditText.setOnTouchListener(mTouchListener);
         mSuppliersMailEditText.setOnTouchListener(mTouchListener);
@@ -151,26 +202,24 @@ public class Editor extends AppCompatActivity implements
         increase.setOnClickListener(new View.OnClickListener() {
             @Override
             public void onClick(View view) {
-                ContentValues values = new ContentValues();
-                int currentQty = Integer.parseInt(mQuantityEditText.getText().toString());
-                values.put(InventoryContract.InventoryEntry.COLUMN_ITEM_QUANTITY, currentQty + 1);
-                int updatedRows = getContentResolver().update(mCurrentItemUri, values, null, null);
-                Log.d("Editor", "updatedRows: " + updatedRows);
+                InventoryWriteQueue.getInstance(Editor.this)
+                        .adjustQuantity(ContentUris.parseId(mCurrentItemUri), 1, null);
             }
         });
         decrease.setOnClickListener(new View.OnClickListener() {
             @Override
             public void onClick(View view) {
                 if (mCurrentItemUri != null) {
-                    ContentValues values = new ContentValues();
-                    int currentQty = Integer.parseInt(mQuantityEditText.getText().toString());
-                    if (currentQty > 0) {
-                        values.put(InventoryContract.InventoryEntry.COLUMN_ITEM_QUANTITY, currentQty - 1);
-                        int updatedRows = getContentResolver().update(mCurrentItemUri, values, null, null);
-                        Log.d("Editor", "updatedRows: " + updatedRows);
-                    } else {
-                        Toast.makeText(getApplicationContext(), "Quantity can't be smaller than 0", Toast.LENGTH_SHORT).show();
-                    }
+                    // The provider only decreases the quantity if it stays at 0 or above
+                    InventoryWriteQueue.getInstance(Editor.this).adjustQuantity(ContentUris.parseId(mCurrentItemUri), -1,
+                            new InventoryWriteQueue.Callback<Bundle>() {
+                                @Override
+                                void onComplete(Bundle result) {
+                                    if (result != null && !result.getBoolean(InventoryContract.EXTRA_ADJUSTED)) {
+                                        Toast.makeText(getApplicationContext(), "Quantity can't be smaller than 0", Toast.LENGTH_SHORT).show();
+                                    }
+                                }
+                            });
                 }
             }
         });
@@ -181,11 +230,16 @@ public class Editor extends AppCompatActivity implements
      * Get user input from editor and save item into database.
      */
     private void saveItem() {
+        if (mSaving) {
+            // The first tap is still on its way, another one would save the item twice
+            return;
+        }
         // Read from input fields
         // Use trim to eliminate leading or trailing white space
         String nameString = mNameEditText.getText().toString().trim();
         String priceString = mPriceEditText.getText().toString().trim();
         String qtyString = mQuantityEditText.getText().toString().trim();
+        String thresholdString = mReorderThresholdEditText.getText().toString().trim();
         String supplierNameString = mSuppliersNameEditText.getText().toString().trim();
         String supplierPhoneString = mSuppliersPhoneEditText.getText().toString().trim();
         String supplierMailString = mSuppliersMailEditText.getText().toString().trim();
@@ -224,46 +278,164 @@ public class Editor extends AppCompatActivity implements
         values.put(InventoryContract.InventoryEntry.COLUMN_ITEM_NAME, nameString);
         values.put(InventoryContract.InventoryEntry.COLUMN_ITEM_PRICE, priceDouble);
         values.put(InventoryContract.InventoryEntry.COLUMN_ITEM_QUANTITY, qtyInt);
+        // Left empty, a new item gets the default threshold and an existing one keeps its own
+        if (!TextUtils.isEmpty(thresholdString)) {
+            values.put(InventoryContract.InventoryEntry.COLUMN_REORDER_THRESHOLD, Integer.valueOf(thresholdString));
+        }
         values.put(InventoryContract.InventoryEntry.COLUMN_SUPPLIER_NAME, supplierNameString);
         values.put(InventoryContract.InventoryEntry.COLUMN_SUPPLIER_PHONE, supplierPhoneString);
         values.put(InventoryContract.InventoryEntry.COLUMN_SUPPLIER_MAIL, supplierMailString);
+        if (mImageName != null) {
+            values.put(InventoryContract.InventoryEntry.COLUMN_ITEM_IMAGE, mImageName);
+            // Have the list thumbnail ready before the list shows this item
+            ImageLoader.getInstance(this).prepareThumbnail(mImageName,
+                    getResources().getDimensionPixelSize(R.dimen.list_thumbnail_size));
+        }
 
-        // Determine if this is a new or existing item by checking if mCurrentItemUri is null or not
+        // Determine if this is a new or existing item by checking if mCurrentItemUri is null or not.
+        // The write runs in the background, we only leave the editor once it went through.
+        setSaving(true);
         if (mCurrentItemUri == null) {
             // This is a NEW item, so insert a new item into the provider,
             // returning the content URI for the new item.
-            Uri newUri = getContentResolver().insert(InventoryContract.InventoryEntry.CONTENT_URI, values);
+            InventoryWriteQueue.getInstance(this).insert(InventoryContract.InventoryEntry.CONTENT_URI, values,
+                    new InventoryWriteQueue.Callback<Uri>() {
+                        @Override
+                        void onComplete(Uri newUri) {
+                            setSaving(false);
+                            // Show a toast message depending on whether or not the insertion was successful.
+                            if (newUri == null) {
+                                // If the new content URI is null, then there was an error with insertion.
+                                Toast.makeText(getApplicationContext(), getString(R.string.editor_insert_item_fail),
+                                        Toast.LENGTH_SHORT).show();
+                            } else {
+                                // Otherwise, the insertion was successful and we can display a toast.
+                                Toast.makeText(getApplicationContext(), getString(R.string.editor_insert_item_success),
+                                        Toast.LENGTH_SHORT).show();
+                                // The item uses the picked image now
+                                mPickedImageName = null;
+                                // Exit activity
+                                finish();
+                            }
+                        }
 
-            // Show a toast message depending on whether or not the insertion was successful.
-            if (newUri == null) {
-                // If the new content URI is null, then there was an error with insertion.
-                Toast.makeText(this, getString(R.string.editor_insert_item_fail),
-                        Toast.LENGTH_SHORT).show();
-            } else {
-                // Otherwise, the insertion was successful and we can display a toast.
-                Toast.makeText(this, getString(R.string.editor_insert_item_success),
-                        Toast.LENGTH_SHORT).show();
-            }
+                        @Override
+                        void onError(RuntimeException e) {
+                            onSaveFailed(e);
+                        }
+                    });
         } else {
             // Otherwise this is an EXISTING item, so update the item with content URI: mCurrentItemUri
-            // and pass in the new ContentValues. Pass in null for the selection and selection args
-            // because mCurrentItemUri will already identify the correct row in the database that
-            // we want to modify.
-            int rowsAffected = getContentResolver().update(mCurrentItemUri, values, null, null);
-
-            // Show a toast message depending on whether or not the update was successful.
-            if (rowsAffected == 0) {
-                // If no rows were affected, then there was an error with the update.
-                Toast.makeText(this, getString(R.string.editor_update_item_failed),
-                        Toast.LENGTH_SHORT).show();
-            } else {
-                // Otherwise, the update was successful and we can display a toast.
-                Toast.makeText(this, getString(R.string.editor_update_item_successful),
+            // and pass in the new ContentValues. mCurrentItemUri already identifies the correct row
+            // in the database that we want to modify.
+            InventoryWriteQueue.getInstance(this).update(mCurrentItemUri, values,
+                    new InventoryWriteQueue.Callback<Integer>() {
+                        @Override
+                        void onComplete(Integer rowsAffected) {
+                            setSaving(false);
+                            // Show a toast message depending on whether or not the update was successful.
+                            if (rowsAffected == 0) {
+                                // If no rows were affected, then there was an error with the update.
+                                Toast.makeText(getApplicationContext(), getString(R.string.editor_update_item_failed),
+                                        Toast.LENGTH_SHORT).show();
+                            } else {
+                                // Otherwise, the update was successful and we can display a toast.
+                                Toast.makeText(getApplicationContext(), getString(R.string.editor_update_item_successful),
+                                        Toast.LENGTH_SHORT).show();
+                                mPickedImageName = null;
+                                // Exit activity
+                                finish();
+                            }
+                        }
+
+                        @Override
+                        void onError(RuntimeException e) {
+                            onSaveFailed(e);
+                        }
+                    });
+        }
+    }
+
+    @Override
+    protected void onActivityResult(int requestCode, int resultCode, Intent data) {
+        if (requestCode == PICK_IMAGE_REQUEST) {
+            if (resultCode == RESULT_OK && data != null && data.getData() != null) {
+                new ImportImageTask().executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR, data.getData());
+            }
+            return;
+        }
+        super.onActivityResult(requestCode, resultCode, data);
+    }
+
+    /**
+     * Copies the picked image into the app's storage off the main thread, the picker's URI
+     * may point to a large file or one that isn't even on the device.
+     */
+    private class ImportImageTask extends AsyncTask<Uri, Void, String> {
+        @Override
+        protected String doInBackground(Uri... uris) {
+            try {
+                return ImageLoader.getInstance(Editor.this).importImage(getContentResolver(), uris[0]);
+            } catch (IOException | SecurityException e) {
+                Log.e("Editor", "Can't import " + uris[0], e);
+                return null;
+            }
+        }
+
+        @Override
+        protected void onPostExecute(String imageName) {
+            if (imageName == null) {
+                Toast.makeText(getApplicationContext(), getString(R.string.editor_image_failed),
                         Toast.LENGTH_SHORT).show();
+                return;
+            }
+            ImageLoader imageLoader = ImageLoader.getInstance(Editor.this);
+            if (isFinishing() || isDestroyed()) {
+                // The editor was left or recreated while the image was copied
+                imageLoader.deleteInBackground(imageName);
+                return;
+            }
+            // An image picked before this one was never saved
+            if (mPickedImageName != null && !mSaving) {
+                imageLoader.deleteInBackground(mPickedImageName);
             }
+            mPickedImageName = imageName;
+            mImageName = imageName;
+            mItemHasChanged = true;
+            imageLoader.load(mImageName, mImageView, mImageSize, R.mipmap.ic_launcher);
+        }
+    }
+
+    /**
+     * Remember whether a save is on its way, and enable the save action only when none is.
+     */
+    private void setSaving(boolean saving) {
+        mSaving = saving;
+        invalidateOptionsMenu();
+    }
+
+    /**
+     * The provider refused the item, stay in the editor so the user can fix the inputs.
+     */
+    private void onSaveFailed(RuntimeException e) {
+        setSaving(false);
+        Toast.makeText(getApplicationContext(), "Εrror. Please check your inputs.", Toast.LENGTH_SHORT).show();
+        Log.e("Editor", "Can't save this item due to " + e);
+    }
+
+    @Override
+    protected void onSaveInstanceState(Bundle outState) {
+        super.onSaveInstanceState(outState);
+        outState.putString(STATE_PICKED_IMAGE, mPickedImageName);
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        // Left without saving, nothing will use the picked image
+        if (isFinishing() && !mSaving && mPickedImageName != null) {
+            ImageLoader.getInstance(this).deleteInBackground(mPickedImageName);
         }
-        // Exit activity
-        finish();
     }
 
     @Override
@@ -286,6 +458,8 @@ public class Editor extends AppCompatActivity implements
             MenuItem menuItem = menu.findItem(R.id.action_delete);
             menuItem.setVisible(false);
         }
+        // Saving again is only possible once the last save came back
+        menu.findItem(R.id.action_save).setEnabled(!mSaving);
         return true;
     }
 
@@ -372,6 +546,7 @@ public class Editor extends AppCompatActivity implements
                 InventoryContract.InventoryEntry.COLUMN_ITEM_NAME,
                 InventoryContract.InventoryEntry.COLUMN_ITEM_PRICE,
                 InventoryContract.InventoryEntry.COLUMN_ITEM_QUANTITY,
+                InventoryContract.InventoryEntry.COLUMN_REORDER_THRESHOLD,
                 InventoryContract.InventoryEntry.COLUMN_ITEM_IMAGE,
                 InventoryContract.InventoryEntry.COLUMN_SUPPLIER_NAME,
                 InventoryContract.InventoryEntry.COLUMN_SUPPLIER_PHONE,
@@ -400,14 +575,17 @@ public class Editor extends AppCompatActivity implements
             int nameColumnIndex = cursor.getColumnIndex(InventoryContract.InventoryEntry.COLUMN_ITEM_NAME);
             int priceColumnIndex = cursor.getColumnIndex(InventoryContract.InventoryEntry.COLUMN_ITEM_PRICE);
             int qtyColumnIndex = cursor.getColumnIndex(InventoryContract.InventoryEntry.COLUMN_ITEM_QUANTITY);
+            int thresholdColumnIndex = cursor.getColumnIndex(InventoryContract.InventoryEntry.COLUMN_REORDER_THRESHOLD);
             int supplierNameColumnIndex = cursor.getColumnIndex(InventoryContract.InventoryEntry.COLUMN_SUPPLIER_NAME);
             int supplierPhoneColumnIndex = cursor.getColumnIndex(InventoryContract.InventoryEntry.COLUMN_SUPPLIER_PHONE);
             int supplierMailColumnIndex = cursor.getColumnIndex(InventoryContract.InventoryEntry.COLUMN_SUPPLIER_MAIL);
+            int imageColumnIndex = cursor.getColumnIndex(InventoryContract.InventoryEntry.COLUMN_ITEM_IMAGE);
 
             // Extract out the value from the Cursor for the given column index
             String name = cursor.getString(nameColumnIndex);
             String price = cursor.getString(priceColumnIndex);
             String qty = cursor.getString(qtyColumnIndex);
+            String threshold = cursor.getString(thresholdColumnIndex);
             String sName = cursor.getString(supplierNameColumnIndex);
             String sPhone = cursor.getString(supplierPhoneColumnIndex);
             String sMail = cursor.getString(supplierMailColumnIndex);
@@ -416,9 +594,15 @@ public class Editor extends AppCompatActivity implements
             mNameEditText.setText(name);
             mPriceEditText.setText(price);
             mQuantityEditText.setText(qty);
+            mReorderThresholdEditText.setText(threshold);
             mSuppliersNameEditText.setText(sName);
             mSuppliersPhoneEditText.setText(sPhone);
             mSuppliersMailEditText.setText(sMail);
+            // Keep an image the user just picked, it isn't saved yet
+            if (mImageName == null) {
+                mImageName = cursor.getString(imageColumnIndex);
+            }
+            ImageLoader.getInstance(this).load(mImageName, mImageView, mImageSize, R.mipmap.ic_launcher);
         }
     }
 
@@ -428,6 +612,7 @@ public class Editor extends AppCompatActivity implements
         mNameEditText.setText("");
         mPriceEditText.setText("");
         mQuantityEditText.setText("");
+        mReorderThresholdEditText.setText("");
         mSuppliersNameEditText.setText("");
         mSuppliersPhoneEditText.setText("");
         mSuppliersPhoneEditText.setText("");
@@ -501,18 +686,22 @@ public class Editor extends AppCompatActivity implements
             // Call the ContentResolver to delete the pet at the given content URI.
             // Pass in null for the selection and selection args because the mCurrentPetUri
             // content URI already identifies the pet that we want.
-            int rowsDeleted = getContentResolver().delete(mCurrentItemUri, null, null);
-
-            // Show a toast message depending on whether or not the delete was successful.
-            if (rowsDeleted == 0) {
-                // If no rows were deleted, then there was an error with the delete.
-                Toast.makeText(this, getString(R.string.editor_delete_item_failed),
-                        Toast.LENGTH_SHORT).show();
-            } else {
-                // Otherwise, the delete was successful and we can display a toast.
-                Toast.makeText(this, getString(R.string.editor_delete_item_successful),
-                        Toast.LENGTH_SHORT).show();
-            }
+            InventoryWriteQueue.getInstance(this).delete(mCurrentItemUri,
+                    new InventoryWriteQueue.Callback<Integer>() {
+                        @Override
+                        void onComplete(Integer rowsDeleted) {
+                            // Show a toast message depending on whether or not the delete was successful.
+                            if (rowsDeleted == 0) {
+                                // If no rows were deleted, then there was an error with the delete.
+                                Toast.makeText(getApplicationContext(), getString(R.string.editor_delete_item_failed),
+                                        Toast.LENGTH_SHORT).show();
+                            } else {
+                                // Otherwise, the delete was successful and we can display a toast.
+                                Toast.makeText(getApplicationContext(), getString(R.string.editor_delete_item_successful),
+                                        Toast.LENGTH_SHORT).show();
+                            }
+                        }
+                    });
         }
 
         // Close the activity
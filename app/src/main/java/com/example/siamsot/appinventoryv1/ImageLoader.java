@@ -0,0 +1,358 @@
+package com.example.siamsot.appinventoryv1;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.net.Uri;
+import android.os.AsyncTask;
+import android.util.Log;
+import android.util.LruCache;
+import android.widget.ImageView;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Map;
+import java.util.UUID;
+import java.util.WeakHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Stores the product photos referenced by {@link InventoryContract.InventoryEntry#COLUMN_ITEM_IMAGE}
+ * and loads them into ImageViews. The column only holds the file name, the photo itself lives in
+ * the app's private images directory.
+ * <p>
+ * Photos are decoded off the main thread and downsampled with inSampleSize to the size of the
+ * view they are shown in, so a full-size photo is never decoded for a thumbnail. Decoded bitmaps
+ * are kept in a memory cache sized against the available heap, and the downsampled thumbnails are
+ * also written to a {@link ThumbnailCache} on disk, so after a cold start the list reads those
+ * small files instead of decoding the originals again.
+ * <p>
+ * The decodes run on their own small executor, newest first. Rebinding a view cancels the decode
+ * it was waiting for, and when the queue is full the oldest waiting decode is dropped, so a fling
+ * through the list never piles up more work than the rows on screen need.
+ */
+final class ImageLoader {
+    private static final String LOG = "ImageLoader";
+
+    /** Directory under the app's files dir that holds the photos */
+    private static final String IMAGE_DIR = "images";
+
+    /** Directory under the app's cache dir that holds the thumbnails */
+    private static final String THUMBNAIL_DIR = "thumbnails";
+
+    /** Share of the heap the bitmap cache may use */
+    private static final int MEMORY_CACHE_FRACTION = 8;
+
+    /** Size of the thumbnail disk cache, a list thumbnail is around 5 KiB */
+    private static final long DISK_CACHE_BYTES = 10 * 1024 * 1024;
+
+    /** Threads decoding photos for the views */
+    private static final int DECODE_THREADS = 2;
+
+    /** Decodes that may wait for a thread, more than there are rows on a screen */
+    private static final int DECODE_QUEUE_SIZE = 64;
+
+    private static final Executor DECODE_EXECUTOR = newDecodeExecutor();
+
+    private static ImageLoader sInstance;
+
+    private final File mImageDir;
+
+    /** Decoded bitmaps by file name and size, sized in KiB */
+    private final LruCache<String, Bitmap> mMemoryCache;
+
+    /** Compressed thumbnails by file name and size */
+    private final ThumbnailCache mDiskCache;
+
+    /** The decode each view is waiting for, only touched on the main thread */
+    private final Map<ImageView, DecodeTask> mPendingDecodes = new WeakHashMap<>();
+
+    static synchronized ImageLoader getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new ImageLoader(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    private ImageLoader(Context context) {
+        mImageDir = new File(context.getFilesDir(), IMAGE_DIR);
+        int maxMemoryKb = (int) (Runtime.getRuntime().maxMemory() / 1024);
+        mMemoryCache = new LruCache<String, Bitmap>(maxMemoryKb / MEMORY_CACHE_FRACTION) {
+            @Override
+            protected int sizeOf(String key, Bitmap bitmap) {
+                return bitmap.getByteCount() / 1024;
+            }
+        };
+        mDiskCache = new ThumbnailCache(new File(context.getCacheDir(), THUMBNAIL_DIR), DISK_CACHE_BYTES);
+    }
+
+    /**
+     * The disk cache of the thumbnails, for its hit rate and size.
+     */
+    ThumbnailCache getDiskCache() {
+        return mDiskCache;
+    }
+
+    /**
+     * Make sure the thumbnail of the photo at the given size is in the disk cache, so the list
+     * never has to decode the original. Runs in the background.
+     */
+    void prepareThumbnail(final String imageName, final int size) {
+        AsyncTask.THREAD_POOL_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (!mDiskCache.contains(cacheKey(imageName, size))) {
+                    loadThumbnail(imageName, size);
+                }
+            }
+        });
+    }
+
+    /**
+     * The file holding the photo with the given name.
+     */
+    File getImageFile(String imageName) {
+        return new File(mImageDir, imageName);
+    }
+
+    /**
+     * Copy the photo behind the given URI (for example one picked from the gallery) into the app's
+     * images directory. Does disk and maybe network work, so don't call it on the main thread.
+     *
+     * @return the file name to store in the image column
+     */
+    String importImage(ContentResolver resolver, Uri source) throws IOException {
+        String imageName = newImageName();
+        InputStream in = resolver.openInputStream(source);
+        if (in == null) {
+            throw new IOException("Can't open " + source);
+        }
+        File file = getImageFile(imageName);
+        boolean copied = false;
+        try {
+            OutputStream out = new FileOutputStream(file);
+            try {
+                byte[] buffer = new byte[8192];
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    out.write(buffer, 0, read);
+                }
+            } finally {
+                out.close();
+            }
+            copied = true;
+        } finally {
+            in.close();
+            if (!copied && file.exists() && !file.delete()) {
+                // A truncated photo would be attached to no item, but still take the space
+                Log.e(LOG, "Can't delete the partial copy " + file);
+            }
+        }
+        return imageName;
+    }
+
+    /**
+     * A file name for a new photo, the images directory is created if needed.
+     */
+    String newImageName() throws IOException {
+        if (!mImageDir.isDirectory() && !mImageDir.mkdirs()) {
+            throw new IOException("Can't create " + mImageDir);
+        }
+        return UUID.randomUUID().toString() + ".jpg";
+    }
+
+    /**
+     * Delete a photo that no item uses anymore, with its thumbnails. Does disk work, so don't call
+     * it on the main thread.
+     */
+    void delete(String imageName) {
+        File file = getImageFile(imageName);
+        if (file.exists() && !file.delete()) {
+            Log.e(LOG, "Can't delete " + imageName);
+        }
+        invalidate(imageName);
+    }
+
+    /**
+     * {@link #delete} in the background.
+     */
+    void deleteInBackground(final String imageName) {
+        AsyncTask.THREAD_POOL_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                delete(imageName);
+            }
+        });
+    }
+
+    /**
+     * Forget the thumbnails of a photo that was overwritten, in memory and on disk.
+     */
+    void invalidate(String imageName) {
+        String suffix = "_" + imageName;
+        for (String key : mMemoryCache.snapshot().keySet()) {
+            if (key.endsWith(suffix)) {
+                mMemoryCache.remove(key);
+            }
+        }
+        mDiskCache.removeEndingWith(suffix);
+    }
+
+    /**
+     * Show the photo with the given name in the view, decoded at most at size x size pixels.
+     * The placeholder is shown while the photo is decoded, or if there is no photo.
+     */
+    void load(String imageName, ImageView view, int size, int placeholderResId) {
+        // Remember what the view should show, it may get recycled before the decode is done
+        view.setTag(imageName);
+        DecodeTask previous = mPendingDecodes.remove(view);
+        if (previous != null) {
+            previous.cancel(false);
+        }
+        if (imageName == null) {
+            view.setImageResource(placeholderResId);
+            return;
+        }
+        Bitmap bitmap = mMemoryCache.get(cacheKey(imageName, size));
+        if (bitmap != null) {
+            view.setImageBitmap(bitmap);
+            return;
+        }
+        view.setImageResource(placeholderResId);
+        DecodeTask task = new DecodeTask(imageName, view, size);
+        mPendingDecodes.put(view, task);
+        task.executeOnExecutor(DECODE_EXECUTOR);
+    }
+
+    /**
+     * The executor of the decodes: a few threads taking the newest decode first from a bounded
+     * queue that drops its oldest decode instead of refusing a new one.
+     */
+    private static Executor newDecodeExecutor() {
+        ThreadFactory threadFactory = new ThreadFactory() {
+            private final AtomicInteger mCount = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+                return new Thread(runnable, "ImageLoader #" + mCount.incrementAndGet());
+            }
+        };
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(DECODE_THREADS, DECODE_THREADS,
+                30, TimeUnit.SECONDS, new NewestFirstQueue(DECODE_QUEUE_SIZE), threadFactory);
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * Also the thumbnail's file name in the disk cache.
+     */
+    private static String cacheKey(String imageName, int size) {
+        return size + "_" + imageName;
+    }
+
+    /**
+     * The thumbnail from the disk cache, or decoded from the original and added to the disk cache.
+     * Puts it in the memory cache as well. Does disk work, so don't call it on the main thread.
+     */
+    private Bitmap loadThumbnail(String imageName, int size) {
+        String key = cacheKey(imageName, size);
+        Bitmap bitmap = mDiskCache.get(key);
+        if (bitmap == null) {
+            bitmap = decodeSampledBitmap(getImageFile(imageName), size, size);
+            if (bitmap == null) {
+                Log.e(LOG, "Can't decode " + imageName);
+                return null;
+            }
+            mDiskCache.put(key, bitmap);
+        }
+        mMemoryCache.put(key, bitmap);
+        return bitmap;
+    }
+
+    /**
+     * Decode the file at the smallest power of two downsampling that is still at least
+     * reqWidth x reqHeight, or null if it isn't an image.
+     */
+    static Bitmap decodeSampledBitmap(File file, int reqWidth, int reqHeight) {
+        // First only read the dimensions
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeFile(file.getPath(), options);
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            return null;
+        }
+
+        options.inSampleSize = calculateInSampleSize(options.outWidth, options.outHeight, reqWidth, reqHeight);
+        options.inJustDecodeBounds = false;
+        return BitmapFactory.decodeFile(file.getPath(), options);
+    }
+
+    /**
+     * The largest power of two that keeps both dimensions at or above the requested size.
+     */
+    static int calculateInSampleSize(int width, int height, int reqWidth, int reqHeight) {
+        int inSampleSize = 1;
+        while (width / (inSampleSize * 2) >= reqWidth && height / (inSampleSize * 2) >= reqHeight) {
+            inSampleSize *= 2;
+        }
+        return inSampleSize;
+    }
+
+    /**
+     * Decodes one photo off the main thread and hands it to the view if it still wants it.
+     */
+    private class DecodeTask extends AsyncTask<Void, Void, Bitmap> {
+        private final String mImageName;
+        private final ImageView mView;
+        private final int mSize;
+
+        DecodeTask(String imageName, ImageView view, int size) {
+            mImageName = imageName;
+            mView = view;
+            mSize = size;
+        }
+
+        @Override
+        protected Bitmap doInBackground(Void... voids) {
+            return loadThumbnail(mImageName, mSize);
+        }
+
+        @Override
+        protected void onPostExecute(Bitmap bitmap) {
+            if (mPendingDecodes.get(mView) == this) {
+                mPendingDecodes.remove(mView);
+            }
+            if (bitmap != null && mImageName.equals(mView.getTag())) {
+                mView.setImageBitmap(bitmap);
+            }
+        }
+    }
+
+    /**
+     * Work queue that hands out the newest task first. Offering to a full queue drops the oldest
+     * task, which is the one for a row scrolled away longest ago, so the executor never rejects.
+     */
+    private static final class NewestFirstQueue extends LinkedBlockingDeque<Runnable> {
+
+        NewestFirstQueue(int capacity) {
+            super(capacity);
+        }
+
+        @Override
+        public synchronized boolean offer(Runnable runnable) {
+            while (!offerFirst(runnable)) {
+                pollLast();
+            }
+            return true;
+        }
+    }
+}
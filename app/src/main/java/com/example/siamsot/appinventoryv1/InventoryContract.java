@@ -2,6 +2,7 @@ package com.example.siamsot.appinventoryv1;
 
 import android.content.ContentResolver;
 import android.net.Uri;
+import android.os.Bundle;
 import android.provider.BaseColumns;
 
 /**
@@ -22,12 +23,123 @@ class InventoryContract {
      * which will be appended to the base content URI.
      */
     static final String PATH_ITEMS = "items";
+    static final String PATH_SEARCH = "search";
+    /**
+     * Path below a single item (items/#/image) for the bytes of its photo. The provider serves it
+     * through openFile, in read-only ("r") and writable ("w", "wt", "rw") modes.
+     */
+    static final String PATH_IMAGE = "image";
+    static final String PATH_STATS = "stats";
+    static final String PATH_SUPPLIERS = "suppliers";
+    static final String PATH_IMPORTS = "imports";
+    static final String PATH_DIAGNOSTICS = "diagnostics";
+    /**
+     * Paths below a single item for its stock movements (items/#/movements) and their daily
+     * totals (items/#/movements/daily), see {@link MovementEntry}.
+     */
+    static final String PATH_MOVEMENTS = "movements";
+    static final String PATH_DAILY = "daily";
+    /**
+     * Query parameters for keyset pagination of {@link InventoryEntry#CONTENT_URI}. The provider
+     * returns at most limit rows with an _id greater than after_id, ordered by _id
+     * (see {@link #QUERY_PARAMETER_SORT} for the other orders).
+     */
+    static final String QUERY_PARAMETER_LIMIT = "limit";
+    static final String QUERY_PARAMETER_AFTER_ID = "after_id";
+    /**
+     * Query parameter of {@link InventoryEntry#SEARCH_URI} holding the text the user typed.
+     * Every word of it is matched as a prefix of the name, supplier name or supplier mail.
+     */
+    static final String QUERY_PARAMETER_SEARCH = "q";
+    /**
+     * Query parameter of {@link InventoryEntry#CONTENT_URI} and {@link InventoryEntry#SEARCH_URI}
+     * for the order of the items, {@link #SORT_LOW_STOCK} or {@link #SORT_VALUE}. Without it the
+     * items are in _id order. Every order is backed by an index, so a page never sorts the table.
+     * The pages of a sorted list start after the sort key of the previous page's last row
+     * ({@link #QUERY_PARAMETER_AFTER_KEY}, see {@link InventoryEntry#sortKeyColumn(String)})
+     * together with its _id in after_id.
+     */
+    static final String QUERY_PARAMETER_SORT = "sort";
+    /** Fewest pieces first, ties in _id order */
+    static final String SORT_LOW_STOCK = "low_stock";
+    /** Highest stock value first (see {@link InventoryEntry#COLUMN_STOCK_VALUE}), ties newest first */
+    static final String SORT_VALUE = "value";
+    static final String QUERY_PARAMETER_AFTER_KEY = "after_key";
+    /**
+     * Query parameter that keeps only the items of the supplier with this id. The supplier index
+     * serves it in _id order.
+     */
+    static final String QUERY_PARAMETER_SUPPLIER_ID = "supplier_id";
+    /**
+     * Query parameter of the movement URIs, in milliseconds since the epoch: only the movements
+     * from then on, or the days from the one it falls in.
+     */
+    static final String QUERY_PARAMETER_SINCE = "since";
+    /**
+     * Query parameter of the items URI: only the items changed after this value of
+     * {@link InventoryEntry#COLUMN_CHANGED}, in the order they changed. It can't be combined with
+     * {@link #QUERY_PARAMETER_SORT}.
+     */
+    static final String QUERY_PARAMETER_CHANGED_AFTER = "changed_after";
+    /**
+     * Provider method (see {@link android.content.ContentProvider#call}) that adds a delta to the
+     * quantity of one item in a single SQL statement. The arg is the item id and the extras hold
+     * {@link #EXTRA_DELTA}. The result holds {@link #EXTRA_ADJUSTED} and {@link #EXTRA_QUANTITY}.
+     */
+    static final String METHOD_ADJUST_QUANTITY = "adjust_quantity";
+    static final String EXTRA_DELTA = "delta";
+    static final String EXTRA_ADJUSTED = "adjusted";
+    static final String EXTRA_QUANTITY = "quantity";
+    /**
+     * Provider method that inserts one batch of an import and records how far the import got, in
+     * the same transaction. The arg is the import's source (see {@link ImportEntry#COLUMN_SOURCE})
+     * and the extras hold {@link #EXTRA_ITEMS}, {@link #EXTRA_POSITION} and {@link #EXTRA_FAILED}.
+     * The result holds {@link #EXTRA_INSERTED}. Used by {@link InventoryImporter}.
+     */
+    static final String METHOD_IMPORT_BATCH = "import_batch";
+    /** The items of the batch, a ContentValues[] as for a bulk insert */
+    static final String EXTRA_ITEMS = "items";
+    /** Number of records of the source read once this batch is in */
+    static final String EXTRA_POSITION = "position";
+    /** Number of records of the source that failed validation so far */
+    static final String EXTRA_FAILED = "failed";
+    static final String EXTRA_INSERTED = "inserted";
+    /**
+     * Provider method that rolls the stock movements of the days before
+     * {@link MovementEntry#RETENTION_DAYS} into their daily totals and deletes them. The provider
+     * runs it by itself about once a day. The optional {@link #EXTRA_BEFORE} moves the cut, the
+     * movements before the start of the day it falls in are rolled up. The result holds
+     * {@link #EXTRA_COMPACTED}, the number of movements rolled up.
+     */
+    static final String METHOD_COMPACT_MOVEMENTS = "compact_movements";
+    static final String EXTRA_BEFORE = "before";
+    static final String EXTRA_COMPACTED = "compacted";
+    /**
+     * Provider method that reads the last value handed out for
+     * {@link InventoryEntry#COLUMN_CHANGED}, from the change sequence rather than the items, so
+     * it never goes back when the last changed item is deleted. The result holds
+     * {@link #EXTRA_CHANGED}.
+     */
+    static final String METHOD_LAST_CHANGE = "last_change";
+    static final String EXTRA_CHANGED = "changed";
 
     // To prevent someone from accidentally instantiating the contract class,
     // give it an empty constructor.
     private InventoryContract() {
     }
 
+    /**
+     * Add delta to the quantity of the item with the given id. The provider does the math in SQL,
+     * so concurrent taps never lose a count, and refuses to go below zero.
+     *
+     * @return the result bundle of {@link #METHOD_ADJUST_QUANTITY}, or null if the item doesn't exist
+     */
+    static Bundle adjustQuantity(ContentResolver resolver, long id, int delta) {
+        Bundle extras = new Bundle();
+        extras.putInt(EXTRA_DELTA, delta);
+        return resolver.call(InventoryEntry.CONTENT_URI, METHOD_ADJUST_QUANTITY, String.valueOf(id), extras);
+    }
+
     /**
      * Inner class that defines constant values for the stock database table.
      * One inner class for each table created.
@@ -37,10 +149,26 @@ class InventoryContract {
          * a full URI for the class as a constant called CONTENT_URI
          */
         static final Uri CONTENT_URI = Uri.withAppendedPath(BASE_CONTENT_URI, PATH_ITEMS);
+        /**
+         * URI for a full-text search over the items, see {@link #QUERY_PARAMETER_SEARCH}
+         */
+        static final Uri SEARCH_URI = Uri.withAppendedPath(BASE_CONTENT_URI, PATH_SEARCH);
         /**
          * Name of database table for items
          */
         static final String TABLE_NAME = "items";
+        /**
+         * Name of the full-text index over the items, maintained by triggers on the items table
+         */
+        static final String FTS_TABLE_NAME = "items_fts";
+        /**
+         * Name of the view joining every item with its supplier, the item queries read from it
+         */
+        static final String DETAILS_VIEW_NAME = "items_with_suppliers";
+        /**
+         * Name of the one-row table holding the last value handed out for {@link #COLUMN_CHANGED}
+         */
+        static final String CHANGES_TABLE_NAME = "items_changes";
         /**
          * Unique ID number for the item (only for use in the database table).
          * <p>
@@ -50,10 +178,59 @@ class InventoryContract {
         static final String COLUMN_ITEM_NAME = "name";
         static final String COLUMN_ITEM_PRICE = "price";
         static final String COLUMN_ITEM_QUANTITY = "quantity";
+        /**
+         * File name of the product photo in the app's images directory, see {@link ImageLoader}.
+         * <p>
+         * Type: TEXT, may be null
+         */
         static final String COLUMN_ITEM_IMAGE = "image";
+        /**
+         * The _id of the item's row in the suppliers table, see {@link SupplierEntry}.
+         * <p>
+         * Type: INTEGER
+         */
+        static final String COLUMN_SUPPLIER_ID = "supplier_id";
+        /**
+         * The supplier's name, phone and mail are joined in from the suppliers table. They can be
+         * written with an item: the provider then looks up the supplier with exactly these three
+         * values, creates it if there is none, and stores its id in {@link #COLUMN_SUPPLIER_ID}.
+         */
         static final String COLUMN_SUPPLIER_NAME = "supplier_name";
         static final String COLUMN_SUPPLIER_PHONE = "supplier_phone";
         static final String COLUMN_SUPPLIER_MAIL = "supplier_mail";
+        /**
+         * Price times quantity in cents, kept up to date by triggers so the list can be sorted by
+         * it through an index. Read only.
+         * <p>
+         * Type: INTEGER
+         */
+        static final String COLUMN_STOCK_VALUE = "stock_value";
+        /**
+         * A reorder alert goes out when the quantity drops to this or below, see {@link ReorderAlerts}.
+         * <p>
+         * Type: INTEGER, {@link #DEFAULT_REORDER_THRESHOLD} if not given
+         */
+        static final String COLUMN_REORDER_THRESHOLD = "reorder_threshold";
+        /** Alert once an item is out of stock */
+        static final int DEFAULT_REORDER_THRESHOLD = 0;
+        /**
+         * Where the item's last change of its price, quantity or reorder threshold falls in the
+         * sequence of all changes. It only grows, so everything after a value seen before is new,
+         * see {@link InventoryContract#QUERY_PARAMETER_CHANGED_AFTER}. Read only.
+         * <p>
+         * Type: INTEGER
+         */
+        static final String COLUMN_CHANGED = "changed";
+        /**
+         * The columns shown by the main list. Keep it narrow: every extra column takes space in
+         * the CursorWindow, so fewer rows fit in it and it has to be refilled more often while scrolling.
+         */
+        static final String[] LIST_PROJECTION = {
+                _ID,
+                COLUMN_ITEM_NAME,
+                COLUMN_ITEM_PRICE,
+                COLUMN_ITEM_QUANTITY,
+                COLUMN_ITEM_IMAGE };
         /**
          * The MIME type of the {@link #CONTENT_URI} for a list of items.
          */
@@ -66,6 +243,435 @@ class InventoryContract {
         static final String CONTENT_ITEM_TYPE =
                 ContentResolver.CURSOR_ITEM_BASE_TYPE + "/" + CONTENT_AUTHORITY + "/" + PATH_ITEMS;
 
+        /**
+         * The MIME type of the photo of an item, see {@link #buildImageUri(long)}.
+         */
+        static final String CONTENT_IMAGE_TYPE = "image/jpeg";
+
+        /**
+         * Stream type of the {@link #CONTENT_URI}: every item with its supplier as CSV, see
+         * {@link InventoryCsvExporter}. Open it with
+         * {@link ContentResolver#openTypedAssetFileDescriptor(Uri, String, Bundle)}, the provider
+         * writes the rows into a pipe while they are read.
+         */
+        static final String CONTENT_CSV_TYPE = "text/csv";
+
+        /**
+         * URI for the photo of the item with the given id.
+         */
+        static Uri buildImageUri(long id) {
+            return CONTENT_URI.buildUpon()
+                    .appendPath(String.valueOf(id))
+                    .appendPath(PATH_IMAGE)
+                    .build();
+        }
+
+        /**
+         * URI for one page of items: at most limit items with an _id greater than afterId.
+         */
+        static Uri buildPageUri(long afterId, int limit) {
+            return CONTENT_URI.buildUpon()
+                    .appendQueryParameter(QUERY_PARAMETER_AFTER_ID, String.valueOf(afterId))
+                    .appendQueryParameter(QUERY_PARAMETER_LIMIT, String.valueOf(limit))
+                    .build();
+        }
+
+        /**
+         * URI for one page of the items matching the search text.
+         */
+        static Uri buildSearchPageUri(String search, long afterId, int limit) {
+            return SEARCH_URI.buildUpon()
+                    .appendQueryParameter(QUERY_PARAMETER_SEARCH, search)
+                    .appendQueryParameter(QUERY_PARAMETER_AFTER_ID, String.valueOf(afterId))
+                    .appendQueryParameter(QUERY_PARAMETER_LIMIT, String.valueOf(limit))
+                    .build();
+        }
+
+        /**
+         * The page URI in the given order, see {@link #QUERY_PARAMETER_SORT}. afterKey is the sort
+         * key of the row the page starts after, null for the first page.
+         */
+        static Uri sortedBy(Uri pageUri, String sort, String afterKey) {
+            if (sort == null) {
+                return pageUri;
+            }
+            Uri.Builder builder = pageUri.buildUpon().appendQueryParameter(QUERY_PARAMETER_SORT, sort);
+            if (afterKey != null) {
+                builder.appendQueryParameter(QUERY_PARAMETER_AFTER_KEY, afterKey);
+            }
+            return builder.build();
+        }
+
+        /**
+         * The URI with only the items of the given supplier.
+         */
+        static Uri ofSupplier(Uri uri, long supplierId) {
+            return uri.buildUpon()
+                    .appendQueryParameter(QUERY_PARAMETER_SUPPLIER_ID, String.valueOf(supplierId))
+                    .build();
+        }
+
+        /**
+         * URI for the items changed after the given value of {@link #COLUMN_CHANGED}.
+         */
+        static Uri buildChangedAfterUri(long changed) {
+            return CONTENT_URI.buildUpon()
+                    .appendQueryParameter(QUERY_PARAMETER_CHANGED_AFTER, String.valueOf(changed))
+                    .build();
+        }
+
+        /**
+         * The column that orders the items in the given sort, null for _id order.
+         *
+         * @throws IllegalArgumentException for an unknown sort
+         */
+        static String sortKeyColumn(String sort) {
+            if (sort == null) {
+                return null;
+            }
+            switch (sort) {
+                case SORT_LOW_STOCK:
+                    return COLUMN_ITEM_QUANTITY;
+                case SORT_VALUE:
+                    return COLUMN_STOCK_VALUE;
+                default:
+                    throw new IllegalArgumentException("Unknown sort " + sort);
+            }
+        }
+    }
+
+    /**
+     * Constant values for the suppliers table. Every item references one supplier, so changing
+     * a supplier's phone or mail is a single row update whatever number of items it has.
+     */
+    static abstract class SupplierEntry implements BaseColumns {
+        /**
+         * a full URI for the suppliers, ordered by name
+         */
+        static final Uri CONTENT_URI = Uri.withAppendedPath(BASE_CONTENT_URI, PATH_SUPPLIERS);
+        /**
+         * Name of database table for suppliers
+         */
+        static final String TABLE_NAME = "suppliers";
+        static final String _ID = "_id";
+        static final String COLUMN_SUPPLIER_NAME = InventoryEntry.COLUMN_SUPPLIER_NAME;
+        static final String COLUMN_SUPPLIER_PHONE = InventoryEntry.COLUMN_SUPPLIER_PHONE;
+        static final String COLUMN_SUPPLIER_MAIL = InventoryEntry.COLUMN_SUPPLIER_MAIL;
+
+        /**
+         * The MIME type of the {@link #CONTENT_URI} for a list of suppliers.
+         */
+        static final String CONTENT_LIST_TYPE =
+                ContentResolver.CURSOR_DIR_BASE_TYPE + "/" + CONTENT_AUTHORITY + "/" + PATH_SUPPLIERS;
+
+        /**
+         * The MIME type of the {@link #CONTENT_URI} for a single supplier.
+         */
+        static final String CONTENT_ITEM_TYPE =
+                ContentResolver.CURSOR_ITEM_BASE_TYPE + "/" + CONTENT_AUTHORITY + "/" + PATH_SUPPLIERS;
     }
-}
 
+    /**
+     * Imports that started but didn't finish, one row per source. {@link InventoryImporter}
+     * continues an import from here after a crash and deletes the row when it is done.
+     * Only query and delete are supported, the rows are written by {@link #METHOD_IMPORT_BATCH}.
+     */
+    static abstract class ImportEntry implements BaseColumns {
+        static final Uri CONTENT_URI = Uri.withAppendedPath(BASE_CONTENT_URI, PATH_IMPORTS);
+        static final String TABLE_NAME = "imports";
+        static final String _ID = "_id";
+        /**
+         * What is imported, usually the URI of the file.
+         * <p>
+         * Type: TEXT
+         */
+        static final String COLUMN_SOURCE = "source";
+        /**
+         * Number of records read and committed, the import continues after them.
+         * <p>
+         * Type: INTEGER
+         */
+        static final String COLUMN_POSITION = "position";
+        /**
+         * Number of items inserted.
+         * <p>
+         * Type: INTEGER
+         */
+        static final String COLUMN_IMPORTED = "imported";
+        /**
+         * Number of records that failed validation and were skipped.
+         * <p>
+         * Type: INTEGER
+         */
+        static final String COLUMN_FAILED = "failed";
+        /**
+         * When the last batch was committed, in milliseconds since the epoch.
+         * <p>
+         * Type: INTEGER
+         */
+        static final String COLUMN_UPDATED = "updated";
+
+        static final String CONTENT_LIST_TYPE =
+                ContentResolver.CURSOR_DIR_BASE_TYPE + "/" + CONTENT_AUTHORITY + "/" + PATH_IMPORTS;
+    }
+
+    /**
+     * The stock movements, one row for every change of an item's quantity: its first quantity
+     * when the item is added, every sale, edit and import after that, and the stock it still
+     * had when it is deleted. Triggers on the items table write them in the same transaction as
+     * the change, whichever way the quantity was changed. The history is append-only and is kept
+     * after the item is gone.
+     * <p>
+     * Movements older than {@link #RETENTION_DAYS} are rolled up into one row per item and
+     * day (see {@link #METHOD_COMPACT_MOVEMENTS}), so the table only grows with the recent
+     * activity. Days are UTC days, day = timestamp / {@link #DAY_MS}. Query only.
+     */
+    static abstract class MovementEntry implements BaseColumns {
+        static final String TABLE_NAME = "stock_movements";
+        /**
+         * Table of the rolled up days, keyed by item and day
+         */
+        static final String DAILY_TABLE_NAME = "stock_movements_daily";
+
+        /**
+         * Movements are kept for this many days, then only their daily totals are
+         */
+        static final int RETENTION_DAYS = 30;
+        static final long DAY_MS = 24 * 60 * 60 * 1000L;
+
+        /**
+         * Number of movements or days returned when the URI has no limit
+         */
+        static final int DEFAULT_LIMIT = 100;
+
+        static final String _ID = "_id";
+        /**
+         * The {@link InventoryEntry#_ID} of the item, which may no longer exist.
+         * <p>
+         * Type: INTEGER
+         */
+        static final String COLUMN_ITEM_ID = "item_id";
+        /**
+         * When the quantity changed, in milliseconds since the epoch.
+         * <p>
+         * Type: INTEGER
+         */
+        static final String COLUMN_TIMESTAMP = "timestamp";
+        /**
+         * The change, negative when stock went out.
+         * <p>
+         * Type: INTEGER
+         */
+        static final String COLUMN_DELTA = "delta";
+        /**
+         * The quantity after the change, for a day the quantity at its end.
+         * <p>
+         * Type: INTEGER
+         */
+        static final String COLUMN_QUANTITY = "quantity";
+        /**
+         * The day, in days since the epoch. Only in the daily totals.
+         * <p>
+         * Type: INTEGER
+         */
+        static final String COLUMN_DAY = "day";
+        /**
+         * Pieces that came in and went out over the day, and the number of movements.
+         * Only in the daily totals.
+         * <p>
+         * Type: INTEGER
+         */
+        static final String COLUMN_RECEIVED = "received";
+        static final String COLUMN_REMOVED = "removed";
+        static final String COLUMN_MOVEMENTS = "movements";
+        /**
+         * The _id of the day's last movement that isn't rolled up yet, 0 if there is none. Only
+         * in the daily totals.
+         * <p>
+         * Type: INTEGER
+         */
+        static final String COLUMN_LAST_ID = "last_id";
+
+        /**
+         * The MIME types of the movements of an item and of its daily totals.
+         */
+        static final String CONTENT_LIST_TYPE =
+                ContentResolver.CURSOR_DIR_BASE_TYPE + "/" + CONTENT_AUTHORITY + "/" + PATH_MOVEMENTS;
+        static final String CONTENT_DAILY_TYPE =
+                ContentResolver.CURSOR_DIR_BASE_TYPE + "/" + CONTENT_AUTHORITY + "/" + PATH_MOVEMENTS + "/" + PATH_DAILY;
+
+        /**
+         * URI for the movements of the item with the given id, newest first. Takes
+         * {@link #QUERY_PARAMETER_SINCE} and {@link #QUERY_PARAMETER_LIMIT}, at most
+         * {@link #DEFAULT_LIMIT} rows without it.
+         */
+        static Uri buildMovementsUri(long itemId) {
+            return InventoryEntry.CONTENT_URI.buildUpon()
+                    .appendPath(String.valueOf(itemId))
+                    .appendPath(PATH_MOVEMENTS)
+                    .build();
+        }
+
+        /**
+         * URI for the daily totals of the item with the given id, newest day first, the rolled
+         * up days and the recent ones alike. The columns are always {@link #COLUMN_DAY},
+         * {@link #COLUMN_RECEIVED}, {@link #COLUMN_REMOVED}, {@link #COLUMN_MOVEMENTS},
+         * {@link #COLUMN_QUANTITY} and {@link #COLUMN_LAST_ID}. Takes the same parameters as {@link #buildMovementsUri(long)}.
+         */
+        static Uri buildDailyUri(long itemId) {
+            return buildMovementsUri(itemId).buildUpon()
+                    .appendPath(PATH_DAILY)
+                    .build();
+        }
+    }
+
+    /**
+     * Aggregates over the items table. SQLite keeps them up to date on every write, so reading
+     * them is a single-row lookup however many items there are. The projection and selection
+     * of a query are ignored, the columns are always the ones listed here.
+     */
+    static abstract class StatsEntry {
+        /**
+         * Single-row table holding the totals, maintained by triggers on the items table
+         */
+        static final String SUMMARY_TABLE_NAME = "items_summary";
+        /**
+         * Table with one row of totals per supplier, maintained by the same triggers
+         */
+        static final String SUPPLIER_SUMMARY_TABLE_NAME = "supplier_summary";
+
+        /**
+         * One row with the totals over all items
+         */
+        static final Uri CONTENT_URI = Uri.withAppendedPath(BASE_CONTENT_URI, PATH_STATS);
+        /**
+         * One row per supplier, ordered by supplier name. Besides the totals every row has the
+         * {@link InventoryEntry#COLUMN_SUPPLIER_NAME} and, as its _id, the supplier's
+         * {@link SupplierEntry#_ID}.
+         */
+        static final Uri SUPPLIERS_URI = Uri.withAppendedPath(CONTENT_URI, PATH_SUPPLIERS);
+
+        /**
+         * Items with a quantity from 1 up to this count as low on stock
+         */
+        static final int LOW_STOCK_THRESHOLD = 5;
+
+        /**
+         * Number of items.
+         * <p>
+         * Type: INTEGER
+         */
+        static final String COLUMN_ITEM_COUNT = "item_count";
+        /**
+         * Sum of price * quantity.
+         * <p>
+         * Type: REAL
+         */
+        static final String COLUMN_TOTAL_VALUE = "total_value";
+        /**
+         * Sum of the quantities.
+         * <p>
+         * Type: INTEGER
+         */
+        static final String COLUMN_TOTAL_QUANTITY = "total_quantity";
+        /**
+         * Number of items with a quantity from 1 to {@link #LOW_STOCK_THRESHOLD}, only in
+         * {@link #CONTENT_URI}.
+         * <p>
+         * Type: INTEGER
+         */
+        static final String COLUMN_LOW_STOCK_COUNT = "low_stock_count";
+        /**
+         * Number of items with a quantity of 0, only in {@link #CONTENT_URI}.
+         * <p>
+         * Type: INTEGER
+         */
+        static final String COLUMN_OUT_OF_STOCK_COUNT = "out_of_stock_count";
+
+        /**
+         * The MIME type of the {@link #CONTENT_URI}.
+         */
+        static final String CONTENT_ITEM_TYPE =
+                ContentResolver.CURSOR_ITEM_BASE_TYPE + "/" + CONTENT_AUTHORITY + "/" + PATH_STATS;
+
+        /**
+         * The MIME type of the {@link #SUPPLIERS_URI}.
+         */
+        static final String CONTENT_SUPPLIERS_TYPE =
+                ContentResolver.CURSOR_DIR_BASE_TYPE + "/" + CONTENT_AUTHORITY + "/" + PATH_STATS + "/" + PATH_SUPPLIERS;
+    }
+
+    /**
+     * What the provider measured about its own calls since the process started, see
+     * {@link ProviderStats}. Query only, one row per operation and URI pattern that was used,
+     * plus one row per URI pattern that had change notifications. The same table is printed by
+     * {@code adb shell dumpsys activity provider com.example.siamsot.appinventoryv1/.InventoryProvider}.
+     */
+    static abstract class DiagnosticsEntry {
+        static final Uri CONTENT_URI = Uri.withAppendedPath(BASE_CONTENT_URI, PATH_DIAGNOSTICS);
+
+        /**
+         * query, insert, bulk_insert, update, delete, get_type, notify for the change
+         * notifications of a URI pattern, or cache_hit and cache_miss for the queries of
+         * items/# answered from memory or not.
+         * <p>
+         * Type: TEXT
+         */
+        static final String COLUMN_OPERATION = "operation";
+        /**
+         * The URI pattern, like items or items/#.
+         * <p>
+         * Type: TEXT
+         */
+        static final String COLUMN_URI = "uri";
+        /**
+         * Number of calls, or of notifications.
+         * <p>
+         * Type: INTEGER
+         */
+        static final String COLUMN_CALLS = "calls";
+        /**
+         * Number of calls that threw.
+         * <p>
+         * Type: INTEGER
+         */
+        static final String COLUMN_ERRORS = "errors";
+        /**
+         * Rows returned by the queries or written by the other operations, summed up.
+         * <p>
+         * Type: INTEGER
+         */
+        static final String COLUMN_ROWS = "rows";
+        /**
+         * Mean latency in microseconds.
+         * <p>
+         * Type: INTEGER
+         */
+        static final String COLUMN_MEAN_US = "mean_us";
+        /**
+         * Latency percentiles in microseconds, estimated as the upper bound of the histogram
+         * bucket they fall in.
+         * <p>
+         * Type: INTEGER
+         */
+        static final String COLUMN_P50_US = "p50_us";
+        static final String COLUMN_P90_US = "p90_us";
+        static final String COLUMN_P99_US = "p99_us";
+        /**
+         * Highest latency in microseconds.
+         * <p>
+         * Type: INTEGER
+         */
+        static final String COLUMN_MAX_US = "max_us";
+        /**
+         * The latency histogram, "&lt;=upper bound in us:calls" for every bucket that isn't empty,
+         * separated by spaces.
+         * <p>
+         * Type: TEXT
+         */
+        static final String COLUMN_HISTOGRAM = "histogram";
+
+        static final String CONTENT_LIST_TYPE =
+                ContentResolver.CURSOR_DIR_BASE_TYPE + "/" + CONTENT_AUTHORITY + "/" + PATH_DIAGNOSTICS;
+    }
+}
@@ -0,0 +1,126 @@
+package com.example.siamsot.appinventoryv1;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Writes the whole inventory as CSV (RFC 4180, comma separated, CRLF line ends, header first).
+ * The items are read in chunks of {@link #CHUNK_SIZE} rows with keyset pagination, the same way
+ * the list pages through them, so only one chunk is ever in memory however large the inventory is.
+ * {@link InventoryProvider} streams this into a pipe for
+ * {@link InventoryContract.InventoryEntry#CONTENT_CSV_TYPE}.
+ */
+final class InventoryCsvExporter {
+
+    /** Rows per query, each chunk comfortably fits one CursorWindow */
+    static final int CHUNK_SIZE = 500;
+
+    /** The exported columns, in this order */
+    static final String[] COLUMNS = {
+            InventoryContract.InventoryEntry._ID,
+            InventoryContract.InventoryEntry.COLUMN_ITEM_NAME,
+            InventoryContract.InventoryEntry.COLUMN_ITEM_PRICE,
+            InventoryContract.InventoryEntry.COLUMN_ITEM_QUANTITY,
+            InventoryContract.InventoryEntry.COLUMN_SUPPLIER_NAME,
+            InventoryContract.InventoryEntry.COLUMN_SUPPLIER_PHONE,
+            InventoryContract.InventoryEntry.COLUMN_SUPPLIER_MAIL,
+            InventoryContract.InventoryEntry.COLUMN_REORDER_THRESHOLD };
+
+    private static final String LINE_END = "\r\n";
+
+    private final int mChunkSize;
+
+    InventoryCsvExporter() {
+        this(CHUNK_SIZE);
+    }
+
+    InventoryCsvExporter(int chunkSize) {
+        mChunkSize = chunkSize;
+    }
+
+    /**
+     * Write the header and every item to out. Out should be buffered, every field is written
+     * on its own. Out is flushed but not closed.
+     *
+     * @return the number of items written
+     */
+    long export(SQLiteDatabase db, Writer out) throws IOException {
+        writeRow(out, COLUMNS);
+        String[] fields = new String[COLUMNS.length];
+        String[] selectionArgs = new String[1];
+        String limit = String.valueOf(mChunkSize);
+        long afterId = 0;
+        long rows = 0;
+        while (true) {
+            selectionArgs[0] = String.valueOf(afterId);
+            Cursor cursor = db.query(InventoryContract.InventoryEntry.DETAILS_VIEW_NAME, COLUMNS,
+                    InventoryContract.InventoryEntry._ID + " > ?", selectionArgs,
+                    null, null, InventoryContract.InventoryEntry._ID, limit);
+            int count;
+            try {
+                count = cursor.getCount();
+                while (cursor.moveToNext()) {
+                    for (int i = 0; i < fields.length; i++) {
+                        fields[i] = cursor.getString(i);
+                    }
+                    writeRow(out, fields);
+                    afterId = cursor.getLong(0);
+                }
+            } finally {
+                cursor.close();
+            }
+            rows += count;
+            if (count < mChunkSize) {
+                break;
+            }
+        }
+        out.flush();
+        return rows;
+    }
+
+    private static void writeRow(Writer out, String[] fields) throws IOException {
+        for (int i = 0; i < fields.length; i++) {
+            if (i > 0) {
+                out.write(',');
+            }
+            writeField(out, fields[i]);
+        }
+        out.write(LINE_END);
+    }
+
+    /**
+     * Write one field, quoted if it contains a comma, a quote or a line break. Quotes inside are
+     * doubled. A null field is written as an empty one.
+     */
+    static void writeField(Writer out, String field) throws IOException {
+        if (field == null) {
+            return;
+        }
+        if (!needsQuotes(field)) {
+            out.write(field);
+            return;
+        }
+        out.write('"');
+        for (int i = 0; i < field.length(); i++) {
+            char c = field.charAt(i);
+            if (c == '"') {
+                out.write('"');
+            }
+            out.write(c);
+        }
+        out.write('"');
+    }
+
+    private static boolean needsQuotes(String field) {
+        for (int i = 0; i < field.length(); i++) {
+            char c = field.charAt(i);
+            if (c == ',' || c == '"' || c == '\n' || c == '\r') {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -3,14 +3,771 @@ package com.example.siamsot.appinventoryv1;
 import android.content.Context;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.util.Log;
 
 public class InventoryDbHelper extends SQLiteOpenHelper {
     private String LOG_TAG = InventoryDbHelper.class.getName();
-    private static final int DATABASE_VERSION = 2;
+    static final int DATABASE_VERSION = 15;
     private static final String DATABASE_NAME = "items.db";
 
+    /**
+     * Version of the schema built by {@link #onCreate(SQLiteDatabase)} before the
+     * migrations run. Everything after it is added by a {@link Migration}.
+     */
+    static final int BASE_VERSION = 2;
+
+    /** Page cache of the primary connection, negative means KiB instead of pages */
+    private static final int CACHE_SIZE_KIB = 2048;
+
+    /**
+     * Covering index for the main list: it holds every column of
+     * {@link InventoryContract.InventoryEntry#LIST_PROJECTION} in the list's _id order,
+     * so pages of the list are read from the index without touching the table rows.
+     * This is the version 3 shape, version 6 recreates it with the image column and version 14
+     * drops it again.
+     */
+    private static final String SQL_CREATE_LIST_INDEX = "CREATE INDEX IF NOT EXISTS items_list_idx ON "
+            + InventoryContract.InventoryEntry.TABLE_NAME + " ("
+            + InventoryContract.InventoryEntry._ID + ", "
+            + InventoryContract.InventoryEntry.COLUMN_ITEM_NAME + ", "
+            + InventoryContract.InventoryEntry.COLUMN_ITEM_PRICE + ", "
+            + InventoryContract.InventoryEntry.COLUMN_ITEM_QUANTITY + ");";
+
+    /**
+     * Index for {@link InventoryContract.StatsEntry}: the low-stock and out-of-stock counts are
+     * range searches on quantity, and with the price in it the stock value is summed from the
+     * index alone. Since version 8 the statistics come from the summary tables, the index still
+     * finds the items low on stock.
+     */
+    private static final String SQL_CREATE_STOCK_INDEX = "CREATE INDEX items_stock_idx ON "
+            + InventoryContract.InventoryEntry.TABLE_NAME + " ("
+            + InventoryContract.InventoryEntry.COLUMN_ITEM_QUANTITY + ", "
+            + InventoryContract.InventoryEntry.COLUMN_ITEM_PRICE + ");";
+
+    /**
+     * External content FTS4 table over the searchable columns of the items table: it only stores
+     * the index, the text stays in the items table. The prefix indexes keep the search-as-you-type
+     * prefix queries fast.
+     */
+    private static final String SQL_CREATE_FTS_TABLE = "CREATE VIRTUAL TABLE "
+            + InventoryContract.InventoryEntry.FTS_TABLE_NAME + " USING fts4("
+            + "content=\"" + InventoryContract.InventoryEntry.TABLE_NAME + "\", "
+            + InventoryContract.InventoryEntry.COLUMN_ITEM_NAME + ", "
+            + InventoryContract.InventoryEntry.COLUMN_SUPPLIER_NAME + ", "
+            + InventoryContract.InventoryEntry.COLUMN_SUPPLIER_MAIL + ", "
+            + "prefix=\"2,3\");";
+
+    private static final String FTS_COLUMNS = InventoryContract.InventoryEntry.COLUMN_ITEM_NAME + ", "
+            + InventoryContract.InventoryEntry.COLUMN_SUPPLIER_NAME + ", "
+            + InventoryContract.InventoryEntry.COLUMN_SUPPLIER_MAIL;
+
+    private static final String FTS_NEW_VALUES = "new." + InventoryContract.InventoryEntry._ID + ", "
+            + "new." + InventoryContract.InventoryEntry.COLUMN_ITEM_NAME + ", "
+            + "new." + InventoryContract.InventoryEntry.COLUMN_SUPPLIER_NAME + ", "
+            + "new." + InventoryContract.InventoryEntry.COLUMN_SUPPLIER_MAIL;
+
+    private static final String FTS_DELETE_OLD = "DELETE FROM " + InventoryContract.InventoryEntry.FTS_TABLE_NAME
+            + " WHERE docid = old." + InventoryContract.InventoryEntry._ID + ";";
+
+    private static final String FTS_INSERT_NEW = "INSERT INTO " + InventoryContract.InventoryEntry.FTS_TABLE_NAME
+            + "(docid, " + FTS_COLUMNS + ") VALUES (" + FTS_NEW_VALUES + ");";
+
+    /**
+     * Triggers that keep the FTS table in sync with the items table. The update triggers only fire
+     * for the searchable columns, so quantity changes don't touch the full-text index.
+     */
+    private static final String[] SQL_CREATE_FTS_TRIGGERS = {
+            "CREATE TRIGGER items_fts_ai AFTER INSERT ON " + InventoryContract.InventoryEntry.TABLE_NAME
+                    + " BEGIN " + FTS_INSERT_NEW + " END;",
+            "CREATE TRIGGER items_fts_bd BEFORE DELETE ON " + InventoryContract.InventoryEntry.TABLE_NAME
+                    + " BEGIN " + FTS_DELETE_OLD + " END;",
+            "CREATE TRIGGER items_fts_bu BEFORE UPDATE OF " + FTS_COLUMNS + " ON " + InventoryContract.InventoryEntry.TABLE_NAME
+                    + " BEGIN " + FTS_DELETE_OLD + " END;",
+            "CREATE TRIGGER items_fts_au AFTER UPDATE OF " + FTS_COLUMNS + " ON " + InventoryContract.InventoryEntry.TABLE_NAME
+                    + " BEGIN " + FTS_INSERT_NEW + " END;",
+    };
+
+    /**
+     * The totals of {@link InventoryContract.StatsEntry}, in one row that always has _id 1.
+     */
+    private static final String SQL_CREATE_SUMMARY_TABLE = "CREATE TABLE "
+            + InventoryContract.StatsEntry.SUMMARY_TABLE_NAME + " ("
+            + "_id INTEGER PRIMARY KEY CHECK (_id = 1), "
+            + InventoryContract.StatsEntry.COLUMN_ITEM_COUNT + " INTEGER NOT NULL DEFAULT 0, "
+            + InventoryContract.StatsEntry.COLUMN_TOTAL_QUANTITY + " INTEGER NOT NULL DEFAULT 0, "
+            + InventoryContract.StatsEntry.COLUMN_TOTAL_VALUE + " REAL NOT NULL DEFAULT 0, "
+            + InventoryContract.StatsEntry.COLUMN_LOW_STOCK_COUNT + " INTEGER NOT NULL DEFAULT 0, "
+            + InventoryContract.StatsEntry.COLUMN_OUT_OF_STOCK_COUNT + " INTEGER NOT NULL DEFAULT 0);";
+
+    /**
+     * The totals per supplier, keyed by the given column definition: the supplier name up to
+     * version 8, the supplier id from version 9 on.
+     */
+    private static String createSupplierSummaryTable(String keyDefinition) {
+        return "CREATE TABLE " + InventoryContract.StatsEntry.SUPPLIER_SUMMARY_TABLE_NAME + " ("
+                + keyDefinition + " PRIMARY KEY, "
+                + InventoryContract.StatsEntry.COLUMN_ITEM_COUNT + " INTEGER NOT NULL DEFAULT 0, "
+                + InventoryContract.StatsEntry.COLUMN_TOTAL_QUANTITY + " INTEGER NOT NULL DEFAULT 0, "
+                + InventoryContract.StatsEntry.COLUMN_TOTAL_VALUE + " REAL NOT NULL DEFAULT 0);";
+    }
+
+    /**
+     * Triggers that add every new row to the summaries and take every old row out of them.
+     * An update does both, so changing the supplier moves the item between suppliers.
+     * Only price, quantity and supplier changes touch the summaries.
+     *
+     * @param supplierKey the column of the items table the supplier summary is keyed by
+     */
+    private static String[] createSummaryTriggers(String supplierKey) {
+        return new String[]{
+                "CREATE TRIGGER items_summary_ai AFTER INSERT ON " + InventoryContract.InventoryEntry.TABLE_NAME
+                        + " BEGIN " + summaryDelta("new", '+') + supplierSummaryDelta("new", '+', supplierKey) + " END;",
+                "CREATE TRIGGER items_summary_ad AFTER DELETE ON " + InventoryContract.InventoryEntry.TABLE_NAME
+                        + " BEGIN " + summaryDelta("old", '-') + supplierSummaryDelta("old", '-', supplierKey) + " END;",
+                "CREATE TRIGGER items_summary_au AFTER UPDATE OF "
+                        + InventoryContract.InventoryEntry.COLUMN_ITEM_PRICE + ", "
+                        + InventoryContract.InventoryEntry.COLUMN_ITEM_QUANTITY + ", "
+                        + supplierKey
+                        + " ON " + InventoryContract.InventoryEntry.TABLE_NAME
+                        + " BEGIN " + summaryDelta("old", '-') + summaryDelta("new", '+')
+                        + supplierSummaryDelta("old", '-', supplierKey)
+                        + supplierSummaryDelta("new", '+', supplierKey) + " END;",
+        };
+    }
+
+    /**
+     * Fills the summaries from scratch, the triggers take it from there.
+     */
+    static final String SQL_FILL_SUMMARY = "INSERT INTO " + InventoryContract.StatsEntry.SUMMARY_TABLE_NAME
+            + " SELECT 1, COUNT(*), "
+            + "TOTAL(" + InventoryContract.InventoryEntry.COLUMN_ITEM_QUANTITY + "), "
+            + "TOTAL(" + InventoryContract.InventoryEntry.COLUMN_ITEM_PRICE + " * "
+            + InventoryContract.InventoryEntry.COLUMN_ITEM_QUANTITY + "), "
+            + "TOTAL(" + isLowStock(InventoryContract.InventoryEntry.TABLE_NAME) + "), "
+            + "TOTAL(" + isOutOfStock(InventoryContract.InventoryEntry.TABLE_NAME) + ")"
+            + " FROM " + InventoryContract.InventoryEntry.TABLE_NAME + ";";
+
+    private static String fillSupplierSummary(String supplierKey) {
+        return "INSERT INTO " + InventoryContract.StatsEntry.SUPPLIER_SUMMARY_TABLE_NAME
+                + " SELECT " + supplierKey + ", COUNT(*), "
+                + "TOTAL(" + InventoryContract.InventoryEntry.COLUMN_ITEM_QUANTITY + "), "
+                + "TOTAL(" + InventoryContract.InventoryEntry.COLUMN_ITEM_PRICE + " * "
+                + InventoryContract.InventoryEntry.COLUMN_ITEM_QUANTITY + ")"
+                + " FROM " + InventoryContract.InventoryEntry.TABLE_NAME
+                + " GROUP BY " + supplierKey + ";";
+    }
+
+    /**
+     * 1 if the item in the given row is low on stock, else 0.
+     */
+    private static String isLowStock(String row) {
+        return "(" + row + "." + InventoryContract.InventoryEntry.COLUMN_ITEM_QUANTITY + " > 0 AND "
+                + row + "." + InventoryContract.InventoryEntry.COLUMN_ITEM_QUANTITY + " <= "
+                + InventoryContract.StatsEntry.LOW_STOCK_THRESHOLD + ")";
+    }
+
+    private static String isOutOfStock(String row) {
+        return "(" + row + "." + InventoryContract.InventoryEntry.COLUMN_ITEM_QUANTITY + " = 0)";
+    }
+
+    /**
+     * Statement adding (sign '+') or removing (sign '-') the item in the given trigger row
+     * to or from the totals.
+     */
+    private static String summaryDelta(String row, char sign) {
+        return "UPDATE " + InventoryContract.StatsEntry.SUMMARY_TABLE_NAME + " SET "
+                + InventoryContract.StatsEntry.COLUMN_ITEM_COUNT + " = "
+                + InventoryContract.StatsEntry.COLUMN_ITEM_COUNT + " " + sign + " 1, "
+                + InventoryContract.StatsEntry.COLUMN_TOTAL_QUANTITY + " = "
+                + InventoryContract.StatsEntry.COLUMN_TOTAL_QUANTITY + " " + sign + " "
+                + row + "." + InventoryContract.InventoryEntry.COLUMN_ITEM_QUANTITY + ", "
+                + InventoryContract.StatsEntry.COLUMN_TOTAL_VALUE + " = "
+                + InventoryContract.StatsEntry.COLUMN_TOTAL_VALUE + " " + sign + " "
+                + row + "." + InventoryContract.InventoryEntry.COLUMN_ITEM_PRICE + " * "
+                + row + "." + InventoryContract.InventoryEntry.COLUMN_ITEM_QUANTITY + ", "
+                + InventoryContract.StatsEntry.COLUMN_LOW_STOCK_COUNT + " = "
+                + InventoryContract.StatsEntry.COLUMN_LOW_STOCK_COUNT + " " + sign + " " + isLowStock(row) + ", "
+                + InventoryContract.StatsEntry.COLUMN_OUT_OF_STOCK_COUNT + " = "
+                + InventoryContract.StatsEntry.COLUMN_OUT_OF_STOCK_COUNT + " " + sign + " " + isOutOfStock(row) + ";";
+    }
+
+    /**
+     * Same as {@link #summaryDelta(String, char)} for the supplier of the item. A supplier gets
+     * its row with its first item and loses it with its last one.
+     */
+    private static String supplierSummaryDelta(String row, char sign, String supplierKey) {
+        String supplier = row + "." + supplierKey;
+        String update = "UPDATE " + InventoryContract.StatsEntry.SUPPLIER_SUMMARY_TABLE_NAME + " SET "
+                + InventoryContract.StatsEntry.COLUMN_ITEM_COUNT + " = "
+                + InventoryContract.StatsEntry.COLUMN_ITEM_COUNT + " " + sign + " 1, "
+                + InventoryContract.StatsEntry.COLUMN_TOTAL_QUANTITY + " = "
+                + InventoryContract.StatsEntry.COLUMN_TOTAL_QUANTITY + " " + sign + " "
+                + row + "." + InventoryContract.InventoryEntry.COLUMN_ITEM_QUANTITY + ", "
+                + InventoryContract.StatsEntry.COLUMN_TOTAL_VALUE + " = "
+                + InventoryContract.StatsEntry.COLUMN_TOTAL_VALUE + " " + sign + " "
+                + row + "." + InventoryContract.InventoryEntry.COLUMN_ITEM_PRICE + " * "
+                + row + "." + InventoryContract.InventoryEntry.COLUMN_ITEM_QUANTITY
+                + " WHERE " + supplierKey + " = " + supplier + ";";
+        if (sign == '+') {
+            return "INSERT OR IGNORE INTO " + InventoryContract.StatsEntry.SUPPLIER_SUMMARY_TABLE_NAME
+                    + " (" + supplierKey + ") VALUES (" + supplier + "); "
+                    + update;
+        }
+        return update + " DELETE FROM " + InventoryContract.StatsEntry.SUPPLIER_SUMMARY_TABLE_NAME
+                + " WHERE " + supplierKey + " = " + supplier
+                + " AND " + InventoryContract.StatsEntry.COLUMN_ITEM_COUNT + " = 0;";
+    }
+
+    /**
+     * The suppliers, each combination of name, phone and mail once.
+     */
+    private static final String SQL_CREATE_SUPPLIERS_TABLE = "CREATE TABLE "
+            + InventoryContract.SupplierEntry.TABLE_NAME + " ("
+            + InventoryContract.SupplierEntry._ID + " INTEGER PRIMARY KEY AUTOINCREMENT, "
+            + InventoryContract.SupplierEntry.COLUMN_SUPPLIER_NAME + " TEXT NOT NULL, "
+            + InventoryContract.SupplierEntry.COLUMN_SUPPLIER_PHONE + " TEXT NOT NULL, "
+            + InventoryContract.SupplierEntry.COLUMN_SUPPLIER_MAIL + " TEXT NOT NULL, "
+            + "UNIQUE (" + InventoryContract.SupplierEntry.COLUMN_SUPPLIER_NAME + ", "
+            + InventoryContract.SupplierEntry.COLUMN_SUPPLIER_PHONE + ", "
+            + InventoryContract.SupplierEntry.COLUMN_SUPPLIER_MAIL + "));";
+
+    /**
+     * The items table from version 9 on: the supplier columns are replaced by a reference
+     * to the suppliers table.
+     */
+    private static final String SQL_CREATE_NORMALIZED_ITEMS_TABLE = "CREATE TABLE items_new ("
+            + InventoryContract.InventoryEntry._ID + " INTEGER PRIMARY KEY AUTOINCREMENT, "
+            + InventoryContract.InventoryEntry.COLUMN_ITEM_NAME + " TEXT NOT NULL, "
+            + InventoryContract.InventoryEntry.COLUMN_ITEM_PRICE + " FLOAT NOT NULL, "
+            + InventoryContract.InventoryEntry.COLUMN_ITEM_QUANTITY + " INTEGER NOT NULL, "
+            + InventoryContract.InventoryEntry.COLUMN_ITEM_IMAGE + " TEXT, " // the name of the image
+            + InventoryContract.InventoryEntry.COLUMN_SUPPLIER_ID + " INTEGER NOT NULL REFERENCES "
+            + InventoryContract.SupplierEntry.TABLE_NAME + " (" + InventoryContract.SupplierEntry._ID + "));";
+
+    /**
+     * The items with their supplier's name, phone and mail, what the item queries read.
+     */
+    private static final String SQL_CREATE_DETAILS_VIEW = createDetailsView("");
+
+    /**
+     * From version 13 on the view has the reorder threshold and the change of the items too.
+     */
+    private static final String SQL_CREATE_DETAILS_VIEW_V13 = createDetailsView(
+            InventoryContract.InventoryEntry.COLUMN_REORDER_THRESHOLD + ", "
+                    + InventoryContract.InventoryEntry.COLUMN_CHANGED + ", ");
+
+    private static String createDetailsView(String itemColumns) {
+        return "CREATE VIEW "
+                + InventoryContract.InventoryEntry.DETAILS_VIEW_NAME + " AS SELECT "
+                + InventoryContract.InventoryEntry.TABLE_NAME + "." + InventoryContract.InventoryEntry._ID
+                + " AS " + InventoryContract.InventoryEntry._ID + ", "
+                + InventoryContract.InventoryEntry.COLUMN_ITEM_NAME + ", "
+                + InventoryContract.InventoryEntry.COLUMN_ITEM_PRICE + ", "
+                + InventoryContract.InventoryEntry.COLUMN_ITEM_QUANTITY + ", "
+                + InventoryContract.InventoryEntry.COLUMN_ITEM_IMAGE + ", "
+                + itemColumns
+                + InventoryContract.InventoryEntry.COLUMN_SUPPLIER_ID + ", "
+                + InventoryContract.SupplierEntry.COLUMN_SUPPLIER_NAME + ", "
+                + InventoryContract.SupplierEntry.COLUMN_SUPPLIER_PHONE + ", "
+                + InventoryContract.SupplierEntry.COLUMN_SUPPLIER_MAIL
+                + " FROM " + InventoryContract.InventoryEntry.TABLE_NAME
+                + " JOIN " + InventoryContract.SupplierEntry.TABLE_NAME + " ON "
+            + InventoryContract.SupplierEntry.TABLE_NAME + "." + InventoryContract.SupplierEntry._ID + " = "
+            + InventoryContract.InventoryEntry.TABLE_NAME + "." + InventoryContract.InventoryEntry.COLUMN_SUPPLIER_ID + ";";
+    }
+
+    /**
+     * From version 9 on the FTS table keeps its own copy of the text: the supplier columns are
+     * no longer in the items table, so it can't use it as external content.
+     */
+    private static final String SQL_CREATE_FTS_TABLE_V9 = "CREATE VIRTUAL TABLE "
+            + InventoryContract.InventoryEntry.FTS_TABLE_NAME + " USING fts4("
+            + FTS_COLUMNS + ", "
+            + "prefix=\"2,3\");";
+
+    /** The searchable text of the items whose supplier_id matches the given expression */
+    private static String selectFtsRows(String itemId, String itemName, String where) {
+        return "SELECT " + itemId + ", " + itemName + ", "
+                + InventoryContract.SupplierEntry.COLUMN_SUPPLIER_NAME + ", "
+                + InventoryContract.SupplierEntry.COLUMN_SUPPLIER_MAIL
+                + " FROM " + InventoryContract.SupplierEntry.TABLE_NAME + " WHERE " + where;
+    }
+
+    private static final String FTS_INSERT_NEW_V9 = "INSERT INTO " + InventoryContract.InventoryEntry.FTS_TABLE_NAME
+            + " (docid, " + FTS_COLUMNS + ") "
+            + selectFtsRows("new." + InventoryContract.InventoryEntry._ID,
+                    "new." + InventoryContract.InventoryEntry.COLUMN_ITEM_NAME,
+                    InventoryContract.SupplierEntry._ID + " = new." + InventoryContract.InventoryEntry.COLUMN_SUPPLIER_ID) + ";";
+
+    /**
+     * Triggers that keep the FTS table in sync with the items and their suppliers. Renaming a
+     * supplier or changing its mail reindexes its items.
+     */
+    private static final String[] SQL_CREATE_FTS_TRIGGERS_V9 = {
+            "CREATE TRIGGER items_fts_ai AFTER INSERT ON " + InventoryContract.InventoryEntry.TABLE_NAME
+                    + " BEGIN " + FTS_INSERT_NEW_V9 + " END;",
+            "CREATE TRIGGER items_fts_ad AFTER DELETE ON " + InventoryContract.InventoryEntry.TABLE_NAME
+                    + " BEGIN " + FTS_DELETE_OLD + " END;",
+            "CREATE TRIGGER items_fts_au AFTER UPDATE OF "
+                    + InventoryContract.InventoryEntry.COLUMN_ITEM_NAME + ", "
+                    + InventoryContract.InventoryEntry.COLUMN_SUPPLIER_ID
+                    + " ON " + InventoryContract.InventoryEntry.TABLE_NAME
+                    + " BEGIN " + FTS_DELETE_OLD + " " + FTS_INSERT_NEW_V9 + " END;",
+            "CREATE TRIGGER suppliers_fts_au AFTER UPDATE OF "
+                    + InventoryContract.SupplierEntry.COLUMN_SUPPLIER_NAME + ", "
+                    + InventoryContract.SupplierEntry.COLUMN_SUPPLIER_MAIL
+                    + " ON " + InventoryContract.SupplierEntry.TABLE_NAME
+                    + " BEGIN DELETE FROM " + InventoryContract.InventoryEntry.FTS_TABLE_NAME
+                    + " WHERE docid IN (SELECT " + InventoryContract.InventoryEntry._ID
+                    + " FROM " + InventoryContract.InventoryEntry.TABLE_NAME
+                    + " WHERE " + InventoryContract.InventoryEntry.COLUMN_SUPPLIER_ID + " = new." + InventoryContract.SupplierEntry._ID + ");"
+                    + " INSERT INTO " + InventoryContract.InventoryEntry.FTS_TABLE_NAME + " (docid, " + FTS_COLUMNS + ")"
+                    + " SELECT " + InventoryContract.InventoryEntry._ID + ", " + InventoryContract.InventoryEntry.COLUMN_ITEM_NAME
+                    + ", new." + InventoryContract.SupplierEntry.COLUMN_SUPPLIER_NAME
+                    + ", new." + InventoryContract.SupplierEntry.COLUMN_SUPPLIER_MAIL
+                    + " FROM " + InventoryContract.InventoryEntry.TABLE_NAME
+                    + " WHERE " + InventoryContract.InventoryEntry.COLUMN_SUPPLIER_ID + " = new." + InventoryContract.SupplierEntry._ID + ";"
+                    + " END;",
+    };
+
+    /**
+     * Price times quantity in cents, rounded. Cents keep {@link InventoryContract.InventoryEntry#COLUMN_STOCK_VALUE}
+     * an integer, so the sort key of a page survives its trip through the URI exactly.
+     */
+    private static String stockValue(String row) {
+        return "CAST(ROUND(" + row + InventoryContract.InventoryEntry.COLUMN_ITEM_PRICE + " * "
+                + row + InventoryContract.InventoryEntry.COLUMN_ITEM_QUANTITY + " * 100) AS INTEGER)";
+    }
+
+    private static final String SET_STOCK_VALUE = "UPDATE " + InventoryContract.InventoryEntry.TABLE_NAME
+            + " SET " + InventoryContract.InventoryEntry.COLUMN_STOCK_VALUE + " = " + stockValue("new.")
+            + " WHERE " + InventoryContract.InventoryEntry._ID + " = new." + InventoryContract.InventoryEntry._ID + ";";
+
+    /**
+     * Triggers that keep the stock value of the items current. SQLite before 3.9 (Android 7) has
+     * no indexes on expressions, so the value is stored to be indexed. Setting it doesn't fire
+     * the other triggers, they only watch the columns it is computed from.
+     */
+    private static final String[] SQL_CREATE_STOCK_VALUE_TRIGGERS = {
+            "CREATE TRIGGER items_value_ai AFTER INSERT ON " + InventoryContract.InventoryEntry.TABLE_NAME
+                    + " BEGIN " + SET_STOCK_VALUE + " END;",
+            "CREATE TRIGGER items_value_au AFTER UPDATE OF "
+                    + InventoryContract.InventoryEntry.COLUMN_ITEM_PRICE + ", "
+                    + InventoryContract.InventoryEntry.COLUMN_ITEM_QUANTITY
+                    + " ON " + InventoryContract.InventoryEntry.TABLE_NAME
+                    + " BEGIN " + SET_STOCK_VALUE + " END;",
+    };
+
+    /**
+     * Takes the next number of the change sequence and gives it to the new row, along with its
+     * stock value. The sequence is its own row so it never goes back, not even when the item
+     * with the last change is deleted.
+     */
+    private static final String SET_STOCK_VALUE_AND_CHANGE = "UPDATE "
+            + InventoryContract.InventoryEntry.CHANGES_TABLE_NAME + " SET "
+            + InventoryContract.InventoryEntry.COLUMN_CHANGED + " = " + InventoryContract.InventoryEntry.COLUMN_CHANGED + " + 1; "
+            + "UPDATE " + InventoryContract.InventoryEntry.TABLE_NAME + " SET "
+            + InventoryContract.InventoryEntry.COLUMN_STOCK_VALUE + " = " + stockValue("new.") + ", "
+            + InventoryContract.InventoryEntry.COLUMN_CHANGED + " = (SELECT " + InventoryContract.InventoryEntry.COLUMN_CHANGED
+            + " FROM " + InventoryContract.InventoryEntry.CHANGES_TABLE_NAME + ")"
+            + " WHERE " + InventoryContract.InventoryEntry._ID + " = new." + InventoryContract.InventoryEntry._ID + ";";
+
+    /**
+     * From version 13 on the stock value triggers also number the changes the reorder alerts
+     * look at, in the same statement, so a quantity change still updates its row only once more.
+     */
+    private static final String[] SQL_CREATE_STOCK_VALUE_TRIGGERS_V13 = {
+            "CREATE TRIGGER items_value_ai AFTER INSERT ON " + InventoryContract.InventoryEntry.TABLE_NAME
+                    + " BEGIN " + SET_STOCK_VALUE_AND_CHANGE + " END;",
+            "CREATE TRIGGER items_value_au AFTER UPDATE OF "
+                    + InventoryContract.InventoryEntry.COLUMN_ITEM_PRICE + ", "
+                    + InventoryContract.InventoryEntry.COLUMN_ITEM_QUANTITY + ", "
+                    + InventoryContract.InventoryEntry.COLUMN_REORDER_THRESHOLD
+                    + " ON " + InventoryContract.InventoryEntry.TABLE_NAME
+                    + " BEGIN " + SET_STOCK_VALUE_AND_CHANGE + " END;",
+    };
+
+    /**
+     * The current time in milliseconds since the epoch, in SQL. strftime('%s') only has seconds.
+     */
+    static final String SQL_NOW_MS = "CAST((julianday('now') - 2440587.5) * 86400000 AS INTEGER)";
+
+    private static String insertMovement(String itemId, String delta, String quantity) {
+        return "INSERT INTO " + InventoryContract.MovementEntry.TABLE_NAME + " ("
+                + InventoryContract.MovementEntry.COLUMN_ITEM_ID + ", "
+                + InventoryContract.MovementEntry.COLUMN_TIMESTAMP + ", "
+                + InventoryContract.MovementEntry.COLUMN_DELTA + ", "
+                + InventoryContract.MovementEntry.COLUMN_QUANTITY + ") VALUES ("
+                + itemId + ", " + SQL_NOW_MS + ", " + delta + ", " + quantity + ");";
+    }
+
+    /**
+     * Triggers that write a stock movement for every change of a quantity, inside the statement
+     * that changed it. Saving an item with its quantity unchanged writes none.
+     */
+    private static final String[] SQL_CREATE_MOVEMENT_TRIGGERS = {
+            "CREATE TRIGGER items_movements_ai AFTER INSERT ON " + InventoryContract.InventoryEntry.TABLE_NAME
+                    + " BEGIN " + insertMovement("new." + InventoryContract.InventoryEntry._ID,
+                    "new." + InventoryContract.InventoryEntry.COLUMN_ITEM_QUANTITY,
+                    "new." + InventoryContract.InventoryEntry.COLUMN_ITEM_QUANTITY) + " END;",
+            "CREATE TRIGGER items_movements_au AFTER UPDATE OF " + InventoryContract.InventoryEntry.COLUMN_ITEM_QUANTITY
+                    + " ON " + InventoryContract.InventoryEntry.TABLE_NAME
+                    + " WHEN new." + InventoryContract.InventoryEntry.COLUMN_ITEM_QUANTITY
+                    + " != old." + InventoryContract.InventoryEntry.COLUMN_ITEM_QUANTITY
+                    + " BEGIN " + insertMovement("new." + InventoryContract.InventoryEntry._ID,
+                    "new." + InventoryContract.InventoryEntry.COLUMN_ITEM_QUANTITY
+                            + " - old." + InventoryContract.InventoryEntry.COLUMN_ITEM_QUANTITY,
+                    "new." + InventoryContract.InventoryEntry.COLUMN_ITEM_QUANTITY) + " END;",
+            "CREATE TRIGGER items_movements_ad AFTER DELETE ON " + InventoryContract.InventoryEntry.TABLE_NAME
+                    + " BEGIN " + insertMovement("old." + InventoryContract.InventoryEntry._ID,
+                    "-old." + InventoryContract.InventoryEntry.COLUMN_ITEM_QUANTITY, "0") + " END;",
+            // The history is only ever appended to, and shortened by the compaction
+            "CREATE TRIGGER stock_movements_bu BEFORE UPDATE ON " + InventoryContract.MovementEntry.TABLE_NAME
+                    + " BEGIN SELECT RAISE(ABORT, 'stock movements are append-only'); END;",
+    };
+
+    /**
+     * One step of the schema. A migration brings a database from toVersion - 1 to toVersion
+     * and must keep the user's data. Steps only ever get appended to {@link #MIGRATIONS}.
+     */
+    abstract static class Migration {
+        final int toVersion;
+
+        Migration(int toVersion) {
+            this.toVersion = toVersion;
+        }
+
+        abstract void migrate(SQLiteDatabase db);
+    }
+
+    /**
+     * All migrations, ordered by version. The last one must be {@link #DATABASE_VERSION}.
+     */
+    static final Migration[] MIGRATIONS = {
+            // version 3 added the covering index of the main list
+            new Migration(3) {
+                @Override
+                void migrate(SQLiteDatabase db) {
+                    db.execSQL(SQL_CREATE_LIST_INDEX);
+                }
+            },
+            // version 4 added indexes for looking items up by name and by supplier
+            new Migration(4) {
+                @Override
+                void migrate(SQLiteDatabase db) {
+                    db.execSQL("CREATE INDEX IF NOT EXISTS items_name_idx ON "
+                            + InventoryContract.InventoryEntry.TABLE_NAME + " ("
+                            + InventoryContract.InventoryEntry.COLUMN_ITEM_NAME + ");");
+                    db.execSQL("CREATE INDEX IF NOT EXISTS items_supplier_name_idx ON "
+                            + InventoryContract.InventoryEntry.TABLE_NAME + " ("
+                            + InventoryContract.InventoryEntry.COLUMN_SUPPLIER_NAME + ");");
+                }
+            },
+            // version 5 added the full-text index over names and suppliers, kept in sync by triggers
+            new Migration(5) {
+                @Override
+                void migrate(SQLiteDatabase db) {
+                    db.execSQL(SQL_CREATE_FTS_TABLE);
+                    // Fill it with the items that are already there
+                    db.execSQL("INSERT INTO " + InventoryContract.InventoryEntry.FTS_TABLE_NAME
+                            + "(" + InventoryContract.InventoryEntry.FTS_TABLE_NAME + ") VALUES ('rebuild');");
+                    for (String trigger : SQL_CREATE_FTS_TRIGGERS) {
+                        db.execSQL(trigger);
+                    }
+                }
+            },
+            // version 6 added the image to the list, so the covering index needs it too
+            new Migration(6) {
+                @Override
+                void migrate(SQLiteDatabase db) {
+                    db.execSQL("DROP INDEX IF EXISTS items_list_idx;");
+                    db.execSQL("CREATE INDEX items_list_idx ON "
+                            + InventoryContract.InventoryEntry.TABLE_NAME + " ("
+                            + InventoryContract.InventoryEntry._ID + ", "
+                            + InventoryContract.InventoryEntry.COLUMN_ITEM_NAME + ", "
+                            + InventoryContract.InventoryEntry.COLUMN_ITEM_PRICE + ", "
+                            + InventoryContract.InventoryEntry.COLUMN_ITEM_QUANTITY + ", "
+                            + InventoryContract.InventoryEntry.COLUMN_ITEM_IMAGE + ");");
+                }
+            },
+            // version 7 added the statistics, the stock index answers them without reading the table
+            new Migration(7) {
+                @Override
+                void migrate(SQLiteDatabase db) {
+                    db.execSQL(SQL_CREATE_STOCK_INDEX);
+                }
+            },
+            // version 8 keeps the statistics in summary tables, so reading them doesn't scan the items
+            new Migration(8) {
+                @Override
+                void migrate(SQLiteDatabase db) {
+                    db.execSQL(SQL_CREATE_SUMMARY_TABLE);
+                    db.execSQL(createSupplierSummaryTable(InventoryContract.InventoryEntry.COLUMN_SUPPLIER_NAME + " TEXT"));
+                    db.execSQL(SQL_FILL_SUMMARY);
+                    db.execSQL(fillSupplierSummary(InventoryContract.InventoryEntry.COLUMN_SUPPLIER_NAME));
+                    for (String trigger : createSummaryTriggers(InventoryContract.InventoryEntry.COLUMN_SUPPLIER_NAME)) {
+                        db.execSQL(trigger);
+                    }
+                }
+            },
+            // version 9 moved the suppliers into their own table, items reference them by id
+            new Migration(9) {
+                @Override
+                void migrate(SQLiteDatabase db) {
+                    // One supplier per distinct name, phone and mail
+                    db.execSQL(SQL_CREATE_SUPPLIERS_TABLE);
+                    db.execSQL("INSERT INTO " + InventoryContract.SupplierEntry.TABLE_NAME + " ("
+                            + InventoryContract.SupplierEntry.COLUMN_SUPPLIER_NAME + ", "
+                            + InventoryContract.SupplierEntry.COLUMN_SUPPLIER_PHONE + ", "
+                            + InventoryContract.SupplierEntry.COLUMN_SUPPLIER_MAIL + ") SELECT DISTINCT "
+                            + InventoryContract.InventoryEntry.COLUMN_SUPPLIER_NAME + ", "
+                            + InventoryContract.InventoryEntry.COLUMN_SUPPLIER_PHONE + ", "
+                            + InventoryContract.InventoryEntry.COLUMN_SUPPLIER_MAIL + " FROM "
+                            + InventoryContract.InventoryEntry.TABLE_NAME + " ORDER BY "
+                            + InventoryContract.InventoryEntry.COLUMN_SUPPLIER_NAME + ";");
+
+                    // SQLite can't drop columns, so the items move to a new table. Dropping the
+                    // old one also drops its indexes and triggers, they are created again below.
+                    db.execSQL("DROP TABLE " + InventoryContract.InventoryEntry.FTS_TABLE_NAME + ";");
+                    db.execSQL(SQL_CREATE_NORMALIZED_ITEMS_TABLE);
+                    db.execSQL("INSERT INTO items_new SELECT "
+                            + InventoryContract.InventoryEntry.TABLE_NAME + "." + InventoryContract.InventoryEntry._ID + ", "
+                            + InventoryContract.InventoryEntry.COLUMN_ITEM_NAME + ", "
+                            + InventoryContract.InventoryEntry.COLUMN_ITEM_PRICE + ", "
+                            + InventoryContract.InventoryEntry.COLUMN_ITEM_QUANTITY + ", "
+                            + InventoryContract.InventoryEntry.COLUMN_ITEM_IMAGE + ", "
+                            + InventoryContract.SupplierEntry.TABLE_NAME + "." + InventoryContract.SupplierEntry._ID
+                            + " FROM " + InventoryContract.InventoryEntry.TABLE_NAME
+                            + " JOIN " + InventoryContract.SupplierEntry.TABLE_NAME + " USING ("
+                            + InventoryContract.InventoryEntry.COLUMN_SUPPLIER_NAME + ", "
+                            + InventoryContract.InventoryEntry.COLUMN_SUPPLIER_PHONE + ", "
+                            + InventoryContract.InventoryEntry.COLUMN_SUPPLIER_MAIL + ");");
+                    // Keep AUTOINCREMENT from handing out the ids of deleted items again
+                    db.execSQL("UPDATE sqlite_sequence SET seq = (SELECT seq FROM sqlite_sequence WHERE name = '"
+                            + InventoryContract.InventoryEntry.TABLE_NAME + "') WHERE name = 'items_new';");
+                    db.execSQL("DROP TABLE " + InventoryContract.InventoryEntry.TABLE_NAME + ";");
+                    db.execSQL("ALTER TABLE items_new RENAME TO " + InventoryContract.InventoryEntry.TABLE_NAME + ";");
+
+                    db.execSQL("CREATE INDEX items_list_idx ON "
+                            + InventoryContract.InventoryEntry.TABLE_NAME + " ("
+                            + InventoryContract.InventoryEntry._ID + ", "
+                            + InventoryContract.InventoryEntry.COLUMN_ITEM_NAME + ", "
+                            + InventoryContract.InventoryEntry.COLUMN_ITEM_PRICE + ", "
+                            + InventoryContract.InventoryEntry.COLUMN_ITEM_QUANTITY + ", "
+                            + InventoryContract.InventoryEntry.COLUMN_ITEM_IMAGE + ");");
+                    db.execSQL("CREATE INDEX items_name_idx ON "
+                            + InventoryContract.InventoryEntry.TABLE_NAME + " ("
+                            + InventoryContract.InventoryEntry.COLUMN_ITEM_NAME + ");");
+                    db.execSQL("CREATE INDEX items_supplier_idx ON "
+                            + InventoryContract.InventoryEntry.TABLE_NAME + " ("
+                            + InventoryContract.InventoryEntry.COLUMN_SUPPLIER_ID + ");");
+                    db.execSQL(SQL_CREATE_STOCK_INDEX);
+                    db.execSQL(SQL_CREATE_DETAILS_VIEW);
+
+                    db.execSQL(SQL_CREATE_FTS_TABLE_V9);
+                    db.execSQL("INSERT INTO " + InventoryContract.InventoryEntry.FTS_TABLE_NAME
+                            + " (docid, " + FTS_COLUMNS + ") SELECT "
+                            + InventoryContract.InventoryEntry._ID + ", "
+                            + InventoryContract.InventoryEntry.COLUMN_ITEM_NAME + ", "
+                            + InventoryContract.SupplierEntry.COLUMN_SUPPLIER_NAME + ", "
+                            + InventoryContract.SupplierEntry.COLUMN_SUPPLIER_MAIL
+                            + " FROM " + InventoryContract.InventoryEntry.DETAILS_VIEW_NAME + ";");
+                    for (String trigger : SQL_CREATE_FTS_TRIGGERS_V9) {
+                        db.execSQL(trigger);
+                    }
+
+                    // The totals didn't change, but the supplier totals are now kept per supplier id
+                    db.execSQL("DROP TABLE " + InventoryContract.StatsEntry.SUPPLIER_SUMMARY_TABLE_NAME + ";");
+                    db.execSQL(createSupplierSummaryTable(InventoryContract.InventoryEntry.COLUMN_SUPPLIER_ID + " INTEGER"));
+                    db.execSQL(fillSupplierSummary(InventoryContract.InventoryEntry.COLUMN_SUPPLIER_ID));
+                    for (String trigger : createSummaryTriggers(InventoryContract.InventoryEntry.COLUMN_SUPPLIER_ID)) {
+                        db.execSQL(trigger);
+                    }
+                }
+            },
+            // version 10 added the checkpoints of unfinished imports
+            new Migration(10) {
+                @Override
+                void migrate(SQLiteDatabase db) {
+                    db.execSQL("CREATE TABLE " + InventoryContract.ImportEntry.TABLE_NAME + " ("
+                            + InventoryContract.ImportEntry._ID + " INTEGER PRIMARY KEY, "
+                            + InventoryContract.ImportEntry.COLUMN_SOURCE + " TEXT NOT NULL UNIQUE, "
+                            + InventoryContract.ImportEntry.COLUMN_POSITION + " INTEGER NOT NULL, "
+                            + InventoryContract.ImportEntry.COLUMN_IMPORTED + " INTEGER NOT NULL, "
+                            + InventoryContract.ImportEntry.COLUMN_FAILED + " INTEGER NOT NULL, "
+                            + InventoryContract.ImportEntry.COLUMN_UPDATED + " INTEGER NOT NULL);");
+                }
+            },
+            // version 11 added the sorted lists, each order has a covering index that starts with
+            // its sort key and the _id, so a page is a range of the index in the list's order
+            new Migration(11) {
+                @Override
+                void migrate(SQLiteDatabase db) {
+                    db.execSQL("ALTER TABLE " + InventoryContract.InventoryEntry.TABLE_NAME + " ADD COLUMN "
+                            + InventoryContract.InventoryEntry.COLUMN_STOCK_VALUE + " INTEGER NOT NULL DEFAULT 0;");
+                    db.execSQL("UPDATE " + InventoryContract.InventoryEntry.TABLE_NAME + " SET "
+                            + InventoryContract.InventoryEntry.COLUMN_STOCK_VALUE + " = " + stockValue("") + ";");
+                    for (String trigger : SQL_CREATE_STOCK_VALUE_TRIGGERS) {
+                        db.execSQL(trigger);
+                    }
+                    // The stock index has the price after the quantity, so its rows of one
+                    // quantity aren't in _id order
+                    db.execSQL("CREATE INDEX items_low_stock_idx ON "
+                            + InventoryContract.InventoryEntry.TABLE_NAME + " ("
+                            + InventoryContract.InventoryEntry.COLUMN_ITEM_QUANTITY + ", "
+                            + InventoryContract.InventoryEntry._ID + ", "
+                            + InventoryContract.InventoryEntry.COLUMN_ITEM_NAME + ", "
+                            + InventoryContract.InventoryEntry.COLUMN_ITEM_PRICE + ", "
+                            + InventoryContract.InventoryEntry.COLUMN_ITEM_IMAGE + ");");
+                    // Read backwards for the highest value first
+                    db.execSQL("CREATE INDEX items_value_idx ON "
+                            + InventoryContract.InventoryEntry.TABLE_NAME + " ("
+                            + InventoryContract.InventoryEntry.COLUMN_STOCK_VALUE + ", "
+                            + InventoryContract.InventoryEntry._ID + ", "
+                            + InventoryContract.InventoryEntry.COLUMN_ITEM_NAME + ", "
+                            + InventoryContract.InventoryEntry.COLUMN_ITEM_PRICE + ", "
+                            + InventoryContract.InventoryEntry.COLUMN_ITEM_QUANTITY + ", "
+                            + InventoryContract.InventoryEntry.COLUMN_ITEM_IMAGE + ");");
+                    // The supplier filter uses items_supplier_idx of version 9, its rows of one
+                    // supplier are in _id order already
+                }
+            },
+            // version 12 added the stock movements and their daily totals
+            new Migration(12) {
+                @Override
+                void migrate(SQLiteDatabase db) {
+                    // No AUTOINCREMENT, the rowids only need to grow while the rows are there
+                    db.execSQL("CREATE TABLE " + InventoryContract.MovementEntry.TABLE_NAME + " ("
+                            + InventoryContract.MovementEntry._ID + " INTEGER PRIMARY KEY, "
+                            + InventoryContract.MovementEntry.COLUMN_ITEM_ID + " INTEGER NOT NULL, "
+                            + InventoryContract.MovementEntry.COLUMN_TIMESTAMP + " INTEGER NOT NULL, "
+                            + InventoryContract.MovementEntry.COLUMN_DELTA + " INTEGER NOT NULL, "
+                            + InventoryContract.MovementEntry.COLUMN_QUANTITY + " INTEGER NOT NULL);");
+                    // The history of an item is a range of it, newest last
+                    db.execSQL("CREATE INDEX stock_movements_item_idx ON "
+                            + InventoryContract.MovementEntry.TABLE_NAME + " ("
+                            + InventoryContract.MovementEntry.COLUMN_ITEM_ID + ", "
+                            + InventoryContract.MovementEntry.COLUMN_TIMESTAMP + ");");
+                    db.execSQL("CREATE TABLE " + InventoryContract.MovementEntry.DAILY_TABLE_NAME + " ("
+                            + InventoryContract.MovementEntry.COLUMN_ITEM_ID + " INTEGER NOT NULL, "
+                            + InventoryContract.MovementEntry.COLUMN_DAY + " INTEGER NOT NULL, "
+                            + InventoryContract.MovementEntry.COLUMN_RECEIVED + " INTEGER NOT NULL, "
+                            + InventoryContract.MovementEntry.COLUMN_REMOVED + " INTEGER NOT NULL, "
+                            + InventoryContract.MovementEntry.COLUMN_MOVEMENTS + " INTEGER NOT NULL, "
+                            + InventoryContract.MovementEntry.COLUMN_QUANTITY + " INTEGER NOT NULL, "
+                            + "PRIMARY KEY (" + InventoryContract.MovementEntry.COLUMN_ITEM_ID + ", "
+                            + InventoryContract.MovementEntry.COLUMN_DAY + "));");
+                    // The items that are already there start with what they have now
+                    db.execSQL("INSERT INTO " + InventoryContract.MovementEntry.TABLE_NAME + " ("
+                            + InventoryContract.MovementEntry.COLUMN_ITEM_ID + ", "
+                            + InventoryContract.MovementEntry.COLUMN_TIMESTAMP + ", "
+                            + InventoryContract.MovementEntry.COLUMN_DELTA + ", "
+                            + InventoryContract.MovementEntry.COLUMN_QUANTITY + ") SELECT "
+                            + InventoryContract.InventoryEntry._ID + ", " + SQL_NOW_MS + ", "
+                            + InventoryContract.InventoryEntry.COLUMN_ITEM_QUANTITY + ", "
+                            + InventoryContract.InventoryEntry.COLUMN_ITEM_QUANTITY
+                            + " FROM " + InventoryContract.InventoryEntry.TABLE_NAME + ";");
+                    for (String trigger : SQL_CREATE_MOVEMENT_TRIGGERS) {
+                        db.execSQL(trigger);
+                    }
+                }
+            },
+            // version 13 added the reorder thresholds and the change sequence the reorder alerts
+            // read from where they stopped
+            new Migration(13) {
+                @Override
+                void migrate(SQLiteDatabase db) {
+                    db.execSQL("ALTER TABLE " + InventoryContract.InventoryEntry.TABLE_NAME + " ADD COLUMN "
+                            + InventoryContract.InventoryEntry.COLUMN_REORDER_THRESHOLD + " INTEGER NOT NULL DEFAULT "
+                            + InventoryContract.InventoryEntry.DEFAULT_REORDER_THRESHOLD + ";");
+                    db.execSQL("ALTER TABLE " + InventoryContract.InventoryEntry.TABLE_NAME + " ADD COLUMN "
+                            + InventoryContract.InventoryEntry.COLUMN_CHANGED + " INTEGER NOT NULL DEFAULT 0;");
+                    // The items that are already there count as changed once, so the first
+                    // check looks at all of them
+                    db.execSQL("UPDATE " + InventoryContract.InventoryEntry.TABLE_NAME + " SET "
+                            + InventoryContract.InventoryEntry.COLUMN_CHANGED + " = " + InventoryContract.InventoryEntry._ID + ";");
+                    db.execSQL("CREATE TABLE " + InventoryContract.InventoryEntry.CHANGES_TABLE_NAME + " ("
+                            + InventoryContract.InventoryEntry.COLUMN_CHANGED + " INTEGER NOT NULL);");
+                    db.execSQL("INSERT INTO " + InventoryContract.InventoryEntry.CHANGES_TABLE_NAME
+                            + " SELECT IFNULL(MAX(" + InventoryContract.InventoryEntry.COLUMN_CHANGED + "), 0) FROM "
+                            + InventoryContract.InventoryEntry.TABLE_NAME + ";");
+                    // The changes after a given one are a range of it
+                    db.execSQL("CREATE INDEX items_changed_idx ON "
+                            + InventoryContract.InventoryEntry.TABLE_NAME + " ("
+                            + InventoryContract.InventoryEntry.COLUMN_CHANGED + ");");
+                    db.execSQL("DROP TRIGGER items_value_ai;");
+                    db.execSQL("DROP TRIGGER items_value_au;");
+                    for (String trigger : SQL_CREATE_STOCK_VALUE_TRIGGERS_V13) {
+                        db.execSQL(trigger);
+                    }
+                    db.execSQL("DROP VIEW " + InventoryContract.InventoryEntry.DETAILS_VIEW_NAME + ";");
+                    db.execSQL(SQL_CREATE_DETAILS_VIEW_V13);
+                }
+            },
+            // version 14 dropped the covering index of the main list: it starts with _id, which
+            // the table is already ordered by, and copies most of the row, so it barely sped up
+            // the list but doubled the cost of every write
+            new Migration(14) {
+                @Override
+                void migrate(SQLiteDatabase db) {
+                    db.execSQL("DROP INDEX IF EXISTS items_list_idx;");
+                }
+            },
+            // version 15 added the sorted lists of one supplier: the sort indexes of version 11
+            // with the supplier in front, so a page is a range of the supplier's part of them.
+            // The supplier filter in _id order keeps using items_supplier_idx
+            new Migration(15) {
+                @Override
+                void migrate(SQLiteDatabase db) {
+                    db.execSQL("CREATE INDEX items_supplier_low_stock_idx ON "
+                            + InventoryContract.InventoryEntry.TABLE_NAME + " ("
+                            + InventoryContract.InventoryEntry.COLUMN_SUPPLIER_ID + ", "
+                            + InventoryContract.InventoryEntry.COLUMN_ITEM_QUANTITY + ", "
+                            + InventoryContract.InventoryEntry._ID + ", "
+                            + InventoryContract.InventoryEntry.COLUMN_ITEM_NAME + ", "
+                            + InventoryContract.InventoryEntry.COLUMN_ITEM_PRICE + ", "
+                            + InventoryContract.InventoryEntry.COLUMN_ITEM_IMAGE + ");");
+                    db.execSQL("CREATE INDEX items_supplier_value_idx ON "
+                            + InventoryContract.InventoryEntry.TABLE_NAME + " ("
+                            + InventoryContract.InventoryEntry.COLUMN_SUPPLIER_ID + ", "
+                            + InventoryContract.InventoryEntry.COLUMN_STOCK_VALUE + ", "
+                            + InventoryContract.InventoryEntry._ID + ", "
+                            + InventoryContract.InventoryEntry.COLUMN_ITEM_NAME + ", "
+                            + InventoryContract.InventoryEntry.COLUMN_ITEM_PRICE + ", "
+                            + InventoryContract.InventoryEntry.COLUMN_ITEM_QUANTITY + ", "
+                            + InventoryContract.InventoryEntry.COLUMN_ITEM_IMAGE + ");");
+                }
+            },
+    };
+
     InventoryDbHelper(Context context) {
-        super(context, DATABASE_NAME, null, DATABASE_VERSION);
+        this(context, DATABASE_NAME);
+    }
+
+    /**
+     * Open the database with the given file name, tests use it to stay away from items.db.
+     */
+    InventoryDbHelper(Context context, String name) {
+        super(context, name, null, DATABASE_VERSION);
+    }
+
+    /**
+     * Runs when the database is opened, before it is created or upgraded.
+     * With write-ahead logging the loaders' reads no longer block the quantity writes.
+     * <p>
+     * The PRAGMAs below reach only the primary connection, the one onConfigure runs on. That is
+     * the connection every write goes through, so synchronous covers all commits. The read-only
+     * connections WAL opens for the loaders keep SQLite's default cache of about 2 MB.
+     */
+    @Override
+    public void onConfigure(SQLiteDatabase db) {
+        super.onConfigure(db);
+        // Items can't point to a supplier that doesn't exist
+        db.setForeignKeyConstraintsEnabled(true);
+        db.enableWriteAheadLogging();
+        db.execSQL("PRAGMA cache_size = -" + CACHE_SIZE_KIB);
+        // In WAL mode NORMAL is still safe against corruption and saves an fsync per commit
+        db.execSQL("PRAGMA synchronous = NORMAL");
     }
 
     @Override
@@ -25,10 +782,26 @@ public class InventoryDbHelper extends SQLiteOpenHelper {
                 + InventoryContract.InventoryEntry.COLUMN_SUPPLIER_PHONE+ " TEXT NOT NULL, "
                 + InventoryContract.InventoryEntry.COLUMN_SUPPLIER_MAIL + " TEXT NOT NULL);";
         sqLiteDatabase.execSQL(SQL_CREATE_STOCK_TABLE);
+        // A new database goes through the same steps as an upgraded one
+        migrate(sqLiteDatabase, BASE_VERSION, DATABASE_VERSION);
     }
 
     @Override
-    public void onUpgrade(SQLiteDatabase sqLiteDatabase, int i, int i1) {
-        // still version one, so nothing to be done here
+    public void onUpgrade(SQLiteDatabase sqLiteDatabase, int oldVersion, int newVersion) {
+        migrate(sqLiteDatabase, oldVersion, newVersion);
+    }
+
+    /**
+     * Run every migration after oldVersion up to and including newVersion, in order.
+     * SQLiteOpenHelper already wraps this in a transaction, so a failing step leaves
+     * the database at oldVersion.
+     */
+    static void migrate(SQLiteDatabase db, int oldVersion, int newVersion) {
+        for (Migration migration : MIGRATIONS) {
+            if (migration.toVersion > oldVersion && migration.toVersion <= newVersion) {
+                Log.i(InventoryDbHelper.class.getName(), "Migrating database to version " + migration.toVersion);
+                migration.migrate(db);
+            }
+        }
     }
 }
@@ -0,0 +1,345 @@
+package com.example.siamsot.appinventoryv1;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Bundle;
+import android.util.JsonReader;
+import android.util.JsonToken;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Imports items from a CSV file (with a header row, as {@link InventoryCsvExporter} writes it) or
+ * a JSON array of objects, both keyed by the column names of
+ * {@link InventoryContract.InventoryEntry}. The file is parsed as a stream, one record at a time.
+ * <p>
+ * Every record is checked with the same rules as {@link InventoryProvider#insert}. Records that
+ * fail are reported to the {@link Listener} and skipped, the others are inserted in batches, each
+ * batch in one transaction together with a checkpoint of how far the import got. After a crash,
+ * importing the same source again continues after the last committed batch.
+ */
+final class InventoryImporter {
+
+    /** Records per transaction, large enough that the commits don't dominate */
+    static final int DEFAULT_BATCH_SIZE = 500;
+
+    /** Read buffer, the parsers read one char at a time */
+    private static final int BUFFER_CHARS = 64 * 1024;
+
+    /**
+     * The columns taken from a record, everything else (like the _id of an export) is ignored.
+     */
+    private static final Set<String> IMPORTED_COLUMNS = new HashSet<>(Arrays.asList(
+            InventoryContract.InventoryEntry.COLUMN_ITEM_NAME,
+            InventoryContract.InventoryEntry.COLUMN_ITEM_PRICE,
+            InventoryContract.InventoryEntry.COLUMN_ITEM_QUANTITY,
+            InventoryContract.InventoryEntry.COLUMN_SUPPLIER_NAME,
+            InventoryContract.InventoryEntry.COLUMN_SUPPLIER_PHONE,
+            InventoryContract.InventoryEntry.COLUMN_SUPPLIER_MAIL,
+            InventoryContract.InventoryEntry.COLUMN_REORDER_THRESHOLD));
+
+    /** Sources being imported right now, a second import of one of them would insert its items twice */
+    private static final Set<String> sRunning = new HashSet<>();
+
+    enum Format {
+        CSV, JSON;
+
+        /**
+         * The format of the file behind the URI, by its MIME type or else its name. CSV unless
+         * it looks like JSON.
+         */
+        static Format of(ContentResolver resolver, Uri uri) {
+            String type = resolver.getType(uri);
+            if (type != null && type.contains("json")) {
+                return JSON;
+            }
+            String path = uri.getPath();
+            return path != null && path.endsWith(".json") ? JSON : CSV;
+        }
+    }
+
+    /**
+     * Hears about the import as it goes, on the importing thread.
+     */
+    interface Listener {
+        /**
+         * A batch was committed.
+         *
+         * @param position number of records read so far
+         * @param imported number of items inserted so far
+         * @param failed   number of records skipped so far
+         */
+        void onProgress(long position, long imported, long failed);
+
+        /**
+         * The record with the given number (from 1, the CSV header not counted) was skipped.
+         */
+        void onRecordFailed(long record, String message);
+    }
+
+    /**
+     * Counts of a finished import, including what was imported before a crash.
+     */
+    static final class Result {
+        final long records;
+        final long imported;
+        final long failed;
+
+        Result(long records, long imported, long failed) {
+            this.records = records;
+            this.imported = imported;
+            this.failed = failed;
+        }
+    }
+
+    private final ContentResolver mResolver;
+    private final int mBatchSize;
+
+    InventoryImporter(ContentResolver resolver) {
+        this(resolver, DEFAULT_BATCH_SIZE);
+    }
+
+    InventoryImporter(ContentResolver resolver, int batchSize) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Batch size must be greater than 0");
+        }
+        mResolver = resolver;
+        mBatchSize = batchSize;
+    }
+
+    /**
+     * The sources of the imports that didn't finish.
+     */
+    List<String> unfinishedSources() {
+        List<String> sources = new ArrayList<>();
+        Cursor cursor = mResolver.query(InventoryContract.ImportEntry.CONTENT_URI,
+                new String[]{InventoryContract.ImportEntry.COLUMN_SOURCE}, null, null, null);
+        if (cursor == null) {
+            return sources;
+        }
+        try {
+            while (cursor.moveToNext()) {
+                sources.add(cursor.getString(0));
+            }
+        } finally {
+            cursor.close();
+        }
+        return sources;
+    }
+
+    /**
+     * Import the file behind the URI, or continue its import if one didn't finish.
+     * Does disk and database work, so don't call it on the main thread.
+     *
+     * @return the counts, or null if the file is already being imported
+     */
+    Result importFrom(Uri source, Format format, Listener listener) throws IOException {
+        InputStream in = mResolver.openInputStream(source);
+        if (in == null) {
+            throw new IOException("Can't open " + source);
+        }
+        try {
+            return importFrom(source.toString(),
+                    new BufferedReader(new InputStreamReader(in, Charset.forName("UTF-8")), BUFFER_CHARS),
+                    format, listener);
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Import the records read from in under the given source name. Records already committed
+     * by an earlier import of the same source are skipped.
+     *
+     * @return the counts, or null if the source is already being imported
+     */
+    Result importFrom(String source, Reader in, Format format, Listener listener) throws IOException {
+        synchronized (sRunning) {
+            if (!sRunning.add(source)) {
+                return null;
+            }
+        }
+        try {
+            return importRecords(source, in, format, listener);
+        } finally {
+            synchronized (sRunning) {
+                sRunning.remove(source);
+            }
+        }
+    }
+
+    private Result importRecords(String source, Reader in, Format format, Listener listener) throws IOException {
+        long[] checkpoint = readCheckpoint(source);
+        long position = 0;
+        long imported = checkpoint[1];
+        long failed = checkpoint[2];
+
+        RecordReader records = format == Format.JSON ? new JsonRecordReader(in) : new CsvRecordReader(in);
+        // Parsed again but not validated or inserted, they are already in
+        while (position < checkpoint[0] && records.next() != null) {
+            position++;
+        }
+
+        List<ContentValues> batch = new ArrayList<>(mBatchSize);
+        ContentValues values;
+        while ((values = records.next()) != null) {
+            position++;
+            try {
+                InventoryProvider.validateItem(values);
+                batch.add(values);
+            } catch (IllegalArgumentException e) {
+                failed++;
+                listener.onRecordFailed(position, e.getMessage());
+            }
+            if (batch.size() == mBatchSize) {
+                imported += commit(source, batch, position, failed);
+                listener.onProgress(position, imported, failed);
+            }
+        }
+        if (!batch.isEmpty()) {
+            imported += commit(source, batch, position, failed);
+            listener.onProgress(position, imported, failed);
+        }
+        // Done, a new import of the same source starts over
+        mResolver.delete(InventoryContract.ImportEntry.CONTENT_URI,
+                InventoryContract.ImportEntry.COLUMN_SOURCE + "=?", new String[]{source});
+        return new Result(position, imported, failed);
+    }
+
+    /**
+     * Insert the batch and record the position in one transaction, then clear the batch.
+     */
+    private int commit(String source, List<ContentValues> batch, long position, long failed) {
+        Bundle extras = new Bundle();
+        extras.putParcelableArray(InventoryContract.EXTRA_ITEMS, batch.toArray(new ContentValues[batch.size()]));
+        extras.putLong(InventoryContract.EXTRA_POSITION, position);
+        extras.putLong(InventoryContract.EXTRA_FAILED, failed);
+        Bundle result = mResolver.call(InventoryContract.InventoryEntry.CONTENT_URI,
+                InventoryContract.METHOD_IMPORT_BATCH, source, extras);
+        batch.clear();
+        return result == null ? 0 : result.getInt(InventoryContract.EXTRA_INSERTED);
+    }
+
+    /**
+     * Position, imported and failed count of the unfinished import of the source, all 0 if there is none.
+     */
+    private long[] readCheckpoint(String source) {
+        long[] checkpoint = new long[3];
+        Cursor cursor = mResolver.query(InventoryContract.ImportEntry.CONTENT_URI, new String[]{
+                        InventoryContract.ImportEntry.COLUMN_POSITION,
+                        InventoryContract.ImportEntry.COLUMN_IMPORTED,
+                        InventoryContract.ImportEntry.COLUMN_FAILED},
+                InventoryContract.ImportEntry.COLUMN_SOURCE + "=?", new String[]{source}, null);
+        if (cursor == null) {
+            return checkpoint;
+        }
+        try {
+            if (cursor.moveToFirst()) {
+                for (int i = 0; i < checkpoint.length; i++) {
+                    checkpoint[i] = cursor.getLong(i);
+                }
+            }
+        } finally {
+            cursor.close();
+        }
+        return checkpoint;
+    }
+
+    /**
+     * One record after the other, as the values to insert.
+     */
+    private interface RecordReader {
+        /** The next record, or null at the end */
+        ContentValues next() throws IOException;
+    }
+
+    private static final class CsvRecordReader implements RecordReader {
+        private final CsvReader mCsv;
+        private String[] mHeader;
+
+        CsvRecordReader(Reader in) {
+            mCsv = new CsvReader(in);
+        }
+
+        @Override
+        public ContentValues next() throws IOException {
+            if (mHeader == null) {
+                mHeader = mCsv.readRecord();
+                if (mHeader == null) {
+                    return null;
+                }
+            }
+            String[] fields = mCsv.readRecord();
+            if (fields == null) {
+                return null;
+            }
+            ContentValues values = new ContentValues();
+            // Missing fields stay missing, validation reports them
+            for (int i = 0; i < fields.length && i < mHeader.length; i++) {
+                if (IMPORTED_COLUMNS.contains(mHeader[i])) {
+                    values.put(mHeader[i], fields[i]);
+                }
+            }
+            return values;
+        }
+    }
+
+    private static final class JsonRecordReader implements RecordReader {
+        private final JsonReader mJson;
+        private boolean mStarted;
+
+        JsonRecordReader(Reader in) {
+            mJson = new JsonReader(in);
+        }
+
+        @Override
+        public ContentValues next() throws IOException {
+            try {
+                if (!mStarted) {
+                    mJson.beginArray();
+                    mStarted = true;
+                }
+                if (!mJson.hasNext()) {
+                    return null;
+                }
+                ContentValues values = new ContentValues();
+                if (mJson.peek() != JsonToken.BEGIN_OBJECT) {
+                    // Not an item, it fails validation as an empty one
+                    mJson.skipValue();
+                    return values;
+                }
+                mJson.beginObject();
+                while (mJson.hasNext()) {
+                    String name = mJson.nextName();
+                    JsonToken token = mJson.peek();
+                    if (!IMPORTED_COLUMNS.contains(name)) {
+                        mJson.skipValue();
+                    } else if (token == JsonToken.STRING || token == JsonToken.NUMBER) {
+                        // Numbers as written, the provider parses them like the CSV fields
+                        values.put(name, mJson.nextString());
+                    } else {
+                        // null, or an array or object where a value belongs
+                        mJson.skipValue();
+                    }
+                }
+                mJson.endObject();
+                return values;
+            } catch (IllegalStateException e) {
+                // The JSON isn't an array of objects
+                throw new IOException(e.getMessage());
+            }
+        }
+    }
+}
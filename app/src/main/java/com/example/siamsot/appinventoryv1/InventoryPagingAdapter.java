@@ -0,0 +1,678 @@
+package com.example.siamsot.appinventoryv1;
+
+import android.content.ContentUris;
+import android.content.Context;
+import android.database.ContentObserver;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.AsyncTask;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.v7.widget.RecyclerView;
+import android.text.TextUtils;
+import android.util.Log;
+import android.util.SparseBooleanArray;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.Button;
+import android.widget.ImageView;
+import android.widget.TextView;
+import android.widget.Toast;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * RecyclerView adapter for the list of items that reads the items table one page at a time
+ * (keyset pagination on _id, or on the sort key and _id of a sorted list) instead of keeping
+ * a cursor over the whole table.
+ * Pages are fetched in the background as the list scrolls and only a few of them
+ * are kept in memory, so memory stays flat no matter how large the table gets.
+ * <p>
+ * Binding a row allocates nothing: the views are looked up once per {@link ItemViewHolder},
+ * the texts are prepared when the page is loaded and all rows share one click handler.
+ */
+public class InventoryPagingAdapter extends RecyclerView.Adapter<InventoryPagingAdapter.ItemViewHolder> {
+
+    /**
+     * Called when the user taps an item row.
+     */
+    interface OnItemClickListener {
+        void onItemClick(long id);
+    }
+
+    private static final String LOG = "InventoryPagingAdapter";
+
+    /** Number of rows fetched with one query */
+    static final int PAGE_SIZE = 50;
+
+    /** Number of pages kept in memory, the least recently shown page is dropped first */
+    private static final int MAX_CACHED_PAGES = 6;
+
+    private final Context mContext;
+
+    private final OnItemClickListener mItemClickListener;
+
+    /** Loads the thumbnails of the rows */
+    private final ImageLoader mImageLoader;
+
+    /** Size of the thumbnail view in pixels, the photos are decoded no larger than this */
+    private final int mThumbnailSize;
+
+    /** Where every page we know about starts, the first page starts after _id 0 */
+    private final ArrayList<PageKey> mPageKeys = new ArrayList<>();
+
+    /** Pages in memory, in access order */
+    private final LinkedHashMap<Integer, Page> mPages =
+            new LinkedHashMap<Integer, Page>(MAX_CACHED_PAGES + 1, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Integer, Page> eldest) {
+                    return size() > MAX_CACHED_PAGES;
+                }
+            };
+
+    /** Pages that are being fetched right now */
+    private final SparseBooleanArray mLoading = new SparseBooleanArray();
+
+    /** Number of rows in the pages seen so far */
+    private int mCount;
+
+    /** False once a page came back shorter than {@link #PAGE_SIZE} */
+    private boolean mHasMore = true;
+
+    /** Text typed in the search box, null shows all items */
+    private String mSearch;
+
+    /** One of the SORT_ values of {@link InventoryContract}, null for _id order */
+    private String mSort;
+
+    /** The supplier whose items are shown, -1 for all of them */
+    private long mSupplierId = -1;
+
+    /** Bumped on every change, so results of loads started before the change are thrown away */
+    private int mGeneration;
+
+    /**
+     * Listens for changes of the items table. A change of a single item (items/#) in the list in
+     * _id order only re-fetches that row, anything else reloads the pages, see {@link #invalidate()}.
+     */
+    private final ContentObserver mObserver = new ContentObserver(new Handler(Looper.getMainLooper())) {
+        @Override
+        public void onChange(boolean selfChange) {
+            invalidate();
+        }
+
+        @Override
+        public void onChange(boolean selfChange, Uri uri) {
+            if (uri == null || mSearch != null || mSort != null || mSupplierId != -1 || !isItemUri(uri)) {
+                // The item may have stopped (or started) matching the search or the supplier,
+                // or moved in the sorted list, reload the pages on screen
+                invalidate();
+                return;
+            }
+            new RowLoader(ContentUris.parseId(uri), mGeneration).executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
+        }
+    };
+
+    /**
+     * Constructs a new {@link InventoryPagingAdapter}. Call {@link #start()} to load the first page.
+     *
+     * @param context The context
+     * @param itemClickListener Called with the item's id when a row is tapped
+     */
+    public InventoryPagingAdapter(Context context, OnItemClickListener itemClickListener) {
+        mContext = context;
+        mItemClickListener = itemClickListener;
+        mImageLoader = ImageLoader.getInstance(context);
+        mThumbnailSize = context.getResources().getDimensionPixelSize(R.dimen.list_thumbnail_size);
+        mPageKeys.add(PageKey.FIRST);
+    }
+
+    /**
+     * Start listening for changes and load the first page.
+     */
+    public void start() {
+        mContext.getContentResolver().registerContentObserver(
+                InventoryContract.InventoryEntry.CONTENT_URI, true, mObserver);
+        loadPage(0);
+    }
+
+    /**
+     * Stop listening for changes and drop all pages.
+     */
+    public void stop() {
+        mContext.getContentResolver().unregisterContentObserver(mObserver);
+        mGeneration++;
+        mPages.clear();
+        mLoading.clear();
+    }
+
+    /**
+     * Show only the items matching the search text, or all of them if it is null or empty.
+     * The pages are fetched again from the full-text search URI.
+     */
+    public void setSearch(String search) {
+        if (search != null && search.trim().length() == 0) {
+            search = null;
+        }
+        if (search == null ? mSearch == null : search.equals(mSearch)) {
+            return;
+        }
+        mSearch = search;
+        reset();
+    }
+
+    /**
+     * Order the list by {@link InventoryContract#SORT_LOW_STOCK} or
+     * {@link InventoryContract#SORT_VALUE}, or by _id if sort is null. The provider sorts through
+     * an index, the pages are fetched again.
+     */
+    public void setSort(String sort) {
+        if (sort == null ? mSort == null : sort.equals(mSort)) {
+            return;
+        }
+        // Fail here rather than in the background
+        InventoryContract.InventoryEntry.sortKeyColumn(sort);
+        mSort = sort;
+        reset();
+    }
+
+    /**
+     * Show only the items of the supplier with the given id, or all items if it is -1.
+     */
+    public void setSupplier(long supplierId) {
+        if (supplierId == mSupplierId) {
+            return;
+        }
+        mSupplierId = supplierId;
+        reset();
+    }
+
+    /**
+     * Forget every page and load the first one again, for a different search, order or filter.
+     */
+    private void reset() {
+        mGeneration++;
+        mPages.clear();
+        mLoading.clear();
+        mPageKeys.clear();
+        mPageKeys.add(PageKey.FIRST);
+        mCount = 0;
+        mHasMore = true;
+        loadPage(0);
+        notifyDataSetChanged();
+    }
+
+    /**
+     * The data changed: keep the page keys and the count, so the list keeps its scroll position,
+     * and fetch the visible pages again. The cached pages are kept as they are until their fresh
+     * copies arrive, so the rows on screen never go blank in between.
+     */
+    private void invalidate() {
+        mGeneration++;
+        mLoading.clear();
+        // the table may have grown at the end
+        mHasMore = true;
+        if (mCount == 0) {
+            loadPage(0);
+        }
+        notifyDataSetChanged();
+    }
+
+    /**
+     * One click handler for every row and every sale button, the row is found through the view's tag.
+     */
+    private final View.OnClickListener mClickHandler = new View.OnClickListener() {
+        @Override
+        public void onClick(View view) {
+            ItemViewHolder holder = (ItemViewHolder) view.getTag();
+            long id = getItemId(holder.getAdapterPosition());
+            if (id == -1) {
+                // The row's page is still loading
+                return;
+            }
+            if (view.getId() == R.id.decrease) {
+                // Let the provider decrease the quantity in SQL, it refuses to go below 0
+                InventoryWriteQueue.getInstance(mContext).adjustQuantity(id, -1, mSaleCallback);
+            } else {
+                mItemClickListener.onItemClick(id);
+            }
+        }
+    };
+
+    private final InventoryWriteQueue.Callback<Bundle> mSaleCallback = new InventoryWriteQueue.Callback<Bundle>() {
+        @Override
+        void onComplete(Bundle result) {
+            if (result != null && !result.getBoolean(InventoryContract.EXTRA_ADJUSTED)) {
+                // can 't be reduced since value is already 0
+                Toast.makeText(mContext, "Already at zero, please add quantity", Toast.LENGTH_SHORT).show();
+            }
+            Log.d(LOG, "adjust result: " + result);
+        }
+    };
+
+    @Override
+    public int getItemCount() {
+        return mCount;
+    }
+
+    @Override
+    public long getItemId(int position) {
+        if (position == RecyclerView.NO_POSITION) {
+            return -1;
+        }
+        Page page = mPages.get(position / PAGE_SIZE);
+        int row = position % PAGE_SIZE;
+        if (page == null || row >= page.size) {
+            return -1;
+        }
+        return page.ids[row];
+    }
+
+    @Override
+    public ItemViewHolder onCreateViewHolder(ViewGroup parent, int viewType) {
+        View itemView = LayoutInflater.from(mContext).inflate(R.layout.list_item_template, parent, false);
+        ItemViewHolder holder = new ItemViewHolder(itemView, mImageLoader, mThumbnailSize);
+        itemView.setTag(holder);
+        itemView.setOnClickListener(mClickHandler);
+        holder.decreaseButton.setTag(holder);
+        holder.decreaseButton.setOnClickListener(mClickHandler);
+        return holder;
+    }
+
+    @Override
+    public void onBindViewHolder(ItemViewHolder holder, int position) {
+        // Fetch the next page before the user reaches the end of what we have
+        if (mHasMore && position >= mCount - PAGE_SIZE / 2) {
+            loadPage(mCount / PAGE_SIZE);
+        }
+
+        int pageIndex = position / PAGE_SIZE;
+        Page page = mPages.get(pageIndex);
+        int row = position % PAGE_SIZE;
+        if (page == null || row >= page.size) {
+            // Not in memory (any more), show an empty row until the page arrives
+            loadPage(pageIndex);
+            holder.bindEmpty();
+        } else {
+            if (page.generation != mGeneration) {
+                // From before the last change, shown until the fresh page replaces it
+                loadPage(pageIndex);
+            }
+            holder.bind(page, row);
+        }
+    }
+
+    /**
+     * Holds the views of one row, so they are looked up once instead of on every bind.
+     */
+    static class ItemViewHolder extends RecyclerView.ViewHolder {
+        final ImageLoader imageLoader;
+        final int thumbnailSize;
+        final ImageView imageView;
+        final TextView nameView;
+        final TextView priceView;
+        final TextView qtyView;
+        final Button decreaseButton;
+
+        ItemViewHolder(View itemView, ImageLoader imageLoader, int thumbnailSize) {
+            super(itemView);
+            this.imageLoader = imageLoader;
+            this.thumbnailSize = thumbnailSize;
+            imageView = itemView.findViewById(R.id.image);
+            nameView = itemView.findViewById(R.id.name);
+            priceView = itemView.findViewById(R.id.price);
+            qtyView = itemView.findViewById(R.id.qty);
+            decreaseButton = itemView.findViewById(R.id.decrease);
+        }
+
+        /**
+         * Bind one row of a page, the texts were prepared when the page was loaded.
+         */
+        void bind(Page page, int row) {
+            nameView.setText(page.names[row]);
+            priceView.setText(page.priceTexts[row]);
+            qtyView.setText(page.quantityTexts[row]);
+            decreaseButton.setEnabled(true);
+            // Downsampled to the thumbnail size and served from memory once decoded
+            imageLoader.load(page.images[row], imageView, thumbnailSize, R.mipmap.ic_launcher);
+        }
+
+        /**
+         * Clear a row whose page is still loading.
+         */
+        void bindEmpty() {
+            nameView.setText("");
+            priceView.setText("");
+            qtyView.setText("");
+            decreaseButton.setEnabled(false);
+            imageLoader.load(null, imageView, thumbnailSize, R.mipmap.ic_launcher);
+        }
+    }
+
+    /**
+     * Fetch the given page in the background, unless it is already in memory and up to date,
+     * or on its way.
+     */
+    private void loadPage(int pageIndex) {
+        if (pageIndex >= mPageKeys.size() || mLoading.get(pageIndex)) {
+            return;
+        }
+        Page cached = mPages.get(pageIndex);
+        if (cached != null && cached.generation == mGeneration) {
+            return;
+        }
+        mLoading.put(pageIndex, true);
+        new PageLoader(pageIndex, mPageKeys.get(pageIndex), mSearch, mSort, mSupplierId, mGeneration)
+                .executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
+    }
+
+    /**
+     * Show the rows of the given cursor as the given page, without going through the provider.
+     * The benchmarks use it to bind rows from a cursor they built themselves.
+     */
+    void showPage(int pageIndex, Cursor cursor) {
+        onPageLoaded(pageIndex, mGeneration, new Page(cursor, null));
+    }
+
+    /**
+     * Called on the main thread when a page arrived.
+     */
+    private void onPageLoaded(int pageIndex, int generation, Page page) {
+        if (generation != mGeneration) {
+            // The data changed while we were loading, this page is stale
+            return;
+        }
+        mLoading.delete(pageIndex);
+        page.generation = generation;
+        mPages.put(pageIndex, page);
+        int oldCount = mCount;
+
+        if (page.size == PAGE_SIZE) {
+            PageKey nextKey = page.keyOf(PAGE_SIZE - 1);
+            if (pageIndex + 1 < mPageKeys.size() && !mPageKeys.get(pageIndex + 1).equals(nextKey)) {
+                // Rows were inserted or deleted before the next page, the later pages moved
+                dropPagesAfter(pageIndex);
+            }
+            if (pageIndex + 1 == mPageKeys.size()) {
+                mPageKeys.add(nextKey);
+            }
+            mCount = Math.max(mCount, (pageIndex + 1) * PAGE_SIZE);
+        } else {
+            // This is the last page
+            dropPagesAfter(pageIndex);
+            mHasMore = false;
+            mCount = pageIndex * PAGE_SIZE + page.size;
+        }
+
+        int pageStart = pageIndex * PAGE_SIZE;
+        if (mCount >= oldCount) {
+            // The usual case: the page filled rows we already showed empty and maybe added some at the end
+            if (oldCount > pageStart) {
+                notifyItemRangeChanged(pageStart, Math.min(page.size, oldCount - pageStart));
+            }
+            if (mCount > oldCount) {
+                notifyItemRangeInserted(oldCount, mCount - oldCount);
+            }
+        } else {
+            notifyDataSetChanged();
+        }
+    }
+
+    /**
+     * Called on the main thread with the current state of a single item that changed.
+     * An item that is in memory is patched in place, a new item at the end of the table
+     * reloads the last page, and an item that is gone shifts all rows after it so we start over.
+     * Only used for the list in _id order.
+     */
+    private void onRowLoaded(long id, int generation, Page row) {
+        if (generation != mGeneration) {
+            return;
+        }
+        if (row.size == 0) {
+            // deleted
+            invalidate();
+            return;
+        }
+        for (Map.Entry<Integer, Page> entry : mPages.entrySet()) {
+            Page page = entry.getValue();
+            int index = Arrays.binarySearch(page.ids, 0, page.size, id);
+            if (index >= 0) {
+                page.copyRow(index, row);
+                // Only this row gets rebound
+                notifyItemChanged(entry.getKey() * PAGE_SIZE + index);
+                return;
+            }
+        }
+        int tail = mPageKeys.size() - 1;
+        if (id > mPageKeys.get(tail).id) {
+            // A new item, ids only grow so it belongs to the last page
+            mPages.remove(tail);
+            mLoading.delete(tail);
+            mHasMore = true;
+            loadPage(tail);
+        }
+        // Otherwise it is on a page that is not in memory, it will be fresh when that page is fetched
+    }
+
+    private static boolean isItemUri(Uri uri) {
+        List<String> segments = uri.getPathSegments();
+        return segments.size() == 2
+                && InventoryContract.PATH_ITEMS.equals(segments.get(0))
+                && TextUtils.isDigitsOnly(segments.get(1));
+    }
+
+    /**
+     * Forget everything we know about the pages after the given one.
+     */
+    private void dropPagesAfter(int pageIndex) {
+        while (mPageKeys.size() > pageIndex + 1) {
+            int last = mPageKeys.size() - 1;
+            mPageKeys.remove(last);
+            mPages.remove(last);
+            mLoading.delete(last);
+        }
+        mCount = (pageIndex + 1) * PAGE_SIZE;
+    }
+
+    /**
+     * Where a page starts: after the row with this sort key and _id. The key is null in _id order.
+     */
+    static final class PageKey {
+        static final PageKey FIRST = new PageKey(null, 0);
+
+        final String key;
+        final long id;
+
+        PageKey(String key, long id) {
+            this.key = key;
+            this.id = id;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof PageKey)) {
+                return false;
+            }
+            PageKey other = (PageKey) o;
+            return id == other.id && (key == null ? other.key == null : key.equals(other.key));
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (key == null ? 0 : key.hashCode()) + (int) (id ^ (id >>> 32));
+        }
+    }
+
+    /**
+     * The columns of a page in the given order: the list's columns and the sort key.
+     */
+    static String[] projection(String sort) {
+        String sortKey = InventoryContract.InventoryEntry.sortKeyColumn(sort);
+        if (sortKey == null || Arrays.asList(InventoryContract.InventoryEntry.LIST_PROJECTION).contains(sortKey)) {
+            return InventoryContract.InventoryEntry.LIST_PROJECTION;
+        }
+        String[] projection = Arrays.copyOf(InventoryContract.InventoryEntry.LIST_PROJECTION,
+                InventoryContract.InventoryEntry.LIST_PROJECTION.length + 1);
+        projection[projection.length - 1] = sortKey;
+        return projection;
+    }
+
+    /**
+     * One page of the items table, copied out of the cursor so no CursorWindow is kept alive.
+     */
+    static class Page {
+        final int size;
+        final long[] ids;
+        /** The sort key of every row, null in _id order */
+        final long[] sortKeys;
+        final String[] names;
+        final String[] priceTexts;
+        final String[] quantityTexts;
+        final String[] images;
+        /** The adapter's generation the page was loaded in, older pages are only shown until reloaded */
+        int generation;
+
+        /**
+         * Copy the rows out of the cursor. The column indices are resolved once per cursor,
+         * the values are read as primitives and turned into the texts the list shows right here,
+         * off the main thread.
+         */
+        Page(Cursor cursor, String sortKey) {
+            size = cursor.getCount();
+            ids = new long[size];
+            sortKeys = sortKey == null ? null : new long[size];
+            names = new String[size];
+            priceTexts = new String[size];
+            quantityTexts = new String[size];
+            images = new String[size];
+
+            int idColumnIndex = cursor.getColumnIndex(InventoryContract.InventoryEntry._ID);
+            int nameColumnIndex = cursor.getColumnIndex(InventoryContract.InventoryEntry.COLUMN_ITEM_NAME);
+            int priceColumnIndex = cursor.getColumnIndex(InventoryContract.InventoryEntry.COLUMN_ITEM_PRICE);
+            int qtyColumnIndex = cursor.getColumnIndex(InventoryContract.InventoryEntry.COLUMN_ITEM_QUANTITY);
+            int imageColumnIndex = cursor.getColumnIndex(InventoryContract.InventoryEntry.COLUMN_ITEM_IMAGE);
+            int sortKeyColumnIndex = sortKey == null ? -1 : cursor.getColumnIndexOrThrow(sortKey);
+            for (int row = 0; cursor.moveToNext(); row++) {
+                ids[row] = cursor.getLong(idColumnIndex);
+                if (sortKeys != null) {
+                    sortKeys[row] = cursor.getLong(sortKeyColumnIndex);
+                }
+                names[row] = cursor.getString(nameColumnIndex);
+                priceTexts[row] = cursor.getDouble(priceColumnIndex) + "$";
+                quantityTexts[row] = String.valueOf(cursor.getInt(qtyColumnIndex));
+                images[row] = cursor.getString(imageColumnIndex);
+            }
+        }
+
+        /**
+         * The key of the page that starts after the given row.
+         */
+        PageKey keyOf(int row) {
+            return new PageKey(sortKeys == null ? null : String.valueOf(sortKeys[row]), ids[row]);
+        }
+
+        /**
+         * Replace one row with the first row of another page.
+         */
+        void copyRow(int row, Page from) {
+            names[row] = from.names[0];
+            priceTexts[row] = from.priceTexts[0];
+            quantityTexts[row] = from.quantityTexts[0];
+            images[row] = from.images[0];
+        }
+    }
+
+    /**
+     * Re-fetches one changed item off the main thread.
+     */
+    private class RowLoader extends AsyncTask<Void, Void, Page> {
+        private final long mId;
+        private final int mLoaderGeneration;
+
+        RowLoader(long id, int generation) {
+            mId = id;
+            mLoaderGeneration = generation;
+        }
+
+        @Override
+        protected Page doInBackground(Void... voids) {
+            Cursor cursor = mContext.getContentResolver().query(
+                    ContentUris.withAppendedId(InventoryContract.InventoryEntry.CONTENT_URI, mId),
+                    InventoryContract.InventoryEntry.LIST_PROJECTION, null, null, null);
+            if (cursor == null) {
+                return null;
+            }
+            try {
+                return new Page(cursor, null);
+            } finally {
+                cursor.close();
+            }
+        }
+
+        @Override
+        protected void onPostExecute(Page row) {
+            if (row == null) {
+                Log.e(LOG, "Failed to load item " + mId);
+                return;
+            }
+            onRowLoaded(mId, mLoaderGeneration, row);
+        }
+    }
+
+    /**
+     * Runs the page query off the main thread.
+     */
+    private class PageLoader extends AsyncTask<Void, Void, Page> {
+        private final int mPageIndex;
+        private final PageKey mAfter;
+        private final String mLoaderSearch;
+        private final String mLoaderSort;
+        private final long mLoaderSupplierId;
+        private final int mLoaderGeneration;
+
+        PageLoader(int pageIndex, PageKey after, String search, String sort, long supplierId, int generation) {
+            mPageIndex = pageIndex;
+            mAfter = after;
+            mLoaderSearch = search;
+            mLoaderSort = sort;
+            mLoaderSupplierId = supplierId;
+            mLoaderGeneration = generation;
+        }
+
+        @Override
+        protected Page doInBackground(Void... voids) {
+            Uri pageUri = mLoaderSearch == null
+                    ? InventoryContract.InventoryEntry.buildPageUri(mAfter.id, PAGE_SIZE)
+                    : InventoryContract.InventoryEntry.buildSearchPageUri(mLoaderSearch, mAfter.id, PAGE_SIZE);
+            pageUri = InventoryContract.InventoryEntry.sortedBy(pageUri, mLoaderSort, mAfter.key);
+            if (mLoaderSupplierId != -1) {
+                pageUri = InventoryContract.InventoryEntry.ofSupplier(pageUri, mLoaderSupplierId);
+            }
+            Cursor cursor = mContext.getContentResolver().query(pageUri, projection(mLoaderSort), null, null, null);
+            if (cursor == null) {
+                return null;
+            }
+            try {
+                return new Page(cursor, InventoryContract.InventoryEntry.sortKeyColumn(mLoaderSort));
+            } finally {
+                cursor.close();
+            }
+        }
+
+        @Override
+        protected void onPostExecute(Page page) {
+            if (page == null) {
+                Log.e(LOG, "Failed to load page " + mPageIndex);
+                mLoading.delete(mPageIndex);
+                return;
+            }
+            onPageLoaded(mPageIndex, mLoaderGeneration, page);
+        }
+    }
+}
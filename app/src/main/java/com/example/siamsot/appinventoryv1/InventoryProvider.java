@@ -1,14 +1,49 @@
 package com.example.siamsot.appinventoryv1;
 
+import android.content.ClipDescription;
 import android.content.ContentProvider;
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
 import android.content.ContentUris;
 import android.content.ContentValues;
+import android.content.OperationApplicationException;
 import android.content.UriMatcher;
+import android.content.res.AssetFileDescriptor;
 import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.MatrixCursor;
+import android.database.sqlite.SQLiteConstraintException;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteDoneException;
+import android.database.sqlite.SQLiteQueryBuilder;
+import android.database.sqlite.SQLiteStatement;
 import android.net.Uri;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.ParcelFileDescriptor;
+import android.os.Parcelable;
 import android.util.Log;
 
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
 /**
  * {@link ContentProvider} for Inventory app.
  */
@@ -21,139 +56,1290 @@ public class InventoryProvider extends ContentProvider {
     public static final String LOG_TAG = InventoryProvider.class.getSimpleName();
 
     /**
-     * URI matcher code for the content URI for the items table
+     * URI matcher code for the content URI for the items table
+     */
+    private static final int ITEMS = 100;
+
+    /**
+     * URI matcher code for the content URI for a single item in the items table
+     */
+    private static final int ITEM_ID = 101;
+
+    /**
+     * URI matcher code for the full-text search over the items
+     */
+    private static final int SEARCH = 102;
+
+    /**
+     * URI matcher code for the photo of a single item, served through openFile
+     */
+    private static final int ITEM_IMAGE = 103;
+
+    /**
+     * URI matcher code for the totals over all items
+     */
+    private static final int STATS = 104;
+
+    /**
+     * URI matcher code for the totals per supplier
+     */
+    private static final int SUPPLIER_STATS = 105;
+
+    /**
+     * URI matcher code for the content URI for the suppliers table
+     */
+    private static final int SUPPLIERS = 106;
+
+    /**
+     * URI matcher code for the content URI for a single supplier
+     */
+    private static final int SUPPLIER_ID = 107;
+
+    /**
+     * URI matcher code for the checkpoints of unfinished imports
+     */
+    private static final int IMPORTS = 108;
+
+    /**
+     * URI matcher code for the provider's own call statistics
+     */
+    private static final int DIAGNOSTICS = 109;
+
+    /**
+     * URI matcher codes for the stock movements of a single item and their daily totals
+     */
+    private static final int ITEM_MOVEMENTS = 110;
+    private static final int ITEM_DAILY_MOVEMENTS = 111;
+
+    /**
+     * How often the provider compacts the stock movements by itself
+     */
+    private static final long COMPACTION_INTERVAL_MS = InventoryContract.MovementEntry.DAY_MS;
+
+    /**
+     * Operations recorded in {@link #mStats}, indexes into {@link #OPERATIONS}
+     */
+    private static final int OP_QUERY = 0;
+    private static final int OP_INSERT = 1;
+    private static final int OP_BULK_INSERT = 2;
+    private static final int OP_UPDATE = 3;
+    private static final int OP_DELETE = 4;
+    private static final int OP_GET_TYPE = 5;
+    private static final String[] OPERATIONS = {"query", "insert", "bulk_insert", "update", "delete", "get_type"};
+
+    /**
+     * The URI patterns as recorded in {@link #mStats}, unknown URIs first, then one per matcher
+     * code from {@link #ITEMS} on, see {@link #statsIndex(int)}
+     */
+    private static final String[] URI_PATTERNS = {"unknown", "items", "items/#", "search", "items/#/image",
+            "stats", "stats/suppliers", "suppliers", "suppliers/#", "imports", "diagnostics",
+            "items/#/movements", "items/#/movements/daily"};
+
+    /**
+     * Rolls the movements before the cut into their daily totals, adding to the totals of a day
+     * that was rolled up before. The day's closing quantity is the one of its last movement.
+     */
+    private static final String SQL_ROLL_UP_MOVEMENTS = "INSERT OR REPLACE INTO "
+            + InventoryContract.MovementEntry.DAILY_TABLE_NAME + " ("
+            + InventoryContract.MovementEntry.COLUMN_ITEM_ID + ", "
+            + InventoryContract.MovementEntry.COLUMN_DAY + ", "
+            + InventoryContract.MovementEntry.COLUMN_RECEIVED + ", "
+            + InventoryContract.MovementEntry.COLUMN_REMOVED + ", "
+            + InventoryContract.MovementEntry.COLUMN_MOVEMENTS + ", "
+            + InventoryContract.MovementEntry.COLUMN_QUANTITY + ") SELECT "
+            + "m." + InventoryContract.MovementEntry.COLUMN_ITEM_ID + ", "
+            + "m." + InventoryContract.MovementEntry.COLUMN_DAY + ", "
+            + "m." + InventoryContract.MovementEntry.COLUMN_RECEIVED
+            + " + IFNULL(d." + InventoryContract.MovementEntry.COLUMN_RECEIVED + ", 0), "
+            + "m." + InventoryContract.MovementEntry.COLUMN_REMOVED
+            + " + IFNULL(d." + InventoryContract.MovementEntry.COLUMN_REMOVED + ", 0), "
+            + "m." + InventoryContract.MovementEntry.COLUMN_MOVEMENTS
+            + " + IFNULL(d." + InventoryContract.MovementEntry.COLUMN_MOVEMENTS + ", 0), "
+            + "m." + InventoryContract.MovementEntry.COLUMN_QUANTITY
+            + " FROM (" + selectMovementDays(InventoryContract.MovementEntry.COLUMN_TIMESTAMP + " < ?",
+                    InventoryContract.MovementEntry.COLUMN_ITEM_ID + ", ") + ") m"
+            + " LEFT JOIN " + InventoryContract.MovementEntry.DAILY_TABLE_NAME + " d ON "
+            + "d." + InventoryContract.MovementEntry.COLUMN_ITEM_ID + " = m." + InventoryContract.MovementEntry.COLUMN_ITEM_ID
+            + " AND d." + InventoryContract.MovementEntry.COLUMN_DAY + " = m." + InventoryContract.MovementEntry.COLUMN_DAY;
+
+    /**
+     * The daily totals of one item, the rolled up days and the days still in the movements
+     * summed up the same way. A day that is in both (the clock went back) is added up again.
+     * Bound to the item id and the first day, then the item id and the first timestamp.
+     * MAX(last_id) makes SQLite take the quantity of the day's last movement, it has to stay in
+     * this query's columns for that.
+     */
+    private static final String SQL_DAILY_MOVEMENTS = "SELECT "
+            + InventoryContract.MovementEntry.COLUMN_DAY + ", "
+            + "SUM(" + InventoryContract.MovementEntry.COLUMN_RECEIVED + ") AS " + InventoryContract.MovementEntry.COLUMN_RECEIVED + ", "
+            + "SUM(" + InventoryContract.MovementEntry.COLUMN_REMOVED + ") AS " + InventoryContract.MovementEntry.COLUMN_REMOVED + ", "
+            + "SUM(" + InventoryContract.MovementEntry.COLUMN_MOVEMENTS + ") AS " + InventoryContract.MovementEntry.COLUMN_MOVEMENTS + ", "
+            + InventoryContract.MovementEntry.COLUMN_QUANTITY + ", "
+            + "MAX(last_id) AS " + InventoryContract.MovementEntry.COLUMN_LAST_ID
+            + " FROM (SELECT "
+            + InventoryContract.MovementEntry.COLUMN_DAY + ", "
+            + InventoryContract.MovementEntry.COLUMN_RECEIVED + ", "
+            + InventoryContract.MovementEntry.COLUMN_REMOVED + ", "
+            + InventoryContract.MovementEntry.COLUMN_MOVEMENTS + ", "
+            + InventoryContract.MovementEntry.COLUMN_QUANTITY + ", 0 AS last_id"
+            + " FROM " + InventoryContract.MovementEntry.DAILY_TABLE_NAME
+            + " WHERE " + InventoryContract.MovementEntry.COLUMN_ITEM_ID + " = ? AND "
+            + InventoryContract.MovementEntry.COLUMN_DAY + " >= ?"
+            + " UNION ALL "
+            + selectMovementDays(InventoryContract.MovementEntry.COLUMN_ITEM_ID + " = ? AND "
+                    + InventoryContract.MovementEntry.COLUMN_TIMESTAMP + " >= ?", "")
+            + ") GROUP BY " + InventoryContract.MovementEntry.COLUMN_DAY
+            + " ORDER BY " + InventoryContract.MovementEntry.COLUMN_DAY + " DESC LIMIT ";
+
+    /**
+     * The movements matching the selection summed up per day, with the given grouping columns
+     * (each followed by a comma) in front of the day. last_id is the _id of the day's last movement.
+     */
+    private static String selectMovementDays(String selection, String groupColumns) {
+        return "SELECT " + groupColumns
+                + InventoryContract.MovementEntry.COLUMN_TIMESTAMP + " / " + InventoryContract.MovementEntry.DAY_MS
+                + " AS " + InventoryContract.MovementEntry.COLUMN_DAY + ", "
+                + "SUM(CASE WHEN " + InventoryContract.MovementEntry.COLUMN_DELTA + " > 0 THEN "
+                + InventoryContract.MovementEntry.COLUMN_DELTA + " ELSE 0 END) AS " + InventoryContract.MovementEntry.COLUMN_RECEIVED + ", "
+                + "SUM(CASE WHEN " + InventoryContract.MovementEntry.COLUMN_DELTA + " < 0 THEN -"
+                + InventoryContract.MovementEntry.COLUMN_DELTA + " ELSE 0 END) AS " + InventoryContract.MovementEntry.COLUMN_REMOVED + ", "
+                + "COUNT(*) AS " + InventoryContract.MovementEntry.COLUMN_MOVEMENTS + ", "
+                + InventoryContract.MovementEntry.COLUMN_QUANTITY + ", "
+                + "MAX(" + InventoryContract.MovementEntry._ID + ") AS last_id"
+                + " FROM " + InventoryContract.MovementEntry.TABLE_NAME
+                + " WHERE " + selection
+                + " GROUP BY " + groupColumns + InventoryContract.MovementEntry.COLUMN_DAY;
+    }
+
+    /**
+     * The last number of the change sequence, see {@link InventoryContract#METHOD_LAST_CHANGE}
+     */
+    private static final String SQL_LAST_CHANGE = "SELECT " + InventoryContract.InventoryEntry.COLUMN_CHANGED
+            + " FROM " + InventoryContract.InventoryEntry.CHANGES_TABLE_NAME;
+
+    /**
+     * Insert statement of the items, from the {@link StatementCache}
+     */
+    private static final String SQL_INSERT_ITEM = "INSERT INTO " + InventoryContract.InventoryEntry.TABLE_NAME + " ("
+            + InventoryContract.InventoryEntry.COLUMN_ITEM_NAME + ", "
+            + InventoryContract.InventoryEntry.COLUMN_ITEM_PRICE + ", "
+            + InventoryContract.InventoryEntry.COLUMN_ITEM_QUANTITY + ", "
+            + InventoryContract.InventoryEntry.COLUMN_ITEM_IMAGE + ", "
+            + InventoryContract.InventoryEntry.COLUMN_SUPPLIER_ID + ", "
+            + InventoryContract.InventoryEntry.COLUMN_REORDER_THRESHOLD + ") VALUES (?, ?, ?, ?, ?, ?)";
+
+    /**
+     * Records how far an import got, see {@link InventoryContract#METHOD_IMPORT_BATCH}. The
+     * imported count is added to the one of the previous batches.
+     */
+    private static final String SQL_SAVE_IMPORT = "INSERT OR REPLACE INTO " + InventoryContract.ImportEntry.TABLE_NAME + " ("
+            + InventoryContract.ImportEntry.COLUMN_SOURCE + ", "
+            + InventoryContract.ImportEntry.COLUMN_POSITION + ", "
+            + InventoryContract.ImportEntry.COLUMN_IMPORTED + ", "
+            + InventoryContract.ImportEntry.COLUMN_FAILED + ", "
+            + InventoryContract.ImportEntry.COLUMN_UPDATED + ") VALUES (?, ?, "
+            + "COALESCE((SELECT " + InventoryContract.ImportEntry.COLUMN_IMPORTED
+            + " FROM " + InventoryContract.ImportEntry.TABLE_NAME
+            + " WHERE " + InventoryContract.ImportEntry.COLUMN_SOURCE + " = ?), 0) + ?, ?, ?)";
+
+    /**
+     * The supplier columns an item can be written with, see {@link SupplierResolver}
+     */
+    private static final String[] SUPPLIER_COLUMNS = {
+            InventoryContract.SupplierEntry.COLUMN_SUPPLIER_NAME,
+            InventoryContract.SupplierEntry.COLUMN_SUPPLIER_PHONE,
+            InventoryContract.SupplierEntry.COLUMN_SUPPLIER_MAIL };
+
+    /**
+     * Quantity delta update used by {@link #call(String, String, Bundle)}. The guard in the WHERE
+     * clause keeps the quantity from going below zero.
+     */
+    private static final String SQL_ADJUST_QUANTITY = "UPDATE " + InventoryContract.InventoryEntry.TABLE_NAME
+            + " SET " + InventoryContract.InventoryEntry.COLUMN_ITEM_QUANTITY + " = "
+            + InventoryContract.InventoryEntry.COLUMN_ITEM_QUANTITY + " + ?"
+            + " WHERE " + InventoryContract.InventoryEntry._ID + " = ?"
+            + " AND " + InventoryContract.InventoryEntry.COLUMN_ITEM_QUANTITY + " + ? >= 0";
+
+    private static final String SQL_SELECT_QUANTITY = "SELECT " + InventoryContract.InventoryEntry.COLUMN_ITEM_QUANTITY
+            + " FROM " + InventoryContract.InventoryEntry.TABLE_NAME
+            + " WHERE " + InventoryContract.InventoryEntry._ID + " = ?";
+
+    /**
+     * Update of an item's quantity alone, see {@link #isQuantityOnly(ContentValues)}
+     */
+    private static final String SQL_UPDATE_QUANTITY = "UPDATE " + InventoryContract.InventoryEntry.TABLE_NAME
+            + " SET " + InventoryContract.InventoryEntry.COLUMN_ITEM_QUANTITY + " = ?"
+            + " WHERE " + InventoryContract.InventoryEntry._ID + " = ?";
+
+    /**
+     * Update of every column of an item as the editor saves it, see {@link #isFullRow(ContentValues)}.
+     * The image is only set when it is given, the reorder threshold is kept when it is bound to null.
+     */
+    private static final String SQL_UPDATE_ITEM = "UPDATE " + InventoryContract.InventoryEntry.TABLE_NAME + " SET "
+            + InventoryContract.InventoryEntry.COLUMN_ITEM_NAME + " = ?, "
+            + InventoryContract.InventoryEntry.COLUMN_ITEM_PRICE + " = ?, "
+            + InventoryContract.InventoryEntry.COLUMN_ITEM_QUANTITY + " = ?, "
+            + InventoryContract.InventoryEntry.COLUMN_SUPPLIER_ID + " = ?, "
+            + InventoryContract.InventoryEntry.COLUMN_REORDER_THRESHOLD + " = IFNULL(?, "
+            + InventoryContract.InventoryEntry.COLUMN_REORDER_THRESHOLD + ")"
+            + " WHERE " + InventoryContract.InventoryEntry._ID + " = ?";
+
+    private static final String SQL_UPDATE_ITEM_WITH_IMAGE = "UPDATE " + InventoryContract.InventoryEntry.TABLE_NAME + " SET "
+            + InventoryContract.InventoryEntry.COLUMN_ITEM_NAME + " = ?, "
+            + InventoryContract.InventoryEntry.COLUMN_ITEM_PRICE + " = ?, "
+            + InventoryContract.InventoryEntry.COLUMN_ITEM_QUANTITY + " = ?, "
+            + InventoryContract.InventoryEntry.COLUMN_SUPPLIER_ID + " = ?, "
+            + InventoryContract.InventoryEntry.COLUMN_REORDER_THRESHOLD + " = IFNULL(?, "
+            + InventoryContract.InventoryEntry.COLUMN_REORDER_THRESHOLD + "), "
+            + InventoryContract.InventoryEntry.COLUMN_ITEM_IMAGE + " = ?"
+            + " WHERE " + InventoryContract.InventoryEntry._ID + " = ?";
+
+    private static final String SQL_DELETE_ITEM = "DELETE FROM " + InventoryContract.InventoryEntry.TABLE_NAME
+            + " WHERE " + InventoryContract.InventoryEntry._ID + " = ?";
+
+    /**
+     * The columns {@link #SQL_INSERT_ITEM} takes, an insert with any other key goes through
+     * {@link SQLiteDatabase#insert}, which rejects it like before
+     */
+    private static final List<String> INSERT_COLUMNS = Arrays.asList(
+            InventoryContract.InventoryEntry.COLUMN_ITEM_NAME,
+            InventoryContract.InventoryEntry.COLUMN_ITEM_PRICE,
+            InventoryContract.InventoryEntry.COLUMN_ITEM_QUANTITY,
+            InventoryContract.InventoryEntry.COLUMN_ITEM_IMAGE,
+            InventoryContract.InventoryEntry.COLUMN_SUPPLIER_ID,
+            InventoryContract.InventoryEntry.COLUMN_SUPPLIER_NAME,
+            InventoryContract.InventoryEntry.COLUMN_SUPPLIER_PHONE,
+            InventoryContract.InventoryEntry.COLUMN_SUPPLIER_MAIL,
+            InventoryContract.InventoryEntry.COLUMN_REORDER_THRESHOLD);
+
+    /**
+     * Restricts a query on the items table to the rows matching a full-text query
+     */
+    private static final String SQL_SEARCH_SELECTION = InventoryContract.InventoryEntry._ID
+            + " IN (SELECT docid FROM " + InventoryContract.InventoryEntry.FTS_TABLE_NAME
+            + " WHERE " + InventoryContract.InventoryEntry.FTS_TABLE_NAME + " MATCH ?)";
+
+    /**
+     * Totals over all items, a single-row read of the summary the triggers maintain
+     */
+    private static final String SQL_STATS = "SELECT "
+            + InventoryContract.StatsEntry.COLUMN_ITEM_COUNT + ", "
+            + InventoryContract.StatsEntry.COLUMN_TOTAL_VALUE + ", "
+            + InventoryContract.StatsEntry.COLUMN_TOTAL_QUANTITY + ", "
+            + InventoryContract.StatsEntry.COLUMN_LOW_STOCK_COUNT + ", "
+            + InventoryContract.StatsEntry.COLUMN_OUT_OF_STOCK_COUNT
+            + " FROM " + InventoryContract.StatsEntry.SUMMARY_TABLE_NAME;
+
+    /**
+     * Totals per supplier, one summary row each
+     */
+    private static final String SQL_SUPPLIER_STATS = "SELECT "
+            + InventoryContract.SupplierEntry.TABLE_NAME + "." + InventoryContract.SupplierEntry._ID
+            + " AS " + InventoryContract.SupplierEntry._ID + ", "
+            + InventoryContract.SupplierEntry.COLUMN_SUPPLIER_NAME + ", "
+            + InventoryContract.StatsEntry.COLUMN_ITEM_COUNT + ", "
+            + InventoryContract.StatsEntry.COLUMN_TOTAL_VALUE + ", "
+            + InventoryContract.StatsEntry.COLUMN_TOTAL_QUANTITY
+            + " FROM " + InventoryContract.StatsEntry.SUPPLIER_SUMMARY_TABLE_NAME
+            + " JOIN " + InventoryContract.SupplierEntry.TABLE_NAME + " ON "
+            + InventoryContract.SupplierEntry.TABLE_NAME + "." + InventoryContract.SupplierEntry._ID + " = "
+            + InventoryContract.StatsEntry.SUPPLIER_SUMMARY_TABLE_NAME + "." + InventoryContract.InventoryEntry.COLUMN_SUPPLIER_ID
+            + " ORDER BY " + InventoryContract.SupplierEntry.COLUMN_SUPPLIER_NAME;
+
+    /**
+     * Coalesces the change notifications of all writes
+     */
+    private ChangeNotifier mNotifier;
+
+    /**
+     * Latencies and counts of the calls into this provider, see {@link InventoryContract.DiagnosticsEntry}
+     */
+    private final ProviderStats mStats = new ProviderStats(OPERATIONS, URI_PATTERNS);
+
+    /**
+     * Recently read items, answers the queries of single items
+     */
+    private final ItemCache mItemCache = new ItemCache();
+
+    /**
+     * Compiled statements of the hot write paths, for the database the helper has open
+     */
+    private StatementCache mStatements;
+
+    /**
+     * Thread that hears about closed writable image descriptors, started on the first one
+     */
+    private Handler mFileCloseHandler;
+
+    /**
+     * Photos replaced or orphaned by the operations of the running batch, see {@link #deleteUnusedImages}
+     */
+    private final List<String> mBatchUnusedImages = new ArrayList<>();
+
+    /**
+     * Thread that compacts the stock movements, started on the first compaction
+     */
+    private Handler mMaintenanceHandler;
+
+    /**
+     * When this process last started a compaction of the movements, 0 before the first one
+     */
+    private final AtomicLong mLastCompactionMs = new AtomicLong();
+
+    /**
+     * UriMatcher object to match a content URI to a corresponding code.
+     * The input passed into the constructor represents the code to return for the root URI.
+     * It's common to use NO_MATCH as the input for this case.
+     */
+    private static final UriMatcher sUriMatcher = new UriMatcher(UriMatcher.NO_MATCH);
+
+    // Static initializer. This is run the first time anything is called from this class.
+    static {
+        // The calls to addURI() go here, for all of the content URI patterns that the provider
+        // should recognize. All paths added to the UriMatcher have a corresponding code to return
+        // when a match is found.
+        sUriMatcher.addURI(InventoryContract.CONTENT_AUTHORITY, InventoryContract.PATH_ITEMS, ITEMS);
+        sUriMatcher.addURI(InventoryContract.CONTENT_AUTHORITY, InventoryContract.PATH_ITEMS + "/#", ITEM_ID);
+        sUriMatcher.addURI(InventoryContract.CONTENT_AUTHORITY, InventoryContract.PATH_SEARCH, SEARCH);
+        sUriMatcher.addURI(InventoryContract.CONTENT_AUTHORITY,
+                InventoryContract.PATH_ITEMS + "/#/" + InventoryContract.PATH_IMAGE, ITEM_IMAGE);
+        sUriMatcher.addURI(InventoryContract.CONTENT_AUTHORITY, InventoryContract.PATH_STATS, STATS);
+        sUriMatcher.addURI(InventoryContract.CONTENT_AUTHORITY,
+                InventoryContract.PATH_STATS + "/" + InventoryContract.PATH_SUPPLIERS, SUPPLIER_STATS);
+        sUriMatcher.addURI(InventoryContract.CONTENT_AUTHORITY, InventoryContract.PATH_SUPPLIERS, SUPPLIERS);
+        sUriMatcher.addURI(InventoryContract.CONTENT_AUTHORITY, InventoryContract.PATH_SUPPLIERS + "/#", SUPPLIER_ID);
+        sUriMatcher.addURI(InventoryContract.CONTENT_AUTHORITY, InventoryContract.PATH_IMPORTS, IMPORTS);
+        sUriMatcher.addURI(InventoryContract.CONTENT_AUTHORITY, InventoryContract.PATH_DIAGNOSTICS, DIAGNOSTICS);
+        sUriMatcher.addURI(InventoryContract.CONTENT_AUTHORITY,
+                InventoryContract.PATH_ITEMS + "/#/" + InventoryContract.PATH_MOVEMENTS, ITEM_MOVEMENTS);
+        sUriMatcher.addURI(InventoryContract.CONTENT_AUTHORITY, InventoryContract.PATH_ITEMS + "/#/"
+                + InventoryContract.PATH_MOVEMENTS + "/" + InventoryContract.PATH_DAILY, ITEM_DAILY_MOVEMENTS);
+    }
+
+    /**
+     * Initialize the provider and the database helper object.
+     */
+    @Override
+    public boolean onCreate() {
+        mDbHelper = new InventoryDbHelper(getContext());
+        mNotifier = new ChangeNotifier(getContext().getContentResolver());
+        return true;
+    }
+
+    /**
+     * Close the database, for tests and benchmarks that create the provider themselves.
+     */
+    @Override
+    public void shutdown() {
+        synchronized (this) {
+            if (mStatements != null) {
+                mStatements.close();
+                mStatements = null;
+            }
+        }
+        mDbHelper.close();
+    }
+
+    /**
+     * The statement cache of the given database, a new one if the helper opened it again.
+     */
+    private synchronized StatementCache statements(SQLiteDatabase db) {
+        if (mStatements == null || !mStatements.isFor(db)) {
+            if (mStatements != null) {
+                mStatements.close();
+            }
+            mStatements = new StatementCache(db);
+        }
+        return mStatements;
+    }
+
+    /**
+     * Perform the query for the given URI. Use the given projection, selection, selection arguments, and sort order.
+     */
+    @Override
+    public Cursor query(Uri uri, String[] projection, String selection, String[] selectionArgs,
+                        String sortOrder) {
+        long start = System.nanoTime();
+        // Figure out if the URI matcher can match the URI to a specific code
+        int match = sUriMatcher.match(uri);
+        long rows = ProviderStats.FAILED;
+        try {
+            Cursor cursor = query(match, uri, projection, selection, selectionArgs, sortOrder);
+            // Runs the query here, so the latency includes it. The count is kept, the caller's
+            // own getCount() is free.
+            rows = cursor.getCount();
+            return cursor;
+        } finally {
+            mStats.record(OP_QUERY, statsIndex(match), System.nanoTime() - start, rows);
+        }
+    }
+
+    private Cursor query(int match, Uri uri, String[] projection, String selection, String[] selectionArgs,
+                         String sortOrder) {
+        // Get readable database
+        SQLiteDatabase database = mDbHelper.getReadableDatabase();
+
+        // This cursor will hold the result of the query
+        Cursor cursor;
+
+        switch (match) {
+            case SEARCH:
+                // Narrow the items down to the full-text matches, then page through them like ITEMS
+                String matchQuery = buildMatchQuery(uri.getQueryParameter(InventoryContract.QUERY_PARAMETER_SEARCH));
+                if (matchQuery == null) {
+                    // nothing searchable was typed
+                    selection = DatabaseUtils.concatenateWhere(selection, "0");
+                } else {
+                    selection = DatabaseUtils.concatenateWhere(selection, SQL_SEARCH_SELECTION);
+                    selectionArgs = DatabaseUtils.appendSelectionArgs(selectionArgs, new String[]{matchQuery});
+                }
+                // fall through
+            case ITEMS:
+                /**For the ITEMS code, query the stock table directly with the given
+                 * projection, selection, selection arguments, and sort order. The cursor
+                 * could contain multiple rows of the pets table. The URI's parameters narrow,
+                 * order and page it, see {@link ItemQuery}.
+                 */
+                cursor = ItemQuery.of(uri, projection, selection, selectionArgs, sortOrder).run(database);
+                break;
+            case ITEM_ID:
+                // The editor and the list's row refreshes read the same few items again and again
+                cursor = queryCachedItem(database, ContentUris.parseId(uri), projection);
+                if (cursor != null) {
+                    break;
+                }
+
+                selection = InventoryContract.InventoryEntry._ID + "=?";
+                selectionArgs = new String[]{String.valueOf(ContentUris.parseId(uri))};
+
+                cursor = database.query(itemSource(projection, selection, sortOrder), projection, selection, selectionArgs,
+                        null, null, sortOrder);
+                break;
+            case SUPPLIERS:
+                if (sortOrder == null) {
+                    sortOrder = InventoryContract.SupplierEntry.COLUMN_SUPPLIER_NAME;
+                }
+                cursor = database.query(InventoryContract.SupplierEntry.TABLE_NAME, projection, selection,
+                        selectionArgs, null, null, sortOrder);
+                break;
+            case SUPPLIER_ID:
+                selection = InventoryContract.SupplierEntry._ID + "=?";
+                selectionArgs = new String[]{String.valueOf(ContentUris.parseId(uri))};
+                cursor = database.query(InventoryContract.SupplierEntry.TABLE_NAME, projection, selection,
+                        selectionArgs, null, null, sortOrder);
+                break;
+            case IMPORTS:
+                cursor = database.query(InventoryContract.ImportEntry.TABLE_NAME, projection, selection,
+                        selectionArgs, null, null, sortOrder);
+                break;
+            case STATS:
+                // The triggers keep the totals current, nobody has to walk the rows
+                cursor = database.rawQuery(SQL_STATS, null);
+                break;
+            case SUPPLIER_STATS:
+                cursor = database.rawQuery(SQL_SUPPLIER_STATS, null);
+                break;
+            case ITEM_MOVEMENTS: {
+                // The latest movements first, a backwards range of the item's part of the index
+                String itemId = uri.getPathSegments().get(1);
+                selection = DatabaseUtils.concatenateWhere(selection,
+                        InventoryContract.MovementEntry.COLUMN_ITEM_ID + " = ? AND "
+                                + InventoryContract.MovementEntry.COLUMN_TIMESTAMP + " >= ?");
+                selectionArgs = DatabaseUtils.appendSelectionArgs(selectionArgs,
+                        new String[]{itemId, String.valueOf(movementsSince(uri))});
+                if (sortOrder == null) {
+                    sortOrder = InventoryContract.MovementEntry.COLUMN_TIMESTAMP + " DESC, "
+                            + InventoryContract.MovementEntry._ID + " DESC";
+                }
+                cursor = database.query(InventoryContract.MovementEntry.TABLE_NAME, projection, selection,
+                        selectionArgs, null, null, sortOrder, String.valueOf(movementsLimit(uri)));
+                break;
+            }
+            case ITEM_DAILY_MOVEMENTS: {
+                String itemId = uri.getPathSegments().get(1);
+                long since = movementsSince(uri);
+                // The limit is parsed, it ends up in the SQL string
+                cursor = database.rawQuery(SQL_DAILY_MOVEMENTS + movementsLimit(uri), new String[]{
+                        itemId, String.valueOf(since / InventoryContract.MovementEntry.DAY_MS),
+                        itemId, String.valueOf(since)});
+                break;
+            }
+            case DIAGNOSTICS:
+                // A snapshot, it doesn't change with the items
+                MatrixCursor diagnostics = mStats.toCursor();
+                ProviderStats.addCounter(diagnostics, "cache_hit", "items/#", mItemCache.getHits());
+                ProviderStats.addCounter(diagnostics, "cache_miss", "items/#", mItemCache.getMisses());
+                return diagnostics;
+            default:
+                throw new IllegalArgumentException("Cannot query unknown URI " + uri);
+        }
+        // Set notification URI on the Cursor
+        // so we know what content URI the Cursor was created for.
+        // Search results and statistics change whenever the items change.
+        Uri notificationUri;
+        // The movements of an item hear about the item's changes, they are below its URI
+        if (match == ITEMS || match == ITEM_ID || match == SUPPLIERS || match == SUPPLIER_ID || match == IMPORTS
+                || match == ITEM_MOVEMENTS || match == ITEM_DAILY_MOVEMENTS) {
+            notificationUri = uri;
+        } else {
+            notificationUri = InventoryContract.InventoryEntry.CONTENT_URI;
+        }
+        cursor.setNotificationUri(getContext().getContentResolver(), notificationUri);
+        return cursor;
+    }
+
+    private static long movementsSince(Uri uri) {
+        String since = uri.getQueryParameter(InventoryContract.QUERY_PARAMETER_SINCE);
+        return since == null ? 0 : Math.max(0, Long.parseLong(since));
+    }
+
+    private static int movementsLimit(Uri uri) {
+        String limit = uri.getQueryParameter(InventoryContract.QUERY_PARAMETER_LIMIT);
+        return limit == null ? InventoryContract.MovementEntry.DEFAULT_LIMIT : Integer.parseInt(limit);
+    }
+
+    /**
+     * Selection of the rows after (sort key, _id) = (?, ?) in a sorted list, with the key bound
+     * twice. The first term is a range of the sort's index, which holds the key and then the
+     * _id, the second one skips the rows of the same key up to after_id. Comparing (key, _id)
+     * as a pair needs SQLite 3.15.
+     */
+    private static String keysetSelection(String sortKey, boolean descending) {
+        String after = descending ? " < " : " > ";
+        String from = descending ? " <= " : " >= ";
+        return sortKey + from + "? AND (" + sortKey + after + "? OR "
+                + InventoryContract.InventoryEntry._ID + after + "?)";
+    }
+
+    /**
+     * The item from the {@link ItemCache}, or read as a whole row from the view and cached.
+     *
+     * @return a one-row cursor with the projection, or null if the item doesn't exist or the
+     * projection has more than plain columns
+     */
+    private Cursor queryCachedItem(SQLiteDatabase database, long id, String[] projection) {
+        ItemCache.Row row = mItemCache.get(id);
+        if (row == null) {
+            long generation = mItemCache.generation();
+            Cursor cursor = database.query(InventoryContract.InventoryEntry.DETAILS_VIEW_NAME, null,
+                    InventoryContract.InventoryEntry._ID + "=?", new String[]{String.valueOf(id)},
+                    null, null, null);
+            try {
+                if (!cursor.moveToFirst()) {
+                    return null;
+                }
+                row = ItemCache.Row.of(cursor);
+            } finally {
+                cursor.close();
+            }
+            mItemCache.put(id, row, generation);
+        }
+        return row.toCursor(projection);
+    }
+
+    /**
+     * The table or view an item query reads from. The supplier's name, phone and mail are only in
+     * the suppliers table, so a query that uses them reads the view joining both. Queries that
+     * don't, like the main list, read the items table alone and skip the join.
+     */
+    private static String itemSource(String[] projection, String selection, String sortOrder) {
+        if (projection == null
+                || mentionsSupplierColumn(selection)
+                || mentionsSupplierColumn(sortOrder)) {
+            return InventoryContract.InventoryEntry.DETAILS_VIEW_NAME;
+        }
+        for (String column : projection) {
+            if (mentionsSupplierColumn(column)) {
+                return InventoryContract.InventoryEntry.DETAILS_VIEW_NAME;
+            }
+        }
+        return InventoryContract.InventoryEntry.TABLE_NAME;
+    }
+
+    private static boolean mentionsSupplierColumn(String sql) {
+        if (sql == null) {
+            return false;
+        }
+        for (String column : SUPPLIER_COLUMNS) {
+            if (sql.contains(column)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Insert new data into the provider with the given ContentValues.
+     */
+    @Override
+    public Uri insert(Uri uri, ContentValues contentValues) {
+        long start = System.nanoTime();
+        final int match = sUriMatcher.match(uri);
+        long rows = ProviderStats.FAILED;
+        try {
+            Uri newUri = insert(match, uri, contentValues);
+            rows = newUri == null ? 0 : 1;
+            return newUri;
+        } finally {
+            mStats.record(OP_INSERT, statsIndex(match), System.nanoTime() - start, rows);
+        }
+    }
+
+    private Uri insert(int match, Uri uri, ContentValues contentValues) {
+        switch (match) {
+            case ITEMS:
+                /**
+                 * Sanity checks/ Data validation!
+                 */
+                validateItem(contentValues);
+
+                /**
+                 * Insert an item into the database with the given content values. Return the new content URI
+                 * for that specific row in the database.
+                 */
+                // Create and/or open a database to read from it
+                SQLiteDatabase db = mDbHelper.getWritableDatabase();
+                long id;
+                // The supplier and the item go in together or not at all
+                db.beginTransaction();
+                StatementCache statements = statements(db);
+                SupplierResolver suppliers = new SupplierResolver(statements);
+                try {
+                    if (INSERT_COLUMNS.containsAll(contentValues.keySet())) {
+                        // The usual shape, bound to the compiled insert instead of building its SQL
+                        SQLiteStatement statement = statements.get(SQL_INSERT_ITEM);
+                        bindItem(statement, contentValues, suppliers.resolveId(contentValues));
+                        id = executeInsert(statement);
+                    } else {
+                        id = db.insert(InventoryContract.InventoryEntry.TABLE_NAME, null,
+                                suppliers.resolve(contentValues));
+                    }
+                    db.setTransactionSuccessful();
+                } finally {
+                    db.endTransaction();
+                }
+                // If the ID is -1, then the insertion failed. Log an error and return null.
+                if (id == -1) {
+                    Log.e(LOG_TAG, "Failed to insert row for " + uri);
+                    return null;
+                }
+                if (suppliers.createdAny()) {
+                    notifyChange(InventoryContract.SupplierEntry.CONTENT_URI);
+                }
+
+                // Once we know the ID of the new row in the table,
+                // return the new URI with the ID appended to the end of it
+                Uri newUri = ContentUris.withAppendedId(uri, id);
+
+                // Notify all listeners that the data has changed. Notify the new row's URI,
+                // so the list can fetch just this row instead of requerying everything.
+                notifyChange(newUri);
+                return newUri;
+            case SUPPLIERS:
+                validateSupplier(contentValues);
+                long supplierId = mDbHelper.getWritableDatabase().insert(
+                        InventoryContract.SupplierEntry.TABLE_NAME, null, contentValues);
+                // -1 also when the same supplier already exists
+                if (supplierId == -1) {
+                    Log.e(LOG_TAG, "Failed to insert row for " + uri);
+                    return null;
+                }
+                notifyChange(uri);
+                return ContentUris.withAppendedId(uri, supplierId);
+            default:
+                throw new IllegalArgumentException("Insertion is not supported for " + uri);
+        }
+    }
+
+    /**
+     * Bulk insert of items, used for large stock imports. All rows are validated before anything
+     * is written, then inserted in a single transaction through one compiled statement, and
+     * listeners are notified only once at the end.
+     */
+    @Override
+    public int bulkInsert(Uri uri, ContentValues[] values) {
+        long start = System.nanoTime();
+        final int match = sUriMatcher.match(uri);
+        long rows = ProviderStats.FAILED;
+        try {
+            if (match != ITEMS) {
+                throw new IllegalArgumentException("Bulk insertion is not supported for " + uri);
+            }
+            int rowsInserted = insertItems(values, null, 0, 0);
+            rows = rowsInserted;
+            return rowsInserted;
+        } finally {
+            mStats.record(OP_BULK_INSERT, statsIndex(match), System.nanoTime() - start, rows);
+        }
+    }
+
+    /**
+     * Insert the items like {@link #bulkInsert(Uri, ContentValues[])}. With an import source the
+     * import's checkpoint is written in the same transaction, so after a crash either the batch
+     * and its checkpoint are both there or neither is.
+     */
+    private int insertItems(ContentValues[] values, String importSource, long position, long failed) {
+        // Validate everything up front, so a bad row can't leave half an import behind
+        for (ContentValues contentValues : values) {
+            validateItem(contentValues);
+        }
+
+        SQLiteDatabase db = mDbHelper.getWritableDatabase();
+        int rowsInserted = 0;
+        db.beginTransaction();
+        StatementCache statements = statements(db);
+        SQLiteStatement statement = statements.get(SQL_INSERT_ITEM);
+        // Imports repeat the same few suppliers, each is looked up once
+        SupplierResolver suppliers = new SupplierResolver(statements);
+        try {
+            for (ContentValues contentValues : values) {
+                bindItem(statement, contentValues, suppliers.resolveId(contentValues));
+                if (statement.executeInsert() != -1) {
+                    rowsInserted++;
+                }
+            }
+            if (importSource != null) {
+                SQLiteStatement checkpoint = statements.get(SQL_SAVE_IMPORT);
+                checkpoint.bindString(1, importSource);
+                checkpoint.bindLong(2, position);
+                checkpoint.bindString(3, importSource);
+                checkpoint.bindLong(4, rowsInserted);
+                checkpoint.bindLong(5, failed);
+                checkpoint.bindLong(6, System.currentTimeMillis());
+                checkpoint.executeInsert();
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+
+        if (rowsInserted != 0) {
+            // One notification for the whole import instead of one per row
+            notifyChange(InventoryContract.InventoryEntry.CONTENT_URI);
+            if (suppliers.createdAny()) {
+                notifyChange(InventoryContract.SupplierEntry.CONTENT_URI);
+            }
+        }
+        if (importSource != null) {
+            notifyChange(InventoryContract.ImportEntry.CONTENT_URI);
+        }
+        return rowsInserted;
+    }
+
+    /**
+     * Roll the stock movements before the start of the UTC day of the given time into their
+     * daily totals and delete them, in one transaction. Nobody is notified: the daily totals
+     * stay the same, the movements just aren't listed one by one any more.
+     *
+     * @return the number of movements rolled up
+     */
+    private int compactMovements(long before) {
+        long cut = before - before % InventoryContract.MovementEntry.DAY_MS;
+        SQLiteDatabase db = mDbHelper.getWritableDatabase();
+        int compacted;
+        db.beginTransaction();
+        try {
+            db.execSQL(SQL_ROLL_UP_MOVEMENTS, new Object[]{cut});
+            compacted = db.delete(InventoryContract.MovementEntry.TABLE_NAME,
+                    InventoryContract.MovementEntry.COLUMN_TIMESTAMP + " < ?", new String[]{String.valueOf(cut)});
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        return compacted;
+    }
+
+    /**
+     * Compact the movements in the background, unless this process did so in the last
+     * {@link #COMPACTION_INTERVAL_MS}. Called on item writes, so the table's growth is bounded
+     * by the activity of the last {@link InventoryContract.MovementEntry#RETENTION_DAYS} days
+     * without any scheduling. The compaction reads every movement to find the old ones, which
+     * is why it doesn't run more often.
+     */
+    private void maybeCompactMovements() {
+        long now = System.currentTimeMillis();
+        long last = mLastCompactionMs.get();
+        if (now - last < COMPACTION_INTERVAL_MS || !mLastCompactionMs.compareAndSet(last, now)) {
+            return;
+        }
+        final long before = now - InventoryContract.MovementEntry.RETENTION_DAYS * InventoryContract.MovementEntry.DAY_MS;
+        getMaintenanceHandler().post(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    int compacted = compactMovements(before);
+                    Log.d(LOG_TAG, "Compacted " + compacted + " stock movements");
+                } catch (RuntimeException e) {
+                    // Try again with the first write after the next interval
+                    Log.e(LOG_TAG, "Can't compact the stock movements", e);
+                }
+            }
+        });
+    }
+
+    private synchronized Handler getMaintenanceHandler() {
+        if (mMaintenanceHandler == null) {
+            HandlerThread thread = new HandlerThread("inventory-maintenance");
+            thread.start();
+            mMaintenanceHandler = new Handler(thread.getLooper());
+        }
+        return mMaintenanceHandler;
+    }
+
+    /**
+     * Handles {@link InventoryContract#METHOD_IMPORT_BATCH}.
+     */
+    private Bundle importBatch(String source, Bundle extras) {
+        if (source == null || extras == null || !extras.containsKey(InventoryContract.EXTRA_ITEMS)) {
+            throw new IllegalArgumentException("Importing requires a source and items");
+        }
+        // Parceled, the ContentValues[] comes back as a Parcelable[]
+        Parcelable[] items = extras.getParcelableArray(InventoryContract.EXTRA_ITEMS);
+        ContentValues[] values = new ContentValues[items.length];
+        for (int i = 0; i < items.length; i++) {
+            values[i] = (ContentValues) items[i];
+        }
+        int inserted = insertItems(values, source,
+                extras.getLong(InventoryContract.EXTRA_POSITION), extras.getLong(InventoryContract.EXTRA_FAILED));
+        Bundle result = new Bundle();
+        result.putInt(InventoryContract.EXTRA_INSERTED, inserted);
+        return result;
+    }
+
+    /**
+     * Apply a batch of operations inside a single transaction. The single-row notifications
+     * are held back while the batch runs and every touched URI is notified once when it commits.
+     */
+    @Override
+    public ContentProviderResult[] applyBatch(ArrayList<ContentProviderOperation> operations)
+            throws OperationApplicationException {
+        SQLiteDatabase db = mDbHelper.getWritableDatabase();
+        boolean committed = false;
+        mNotifier.beginBatch();
+        db.beginTransaction();
+        try {
+            ContentProviderResult[] results = super.applyBatch(operations);
+            db.setTransactionSuccessful();
+            committed = true;
+            return results;
+        } finally {
+            db.endTransaction();
+            // The operations invalidated their items before the commit, a query in between
+            // may have cached what was there before
+            mItemCache.invalidateAll();
+            mNotifier.endBatch(committed);
+            List<String> unusedImages;
+            synchronized (mBatchUnusedImages) {
+                unusedImages = new ArrayList<>(mBatchUnusedImages);
+                mBatchUnusedImages.clear();
+            }
+            if (committed) {
+                deleteUnusedImages(db, unusedImages);
+            }
+        }
+    }
+
+    /**
+     * Handles {@link InventoryContract#METHOD_ADJUST_QUANTITY}. The new quantity is computed by
+     * SQLite as quantity + delta and the row is only touched when the result stays non-negative,
+     * so there is no read-modify-write window in the app.
+     */
+    @Override
+    public Bundle call(String method, String arg, Bundle extras) {
+        if (InventoryContract.METHOD_IMPORT_BATCH.equals(method)) {
+            return importBatch(arg, extras);
+        }
+        if (InventoryContract.METHOD_LAST_CHANGE.equals(method)) {
+            Bundle result = new Bundle();
+            result.putLong(InventoryContract.EXTRA_CHANGED, DatabaseUtils.longForQuery(
+                    mDbHelper.getReadableDatabase(), SQL_LAST_CHANGE, null));
+            return result;
+        }
+        if (InventoryContract.METHOD_COMPACT_MOVEMENTS.equals(method)) {
+            long before = extras != null && extras.containsKey(InventoryContract.EXTRA_BEFORE)
+                    ? extras.getLong(InventoryContract.EXTRA_BEFORE)
+                    : System.currentTimeMillis() - InventoryContract.MovementEntry.RETENTION_DAYS * InventoryContract.MovementEntry.DAY_MS;
+            Bundle result = new Bundle();
+            result.putInt(InventoryContract.EXTRA_COMPACTED, compactMovements(before));
+            return result;
+        }
+        if (!InventoryContract.METHOD_ADJUST_QUANTITY.equals(method)) {
+            return super.call(method, arg, extras);
+        }
+        if (arg == null || extras == null || !extras.containsKey(InventoryContract.EXTRA_DELTA)) {
+            throw new IllegalArgumentException("Adjusting the quantity requires an item id and a delta");
+        }
+        long id = Long.parseLong(arg);
+        int delta = extras.getInt(InventoryContract.EXTRA_DELTA);
+
+        SQLiteDatabase db = mDbHelper.getWritableDatabase();
+        boolean adjusted;
+        long quantity;
+        db.beginTransaction();
+        try {
+            StatementCache statements = statements(db);
+            SQLiteStatement adjust = statements.get(SQL_ADJUST_QUANTITY);
+            SQLiteStatement select = statements.get(SQL_SELECT_QUANTITY);
+            adjust.bindLong(1, delta);
+            adjust.bindLong(2, id);
+            adjust.bindLong(3, delta);
+            adjusted = adjust.executeUpdateDelete() != 0;
+            select.bindLong(1, id);
+            quantity = select.simpleQueryForLong();
+            db.setTransactionSuccessful();
+        } catch (SQLiteDoneException e) {
+            // No such item
+            return null;
+        } finally {
+            db.endTransaction();
+        }
+
+        if (adjusted) {
+            notifyChange(ContentUris.withAppendedId(InventoryContract.InventoryEntry.CONTENT_URI, id));
+        }
+        Bundle result = new Bundle();
+        result.putBoolean(InventoryContract.EXTRA_ADJUSTED, adjusted);
+        result.putInt(InventoryContract.EXTRA_QUANTITY, (int) quantity);
+        return result;
+    }
+
+    /**
+     * Open the photo of an item (items/#/image) as a file descriptor, so its bytes go straight
+     * from the file to the caller instead of through a cursor or an Intent. In a writable mode an
+     * item without a photo gets a new, empty file, which only becomes its photo once the descriptor
+     * is closed with bytes written to it. When a writable descriptor is closed the cached
+     * thumbnails of the photo are dropped and the item's listeners are notified.
+     */
+    @Override
+    public ParcelFileDescriptor openFile(Uri uri, String mode) throws FileNotFoundException {
+        if (sUriMatcher.match(uri) != ITEM_IMAGE) {
+            throw new IllegalArgumentException("Opening a file is not supported for " + uri);
+        }
+        // parseMode also rejects unknown modes
+        int fileMode = ParcelFileDescriptor.parseMode(mode);
+        boolean writable = mode.contains("w");
+        long id = Long.parseLong(uri.getPathSegments().get(1));
+        final Uri itemUri = ContentUris.withAppendedId(InventoryContract.InventoryEntry.CONTENT_URI, id);
+
+        SQLiteDatabase db = mDbHelper.getWritableDatabase();
+        String imageName;
+        Cursor cursor = db.query(InventoryContract.InventoryEntry.TABLE_NAME,
+                new String[]{InventoryContract.InventoryEntry.COLUMN_ITEM_IMAGE},
+                InventoryContract.InventoryEntry._ID + "=?", new String[]{String.valueOf(id)},
+                null, null, null);
+        try {
+            if (!cursor.moveToFirst()) {
+                throw new FileNotFoundException("No item " + id);
+            }
+            imageName = cursor.getString(0);
+        } finally {
+            cursor.close();
+        }
+
+        final ImageLoader imageLoader = ImageLoader.getInstance(getContext());
+        final boolean newImage = imageName == null;
+        if (newImage) {
+            if (!writable) {
+                throw new FileNotFoundException("Item " + id + " has no image");
+            }
+            try {
+                imageName = imageLoader.newImageName();
+            } catch (IOException e) {
+                throw new FileNotFoundException(e.getMessage());
+            }
+        }
+
+        final File file = imageLoader.getImageFile(imageName);
+        if (!writable) {
+            return ParcelFileDescriptor.open(file, fileMode);
+        }
+        final String writtenImageName = imageName;
+        final long itemId = id;
+        return ParcelFileDescriptor.open(file, fileMode, getFileCloseHandler(),
+                new ParcelFileDescriptor.OnCloseListener() {
+                    @Override
+                    public void onClose(IOException e) {
+                        if (newImage && !attachImage(itemId, writtenImageName, e == null && file.length() > 0)) {
+                            file.delete();
+                            return;
+                        }
+                        // The photo may have changed, the old thumbnails are stale
+                        imageLoader.invalidate(writtenImageName);
+                        notifyChange(itemUri);
+                    }
+                });
+    }
+
+    /**
+     * Make a file written through {@link #openFile} the photo of its item, unless the write
+     * failed or the item got a photo or was deleted in the meantime. Returns whether it did.
+     */
+    private boolean attachImage(long id, String imageName, boolean written) {
+        if (!written) {
+            return false;
+        }
+        ContentValues values = new ContentValues();
+        values.put(InventoryContract.InventoryEntry.COLUMN_ITEM_IMAGE, imageName);
+        return mDbHelper.getWritableDatabase().update(InventoryContract.InventoryEntry.TABLE_NAME, values,
+                InventoryContract.InventoryEntry._ID + "=? AND "
+                        + InventoryContract.InventoryEntry.COLUMN_ITEM_IMAGE + " IS NULL",
+                new String[]{String.valueOf(id)}) > 0;
+    }
+
+    /**
+     * The photos of the items in the selection, read in the transaction that is about to replace
+     * or delete them.
+     */
+    private static List<String> imageNames(SQLiteDatabase db, String selection, String[] selectionArgs) {
+        Cursor cursor = db.query(InventoryContract.InventoryEntry.TABLE_NAME,
+                new String[]{InventoryContract.InventoryEntry.COLUMN_ITEM_IMAGE},
+                DatabaseUtils.concatenateWhere(selection,
+                        InventoryContract.InventoryEntry.COLUMN_ITEM_IMAGE + " IS NOT NULL"),
+                selectionArgs, null, null, null);
+        try {
+            List<String> imageNames = new ArrayList<>(cursor.getCount());
+            while (cursor.moveToNext()) {
+                imageNames.add(cursor.getString(0));
+            }
+            return imageNames;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Delete the files and thumbnails of the photos that no item uses anymore, after the write
+     * that replaced or deleted them committed. Inside a batch that is once the whole batch commits.
+     */
+    private void deleteUnusedImages(SQLiteDatabase db, List<String> imageNames) {
+        if (imageNames.isEmpty()) {
+            return;
+        }
+        if (db.inTransaction()) {
+            synchronized (mBatchUnusedImages) {
+                mBatchUnusedImages.addAll(imageNames);
+            }
+            return;
+        }
+        ImageLoader imageLoader = ImageLoader.getInstance(getContext());
+        for (String imageName : imageNames) {
+            // An unchanged photo is still in use
+            if (DatabaseUtils.queryNumEntries(db, InventoryContract.InventoryEntry.TABLE_NAME,
+                    InventoryContract.InventoryEntry.COLUMN_ITEM_IMAGE + "=?", new String[]{imageName}) == 0) {
+                imageLoader.delete(imageName);
+            }
+        }
+    }
+
+    /**
+     * The items URI can be read as CSV, see {@link InventoryContract.InventoryEntry#CONTENT_CSV_TYPE}.
+     */
+    @Override
+    public String[] getStreamTypes(Uri uri, String mimeTypeFilter) {
+        if (sUriMatcher.match(uri) == ITEMS
+                && ClipDescription.compareMimeTypes(InventoryContract.InventoryEntry.CONTENT_CSV_TYPE, mimeTypeFilter)) {
+            return new String[]{InventoryContract.InventoryEntry.CONTENT_CSV_TYPE};
+        }
+        return super.getStreamTypes(uri, mimeTypeFilter);
+    }
+
+    /**
+     * Stream the whole inventory as CSV. The rows are written into a pipe on a background thread
+     * while the caller reads the other end, so neither side holds more than a chunk of them.
+     */
+    @Override
+    public AssetFileDescriptor openTypedAssetFile(Uri uri, String mimeTypeFilter, Bundle opts)
+            throws FileNotFoundException {
+        if (sUriMatcher.match(uri) != ITEMS
+                || !ClipDescription.compareMimeTypes(InventoryContract.InventoryEntry.CONTENT_CSV_TYPE, mimeTypeFilter)) {
+            return super.openTypedAssetFile(uri, mimeTypeFilter, opts);
+        }
+        ParcelFileDescriptor pipe = openPipeHelper(uri, InventoryContract.InventoryEntry.CONTENT_CSV_TYPE, opts,
+                mDbHelper, CSV_PIPE_WRITER);
+        return new AssetFileDescriptor(pipe, 0, AssetFileDescriptor.UNKNOWN_LENGTH);
+    }
+
+    /**
+     * Writes the CSV export into the pipe, runs on an AsyncTask thread.
+     */
+    private static final PipeDataWriter<InventoryDbHelper> CSV_PIPE_WRITER = new PipeDataWriter<InventoryDbHelper>() {
+        @Override
+        public void writeDataToPipe(ParcelFileDescriptor output, Uri uri, String mimeType, Bundle opts,
+                                    InventoryDbHelper dbHelper) {
+            // Not closed, the pipe helper closes the descriptor when this returns
+            Writer out = new BufferedWriter(new OutputStreamWriter(
+                    new FileOutputStream(output.getFileDescriptor()), Charset.forName("UTF-8")));
+            try {
+                long rows = new InventoryCsvExporter().export(dbHelper.getReadableDatabase(), out);
+                Log.d(LOG_TAG, "Exported " + rows + " items");
+            } catch (IOException e) {
+                // Most likely the reader closed its end early
+                Log.w(LOG_TAG, "CSV export stopped", e);
+            }
+        }
+    };
+
+    private synchronized Handler getFileCloseHandler() {
+        if (mFileCloseHandler == null) {
+            HandlerThread thread = new HandlerThread("inventory-files");
+            thread.start();
+            mFileCloseHandler = new Handler(thread.getLooper());
+        }
+        return mFileCloseHandler;
+    }
+
+    /**
+     * Notify all listeners that the data at the given URI has changed. The notification is
+     * coalesced with the other changes of the current window, see {@link ChangeNotifier}.
+     */
+    private void notifyChange(Uri uri) {
+        int match = sUriMatcher.match(uri);
+        // Every write notifies after it committed, so this is where the cached items go stale
+        switch (match) {
+            case ITEM_ID:
+                mItemCache.invalidate(ContentUris.parseId(uri));
+                maybeCompactMovements();
+                break;
+            case ITEMS:
+                // Many items
+                mItemCache.invalidateAll();
+                maybeCompactMovements();
+                break;
+            case SUPPLIERS:
+            case SUPPLIER_ID:
+                // The supplier columns of many items
+                mItemCache.invalidateAll();
+                break;
+        }
+        mStats.recordNotification(statsIndex(match));
+        mNotifier.notifyChange(uri);
+    }
+
+    /**
+     * Index of the URI pattern with the given matcher code in {@link #URI_PATTERNS}.
+     */
+    private static int statsIndex(int match) {
+        return match == UriMatcher.NO_MATCH ? 0 : match - ITEMS + 1;
+    }
+
+    /**
+     * Print the call statistics, for
+     * {@code adb shell dumpsys activity provider com.example.siamsot.appinventoryv1/.InventoryProvider}.
+     */
+    @Override
+    public void dump(FileDescriptor fd, PrintWriter writer, String[] args) {
+        mStats.dump(writer);
+        writer.println("Notifications sent after coalescing: " + mNotifier.getNotificationCount());
+        writer.println("Item cache: " + mItemCache.size() + " items, " + mItemCache.getHits() + " hits, "
+                + mItemCache.getMisses() + " misses");
+    }
+
+    /**
+     * The notifier of this provider, tests use it to flush and count notifications.
      */
-    private static final int ITEMS = 100;
+    ChangeNotifier getChangeNotifier() {
+        return mNotifier;
+    }
 
     /**
-     * URI matcher code for the content URI for a single item in the items table
+     * Turn what the user typed into an FTS MATCH expression: every word becomes a prefix query
+     * and all of them have to match. Everything that isn't a letter or a digit is dropped, the
+     * same way the FTS tokenizer splits the indexed text, so no FTS operators get through.
+     *
+     * @return the MATCH expression, or null if nothing searchable was typed
      */
-    private static final int ITEM_ID = 101;
+    static String buildMatchQuery(String search) {
+        if (search == null) {
+            return null;
+        }
+        StringBuilder matchQuery = new StringBuilder();
+        for (String word : search.split("[^\\p{L}\\p{N}]+")) {
+            if (word.length() == 0) {
+                continue;
+            }
+            if (matchQuery.length() > 0) {
+                matchQuery.append(' ');
+            }
+            // lower case, so words like OR and NEAR aren't read as operators
+            matchQuery.append(word.toLowerCase(Locale.ROOT)).append('*');
+        }
+        return matchQuery.length() == 0 ? null : matchQuery.toString();
+    }
 
     /**
-     * UriMatcher object to match a content URI to a corresponding code.
-     * The input passed into the constructor represents the code to return for the root URI.
-     * It's common to use NO_MATCH as the input for this case.
+     * Sanity checks/ Data validation for a new item. Throws an {@link IllegalArgumentException}
+     * if one of the required values is missing or out of range. {@link InventoryImporter} checks
+     * every record with it before sending it here.
      */
-    private static final UriMatcher sUriMatcher = new UriMatcher(UriMatcher.NO_MATCH);
-
-    // Static initializer. This is run the first time anything is called from this class.
-    static {
-        // The calls to addURI() go here, for all of the content URI patterns that the provider
-        // should recognize. All paths added to the UriMatcher have a corresponding code to return
-        // when a match is found.
-        sUriMatcher.addURI(InventoryContract.CONTENT_AUTHORITY, InventoryContract.PATH_ITEMS, ITEMS);
-        sUriMatcher.addURI(InventoryContract.CONTENT_AUTHORITY, InventoryContract.PATH_ITEMS + "/#", ITEM_ID);
+    static void validateItem(ContentValues contentValues) {
+        String name = contentValues.getAsString(InventoryContract.InventoryEntry.COLUMN_ITEM_NAME);
+        if (name == null) {
+            throw new IllegalArgumentException("Item requires a name");
+        }
+        Double price = contentValues.getAsDouble(InventoryContract.InventoryEntry.COLUMN_ITEM_PRICE);
+        if (price == null || price < 0) {
+            throw new IllegalArgumentException("Item's price must be bigger than 0");
+        }
+        Integer qty = contentValues.getAsInteger(InventoryContract.InventoryEntry.COLUMN_ITEM_QUANTITY);
+        if (qty == null || qty <= 0) {
+            throw new IllegalArgumentException("Item's quantity must be greater than 0");
+        }
+        validateReorderThreshold(contentValues);
+        // Either an existing supplier or everything needed to find or create one
+        if (contentValues.getAsLong(InventoryContract.InventoryEntry.COLUMN_SUPPLIER_ID) == null) {
+            validateSupplier(contentValues);
+        }
     }
 
     /**
-     * Initialize the provider and the database helper object.
+     * The reorder threshold is optional, but can't be null or below 0 when it is given.
      */
-    @Override
-    public boolean onCreate() {
-        mDbHelper = new InventoryDbHelper(getContext());
-        return true;
+    private static void validateReorderThreshold(ContentValues contentValues) {
+        if (contentValues.containsKey(InventoryContract.InventoryEntry.COLUMN_REORDER_THRESHOLD)) {
+            Integer threshold = contentValues.getAsInteger(InventoryContract.InventoryEntry.COLUMN_REORDER_THRESHOLD);
+            if (threshold == null || threshold < 0) {
+                throw new IllegalArgumentException("Item's reorder threshold can't be smaller than 0");
+            }
+        }
     }
 
     /**
-     * Perform the query for the given URI. Use the given projection, selection, selection arguments, and sort order.
+     * Sanity checks for a supplier, all three values are required.
      */
-    @Override
-    public Cursor query(Uri uri, String[] projection, String selection, String[] selectionArgs,
-                        String sortOrder) {
-        // Get readable database
-        SQLiteDatabase database = mDbHelper.getReadableDatabase();
-
-        // This cursor will hold the result of the query
-        Cursor cursor;
-
-        // Figure out if the URI matcher can match the URI to a specific code
-        int match = sUriMatcher.match(uri);
-        switch (match) {
-            case ITEMS:
-                /**For the ITEMS code, query the stock table directly with the given
-                 * projection, selection, selection arguments, and sort order. The cursor
-                 * could contain multiple rows of the pets table.
-                 */
-                cursor = database.query(InventoryContract.InventoryEntry.TABLE_NAME, projection, selection,
-                        selectionArgs, null, null, sortOrder);
-                break;
-            case ITEM_ID:
-
-                selection = InventoryContract.InventoryEntry._ID + "=?";
-                selectionArgs = new String[]{String.valueOf(ContentUris.parseId(uri))};
-
-                cursor = database.query(InventoryContract.InventoryEntry.TABLE_NAME, projection, selection, selectionArgs,
-                        null, null, sortOrder);
-                break;
-            default:
-                throw new IllegalArgumentException("Cannot query unknown URI " + uri);
+    private static void validateSupplier(ContentValues contentValues) {
+        String supplier_name = contentValues.getAsString(InventoryContract.InventoryEntry.COLUMN_SUPPLIER_NAME);
+        if (supplier_name == null) {
+            throw new IllegalArgumentException("Item requires a supplier's name");
+        }
+        String supplier_phone = contentValues.getAsString(InventoryContract.InventoryEntry.COLUMN_SUPPLIER_PHONE);
+        if (supplier_phone == null) {
+            throw new IllegalArgumentException("Item requires a supplier's phone");
+        }
+        String supplier_mail = contentValues.getAsString(InventoryContract.InventoryEntry.COLUMN_SUPPLIER_MAIL);
+        if (supplier_mail == null) {
+            throw new IllegalArgumentException("Item requires a supplier's mail");
         }
-        // Set notification URI on the Cursor
-        // so we know what content URI the Cursor was created for.
-        cursor.setNotificationUri(getContext().getContentResolver(), uri);
-        return cursor;
     }
 
     /**
-     * Insert new data into the provider with the given ContentValues.
+     * Bind an already validated item and the id of its supplier to the compiled
+     * {@link #SQL_INSERT_ITEM} statement.
      */
-    @Override
-    public Uri insert(Uri uri, ContentValues contentValues) {
-        final int match = sUriMatcher.match(uri);
-        switch (match) {
-            case ITEMS:
-                /**
-                 * Sanity checks/ Data validation!
-                 */
-                String name = contentValues.getAsString(InventoryContract.InventoryEntry.COLUMN_ITEM_NAME);
-                if (name == null) {
-                    throw new IllegalArgumentException("Item requires a name");
-                }
-                Double price = contentValues.getAsDouble(InventoryContract.InventoryEntry.COLUMN_ITEM_PRICE);
-                if (price < 0) {
-                    throw new IllegalArgumentException("Item's price must be bigger than 0");
-                }
-                int qty = contentValues.getAsInteger(InventoryContract.InventoryEntry.COLUMN_ITEM_QUANTITY);
-                if (qty <= 0) {
-                    throw new IllegalArgumentException("Item's quantity must be greater than 0");
-                }
-                String supplier_name = contentValues.getAsString(InventoryContract.InventoryEntry.COLUMN_SUPPLIER_NAME);
-                if (supplier_name == null) {
-                    throw new IllegalArgumentException("Item requires a supplier's name");
-                }
-                String supplier_phone = contentValues.getAsString(InventoryContract.InventoryEntry.COLUMN_SUPPLIER_PHONE);
-                if (supplier_phone == null) {
-                    throw new IllegalArgumentException("Item requires a supplier's phone");
-                }
-                String supplier_mail = contentValues.getAsString(InventoryContract.InventoryEntry.COLUMN_SUPPLIER_MAIL);
-                if (supplier_mail == null) {
-                    throw new IllegalArgumentException("Item requires a supplier's mail");
-                }
-
-                /**
-                 * Insert an item into the database with the given content values. Return the new content URI
-                 * for that specific row in the database.
-                 */
-                // Create and/or open a database to read from it
-                SQLiteDatabase db = mDbHelper.getWritableDatabase();
-                long id = db.insert(InventoryContract.InventoryEntry.TABLE_NAME, null, contentValues);
-                // If the ID is -1, then the insertion failed. Log an error and return null.
-                if (id == -1) {
-                    Log.e(LOG_TAG, "Failed to insert row for " + uri);
-                    return null;
-                }
-
-                // Notify all listeners that the data has changed
-                // if observer is null, the cursor adapter gets notified.
-                getContext().getContentResolver().notifyChange(uri, null);
-
-                // Once we know the ID of the new row in the table,
-                // return the new URI with the ID appended to the end of it
-                return ContentUris.withAppendedId(uri, id);
-            default:
-                throw new IllegalArgumentException("Insertion is not supported for " + uri);
+    private static void bindItem(SQLiteStatement statement, ContentValues contentValues, long supplierId) {
+        statement.clearBindings();
+        statement.bindString(1, contentValues.getAsString(InventoryContract.InventoryEntry.COLUMN_ITEM_NAME));
+        statement.bindDouble(2, contentValues.getAsDouble(InventoryContract.InventoryEntry.COLUMN_ITEM_PRICE));
+        statement.bindLong(3, contentValues.getAsInteger(InventoryContract.InventoryEntry.COLUMN_ITEM_QUANTITY));
+        // image can be null
+        String image = contentValues.getAsString(InventoryContract.InventoryEntry.COLUMN_ITEM_IMAGE);
+        if (image == null) {
+            statement.bindNull(4);
+        } else {
+            statement.bindString(4, image);
         }
+        statement.bindLong(5, supplierId);
+        Integer threshold = contentValues.getAsInteger(InventoryContract.InventoryEntry.COLUMN_REORDER_THRESHOLD);
+        statement.bindLong(6, threshold == null ? InventoryContract.InventoryEntry.DEFAULT_REORDER_THRESHOLD : threshold);
     }
 
     /**
@@ -162,17 +1348,42 @@ public class InventoryProvider extends ContentProvider {
     @Override
     public int update(Uri uri, ContentValues contentValues, String selection,
                       String[] selectionArgs) {
+        long start = System.nanoTime();
         final int match = sUriMatcher.match(uri);
+        long rows = ProviderStats.FAILED;
+        try {
+            int rowsUpdated = update(match, uri, contentValues, selection, selectionArgs);
+            rows = rowsUpdated;
+            return rowsUpdated;
+        } finally {
+            mStats.record(OP_UPDATE, statsIndex(match), System.nanoTime() - start, rows);
+        }
+    }
+
+    private int update(int match, Uri uri, ContentValues contentValues, String selection, String[] selectionArgs) {
         switch (match) {
             case ITEMS:
                 return updateItem(uri, contentValues, selection, selectionArgs);
             case ITEM_ID:
+                // The two shapes the app writes go straight to their compiled statements
+                if (isQuantityOnly(contentValues)) {
+                    return updateQuantity(uri, contentValues);
+                }
+                if (isFullRow(contentValues)) {
+                    return updateRow(uri, contentValues);
+                }
                 // For the ITEM_ID code, extract out the ID from the URI,
                 // so we know which row to update. Selection will be "_id=?" and selection
                 // arguments will be a String array containing the actual ID.
                 selection = InventoryContract.InventoryEntry._ID + "=?";
                 selectionArgs = new String[] { String.valueOf(ContentUris.parseId(uri)) };
                 return updateItem(uri, contentValues, selection, selectionArgs);
+            case SUPPLIERS:
+                return updateSupplier(uri, contentValues, selection, selectionArgs);
+            case SUPPLIER_ID:
+                selection = InventoryContract.SupplierEntry._ID + "=?";
+                selectionArgs = new String[] { String.valueOf(ContentUris.parseId(uri)) };
+                return updateSupplier(uri, contentValues, selection, selectionArgs);
             default:
                 throw new IllegalArgumentException("Update is not supported for " + uri);
         }
@@ -205,6 +1416,7 @@ public class InventoryProvider extends ContentProvider {
                 throw new IllegalArgumentException("Item's quantity must be greater than 0");
             }
         }
+        validateReorderThreshold(values);
 
         // image can be null
 
@@ -230,56 +1442,525 @@ public class InventoryProvider extends ContentProvider {
         if (values.size() == 0) { return 0; }
 
         SQLiteDatabase database = mDbHelper.getWritableDatabase();
+        boolean withImage = values.containsKey(InventoryContract.InventoryEntry.COLUMN_ITEM_IMAGE);
+
+        if (!mentionsSupplier(values)) {
+            int rowsUpdated;
+            List<String> replacedImages = Collections.emptyList();
+            database.beginTransaction();
+            try {
+                if (withImage) {
+                    replacedImages = imageNames(database, selection, selectionArgs);
+                }
+                rowsUpdated = database.update(InventoryContract.InventoryEntry.TABLE_NAME, values, selection, selectionArgs);
+                database.setTransactionSuccessful();
+            } finally {
+                database.endTransaction();
+            }
+            if (rowsUpdated != 0) {
+                deleteUnusedImages(database, replacedImages);
+                // Notify all listeners that the data has changed
+                notifyChange(uri);
+            }
+            return rowsUpdated;
+        }
+
+        // The supplier's fields point the item to another supplier, found or created in the same transaction
+        int rowsUpdated;
+        List<String> replacedImages = Collections.emptyList();
+        database.beginTransaction();
+        SupplierResolver suppliers = new SupplierResolver(statements(database));
+        try {
+            if (withImage) {
+                replacedImages = imageNames(database, selection, selectionArgs);
+            }
+            if (sUriMatcher.match(uri) == ITEM_ID) {
+                // A single item keeps the fields of its current supplier that aren't given
+                values = withCurrentSupplier(database, ContentUris.parseId(uri), values);
+            }
+            if (values == null) {
+                rowsUpdated = 0;
+            } else {
+                validateSupplier(values);
+                rowsUpdated = database.update(InventoryContract.InventoryEntry.TABLE_NAME,
+                        suppliers.resolve(values), selection, selectionArgs);
+            }
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+        }
+        if (rowsUpdated != 0) {
+            deleteUnusedImages(database, replacedImages);
+            notifyChange(uri);
+            if (suppliers.createdAny()) {
+                notifyChange(InventoryContract.SupplierEntry.CONTENT_URI);
+            }
+        }
+        return rowsUpdated;
+    }
+
+    /**
+     * Whether the values set nothing but the quantity.
+     */
+    private static boolean isQuantityOnly(ContentValues values) {
+        return values.size() == 1 && values.containsKey(InventoryContract.InventoryEntry.COLUMN_ITEM_QUANTITY);
+    }
+
+    /**
+     * Whether the values are a whole item as the editor saves it: name, price, quantity and the
+     * supplier (its id, or its name, phone and mail), optionally the image and the reorder
+     * threshold, and nothing else.
+     */
+    private static boolean isFullRow(ContentValues values) {
+        if (!values.containsKey(InventoryContract.InventoryEntry.COLUMN_ITEM_NAME)
+                || !values.containsKey(InventoryContract.InventoryEntry.COLUMN_ITEM_PRICE)
+                || !values.containsKey(InventoryContract.InventoryEntry.COLUMN_ITEM_QUANTITY)) {
+            return false;
+        }
+        int size = 3;
+        if (values.containsKey(InventoryContract.InventoryEntry.COLUMN_ITEM_IMAGE)) {
+            size++;
+        }
+        if (values.containsKey(InventoryContract.InventoryEntry.COLUMN_REORDER_THRESHOLD)) {
+            size++;
+        }
+        if (values.containsKey(InventoryContract.InventoryEntry.COLUMN_SUPPLIER_ID)) {
+            size++;
+        } else {
+            for (String column : SUPPLIER_COLUMNS) {
+                if (!values.containsKey(column)) {
+                    return false;
+                }
+            }
+            size += SUPPLIER_COLUMNS.length;
+        }
+        return values.size() == size;
+    }
+
+    /**
+     * Fast path of {@link #updateItem} for {@link #isQuantityOnly(ContentValues)} values: only the
+     * quantity is checked, and the compiled {@link #SQL_UPDATE_QUANTITY} is executed.
+     */
+    private int updateQuantity(Uri uri, ContentValues values) {
+        Integer quantity = values.getAsInteger(InventoryContract.InventoryEntry.COLUMN_ITEM_QUANTITY);
+        if (quantity == null || quantity < 0) {
+            throw new IllegalArgumentException("Item's quantity must be greater than 0");
+        }
+        SQLiteDatabase db = mDbHelper.getWritableDatabase();
+        int rowsUpdated;
+        db.beginTransaction();
+        try {
+            SQLiteStatement statement = statements(db).get(SQL_UPDATE_QUANTITY);
+            statement.bindLong(1, quantity);
+            statement.bindLong(2, ContentUris.parseId(uri));
+            rowsUpdated = statement.executeUpdateDelete();
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        if (rowsUpdated != 0) {
+            notifyChange(uri);
+        }
+        return rowsUpdated;
+    }
+
+    /**
+     * Fast path of {@link #updateItem} for {@link #isFullRow(ContentValues)} values, with the same
+     * checks. The supplier is found or created like on insert, but only kept if the item exists.
+     */
+    private int updateRow(Uri uri, ContentValues values) {
+        if (values.getAsString(InventoryContract.InventoryEntry.COLUMN_ITEM_NAME) == null) {
+            throw new IllegalArgumentException("Item requires a name");
+        }
+        Double price = values.getAsDouble(InventoryContract.InventoryEntry.COLUMN_ITEM_PRICE);
+        if (price == null || price < 0) {
+            throw new IllegalArgumentException("Item's price must be bigger than 0");
+        }
+        Integer quantity = values.getAsInteger(InventoryContract.InventoryEntry.COLUMN_ITEM_QUANTITY);
+        if (quantity == null || quantity < 0) {
+            throw new IllegalArgumentException("Item's quantity must be greater than 0");
+        }
+        Long supplierId = values.getAsLong(InventoryContract.InventoryEntry.COLUMN_SUPPLIER_ID);
+        if (supplierId == null) {
+            validateSupplier(values);
+        }
+        validateReorderThreshold(values);
+        Integer threshold = values.getAsInteger(InventoryContract.InventoryEntry.COLUMN_REORDER_THRESHOLD);
+        boolean withImage = values.containsKey(InventoryContract.InventoryEntry.COLUMN_ITEM_IMAGE);
 
-        int rowsUpdated = database.update(InventoryContract.InventoryEntry.TABLE_NAME, values, selection, selectionArgs);
+        SQLiteDatabase db = mDbHelper.getWritableDatabase();
+        int rowsUpdated;
+        List<String> replacedImages = Collections.emptyList();
+        db.beginTransaction();
+        StatementCache statements = statements(db);
+        SupplierResolver suppliers = new SupplierResolver(statements);
+        try {
+            if (withImage) {
+                replacedImages = imageNames(db, InventoryContract.InventoryEntry._ID + "=?",
+                        new String[]{String.valueOf(ContentUris.parseId(uri))});
+            }
+            SQLiteStatement statement = statements.get(withImage ? SQL_UPDATE_ITEM_WITH_IMAGE : SQL_UPDATE_ITEM);
+            statement.bindString(1, values.getAsString(InventoryContract.InventoryEntry.COLUMN_ITEM_NAME));
+            statement.bindDouble(2, price);
+            statement.bindLong(3, quantity);
+            statement.bindLong(4, suppliers.resolveId(values));
+            if (threshold == null) {
+                statement.bindNull(5);
+            } else {
+                statement.bindLong(5, threshold);
+            }
+            int idIndex = 6;
+            if (withImage) {
+                String image = values.getAsString(InventoryContract.InventoryEntry.COLUMN_ITEM_IMAGE);
+                if (image == null) {
+                    statement.bindNull(idIndex);
+                } else {
+                    statement.bindString(idIndex, image);
+                }
+                idIndex++;
+            }
+            statement.bindLong(idIndex, ContentUris.parseId(uri));
+            rowsUpdated = statement.executeUpdateDelete();
+            // Without the item, a supplier created for it is rolled back
+            if (rowsUpdated != 0) {
+                db.setTransactionSuccessful();
+            }
+        } finally {
+            db.endTransaction();
+        }
         if (rowsUpdated != 0) {
-            // Notify all listeners that the data has changed
-            // if observer is null, the cursor adapter gets notified.
-            getContext().getContentResolver().notifyChange(uri, null);
+            deleteUnusedImages(db, replacedImages);
+            notifyChange(uri);
+            if (suppliers.createdAny()) {
+                notifyChange(InventoryContract.SupplierEntry.CONTENT_URI);
+            }
+        }
+        return rowsUpdated;
+    }
+
+    /**
+     * Execute a compiled insert, -1 if a constraint refused the row, like {@link SQLiteDatabase#insert}.
+     */
+    private static long executeInsert(SQLiteStatement statement) {
+        try {
+            return statement.executeInsert();
+        } catch (SQLiteConstraintException e) {
+            Log.e(LOG_TAG, "Constraint refused the row", e);
+            return -1;
+        }
+    }
+
+    private static boolean mentionsSupplier(ContentValues values) {
+        for (String column : SUPPLIER_COLUMNS) {
+            if (values.containsKey(column)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The values with the missing supplier fields filled in from the item's current supplier,
+     * or null if there is no such item.
+     */
+    private static ContentValues withCurrentSupplier(SQLiteDatabase db, long itemId, ContentValues values) {
+        Cursor cursor = db.query(InventoryContract.InventoryEntry.DETAILS_VIEW_NAME, SUPPLIER_COLUMNS,
+                InventoryContract.InventoryEntry._ID + "=?", new String[]{String.valueOf(itemId)},
+                null, null, null);
+        try {
+            if (!cursor.moveToFirst()) {
+                return null;
+            }
+            ContentValues merged = new ContentValues(values);
+            for (int i = 0; i < SUPPLIER_COLUMNS.length; i++) {
+                if (!merged.containsKey(SUPPLIER_COLUMNS[i])) {
+                    merged.put(SUPPLIER_COLUMNS[i], cursor.getString(i));
+                }
+            }
+            return merged;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Update suppliers. Every item of an updated supplier shows the new values, so the items'
+     * listeners are notified as well. Changing a supplier into one that already exists fails
+     * on the unique constraint.
+     */
+    private int updateSupplier(Uri uri, ContentValues values, String selection, String[] selectionArgs) {
+        for (String column : SUPPLIER_COLUMNS) {
+            if (values.containsKey(column) && values.getAsString(column) == null) {
+                throw new IllegalArgumentException("Supplier requires a " + column);
+            }
         }
 
+        if (values.size() == 0) { return 0; }
+
+        int rowsUpdated = mDbHelper.getWritableDatabase().update(InventoryContract.SupplierEntry.TABLE_NAME,
+                values, selection, selectionArgs);
+        if (rowsUpdated != 0) {
+            notifyChange(uri);
+            notifyChange(InventoryContract.InventoryEntry.CONTENT_URI);
+        }
         return rowsUpdated;
     }
 
+    /**
+     * The SQL of a query of the items or the search results, built from the URI's parameters.
+     * The optional after_id and limit parameters select one page of the table (keyset
+     * pagination), so callers never need to load the whole table at once. The sort and
+     * supplier_id parameters order and filter it in SQL, each combination through its own index,
+     * and changed_after reads the changes since a given one from the change index. The plan tests
+     * explain exactly the SQL built here.
+     */
+    static final class ItemQuery {
+        final String table;
+        final String[] projection;
+        final String selection;
+        final String[] selectionArgs;
+        final String sortOrder;
+        final String limit;
+
+        private ItemQuery(String table, String[] projection, String selection, String[] selectionArgs,
+                          String sortOrder, String limit) {
+            this.table = table;
+            this.projection = projection;
+            this.selection = selection;
+            this.selectionArgs = selectionArgs;
+            this.sortOrder = sortOrder;
+            this.limit = limit;
+        }
+
+        static ItemQuery of(Uri uri, String[] projection, String selection, String[] selectionArgs,
+                            String sortOrder) {
+            String supplierId = uri.getQueryParameter(InventoryContract.QUERY_PARAMETER_SUPPLIER_ID);
+            if (supplierId != null) {
+                selection = DatabaseUtils.concatenateWhere(selection,
+                        InventoryContract.InventoryEntry.COLUMN_SUPPLIER_ID + " = ?");
+                selectionArgs = DatabaseUtils.appendSelectionArgs(selectionArgs,
+                        new String[]{String.valueOf(Long.parseLong(supplierId))});
+            }
+            String sort = uri.getQueryParameter(InventoryContract.QUERY_PARAMETER_SORT);
+            String sortKey = InventoryContract.InventoryEntry.sortKeyColumn(sort);
+            String afterKey = uri.getQueryParameter(InventoryContract.QUERY_PARAMETER_AFTER_KEY);
+            String afterId = uri.getQueryParameter(InventoryContract.QUERY_PARAMETER_AFTER_ID);
+            String limit = uri.getQueryParameter(InventoryContract.QUERY_PARAMETER_LIMIT);
+            String changedAfter = uri.getQueryParameter(InventoryContract.QUERY_PARAMETER_CHANGED_AFTER);
+            if (changedAfter != null) {
+                if (sortKey != null) {
+                    throw new IllegalArgumentException("changed_after can't be sorted: " + uri);
+                }
+                selection = DatabaseUtils.concatenateWhere(selection,
+                        InventoryContract.InventoryEntry.COLUMN_CHANGED + " > ?");
+                selectionArgs = DatabaseUtils.appendSelectionArgs(selectionArgs,
+                        new String[]{String.valueOf(Long.parseLong(changedAfter))});
+                if (sortOrder == null) {
+                    sortOrder = InventoryContract.InventoryEntry.COLUMN_CHANGED;
+                }
+            }
+            if (sortKey != null) {
+                // Highest value first, everything else ascending
+                boolean descending = InventoryContract.SORT_VALUE.equals(sort);
+                if (afterKey != null) {
+                    if (afterId == null) {
+                        throw new IllegalArgumentException("after_key needs after_id: " + uri);
+                    }
+                    selection = DatabaseUtils.concatenateWhere(selection, keysetSelection(sortKey, descending));
+                    String key = String.valueOf(Long.parseLong(afterKey));
+                    selectionArgs = DatabaseUtils.appendSelectionArgs(selectionArgs,
+                            new String[]{key, key, String.valueOf(Long.parseLong(afterId))});
+                }
+                if (sortOrder == null) {
+                    String direction = descending ? " DESC" : "";
+                    sortOrder = sortKey + direction + ", " + InventoryContract.InventoryEntry._ID + direction;
+                }
+            } else {
+                if (afterId != null) {
+                    selection = DatabaseUtils.concatenateWhere(selection, InventoryContract.InventoryEntry._ID + " > ?");
+                    selectionArgs = DatabaseUtils.appendSelectionArgs(selectionArgs,
+                            new String[]{String.valueOf(Long.parseLong(afterId))});
+                }
+                if ((afterId != null || limit != null) && sortOrder == null) {
+                    // pages are only stable in _id order
+                    sortOrder = InventoryContract.InventoryEntry._ID;
+                }
+            }
+            if (limit != null) {
+                // parse it, the limit ends up in the SQL string
+                limit = String.valueOf(Integer.parseInt(limit));
+            }
+            return new ItemQuery(itemSource(projection, selection, sortOrder), projection, selection,
+                    selectionArgs, sortOrder, limit);
+        }
+
+        String toSql() {
+            return SQLiteQueryBuilder.buildQueryString(false, table, projection, selection, null, null,
+                    sortOrder, limit);
+        }
+
+        Cursor run(SQLiteDatabase db) {
+            return db.query(table, projection, selection, selectionArgs, null, null, sortOrder, limit);
+        }
+    }
+
+    /**
+     * Finds the supplier with the name, phone and mail of an item, creating it if there is none.
+     * Every supplier is looked up once per instance, so a bulk insert with a few suppliers does a
+     * few lookups. Use it inside a transaction.
+     */
+    private static final class SupplierResolver {
+        private static final String SQL_INSERT_SUPPLIER = "INSERT OR IGNORE INTO "
+                + InventoryContract.SupplierEntry.TABLE_NAME + " ("
+                + InventoryContract.SupplierEntry.COLUMN_SUPPLIER_NAME + ", "
+                + InventoryContract.SupplierEntry.COLUMN_SUPPLIER_PHONE + ", "
+                + InventoryContract.SupplierEntry.COLUMN_SUPPLIER_MAIL + ") VALUES (?, ?, ?)";
+
+        private static final String SQL_SELECT_SUPPLIER_ID = "SELECT " + InventoryContract.SupplierEntry._ID
+                + " FROM " + InventoryContract.SupplierEntry.TABLE_NAME + " WHERE "
+                + InventoryContract.SupplierEntry.COLUMN_SUPPLIER_NAME + " = ? AND "
+                + InventoryContract.SupplierEntry.COLUMN_SUPPLIER_PHONE + " = ? AND "
+                + InventoryContract.SupplierEntry.COLUMN_SUPPLIER_MAIL + " = ?";
+
+        private final StatementCache mStatements;
+        private final Map<List<String>, Long> mIds = new HashMap<>();
+        private boolean mCreatedAny;
+
+        SupplierResolver(StatementCache statements) {
+            mStatements = statements;
+        }
+
+        /**
+         * The id of the item's supplier: the given supplier_id, or the one found for its fields.
+         */
+        long resolveId(ContentValues values) {
+            Long supplierId = values.getAsLong(InventoryContract.InventoryEntry.COLUMN_SUPPLIER_ID);
+            if (supplierId != null && !mentionsSupplier(values)) {
+                return supplierId;
+            }
+            List<String> key = Arrays.asList(
+                    values.getAsString(InventoryContract.SupplierEntry.COLUMN_SUPPLIER_NAME),
+                    values.getAsString(InventoryContract.SupplierEntry.COLUMN_SUPPLIER_PHONE),
+                    values.getAsString(InventoryContract.SupplierEntry.COLUMN_SUPPLIER_MAIL));
+            Long id = mIds.get(key);
+            if (id != null) {
+                return id;
+            }
+            SQLiteStatement insert = mStatements.get(SQL_INSERT_SUPPLIER);
+            SQLiteStatement select = mStatements.get(SQL_SELECT_SUPPLIER_ID);
+            for (int i = 0; i < key.size(); i++) {
+                insert.bindString(i + 1, key.get(i));
+                select.bindString(i + 1, key.get(i));
+            }
+            // -1 when it already existed
+            if (insert.executeInsert() != -1) {
+                mCreatedAny = true;
+            }
+            id = select.simpleQueryForLong();
+            mIds.put(key, id);
+            return id;
+        }
+
+        /**
+         * The values for the items table: the supplier's fields replaced by its id.
+         */
+        ContentValues resolve(ContentValues values) {
+            ContentValues itemValues = new ContentValues(values);
+            itemValues.put(InventoryContract.InventoryEntry.COLUMN_SUPPLIER_ID, resolveId(values));
+            for (String column : SUPPLIER_COLUMNS) {
+                itemValues.remove(column);
+            }
+            return itemValues;
+        }
+
+        /** Whether one of the lookups created a new supplier */
+        boolean createdAny() {
+            return mCreatedAny;
+        }
+    }
+
 
     /**
      * Delete the data at the given selection and selection arguments.
      */
     @Override
     public int delete(Uri uri, String selection, String[] selectionArgs) {
+        long start = System.nanoTime();
+        final int match = sUriMatcher.match(uri);
+        long rows = ProviderStats.FAILED;
+        try {
+            int rowsDeleted = delete(match, uri, selection, selectionArgs);
+            rows = rowsDeleted;
+            return rowsDeleted;
+        } finally {
+            mStats.record(OP_DELETE, statsIndex(match), System.nanoTime() - start, rows);
+        }
+    }
+
+    private int delete(int match, Uri uri, String selection, String[] selectionArgs) {
         // Get writeable database
         SQLiteDatabase database = mDbHelper.getWritableDatabase();
 
-        final int match = sUriMatcher.match(uri);
         switch (match) {
             case ITEMS:
-                // Delete all rows that match the selection and selection args
-                // Notify all listeners that the data has changed
-                // if observer is null, the cursor adapter gets notified.
-                getContext().getContentResolver().notifyChange(uri, null);
-                int rowsDeleted = database.delete(InventoryContract.InventoryEntry.TABLE_NAME, selection, selectionArgs);
+                // Delete all rows that match the selection and selection args, with their photos
+                int rowsDeleted;
+                List<String> deletedImages;
+                database.beginTransaction();
+                try {
+                    deletedImages = imageNames(database, selection, selectionArgs);
+                    rowsDeleted = database.delete(InventoryContract.InventoryEntry.TABLE_NAME, selection, selectionArgs);
+                    database.setTransactionSuccessful();
+                } finally {
+                    database.endTransaction();
+                }
                 // If 1 or more rows were deleted, then notify all listeners that the data at the
                 // given URI has changed
                 if (rowsDeleted != 0) {
-                    getContext().getContentResolver().notifyChange(uri, null);
+                    deleteUnusedImages(database, deletedImages);
+                    notifyChange(uri);
                 }
                 // Return the number of rows deleted
                 return rowsDeleted;
             case ITEM_ID:
-                // Delete a single row given by the ID in the URI
-                selection = InventoryContract.InventoryEntry._ID + "=?";
-                selectionArgs = new String[] { String.valueOf(ContentUris.parseId(uri)) };
-                // Notify all listeners that the data has changed
-                // if observer is null, the cursor adapter gets notified.
-                getContext().getContentResolver().notifyChange(uri, null);
-                rowsDeleted = database.delete(InventoryContract.InventoryEntry.TABLE_NAME, selection, selectionArgs);
+                // Delete a single row given by the ID in the URI, with the compiled statement
+                long id = ContentUris.parseId(uri);
+                database.beginTransaction();
+                try {
+                    deletedImages = imageNames(database, InventoryContract.InventoryEntry._ID + "=?",
+                            new String[]{String.valueOf(id)});
+                    SQLiteStatement statement = statements(database).get(SQL_DELETE_ITEM);
+                    statement.bindLong(1, id);
+                    rowsDeleted = statement.executeUpdateDelete();
+                    database.setTransactionSuccessful();
+                } finally {
+                    database.endTransaction();
+                }
                 // If 1 or more rows were deleted, then notify all listeners that the data at the
                 // given URI has changed
                 if (rowsDeleted != 0) {
-                    getContext().getContentResolver().notifyChange(uri, null);
+                    deleteUnusedImages(database, deletedImages);
+                    notifyChange(uri);
                 }
                 // Return the number of rows deleted
                 return rowsDeleted;
+            case SUPPLIER_ID:
+                selection = InventoryContract.SupplierEntry._ID + "=?";
+                selectionArgs = new String[] { String.valueOf(ContentUris.parseId(uri)) };
+                // fall through
+            case SUPPLIERS:
+                // The foreign key refuses to delete a supplier that still has items
+                rowsDeleted = database.delete(InventoryContract.SupplierEntry.TABLE_NAME, selection, selectionArgs);
+                if (rowsDeleted != 0) {
+                    notifyChange(uri);
+                }
+                return rowsDeleted;
+            case IMPORTS:
+                rowsDeleted = database.delete(InventoryContract.ImportEntry.TABLE_NAME, selection, selectionArgs);
+                if (rowsDeleted != 0) {
+                    notifyChange(uri);
+                }
+                return rowsDeleted;
             default:
                 throw new IllegalArgumentException("Deletion is not supported for " + uri);
         }
@@ -289,12 +1970,43 @@ public class InventoryProvider extends ContentProvider {
      */
     @Override
     public String getType(Uri uri) {
+        long start = System.nanoTime();
         final int match = sUriMatcher.match(uri);
+        long rows = ProviderStats.FAILED;
+        try {
+            String type = getType(match, uri);
+            rows = 0;
+            return type;
+        } finally {
+            mStats.record(OP_GET_TYPE, statsIndex(match), System.nanoTime() - start, rows);
+        }
+    }
+
+    private static String getType(int match, Uri uri) {
         switch (match) {
             case ITEMS:
+            case SEARCH:
                 return InventoryContract.InventoryEntry.CONTENT_LIST_TYPE;
             case ITEM_ID:
                 return InventoryContract.InventoryEntry.CONTENT_ITEM_TYPE;
+            case ITEM_IMAGE:
+                return InventoryContract.InventoryEntry.CONTENT_IMAGE_TYPE;
+            case STATS:
+                return InventoryContract.StatsEntry.CONTENT_ITEM_TYPE;
+            case SUPPLIER_STATS:
+                return InventoryContract.StatsEntry.CONTENT_SUPPLIERS_TYPE;
+            case SUPPLIERS:
+                return InventoryContract.SupplierEntry.CONTENT_LIST_TYPE;
+            case SUPPLIER_ID:
+                return InventoryContract.SupplierEntry.CONTENT_ITEM_TYPE;
+            case IMPORTS:
+                return InventoryContract.ImportEntry.CONTENT_LIST_TYPE;
+            case DIAGNOSTICS:
+                return InventoryContract.DiagnosticsEntry.CONTENT_LIST_TYPE;
+            case ITEM_MOVEMENTS:
+                return InventoryContract.MovementEntry.CONTENT_LIST_TYPE;
+            case ITEM_DAILY_MOVEMENTS:
+                return InventoryContract.MovementEntry.CONTENT_DAILY_TYPE;
             default:
                 throw new IllegalStateException("Unknown URI " + uri + " with match " + match);
         }
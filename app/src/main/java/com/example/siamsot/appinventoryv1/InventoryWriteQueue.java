@@ -0,0 +1,213 @@
+package com.example.siamsot.appinventoryv1;
+
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.content.Context;
+import android.net.Uri;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.text.TextUtils;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Single background thread that runs every write to the {@link InventoryProvider}, in the order
+ * the screens submitted them, so no insert/update/delete runs on the main thread.
+ * Completion callbacks are delivered on the main thread.
+ * <p>
+ * Writes to the same item that are still waiting in the queue are merged: two updates become one
+ * update with the later values winning, and two quantity increases become one with the deltas
+ * added up. Every caller still gets its callback with the result of the merged write. Decreases
+ * aren't merged: the provider refuses one that would go below zero, so two -1 at a quantity of 1
+ * must stay a -1 that goes through and one that is refused, not a -2 that is refused as a whole.
+ */
+final class InventoryWriteQueue {
+    private static final String LOG = "InventoryWriteQueue";
+
+    private static final int INSERT = 0;
+    private static final int UPDATE = 1;
+    private static final int DELETE = 2;
+    private static final int ADJUST_QUANTITY = 3;
+
+    private static InventoryWriteQueue sInstance;
+
+    /**
+     * Receives the result of a write on the main thread.
+     */
+    abstract static class Callback<T> {
+        abstract void onComplete(T result);
+
+        /**
+         * The provider refused the write, for example because a value didn't pass validation.
+         */
+        void onError(RuntimeException e) {
+            Log.e(LOG, "Write failed", e);
+        }
+    }
+
+    private final ContentResolver mResolver;
+    private final Handler mWriteHandler;
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    /** The last queued write of each item that hasn't started yet, later writes may merge into it */
+    private final HashMap<Uri, Write> mPendingByRow = new HashMap<>();
+
+    static synchronized InventoryWriteQueue getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new InventoryWriteQueue(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    private InventoryWriteQueue(Context context) {
+        this(context.getContentResolver(), startWriteThread());
+    }
+
+    /**
+     * A queue writing through the given resolver on the given looper, tests use it with a mock
+     * resolver.
+     */
+    InventoryWriteQueue(ContentResolver resolver, Looper writeLooper) {
+        mResolver = resolver;
+        mWriteHandler = new Handler(writeLooper);
+    }
+
+    private static Looper startWriteThread() {
+        HandlerThread thread = new HandlerThread("inventory-writes");
+        thread.start();
+        return thread.getLooper();
+    }
+
+    void insert(Uri uri, ContentValues values, Callback<Uri> callback) {
+        Write write = new Write(INSERT, uri, new ContentValues(values));
+        enqueue(write, callback);
+    }
+
+    void update(Uri uri, ContentValues values, Callback<Integer> callback) {
+        synchronized (mPendingByRow) {
+            Write pending = mPendingByRow.get(uri);
+            if (pending != null && pending.kind == UPDATE) {
+                pending.values.putAll(values);
+                pending.callbacks.add(callback);
+                return;
+            }
+        }
+        enqueue(new Write(UPDATE, uri, new ContentValues(values)), callback);
+    }
+
+    void delete(Uri uri, Callback<Integer> callback) {
+        enqueue(new Write(DELETE, uri, null), callback);
+    }
+
+    /**
+     * Add delta to the quantity of the item, see {@link InventoryContract#adjustQuantity}.
+     */
+    void adjustQuantity(long id, int delta, Callback<Bundle> callback) {
+        Uri uri = ContentUris.withAppendedId(InventoryContract.InventoryEntry.CONTENT_URI, id);
+        synchronized (mPendingByRow) {
+            Write pending = mPendingByRow.get(uri);
+            // Increases always go through, so adding them up can't change the outcome
+            if (pending != null && pending.kind == ADJUST_QUANTITY && pending.delta > 0 && delta > 0) {
+                pending.delta += delta;
+                pending.callbacks.add(callback);
+                return;
+            }
+        }
+        Write write = new Write(ADJUST_QUANTITY, uri, null);
+        write.delta = delta;
+        enqueue(write, callback);
+    }
+
+    private void enqueue(Write write, Callback<?> callback) {
+        write.callbacks.add(callback);
+        synchronized (mPendingByRow) {
+            if (isRowUri(write.uri)) {
+                // Later writes to this item may merge into this one, but not into anything before it
+                mPendingByRow.put(write.uri, write);
+            } else if (write.kind != INSERT) {
+                // Touches any number of items, nothing queued before it may be merged with what comes after
+                mPendingByRow.clear();
+            }
+        }
+        mWriteHandler.post(write);
+    }
+
+    private static boolean isRowUri(Uri uri) {
+        List<String> segments = uri.getPathSegments();
+        return segments.size() == 2 && TextUtils.isDigitsOnly(segments.get(1));
+    }
+
+    /**
+     * One queued write and everyone waiting for it.
+     */
+    private final class Write implements Runnable {
+        final int kind;
+        final Uri uri;
+        final ContentValues values;
+        int delta;
+        final ArrayList<Callback<?>> callbacks = new ArrayList<>();
+
+        Write(int kind, Uri uri, ContentValues values) {
+            this.kind = kind;
+            this.uri = uri;
+            this.values = values;
+        }
+
+        @Override
+        public void run() {
+            synchronized (mPendingByRow) {
+                // From now on nothing may be merged into this write
+                if (mPendingByRow.get(uri) == this) {
+                    mPendingByRow.remove(uri);
+                }
+            }
+
+            Object result = null;
+            RuntimeException error = null;
+            try {
+                switch (kind) {
+                    case INSERT:
+                        result = mResolver.insert(uri, values);
+                        break;
+                    case UPDATE:
+                        result = mResolver.update(uri, values, null, null);
+                        break;
+                    case DELETE:
+                        result = mResolver.delete(uri, null, null);
+                        break;
+                    case ADJUST_QUANTITY:
+                        result = InventoryContract.adjustQuantity(mResolver, ContentUris.parseId(uri), delta);
+                        break;
+                }
+            } catch (RuntimeException e) {
+                error = e;
+            }
+            deliver(result, error);
+        }
+
+        private void deliver(final Object result, final RuntimeException error) {
+            mMainHandler.post(new Runnable() {
+                @Override
+                @SuppressWarnings("unchecked")
+                public void run() {
+                    for (Callback callback : callbacks) {
+                        if (callback == null) {
+                            continue;
+                        }
+                        if (error == null) {
+                            callback.onComplete(result);
+                        } else {
+                            callback.onError(error);
+                        }
+                    }
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package com.example.siamsot.appinventoryv1;
+
+import android.database.Cursor;
+import android.database.MatrixCursor;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The most recently read items of {@link InventoryProvider}, whole rows of the items view keyed
+ * by _id, so a query of items/# can be answered from memory. Holds at most {@link #capacity}
+ * items and drops the least recently used one first. Thread safe.
+ * <p>
+ * The provider invalidates an item when it writes it, and everything when it writes more than
+ * one item or a supplier. A row read from the database is only kept if nothing was invalidated
+ * since the read started (see {@link #generation()}), so a reader that raced a write can't put
+ * the old row back after the write invalidated it.
+ */
+final class ItemCache {
+
+    static final int DEFAULT_CAPACITY = 64;
+
+    /**
+     * One cached item, its values by column name.
+     */
+    static final class Row {
+        private final String[] mColumns;
+        private final Object[] mValues;
+        private final Map<String, Integer> mIndexes;
+
+        private Row(String[] columns, Object[] values) {
+            mColumns = columns;
+            mValues = values;
+            mIndexes = new HashMap<>(columns.length * 2);
+            for (int i = 0; i < columns.length; i++) {
+                mIndexes.put(columns[i], i);
+            }
+        }
+
+        /**
+         * The current row of the cursor, with every value copied out.
+         */
+        static Row of(Cursor cursor) {
+            String[] columns = cursor.getColumnNames();
+            Object[] values = new Object[columns.length];
+            for (int i = 0; i < columns.length; i++) {
+                switch (cursor.getType(i)) {
+                    case Cursor.FIELD_TYPE_INTEGER:
+                        values[i] = cursor.getLong(i);
+                        break;
+                    case Cursor.FIELD_TYPE_FLOAT:
+                        values[i] = cursor.getDouble(i);
+                        break;
+                    case Cursor.FIELD_TYPE_STRING:
+                        values[i] = cursor.getString(i);
+                        break;
+                    case Cursor.FIELD_TYPE_BLOB:
+                        values[i] = cursor.getBlob(i);
+                        break;
+                    default:
+                        values[i] = null;
+                }
+            }
+            return new Row(columns, values);
+        }
+
+        /**
+         * A one-row cursor with the given columns, all of them if projection is null, or null if
+         * one of them isn't a plain column of the row (an expression, say).
+         */
+        Cursor toCursor(String[] projection) {
+            if (projection == null) {
+                projection = mColumns;
+            }
+            Object[] values = new Object[projection.length];
+            for (int i = 0; i < projection.length; i++) {
+                Integer index = mIndexes.get(projection[i]);
+                if (index == null) {
+                    return null;
+                }
+                values[i] = mValues[index];
+            }
+            MatrixCursor cursor = new MatrixCursor(projection, 1);
+            cursor.addRow(values);
+            return cursor;
+        }
+    }
+
+    private final int mCapacity;
+    private final LinkedHashMap<Long, Row> mRows;
+    private long mGeneration;
+    private long mHits;
+    private long mMisses;
+
+    ItemCache() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    ItemCache(int capacity) {
+        mCapacity = capacity;
+        // In access order, the eldest entry is the least recently used one
+        mRows = new LinkedHashMap<Long, Row>(capacity * 4 / 3 + 1, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Row> eldest) {
+                return size() > mCapacity;
+            }
+        };
+    }
+
+    /**
+     * The cached item, or null. Counts as a hit or a miss.
+     */
+    synchronized Row get(long id) {
+        Row row = mRows.get(id);
+        if (row == null) {
+            mMisses++;
+        } else {
+            mHits++;
+        }
+        return row;
+    }
+
+    /**
+     * Take this before reading a row from the database and hand it to {@link #put}.
+     */
+    synchronized long generation() {
+        return mGeneration;
+    }
+
+    /**
+     * Keep the row read from the database, unless something was invalidated since the
+     * generation was taken.
+     */
+    synchronized void put(long id, Row row, long generation) {
+        if (generation == mGeneration) {
+            mRows.put(id, row);
+        }
+    }
+
+    synchronized void invalidate(long id) {
+        mGeneration++;
+        mRows.remove(id);
+    }
+
+    synchronized void invalidateAll() {
+        mGeneration++;
+        mRows.clear();
+    }
+
+    synchronized long getHits() {
+        return mHits;
+    }
+
+    synchronized long getMisses() {
+        return mMisses;
+    }
+
+    synchronized int size() {
+        return mRows.size();
+    }
+}
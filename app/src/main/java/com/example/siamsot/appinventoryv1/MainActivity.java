@@ -1,21 +1,38 @@
 package com.example.siamsot.appinventoryv1;
 
+import android.app.AlertDialog;
 import android.app.LoaderManager;
+import android.content.ContentResolver;
 import android.content.ContentUris;
 import android.content.ContentValues;
 import android.content.CursorLoader;
+import android.content.DialogInterface;
+import android.content.Context;
 import android.content.Intent;
 import android.content.Loader;
+import android.content.res.AssetFileDescriptor;
 import android.database.Cursor;
 import android.net.Uri;
+import android.os.AsyncTask;
+import android.os.Handler;
 import android.support.v7.app.AppCompatActivity;
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.RecyclerView;
+import android.support.v7.widget.SearchView;
 import android.os.Bundle;
 import android.util.Log;
 import android.view.Menu;
 import android.view.MenuItem;
 import android.view.View;
-import android.widget.AdapterView;
-import android.widget.ListView;
+import android.widget.TextView;
+import android.widget.Toast;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 /**
  * Displays list of items that were entered and stored in the app.
@@ -25,32 +42,53 @@ public class MainActivity extends AppCompatActivity implements
     /** Tag for debugging purposes */
     private static final String LOG = MainActivity.class.getName();
 
-    /** Identifier for the item data loader */
-    private static final int ITEM_LOADER = 0;
+    /** Identifier for the loader of the stock totals */
+    private static final int STATS_LOADER = 0;
+
+    /** Request code for the document the CSV export is written to */
+    private static final int EXPORT_CSV_REQUEST = 1;
+
+    /** Request code for the file to import */
+    private static final int IMPORT_REQUEST = 2;
+
+    /** Time to wait after the last keystroke before the search runs */
+    private static final long SEARCH_DEBOUNCE_MS = 300;
+
+    /** Adapter for the RecyclerView, it pages through the items table */
+    InventoryPagingAdapter mPagingAdapter;
+
+    /** Runs the search once the user stopped typing */
+    private final Handler mSearchHandler = new Handler();
+
+    /** The latest text in the search box */
+    private String mPendingSearch;
 
-    /** Adapter for the ListView */
-    InventoryCursorAdapter mCursorAdapter;
+    /** One line with the stock totals above the list */
+    private TextView mStatsSummaryView;
+
+    private final Runnable mSearchRunnable = new Runnable() {
+        @Override
+        public void run() {
+            // The adapter queries the search URI in the background
+            mPagingAdapter.setSearch(mPendingSearch);
+        }
+    };
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_main);
 
-        // Find the ListView which will be populated with the item data
-        ListView itemListView = findViewById(R.id.list_view);
-
-        // Find and set empty view on the ListView, so that it only shows when the list has 0 items.
-        View emptyView = findViewById(R.id.empty_view);
-        itemListView.setEmptyView(emptyView);
-
-        // Setup an Adapter to create a list item for each row of inventory data in the Cursor.
-        // There is no inventory data yet (until the loader finishes) so pass in null for the Cursor.
-        mCursorAdapter = new InventoryCursorAdapter(this, null);
-        itemListView.setAdapter(mCursorAdapter);
-        itemListView.setOnItemClickListener(new AdapterView.OnItemClickListener() {
+        // Find the RecyclerView which will be populated with the item data
+        RecyclerView itemListView = findViewById(R.id.list_view);
+        itemListView.setLayoutManager(new LinearLayoutManager(this));
+        itemListView.setHasFixedSize(true);
 
+        // Setup an Adapter to create a list item for each row of inventory data.
+        // It fetches the rows page by page in the background as the list scrolls.
+        mPagingAdapter = new InventoryPagingAdapter(this, new InventoryPagingAdapter.OnItemClickListener() {
             @Override
-            public void onItemClick(AdapterView<?> adapterView, View view, int pos, long id) {
+            public void onItemClick(long id) {
                 // Create new intent to go to {@link EditorActivity}
                 Intent intent = new Intent(MainActivity.this, Editor.class);
 
@@ -64,10 +102,75 @@ public class MainActivity extends AppCompatActivity implements
                 startActivity(intent);
             }
         });
+        itemListView.setAdapter(mPagingAdapter);
 
+        // Show the empty view only when the list has 0 items.
+        final View emptyView = findViewById(R.id.empty_view);
+        mPagingAdapter.registerAdapterDataObserver(new RecyclerView.AdapterDataObserver() {
+            @Override
+            public void onChanged() {
+                emptyView.setVisibility(mPagingAdapter.getItemCount() == 0 ? View.VISIBLE : View.GONE);
+            }
 
-        // Kick off the loader
-        getLoaderManager().initLoader(ITEM_LOADER, null, this);
+            @Override
+            public void onItemRangeInserted(int positionStart, int itemCount) {
+                onChanged();
+            }
+
+            @Override
+            public void onItemRangeRemoved(int positionStart, int itemCount) {
+                onChanged();
+            }
+        });
+
+        // Load the first page
+        mPagingAdapter.start();
+
+        // The totals are aggregated by the provider, tap them for the details per supplier
+        mStatsSummaryView = findViewById(R.id.stats_summary);
+        mStatsSummaryView.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View view) {
+                startActivity(new Intent(MainActivity.this, StatsActivity.class));
+            }
+        });
+        getLoaderManager().initLoader(STATS_LOADER, null, this);
+
+        if (savedInstanceState == null) {
+            // Continue the imports the app didn't get to finish
+            new ImportTask().executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
+            // Watch for items to reorder in the background, from now on and after reboots
+            ReorderAlerts.schedule(getApplicationContext());
+        }
+    }
+
+    @Override
+    public Loader<Cursor> onCreateLoader(int id, Bundle bundle) {
+        return new CursorLoader(this, InventoryContract.StatsEntry.CONTENT_URI, null, null, null, null);
+    }
+
+    @Override
+    public void onLoadFinished(Loader<Cursor> loader, Cursor cursor) {
+        if (cursor == null || !cursor.moveToFirst()) {
+            return;
+        }
+        mStatsSummaryView.setText(getString(R.string.stats_summary,
+                cursor.getInt(cursor.getColumnIndex(InventoryContract.StatsEntry.COLUMN_ITEM_COUNT)),
+                cursor.getDouble(cursor.getColumnIndex(InventoryContract.StatsEntry.COLUMN_TOTAL_VALUE)),
+                cursor.getInt(cursor.getColumnIndex(InventoryContract.StatsEntry.COLUMN_LOW_STOCK_COUNT)),
+                cursor.getInt(cursor.getColumnIndex(InventoryContract.StatsEntry.COLUMN_OUT_OF_STOCK_COUNT))));
+    }
+
+    @Override
+    public void onLoaderReset(Loader<Cursor> loader) {
+        mStatsSummaryView.setText("");
+    }
+
+    @Override
+    protected void onDestroy() {
+        mSearchHandler.removeCallbacks(mSearchRunnable);
+        mPagingAdapter.stop();
+        super.onDestroy();
     }
 
     /**
@@ -85,16 +188,21 @@ public class MainActivity extends AppCompatActivity implements
         // Insert a new row for the item into the provider using the ContentResolver.
         // Use the contenturi to indicate that we want to insert
         // into the pets database table.
-        // Receive the new content URI that will allow us to access the items data in the future.
-        Uri newUri = getContentResolver().insert(InventoryContract.InventoryEntry.CONTENT_URI, values);
+        // The insert runs on the write queue's background thread.
+        InventoryWriteQueue.getInstance(this).insert(InventoryContract.InventoryEntry.CONTENT_URI, values, null);
     }
 
     /**
      * Helper method to delete all pets in the database.
      */
     private void deleteAllPets() {
-        int rowsDeleted = getContentResolver().delete(InventoryContract.InventoryEntry.CONTENT_URI, null, null);
-        Log.v("MainActivity", rowsDeleted + " rows deleted from pet database");
+        InventoryWriteQueue.getInstance(this).delete(InventoryContract.InventoryEntry.CONTENT_URI,
+                new InventoryWriteQueue.Callback<Integer>() {
+                    @Override
+                    void onComplete(Integer rowsDeleted) {
+                        Log.v("MainActivity", rowsDeleted + " rows deleted from pet database");
+                    }
+                });
     }
 
     @Override
@@ -102,9 +210,34 @@ public class MainActivity extends AppCompatActivity implements
         // Inflate the menu options from the res/menu/menu_catalog.xml file.
         // This adds menu items to the app bar.
         getMenuInflater().inflate(R.menu.main_menu_options, menu);
+
+        // Search as you type, debounced so we don't query on every keystroke
+        SearchView searchView = (SearchView) menu.findItem(R.id.action_search).getActionView();
+        searchView.setOnQueryTextListener(new SearchView.OnQueryTextListener() {
+            @Override
+            public boolean onQueryTextSubmit(String query) {
+                search(query, 0);
+                return true;
+            }
+
+            @Override
+            public boolean onQueryTextChange(String newText) {
+                search(newText, SEARCH_DEBOUNCE_MS);
+                return true;
+            }
+        });
         return true;
     }
 
+    /**
+     * Filter the list with the given text after the given delay, replacing any pending search.
+     */
+    private void search(String text, long delayMs) {
+        mPendingSearch = text;
+        mSearchHandler.removeCallbacks(mSearchRunnable);
+        mSearchHandler.postDelayed(mSearchRunnable, delayMs);
+    }
+
     @Override
     public boolean onOptionsItemSelected(MenuItem item) {
         // User clicked on a menu option in the app bar overflow menu
@@ -117,6 +250,36 @@ public class MainActivity extends AppCompatActivity implements
             case R.id.action_delete_all_entries:
                 deleteAllPets();
                 return true;
+            case R.id.action_export_csv:
+                // Let the user pick where the export goes, for example a cloud drive
+                Intent exportIntent = new Intent(Intent.ACTION_CREATE_DOCUMENT);
+                exportIntent.addCategory(Intent.CATEGORY_OPENABLE);
+                exportIntent.setType(InventoryContract.InventoryEntry.CONTENT_CSV_TYPE);
+                exportIntent.putExtra(Intent.EXTRA_TITLE, getString(R.string.export_file_name));
+                startActivityForResult(exportIntent, EXPORT_CSV_REQUEST);
+                return true;
+            case R.id.action_sort_added:
+                item.setChecked(true);
+                mPagingAdapter.setSort(null);
+                return true;
+            case R.id.action_sort_low_stock:
+                item.setChecked(true);
+                mPagingAdapter.setSort(InventoryContract.SORT_LOW_STOCK);
+                return true;
+            case R.id.action_sort_value:
+                item.setChecked(true);
+                mPagingAdapter.setSort(InventoryContract.SORT_VALUE);
+                return true;
+            case R.id.action_filter_supplier:
+                new ChooseSupplierTask().executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
+                return true;
+            case R.id.action_import:
+                Intent importIntent = new Intent(Intent.ACTION_OPEN_DOCUMENT);
+                importIntent.addCategory(Intent.CATEGORY_OPENABLE);
+                importIntent.setType("*/*");
+                importIntent.putExtra(Intent.EXTRA_MIME_TYPES, new String[]{"text/*", "application/json"});
+                startActivityForResult(importIntent, IMPORT_REQUEST);
+                return true;
             case R.id.action_go_to_catalog:
                 Intent editorIntent = new Intent(MainActivity.this, Editor.class);
                 startActivity(editorIntent);
@@ -125,36 +288,213 @@ public class MainActivity extends AppCompatActivity implements
     }
 
     @Override
-    public Loader<Cursor> onCreateLoader(int i, Bundle bundle) {
-        // Define a projection that specifies the columns from the table we care about.
-        String[] projection = {
-                InventoryContract.InventoryEntry._ID,
-                InventoryContract.InventoryEntry.COLUMN_ITEM_NAME,
-                InventoryContract.InventoryEntry.COLUMN_ITEM_PRICE,
-                InventoryContract.InventoryEntry.COLUMN_ITEM_QUANTITY,
-                InventoryContract.InventoryEntry.COLUMN_ITEM_IMAGE,
-                InventoryContract.InventoryEntry.COLUMN_SUPPLIER_NAME,
-                InventoryContract.InventoryEntry.COLUMN_SUPPLIER_PHONE,
-                InventoryContract.InventoryEntry.COLUMN_SUPPLIER_MAIL };
-
-        // This loader will execute the ContentProvider's query method on a background thread
-        return new CursorLoader(this,   // Parent activity context
-                InventoryContract.InventoryEntry.CONTENT_URI,   // Provider content URI to query
-                projection,             // Columns to include in the resulting Cursor
-                null,                   // No selection clause
-                null,                   // No selection arguments
-                null);                  // Default sort order
+    protected void onActivityResult(int requestCode, int resultCode, Intent data) {
+        if (requestCode == EXPORT_CSV_REQUEST) {
+            if (resultCode == RESULT_OK && data != null && data.getData() != null) {
+                new ExportCsvTask(getApplicationContext()).executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR, data.getData());
+            }
+            return;
+        }
+        if (requestCode == IMPORT_REQUEST) {
+            if (resultCode == RESULT_OK && data != null && data.getData() != null) {
+                Uri source = data.getData();
+                try {
+                    // Keep access to the file, so the import can continue after a restart
+                    getContentResolver().takePersistableUriPermission(source, Intent.FLAG_GRANT_READ_URI_PERMISSION);
+                } catch (SecurityException e) {
+                    Log.w(LOG, "Can't keep access to " + source, e);
+                }
+                new ImportTask().executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR, source);
+            }
+            return;
+        }
+        super.onActivityResult(requestCode, resultCode, data);
     }
 
-    @Override
-    public void onLoadFinished(Loader<Cursor> loader, Cursor data) {
-        // Update {@link PetCursorAdapter} with this new cursor containing updated pet data
-        mCursorAdapter.swapCursor(data);
+    /**
+     * Imports the given files, or with none the ones whose import didn't finish, and shows the
+     * progress in the app bar. The list follows along through the provider's notifications.
+     * A file that can't be read is reported and skipped, the others are still imported.
+     */
+    private class ImportTask extends AsyncTask<Uri, Long, InventoryImporter.Result> implements InventoryImporter.Listener {
+        /** The files that couldn't be read, a checkpoint one of them got to stays for the next start */
+        private final List<Uri> mFailedSources = new ArrayList<>();
+
+        @Override
+        protected InventoryImporter.Result doInBackground(Uri... uris) {
+            ContentResolver resolver = getContentResolver();
+            InventoryImporter importer = new InventoryImporter(resolver);
+            List<Uri> sources = new ArrayList<>(Arrays.asList(uris));
+            if (sources.isEmpty()) {
+                for (String source : importer.unfinishedSources()) {
+                    sources.add(Uri.parse(source));
+                }
+            }
+            long records = 0;
+            long imported = 0;
+            long failed = 0;
+            int finished = 0;
+            for (Uri source : sources) {
+                try {
+                    InventoryImporter.Result result = importer.importFrom(source,
+                            InventoryImporter.Format.of(resolver, source), this);
+                    if (result == null) {
+                        // Still running from before
+                        continue;
+                    }
+                    records += result.records;
+                    imported += result.imported;
+                    failed += result.failed;
+                    finished++;
+                } catch (IOException | SecurityException e) {
+                    // The checkpoint stays, the next start tries again, the other files go on
+                    Log.e(LOG, "Can't import " + source, e);
+                    mFailedSources.add(source);
+                    continue;
+                }
+                try {
+                    resolver.releasePersistableUriPermission(source, Intent.FLAG_GRANT_READ_URI_PERMISSION);
+                } catch (SecurityException e) {
+                    // It wasn't persisted
+                }
+            }
+            return finished == 0 ? null : new InventoryImporter.Result(records, imported, failed);
+        }
+
+        @Override
+        public void onProgress(long position, long imported, long failed) {
+            publishProgress(imported, failed);
+        }
+
+        @Override
+        public void onRecordFailed(long record, String message) {
+            Log.w(LOG, "Import record " + record + " skipped: " + message);
+        }
+
+        @Override
+        protected void onProgressUpdate(Long... counts) {
+            if (getSupportActionBar() != null) {
+                getSupportActionBar().setSubtitle(getString(R.string.import_progress, counts[0], counts[1]));
+            }
+        }
+
+        @Override
+        protected void onPostExecute(InventoryImporter.Result result) {
+            if (getSupportActionBar() != null) {
+                getSupportActionBar().setSubtitle(null);
+            }
+            for (Uri source : mFailedSources) {
+                String name = source.getLastPathSegment() == null ? source.toString() : source.getLastPathSegment();
+                Toast.makeText(getApplicationContext(),
+                        getString(R.string.import_source_failed, name), Toast.LENGTH_LONG).show();
+            }
+            if (result != null) {
+                Toast.makeText(getApplicationContext(),
+                        getString(R.string.import_finished, result.imported, result.failed), Toast.LENGTH_LONG).show();
+            }
+        }
     }
 
-    @Override
-    public void onLoaderReset(Loader<Cursor> loader) {
-        // Callback called when the data needs to be deleted
-        mCursorAdapter.swapCursor(null);
+    /**
+     * Reads the suppliers and lets the user pick the one whose items the list shows.
+     */
+    private class ChooseSupplierTask extends AsyncTask<Void, Void, Cursor> {
+        @Override
+        protected Cursor doInBackground(Void... voids) {
+            Cursor cursor = getContentResolver().query(InventoryContract.SupplierEntry.CONTENT_URI,
+                    new String[]{InventoryContract.SupplierEntry._ID, InventoryContract.SupplierEntry.COLUMN_SUPPLIER_NAME},
+                    null, null, null);
+            if (cursor != null) {
+                // Fill the window here rather than on the main thread
+                cursor.getCount();
+            }
+            return cursor;
+        }
+
+        @Override
+        protected void onPostExecute(Cursor cursor) {
+            if (cursor == null) {
+                return;
+            }
+            final long[] ids = new long[cursor.getCount() + 1];
+            String[] names = new String[ids.length];
+            ids[0] = -1;
+            names[0] = getString(R.string.all_suppliers);
+            try {
+                for (int i = 1; cursor.moveToNext(); i++) {
+                    ids[i] = cursor.getLong(0);
+                    names[i] = cursor.getString(1);
+                }
+            } finally {
+                cursor.close();
+            }
+            if (isFinishing()) {
+                return;
+            }
+            new AlertDialog.Builder(MainActivity.this)
+                    .setTitle(R.string.action_filter_supplier)
+                    .setItems(names, new DialogInterface.OnClickListener() {
+                        @Override
+                        public void onClick(DialogInterface dialog, int which) {
+                            mPagingAdapter.setSupplier(ids[which]);
+                        }
+                    })
+                    .show();
+        }
+    }
+
+    /**
+     * Copies the provider's CSV stream into the chosen document. Both ends are streams, so the
+     * export never holds more than a buffer of it, and it keeps going if the activity goes away.
+     */
+    private static class ExportCsvTask extends AsyncTask<Uri, Void, Boolean> {
+        private final Context mContext;
+
+        ExportCsvTask(Context context) {
+            mContext = context;
+        }
+
+        @Override
+        protected Boolean doInBackground(Uri... uris) {
+            ContentResolver resolver = mContext.getContentResolver();
+            try {
+                AssetFileDescriptor csv = resolver.openTypedAssetFileDescriptor(
+                        InventoryContract.InventoryEntry.CONTENT_URI, InventoryContract.InventoryEntry.CONTENT_CSV_TYPE, null);
+                if (csv == null) {
+                    return false;
+                }
+                // Closing the read end of the pipe is what stops the provider's writer thread, so
+                // it has to happen however the copy ends
+                InputStream in = csv.createInputStream();
+                try {
+                    OutputStream out = resolver.openOutputStream(uris[0]);
+                    if (out == null) {
+                        return false;
+                    }
+                    try {
+                        byte[] buffer = new byte[8192];
+                        int read;
+                        while ((read = in.read(buffer)) != -1) {
+                            out.write(buffer, 0, read);
+                        }
+                    } finally {
+                        out.close();
+                    }
+                } finally {
+                    in.close();
+                    csv.close();
+                }
+                return true;
+            } catch (IOException | SecurityException e) {
+                Log.e(LOG, "Can't export to " + uris[0], e);
+                return false;
+            }
+        }
+
+        @Override
+        protected void onPostExecute(Boolean exported) {
+            Toast.makeText(mContext, exported ? R.string.export_successful : R.string.export_failed,
+                    Toast.LENGTH_SHORT).show();
+        }
     }
 }
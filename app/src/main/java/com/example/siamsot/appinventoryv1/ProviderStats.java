@@ -0,0 +1,211 @@
+package com.example.siamsot.appinventoryv1;
+
+import android.database.MatrixCursor;
+
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counters and latency histograms of {@link InventoryProvider}, per operation and URI pattern.
+ * Recording a call is a handful of atomic adds into preallocated arrays, no allocation and no
+ * lock, so it stays on in release builds. The numbers cover the process's lifetime and are
+ * read through {@link InventoryContract.DiagnosticsEntry} or the provider's dump.
+ * <p>
+ * A snapshot isn't atomic, a call recorded while it is taken may be counted in some columns and
+ * not yet in others.
+ */
+final class ProviderStats {
+
+    /** Rows value of a call that threw */
+    static final long FAILED = -1;
+
+    /** Upper bounds of the latency buckets in microseconds, the last bucket is everything above */
+    static final long[] BUCKET_BOUNDS_US = {
+            50, 100, 250, 500, 1000, 2500, 5000, 10000, 25000, 50000, 100000, 250000, 1000000 };
+    private static final int BUCKETS = BUCKET_BOUNDS_US.length + 1;
+
+    /** Where the values of one operation and URI pattern are, relative to its first slot */
+    private static final int CALLS = 0;
+    private static final int ERRORS = 1;
+    private static final int ROWS = 2;
+    private static final int TOTAL_NANOS = 3;
+    private static final int MAX_NANOS = 4;
+    private static final int FIRST_BUCKET = 5;
+    private static final int FIELDS = FIRST_BUCKET + BUCKETS;
+
+    private static final String[] COLUMNS = {
+            InventoryContract.DiagnosticsEntry.COLUMN_OPERATION,
+            InventoryContract.DiagnosticsEntry.COLUMN_URI,
+            InventoryContract.DiagnosticsEntry.COLUMN_CALLS,
+            InventoryContract.DiagnosticsEntry.COLUMN_ERRORS,
+            InventoryContract.DiagnosticsEntry.COLUMN_ROWS,
+            InventoryContract.DiagnosticsEntry.COLUMN_MEAN_US,
+            InventoryContract.DiagnosticsEntry.COLUMN_P50_US,
+            InventoryContract.DiagnosticsEntry.COLUMN_P90_US,
+            InventoryContract.DiagnosticsEntry.COLUMN_P99_US,
+            InventoryContract.DiagnosticsEntry.COLUMN_MAX_US,
+            InventoryContract.DiagnosticsEntry.COLUMN_HISTOGRAM };
+
+    private static final String NOTIFY = "notify";
+
+    private final String[] mOperations;
+    private final String[] mUris;
+    private final AtomicLongArray mValues;
+    private final AtomicLongArray mNotifications;
+
+    /**
+     * @param operations names of the operations, recorded by their index
+     * @param uris       names of the URI patterns, recorded by their index
+     */
+    ProviderStats(String[] operations, String[] uris) {
+        mOperations = operations;
+        mUris = uris;
+        mValues = new AtomicLongArray(operations.length * uris.length * FIELDS);
+        mNotifications = new AtomicLongArray(uris.length);
+    }
+
+    /**
+     * Record one call.
+     *
+     * @param nanos how long it took
+     * @param rows  rows returned or written, or {@link #FAILED}
+     */
+    void record(int operation, int uri, long nanos, long rows) {
+        int base = (operation * mUris.length + uri) * FIELDS;
+        mValues.incrementAndGet(base + CALLS);
+        if (rows == FAILED) {
+            mValues.incrementAndGet(base + ERRORS);
+        } else {
+            mValues.addAndGet(base + ROWS, rows);
+        }
+        mValues.addAndGet(base + TOTAL_NANOS, nanos);
+        long max;
+        while (nanos > (max = mValues.get(base + MAX_NANOS))
+                && !mValues.compareAndSet(base + MAX_NANOS, max, nanos)) {
+            // another thread raised the max in between, compare again
+        }
+        mValues.incrementAndGet(base + FIRST_BUCKET + bucket(nanos / 1000));
+    }
+
+    /**
+     * Record a change notification of a URI with the given pattern.
+     */
+    void recordNotification(int uri) {
+        mNotifications.incrementAndGet(uri);
+    }
+
+    private static int bucket(long micros) {
+        int bucket = 0;
+        while (bucket < BUCKET_BOUNDS_US.length && micros > BUCKET_BOUNDS_US[bucket]) {
+            bucket++;
+        }
+        return bucket;
+    }
+
+    /**
+     * The numbers as rows of {@link InventoryContract.DiagnosticsEntry}.
+     */
+    MatrixCursor toCursor() {
+        MatrixCursor cursor = new MatrixCursor(COLUMNS);
+        for (Object[] row : snapshot()) {
+            cursor.addRow(row);
+        }
+        return cursor;
+    }
+
+    /**
+     * Add a row with just a count, like the ones of the notifications, to a cursor of
+     * {@link #toCursor()}.
+     */
+    static void addCounter(MatrixCursor cursor, String operation, String uri, long count) {
+        cursor.addRow(counterRow(operation, uri, count));
+    }
+
+    private static Object[] counterRow(String operation, String uri, long count) {
+        return new Object[]{operation, uri, count, 0L, 0L, 0L, 0L, 0L, 0L, 0L, ""};
+    }
+
+    /**
+     * Print the numbers as a table, for dumpsys.
+     */
+    void dump(PrintWriter writer) {
+        writer.println(String.format(Locale.US, "%-12s %-16s %9s %7s %10s %9s %9s %9s %9s %9s  %s",
+                (Object[]) COLUMNS));
+        for (Object[] row : snapshot()) {
+            writer.println(String.format(Locale.US, "%-12s %-16s %9d %7d %10d %9d %9d %9d %9d %9d  %s", row));
+        }
+    }
+
+    /**
+     * One row per operation and URI pattern that was called, then one per URI pattern that
+     * was notified.
+     */
+    private List<Object[]> snapshot() {
+        List<Object[]> rows = new ArrayList<>();
+        long[] buckets = new long[BUCKETS];
+        for (int operation = 0; operation < mOperations.length; operation++) {
+            for (int uri = 0; uri < mUris.length; uri++) {
+                int base = (operation * mUris.length + uri) * FIELDS;
+                long calls = mValues.get(base + CALLS);
+                if (calls == 0) {
+                    continue;
+                }
+                long maxNanos = mValues.get(base + MAX_NANOS);
+                StringBuilder histogram = new StringBuilder();
+                for (int i = 0; i < BUCKETS; i++) {
+                    buckets[i] = mValues.get(base + FIRST_BUCKET + i);
+                    if (buckets[i] == 0) {
+                        continue;
+                    }
+                    if (histogram.length() > 0) {
+                        histogram.append(' ');
+                    }
+                    histogram.append(i < BUCKET_BOUNDS_US.length ? "<=" + BUCKET_BOUNDS_US[i] : ">" + BUCKET_BOUNDS_US[i - 1])
+                            .append(':').append(buckets[i]);
+                }
+                rows.add(new Object[]{
+                        mOperations[operation],
+                        mUris[uri],
+                        calls,
+                        mValues.get(base + ERRORS),
+                        mValues.get(base + ROWS),
+                        mValues.get(base + TOTAL_NANOS) / calls / 1000,
+                        percentile(buckets, 0.5, maxNanos),
+                        percentile(buckets, 0.9, maxNanos),
+                        percentile(buckets, 0.99, maxNanos),
+                        maxNanos / 1000,
+                        histogram.toString()});
+            }
+        }
+        for (int uri = 0; uri < mUris.length; uri++) {
+            long notifications = mNotifications.get(uri);
+            if (notifications != 0) {
+                rows.add(counterRow(NOTIFY, mUris[uri], notifications));
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * The upper bound of the bucket the percentile falls in, never more than the max.
+     */
+    private static long percentile(long[] buckets, double fraction, long maxNanos) {
+        long total = 0;
+        for (long count : buckets) {
+            total += count;
+        }
+        long rank = (long) Math.ceil(total * fraction);
+        long seen = 0;
+        long maxMicros = maxNanos / 1000;
+        for (int i = 0; i < BUCKET_BOUNDS_US.length; i++) {
+            seen += buckets[i];
+            if (seen >= rank) {
+                return Math.min(BUCKET_BOUNDS_US[i], maxMicros);
+            }
+        }
+        return maxMicros;
+    }
+}
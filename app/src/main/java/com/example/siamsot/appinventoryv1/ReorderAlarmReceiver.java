@@ -0,0 +1,35 @@
+package com.example.siamsot.appinventoryv1;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.os.AsyncTask;
+
+/**
+ * Runs the checks of {@link ReorderAlerts} from the alarm before Lollipop, and schedules them
+ * again after a reboot.
+ */
+public class ReorderAlarmReceiver extends BroadcastReceiver {
+
+    @Override
+    public void onReceive(Context context, Intent intent) {
+        final Context appContext = context.getApplicationContext();
+        if (Intent.ACTION_BOOT_COMPLETED.equals(intent.getAction())) {
+            ReorderAlerts.schedule(appContext);
+            return;
+        }
+        // Keeps the process alive until the check is done
+        final PendingResult pendingResult = goAsync();
+        new AsyncTask<Void, Void, Void>() {
+            @Override
+            protected Void doInBackground(Void... voids) {
+                try {
+                    ReorderAlerts.run(appContext);
+                } finally {
+                    pendingResult.finish();
+                }
+                return null;
+            }
+        }.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
+    }
+}
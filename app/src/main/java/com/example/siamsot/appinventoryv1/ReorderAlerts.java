@@ -0,0 +1,301 @@
+package com.example.siamsot.appinventoryv1;
+
+import android.annotation.TargetApi;
+import android.app.AlarmManager;
+import android.app.NotificationChannel;
+import android.app.NotificationManager;
+import android.app.PendingIntent;
+import android.app.job.JobInfo;
+import android.app.job.JobScheduler;
+import android.content.ComponentName;
+import android.content.ContentResolver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.SharedPreferences;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Build;
+import android.os.Bundle;
+import android.os.SystemClock;
+import android.support.v4.app.NotificationCompat;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Alerts the staff when items drop to their reorder threshold
+ * ({@link InventoryContract.InventoryEntry#COLUMN_REORDER_THRESHOLD}): one notification for all
+ * of them, with a mail to each supplier already filled in.
+ * <p>
+ * A check only reads the items changed since the last check, through
+ * {@link InventoryContract#QUERY_PARAMETER_CHANGED_AFTER} and the change index, and remembers
+ * the last change it saw. An item that stays low isn't reported again until it changes again.
+ * The checks run in the background, as a job on Lollipop and up and from an alarm before, see
+ * {@link #schedule(Context)}.
+ */
+final class ReorderAlerts {
+
+    /** How often the check runs, JobScheduler won't go below 15 minutes */
+    static final long INTERVAL_MS = AlarmManager.INTERVAL_HOUR;
+
+    /**
+     * On Nougat and up a change of the items starts a check too, once they have been quiet for
+     * this long, so a burst of sales becomes one notification
+     */
+    static final long CHANGE_DELAY_MS = 10 * 1000;
+    /** ...but no later than this after the first change */
+    static final long CHANGE_MAX_DELAY_MS = 60 * 1000;
+
+    static final int PERIODIC_JOB_ID = 1;
+    static final int CHANGES_JOB_ID = 2;
+
+    private static final String PREFERENCES = "reorder_alerts";
+    private static final String KEY_LAST_CHANGE = "last_change";
+
+    private static final String CHANNEL_ID = "reorder";
+    private static final int NOTIFICATION_ID = 1;
+    /** Items listed in the notification, the others are counted */
+    private static final int MAX_LINES = 5;
+    /** A notification shows at most three actions */
+    private static final int MAX_MAIL_ACTIONS = 3;
+
+    private static final String[] PROJECTION = {
+            InventoryContract.InventoryEntry._ID,
+            InventoryContract.InventoryEntry.COLUMN_ITEM_NAME,
+            InventoryContract.InventoryEntry.COLUMN_ITEM_QUANTITY,
+            InventoryContract.InventoryEntry.COLUMN_REORDER_THRESHOLD,
+            InventoryContract.InventoryEntry.COLUMN_SUPPLIER_ID,
+            InventoryContract.InventoryEntry.COLUMN_SUPPLIER_NAME,
+            InventoryContract.InventoryEntry.COLUMN_SUPPLIER_MAIL };
+
+    /** Restricts the changed items to the ones at or below their threshold */
+    private static final String SELECTION = InventoryContract.InventoryEntry.COLUMN_CHANGED + " <= ? AND "
+            + InventoryContract.InventoryEntry.COLUMN_ITEM_QUANTITY + " <= "
+            + InventoryContract.InventoryEntry.COLUMN_REORDER_THRESHOLD;
+
+    /**
+     * An item at or below its reorder threshold.
+     */
+    static final class Alert {
+        final long itemId;
+        final String name;
+        final int quantity;
+        final int threshold;
+        final long supplierId;
+        final String supplierName;
+        final String supplierMail;
+
+        Alert(long itemId, String name, int quantity, int threshold, long supplierId, String supplierName,
+              String supplierMail) {
+            this.itemId = itemId;
+            this.name = name;
+            this.quantity = quantity;
+            this.threshold = threshold;
+            this.supplierId = supplierId;
+            this.supplierName = supplierName;
+            this.supplierMail = supplierMail;
+        }
+    }
+
+    /**
+     * What a check found, and the change the next check starts after.
+     */
+    static final class Result {
+        final List<Alert> alerts;
+        final long lastChange;
+
+        Result(List<Alert> alerts, long lastChange) {
+            this.alerts = alerts;
+            this.lastChange = lastChange;
+        }
+    }
+
+    private ReorderAlerts() {
+    }
+
+    /**
+     * Check the items changed since the last check and post the notification if any of them
+     * needs reordering. Blocks, never call it on the main thread.
+     */
+    static synchronized void run(Context context) {
+        SharedPreferences preferences = context.getSharedPreferences(PREFERENCES, Context.MODE_PRIVATE);
+        Result result = check(context.getContentResolver(), preferences.getLong(KEY_LAST_CHANGE, 0));
+        if (!result.alerts.isEmpty()) {
+            notify(context, result.alerts);
+        }
+        preferences.edit().putLong(KEY_LAST_CHANGE, result.lastChange).apply();
+    }
+
+    /**
+     * The items changed after lastChange that are at or below their reorder threshold, in the
+     * order they changed.
+     */
+    static Result check(ContentResolver resolver, long lastChange) {
+        // Changes made while this check runs are left to the next one
+        long upTo = lastChange(resolver);
+        List<Alert> alerts = new ArrayList<>();
+        Cursor cursor = resolver.query(InventoryContract.InventoryEntry.buildChangedAfterUri(lastChange),
+                PROJECTION, SELECTION, new String[]{String.valueOf(upTo)}, null);
+        if (cursor == null) {
+            return new Result(alerts, lastChange);
+        }
+        try {
+            while (cursor.moveToNext()) {
+                alerts.add(new Alert(cursor.getLong(0), cursor.getString(1), cursor.getInt(2), cursor.getInt(3),
+                        cursor.getLong(4), cursor.getString(5), cursor.getString(6)));
+            }
+        } finally {
+            cursor.close();
+        }
+        return new Result(alerts, upTo);
+    }
+
+    /**
+     * The last change made to the items, 0 if there is none. Read from the change sequence, which
+     * keeps its value when the last changed item is deleted.
+     */
+    private static long lastChange(ContentResolver resolver) {
+        Bundle result = resolver.call(InventoryContract.InventoryEntry.CONTENT_URI,
+                InventoryContract.METHOD_LAST_CHANGE, null, null);
+        return result == null ? 0 : result.getLong(InventoryContract.EXTRA_CHANGED);
+    }
+
+    /**
+     * Post one notification for all the alerts, replacing the one of the last check. Tapping it
+     * opens the list, its actions mail the suppliers.
+     */
+    static void notify(Context context, List<Alert> alerts) {
+        NotificationManager manager = (NotificationManager) context.getSystemService(Context.NOTIFICATION_SERVICE);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            manager.createNotificationChannel(new NotificationChannel(CHANNEL_ID,
+                    context.getString(R.string.reorder_channel), NotificationManager.IMPORTANCE_DEFAULT));
+        }
+
+        NotificationCompat.InboxStyle style = new NotificationCompat.InboxStyle();
+        for (int i = 0; i < alerts.size() && i < MAX_LINES; i++) {
+            style.addLine(line(context, alerts.get(i)));
+        }
+        if (alerts.size() > MAX_LINES) {
+            style.setSummaryText(context.getString(R.string.reorder_more, alerts.size() - MAX_LINES));
+        }
+        NotificationCompat.Builder builder = new NotificationCompat.Builder(context, CHANNEL_ID)
+                .setSmallIcon(R.drawable.ic_email_white_24dp)
+                .setContentTitle(context.getResources().getQuantityString(R.plurals.reorder_title,
+                        alerts.size(), alerts.size()))
+                .setContentText(line(context, alerts.get(0)))
+                .setStyle(style)
+                .setNumber(alerts.size())
+                .setAutoCancel(true)
+                .setContentIntent(PendingIntent.getActivity(context, 0,
+                        new Intent(context, MainActivity.class), PendingIntent.FLAG_UPDATE_CURRENT));
+
+        // One mail per supplier, with all of its items
+        Map<Long, List<Alert>> bySupplier = new LinkedHashMap<>();
+        for (Alert alert : alerts) {
+            List<Alert> supplierAlerts = bySupplier.get(alert.supplierId);
+            if (supplierAlerts == null) {
+                supplierAlerts = new ArrayList<>();
+                bySupplier.put(alert.supplierId, supplierAlerts);
+            }
+            supplierAlerts.add(alert);
+        }
+        int requestCode = 1;
+        for (List<Alert> supplierAlerts : bySupplier.values()) {
+            if (requestCode > MAX_MAIL_ACTIONS) {
+                break;
+            }
+            builder.addAction(0, context.getString(R.string.reorder_mail_action, supplierAlerts.get(0).supplierName),
+                    PendingIntent.getActivity(context, requestCode++, mailIntent(context, supplierAlerts),
+                            PendingIntent.FLAG_UPDATE_CURRENT));
+        }
+        manager.notify(NOTIFICATION_ID, builder.build());
+    }
+
+    private static String line(Context context, Alert alert) {
+        return context.getString(R.string.reorder_line, alert.name, alert.quantity, alert.threshold);
+    }
+
+    /**
+     * A mail to the supplier of the alerts asking for more of their items, built like the mail
+     * button of the {@link Editor}.
+     */
+    static Intent mailIntent(Context context, List<Alert> alerts) {
+        StringBuilder text = new StringBuilder(context.getString(R.string.reorder_mail_text));
+        for (Alert alert : alerts) {
+            text.append('\n').append(context.getString(R.string.reorder_mail_line, alert.name, alert.quantity));
+        }
+        Intent mailI = new Intent(Intent.ACTION_SENDTO);
+        mailI.setData(Uri.parse("mailto:"));
+        mailI.putExtra(Intent.EXTRA_TEXT, text.toString());
+        mailI.putExtra(Intent.EXTRA_EMAIL, new String[] { alerts.get(0).supplierMail });
+        mailI.putExtra(Intent.EXTRA_SUBJECT, context.getString(R.string.reorder_mail_subject));
+        return mailI;
+    }
+
+    /**
+     * Make sure the checks are scheduled. Does nothing if they already are, so the period isn't
+     * restarted every time the app opens.
+     */
+    static void schedule(Context context) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+            scheduleJobs(context);
+        } else {
+            scheduleAlarm(context);
+        }
+    }
+
+    @TargetApi(Build.VERSION_CODES.LOLLIPOP)
+    private static void scheduleJobs(Context context) {
+        JobScheduler scheduler = (JobScheduler) context.getSystemService(Context.JOB_SCHEDULER_SERVICE);
+        boolean periodic = false;
+        boolean changes = false;
+        for (JobInfo job : scheduler.getAllPendingJobs()) {
+            periodic |= job.getId() == PERIODIC_JOB_ID;
+            changes |= job.getId() == CHANGES_JOB_ID;
+        }
+        ComponentName service = new ComponentName(context, ReorderJobService.class);
+        if (!periodic) {
+            scheduler.schedule(new JobInfo.Builder(PERIODIC_JOB_ID, service)
+                    .setPeriodic(INTERVAL_MS)
+                    .setPersisted(true)
+                    .build());
+        }
+        if (!changes) {
+            scheduleChangesJob(context);
+        }
+    }
+
+    /**
+     * On Nougat and up, a one-off job that starts when the items change. It has to be scheduled
+     * again after each run.
+     */
+    @TargetApi(Build.VERSION_CODES.N)
+    static void scheduleChangesJob(Context context) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.N) {
+            return;
+        }
+        JobScheduler scheduler = (JobScheduler) context.getSystemService(Context.JOB_SCHEDULER_SERVICE);
+        scheduler.schedule(new JobInfo.Builder(CHANGES_JOB_ID, new ComponentName(context, ReorderJobService.class))
+                .addTriggerContentUri(new JobInfo.TriggerContentUri(InventoryContract.InventoryEntry.CONTENT_URI,
+                        JobInfo.TriggerContentUri.FLAG_NOTIFY_FOR_DESCENDANTS))
+                .setTriggerContentUpdateDelay(CHANGE_DELAY_MS)
+                .setTriggerContentMaxDelay(CHANGE_MAX_DELAY_MS)
+                .build());
+    }
+
+    /**
+     * Before Lollipop an inexact alarm sends {@link ReorderAlarmReceiver} the checks. Alarms don't
+     * survive a reboot, the receiver schedules it again then.
+     */
+    static void scheduleAlarm(Context context) {
+        Intent intent = new Intent(context, ReorderAlarmReceiver.class);
+        if (PendingIntent.getBroadcast(context, 0, intent, PendingIntent.FLAG_NO_CREATE) != null) {
+            return;
+        }
+        AlarmManager alarms = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
+        alarms.setInexactRepeating(AlarmManager.ELAPSED_REALTIME, SystemClock.elapsedRealtime() + INTERVAL_MS,
+                INTERVAL_MS, PendingIntent.getBroadcast(context, 0, intent, 0));
+    }
+}
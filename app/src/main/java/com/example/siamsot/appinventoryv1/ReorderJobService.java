@@ -0,0 +1,43 @@
+package com.example.siamsot.appinventoryv1;
+
+import android.annotation.TargetApi;
+import android.app.job.JobParameters;
+import android.app.job.JobService;
+import android.os.AsyncTask;
+import android.os.Build;
+
+/**
+ * Runs the checks of {@link ReorderAlerts} as jobs, from Lollipop on. Both the periodic job and
+ * the one started by changes of the items end up here.
+ */
+@TargetApi(Build.VERSION_CODES.LOLLIPOP)
+public class ReorderJobService extends JobService {
+
+    @Override
+    public boolean onStartJob(final JobParameters params) {
+        if (params.getJobId() == ReorderAlerts.CHANGES_JOB_ID) {
+            // A content trigger fires once, watch for the next changes right away
+            ReorderAlerts.scheduleChangesJob(getApplicationContext());
+        }
+        new AsyncTask<Void, Void, Void>() {
+            @Override
+            protected Void doInBackground(Void... voids) {
+                ReorderAlerts.run(getApplicationContext());
+                return null;
+            }
+
+            @Override
+            protected void onPostExecute(Void result) {
+                jobFinished(params, false);
+            }
+        }.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
+        // Still running in the background
+        return true;
+    }
+
+    @Override
+    public boolean onStopJob(JobParameters params) {
+        // The next run picks up from the last change this one saved
+        return false;
+    }
+}
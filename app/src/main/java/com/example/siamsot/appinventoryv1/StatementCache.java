@@ -0,0 +1,55 @@
+package com.example.siamsot.appinventoryv1;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The compiled statements of {@link InventoryProvider}'s fixed SQL, compiled once per database
+ * and kept until it closes. {@link SQLiteDatabase#update} and friends build their SQL string and
+ * a new statement object on every call; a cached statement is only bound and executed.
+ * <p>
+ * A statement holds its bindings, so two threads must never use it at the same time. Use the
+ * statements only inside a transaction of the database: a transaction holds the database's one
+ * write connection, so only one thread at a time gets there. Don't close them, {@link #close()} does.
+ */
+final class StatementCache {
+    private final SQLiteDatabase mDb;
+    private final Map<String, SQLiteStatement> mStatements = new HashMap<>();
+
+    StatementCache(SQLiteDatabase db) {
+        mDb = db;
+    }
+
+    /**
+     * Whether the statements were compiled for the given database.
+     */
+    boolean isFor(SQLiteDatabase db) {
+        return mDb == db;
+    }
+
+    /**
+     * The statement for sql, compiled on first use. The bindings are those of the last use,
+     * bind every parameter or clear them.
+     */
+    synchronized SQLiteStatement get(String sql) {
+        if (!mDb.inTransaction()) {
+            throw new IllegalStateException("Cached statements are only used inside a transaction");
+        }
+        SQLiteStatement statement = mStatements.get(sql);
+        if (statement == null) {
+            statement = mDb.compileStatement(sql);
+            mStatements.put(sql, statement);
+        }
+        return statement;
+    }
+
+    synchronized void close() {
+        for (SQLiteStatement statement : mStatements.values()) {
+            statement.close();
+        }
+        mStatements.clear();
+    }
+}
@@ -0,0 +1,111 @@
+package com.example.siamsot.appinventoryv1;
+
+import android.app.LoaderManager;
+import android.content.CursorLoader;
+import android.content.Loader;
+import android.database.Cursor;
+import android.os.Bundle;
+import android.support.v7.app.AppCompatActivity;
+import android.view.View;
+import android.widget.ListView;
+import android.widget.SimpleCursorAdapter;
+import android.widget.TextView;
+
+import java.util.Locale;
+
+/**
+ * Shows the stock totals and the totals per supplier. Both are aggregated by SQLite in the
+ * provider, see {@link InventoryContract.StatsEntry}, and each has its own loader, so they are
+ * requeried in the background whenever the items change.
+ */
+public class StatsActivity extends AppCompatActivity implements
+        LoaderManager.LoaderCallbacks<Cursor> {
+
+    /** Identifier for the loader of the totals */
+    private static final int STATS_LOADER = 0;
+
+    /** Identifier for the loader of the totals per supplier */
+    private static final int SUPPLIER_STATS_LOADER = 1;
+
+    private TextView mItemCountView;
+
+    private TextView mTotalValueView;
+
+    private TextView mLowStockView;
+
+    private TextView mOutOfStockView;
+
+    private SimpleCursorAdapter mSupplierAdapter;
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_stats);
+
+        mItemCountView = findViewById(R.id.stats_item_count);
+        mTotalValueView = findViewById(R.id.stats_total_value);
+        mLowStockView = findViewById(R.id.stats_low_stock);
+        mOutOfStockView = findViewById(R.id.stats_out_of_stock);
+
+        // The supplier name goes into the first line, all totals into the second one
+        mSupplierAdapter = new SimpleCursorAdapter(this, R.layout.supplier_stats_item, null,
+                new String[]{
+                        InventoryContract.InventoryEntry.COLUMN_SUPPLIER_NAME,
+                        InventoryContract.StatsEntry.COLUMN_ITEM_COUNT },
+                new int[]{R.id.supplier_name, R.id.supplier_totals}, 0);
+        mSupplierAdapter.setViewBinder(new SimpleCursorAdapter.ViewBinder() {
+            @Override
+            public boolean setViewValue(View view, Cursor cursor, int columnIndex) {
+                if (view.getId() != R.id.supplier_totals) {
+                    return false;
+                }
+                int count = cursor.getInt(columnIndex);
+                long quantity = cursor.getLong(cursor.getColumnIndex(InventoryContract.StatsEntry.COLUMN_TOTAL_QUANTITY));
+                double value = cursor.getDouble(cursor.getColumnIndex(InventoryContract.StatsEntry.COLUMN_TOTAL_VALUE));
+                ((TextView) view).setText(getString(R.string.stats_supplier_totals, count, quantity, value));
+                return true;
+            }
+        });
+        ListView supplierList = findViewById(R.id.stats_suppliers);
+        supplierList.setAdapter(mSupplierAdapter);
+
+        getLoaderManager().initLoader(STATS_LOADER, null, this);
+        getLoaderManager().initLoader(SUPPLIER_STATS_LOADER, null, this);
+    }
+
+    @Override
+    public Loader<Cursor> onCreateLoader(int id, Bundle bundle) {
+        // The provider always returns the same columns for the statistics
+        if (id == STATS_LOADER) {
+            return new CursorLoader(this, InventoryContract.StatsEntry.CONTENT_URI, null, null, null, null);
+        }
+        return new CursorLoader(this, InventoryContract.StatsEntry.SUPPLIERS_URI, null, null, null, null);
+    }
+
+    @Override
+    public void onLoadFinished(Loader<Cursor> loader, Cursor cursor) {
+        if (loader.getId() == SUPPLIER_STATS_LOADER) {
+            mSupplierAdapter.swapCursor(cursor);
+            return;
+        }
+        if (cursor == null || !cursor.moveToFirst()) {
+            return;
+        }
+        mItemCountView.setText(String.valueOf(
+                cursor.getInt(cursor.getColumnIndex(InventoryContract.StatsEntry.COLUMN_ITEM_COUNT))));
+        // Formatted, the sum easily gets big enough for Double.toString to switch to exponents
+        mTotalValueView.setText(String.format(Locale.getDefault(), "%.2f$",
+                cursor.getDouble(cursor.getColumnIndex(InventoryContract.StatsEntry.COLUMN_TOTAL_VALUE))));
+        mLowStockView.setText(String.valueOf(
+                cursor.getInt(cursor.getColumnIndex(InventoryContract.StatsEntry.COLUMN_LOW_STOCK_COUNT))));
+        mOutOfStockView.setText(String.valueOf(
+                cursor.getInt(cursor.getColumnIndex(InventoryContract.StatsEntry.COLUMN_OUT_OF_STOCK_COUNT))));
+    }
+
+    @Override
+    public void onLoaderReset(Loader<Cursor> loader) {
+        if (loader.getId() == SUPPLIER_STATS_LOADER) {
+            mSupplierAdapter.swapCursor(null);
+        }
+    }
+}
@@ -0,0 +1,248 @@
+package com.example.siamsot.appinventoryv1;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Size-bounded disk cache of the small, compressed thumbnails {@link ImageLoader} shows in the list.
+ * A thumbnail is a few KiB, so reading it is much cheaper than decoding the original photo
+ * again after every cold start. When the cache grows over its size, the least recently used
+ * thumbnails are deleted; they can always be generated again from the originals.
+ */
+final class ThumbnailCache {
+    private static final String LOG = "ThumbnailCache";
+
+    /** JPEG quality of the thumbnails, they are tiny so this barely changes their size */
+    private static final int JPEG_QUALITY = 85;
+
+    private final File mDir;
+    private final long mMaxBytes;
+
+    /**
+     * File size of every thumbnail, in access order, filled from the directory on first use.
+     * The lock guards this index and the counters only, never the decoding or writing of a file.
+     */
+    private LinkedHashMap<String, Long> mEntries;
+    private long mSizeBytes;
+
+    private int mHitCount;
+    private int mMissCount;
+
+    ThumbnailCache(File dir, long maxBytes) {
+        mDir = dir;
+        mMaxBytes = maxBytes;
+    }
+
+    /**
+     * The thumbnail stored under the key, or null if there is none.
+     */
+    Bitmap get(String key) {
+        synchronized (this) {
+            ensureLoaded();
+            if (mEntries.get(key) == null) {
+                mMissCount++;
+                return null;
+            }
+        }
+        // Decoded without the lock, the other threads only wait for the index
+        File file = new File(mDir, key);
+        Bitmap bitmap = BitmapFactory.decodeFile(file.getPath());
+        if (bitmap == null) {
+            // Deleted or cut short behind our back, forget about it
+            remove(key);
+            synchronized (this) {
+                mMissCount++;
+            }
+            return null;
+        }
+        synchronized (this) {
+            mHitCount++;
+        }
+        // The access order is only kept in memory, the modification time carries it over restarts
+        file.setLastModified(System.currentTimeMillis());
+        return bitmap;
+    }
+
+    synchronized boolean contains(String key) {
+        ensureLoaded();
+        return mEntries.containsKey(key);
+    }
+
+    /**
+     * Store the bitmap as the thumbnail for the key, replacing an older one, and evict the least
+     * recently used thumbnails if the cache is now too large. The bitmap is compressed and moved
+     * into place without the lock, only the index is updated under it.
+     */
+    void put(String key, Bitmap bitmap) {
+        synchronized (this) {
+            // Loading cleans up temporary files, so it must not run into the one written below
+            ensureLoaded();
+        }
+        if (!mDir.isDirectory() && !mDir.mkdirs()) {
+            Log.e(LOG, "Can't create " + mDir);
+            return;
+        }
+        // Written to a temporary file of this thread first, so a crash never leaves half a
+        // thumbnail behind and two threads never write the same file
+        File tmp = new File(mDir, key + "." + Thread.currentThread().getId() + ".tmp");
+        File file = new File(mDir, key);
+        try {
+            OutputStream out = new FileOutputStream(tmp);
+            try {
+                bitmap.compress(Bitmap.CompressFormat.JPEG, JPEG_QUALITY, out);
+            } finally {
+                out.close();
+            }
+        } catch (IOException e) {
+            Log.e(LOG, "Can't write thumbnail " + key, e);
+            tmp.delete();
+            return;
+        }
+        long length = tmp.length();
+        // Replaces an older thumbnail in one step
+        if (!tmp.renameTo(file)) {
+            Log.e(LOG, "Can't store thumbnail " + key);
+            tmp.delete();
+            return;
+        }
+        List<File> evicted;
+        synchronized (this) {
+            Long oldLength = mEntries.put(key, length);
+            if (oldLength != null) {
+                mSizeBytes -= oldLength;
+            }
+            mSizeBytes += length;
+            evicted = trimToSize();
+        }
+        delete(evicted);
+    }
+
+    void remove(String key) {
+        Long length;
+        synchronized (this) {
+            ensureLoaded();
+            length = mEntries.remove(key);
+            if (length != null) {
+                mSizeBytes -= length;
+            }
+        }
+        if (length != null) {
+            new File(mDir, key).delete();
+        }
+    }
+
+    /**
+     * Remove every thumbnail whose key ends with the suffix, for example all sizes of one photo.
+     */
+    void removeEndingWith(String suffix) {
+        List<File> removed = new ArrayList<>();
+        synchronized (this) {
+            ensureLoaded();
+            Iterator<Map.Entry<String, Long>> entries = mEntries.entrySet().iterator();
+            while (entries.hasNext()) {
+                Map.Entry<String, Long> entry = entries.next();
+                if (entry.getKey().endsWith(suffix)) {
+                    mSizeBytes -= entry.getValue();
+                    removed.add(new File(mDir, entry.getKey()));
+                    entries.remove();
+                }
+            }
+        }
+        delete(removed);
+    }
+
+    /** Bytes the thumbnails take on disk */
+    synchronized long getSizeBytes() {
+        ensureLoaded();
+        return mSizeBytes;
+    }
+
+    long getMaxBytes() {
+        return mMaxBytes;
+    }
+
+    synchronized int getHitCount() {
+        return mHitCount;
+    }
+
+    synchronized int getMissCount() {
+        return mMissCount;
+    }
+
+    @Override
+    public synchronized String toString() {
+        int lookups = mHitCount + mMissCount;
+        int hitPercent = lookups == 0 ? 0 : 100 * mHitCount / lookups;
+        return "ThumbnailCache[hits=" + mHitCount + ",misses=" + mMissCount + ",hitRate=" + hitPercent
+                + "%,size=" + getSizeBytes() + "/" + mMaxBytes + " bytes]";
+    }
+
+    /**
+     * Drop the least recently used entries until the cache fits, and return their files for the
+     * caller to delete once it let go of the lock.
+     */
+    private List<File> trimToSize() {
+        List<File> evicted = new ArrayList<>();
+        Iterator<Map.Entry<String, Long>> eldest = mEntries.entrySet().iterator();
+        while (mSizeBytes > mMaxBytes && eldest.hasNext()) {
+            Map.Entry<String, Long> entry = eldest.next();
+            mSizeBytes -= entry.getValue();
+            evicted.add(new File(mDir, entry.getKey()));
+            eldest.remove();
+        }
+        return evicted;
+    }
+
+    private static void delete(List<File> files) {
+        for (File file : files) {
+            file.delete();
+        }
+    }
+
+    /**
+     * Read the thumbnails that are already on disk, least recently used first. Only the first
+     * call lists the directory, under the lock, since nothing can be looked up before that.
+     */
+    private void ensureLoaded() {
+        if (mEntries != null) {
+            return;
+        }
+        mEntries = new LinkedHashMap<>(16, 0.75f, true);
+        mSizeBytes = 0;
+        File[] files = mDir.listFiles();
+        if (files == null) {
+            return;
+        }
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File a, File b) {
+                long diff = a.lastModified() - b.lastModified();
+                return diff < 0 ? -1 : (diff > 0 ? 1 : 0);
+            }
+        });
+        for (File file : files) {
+            if (file.getName().endsWith(".tmp")) {
+                // Left over from a write that didn't finish
+                file.delete();
+                continue;
+            }
+            long length = file.length();
+            mEntries.put(file.getName(), length);
+            mSizeBytes += length;
+        }
+        delete(trimToSize());
+    }
+}
@@ -0,0 +1,49 @@
+package com.example.siamsot.appinventoryv1;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that {@link CsvReader} reads back what {@link InventoryCsvExporter} writes.
+ */
+public class CsvReaderTest {
+    @Test
+    public void readsRecordsWithBothLineEnds() throws IOException {
+        CsvReader reader = new CsvReader(new StringReader("a,b\r\nc,d\ne,f"));
+        assertArrayEquals(new String[]{"a", "b"}, reader.readRecord());
+        assertArrayEquals(new String[]{"c", "d"}, reader.readRecord());
+        assertArrayEquals(new String[]{"e", "f"}, reader.readRecord());
+        assertNull(reader.readRecord());
+    }
+
+    @Test
+    public void readsQuotedFields() throws IOException {
+        CsvReader reader = new CsvReader(new StringReader("\"Pixel, 64 GB\",\"The \"\"best\"\"\",\"two\r\nlines\"\r\n"));
+        assertArrayEquals(new String[]{"Pixel, 64 GB", "The \"best\"", "two\r\nlines"}, reader.readRecord());
+        assertNull(reader.readRecord());
+    }
+
+    @Test
+    public void keepsEmptyFieldsAndSkipsEmptyLines() throws IOException {
+        CsvReader reader = new CsvReader(new StringReader("a,,c\r\n\r\n,\r\n"));
+        assertArrayEquals(new String[]{"a", "", "c"}, reader.readRecord());
+        assertArrayEquals(new String[]{"", ""}, reader.readRecord());
+        assertNull(reader.readRecord());
+    }
+
+    @Test
+    public void countsLinesInsideQuotedFields() throws IOException {
+        CsvReader reader = new CsvReader(new StringReader("\"a\nb\",c\nd\n"));
+        reader.readRecord();
+        assertEquals(3, reader.getLine());
+    }
+
+    @Test(expected = IOException.class)
+    public void unclosedQuoteFails() throws IOException {
+        new CsvReader(new StringReader("\"abc,d\n")).readRecord();
+    }
+}
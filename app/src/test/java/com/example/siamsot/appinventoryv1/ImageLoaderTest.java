@@ -0,0 +1,29 @@
+package com.example.siamsot.appinventoryv1;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the downsampling factor {@link ImageLoader} decodes the photos with.
+ */
+public class ImageLoaderTest {
+    @Test
+    public void smallImageIsNotDownsampled() {
+        assertEquals(1, ImageLoader.calculateInSampleSize(100, 100, 160, 160));
+        assertEquals(1, ImageLoader.calculateInSampleSize(300, 300, 160, 160));
+    }
+
+    @Test
+    public void largeImageIsDownsampledToAtLeastTheRequestedSize() {
+        // A 12 MP photo for a 60dp thumbnail at xxhdpi
+        int inSampleSize = ImageLoader.calculateInSampleSize(4000, 3000, 180, 180);
+        assertEquals(16, inSampleSize);
+        assertTrue(3000 / inSampleSize >= 180);
+    }
+
+    @Test
+    public void shorterSideLimitsTheDownsampling() {
+        assertEquals(2, ImageLoader.calculateInSampleSize(4000, 400, 160, 160));
+    }
+}
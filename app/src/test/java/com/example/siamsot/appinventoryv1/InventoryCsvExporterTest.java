@@ -0,0 +1,42 @@
+package com.example.siamsot.appinventoryv1;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks how {@link InventoryCsvExporter} quotes the fields of the export.
+ */
+public class InventoryCsvExporterTest {
+    @Test
+    public void plainFieldIsWrittenAsIs() throws IOException {
+        assertEquals("Taimen", field("Taimen"));
+        assertEquals("+1-855-836-3987", field("+1-855-836-3987"));
+    }
+
+    @Test
+    public void fieldWithSeparatorOrLineBreakIsQuoted() throws IOException {
+        assertEquals("\"Pixel, 64 GB\"", field("Pixel, 64 GB"));
+        assertEquals("\"two\nlines\"", field("two\nlines"));
+        assertEquals("\"two\r\nlines\"", field("two\r\nlines"));
+    }
+
+    @Test
+    public void quotesAreDoubled() throws IOException {
+        assertEquals("\"The \"\"best\"\" phone\"", field("The \"best\" phone"));
+    }
+
+    @Test
+    public void nullFieldIsEmpty() throws IOException {
+        assertEquals("", field(null));
+    }
+
+    private static String field(String value) throws IOException {
+        StringWriter out = new StringWriter();
+        InventoryCsvExporter.writeField(out, value);
+        return out.toString();
+    }
+}